@@ -0,0 +1,96 @@
+package com.hewuzhao.frameanimation;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.hewuzhao.frameanimation.blobcache.BlobCache;
+import com.hewuzhao.frameanimation.blobcache.BlobCacheUtil;
+import com.hewuzhao.frameanimation.blobcache.BlobCodecType;
+import com.hewuzhao.frameanimation.bytespool.BytesBuffer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 对比不同编码方式下每帧占用的缓存大小和从缓存读取一帧的耗时，结果输出到logcat
+ */
+@RunWith(AndroidJUnit4.class)
+public class BlobCodecBenchmark {
+    private static final String TAG = "BlobCodecBenchmark";
+    private static final int FRAME_COUNT = 20;
+    private static final int LOOPS = 5;
+
+    @Test
+    public void compareCodecs() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        Bitmap[] frames = new Bitmap[FRAME_COUNT];
+        String[] names = new String[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            names[i] = String.format("big_%02d", i);
+            int resId = context.getResources().getIdentifier(names[i], "drawable", context.getPackageName());
+            frames[i] = BitmapFactory.decodeResource(context.getResources(), resId, options);
+            assertNotNull(names[i], frames[i]);
+        }
+
+        for (int codec : new int[]{BlobCodecType.NONE, BlobCodecType.LZ4}) {
+            String path = new File(context.getCacheDir(), "codec_benchmark_" + codec).getAbsolutePath();
+            BlobCache.deleteFiles(path);
+
+            BlobCache cache = new BlobCache(path, 100, 200 * 1024 * 1024, true, 1);
+            long t = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                BlobCacheUtil.saveImageByBlobCache(frames[i], names[i], cache, codec);
+            }
+            long writeNanos = SystemClock.elapsedRealtimeNanos() - t;
+            cache.close();
+            long bytesPerFrame = new File(path + ".0").length() / FRAME_COUNT;
+
+            cache = new BlobCache(path, 100, 200 * 1024 * 1024, false, 1);
+            BytesBuffer dataBuffer = new BytesBuffer();
+            BytesBuffer pixelsBuffer = new BytesBuffer();
+            BlobCache.LookupRequest request = new BlobCache.LookupRequest();
+            Bitmap inBitmap = frames[0].copy(Bitmap.Config.ARGB_8888, true);
+            t = SystemClock.elapsedRealtimeNanos();
+            for (int loop = 0; loop < LOOPS; loop++) {
+                for (int i = 0; i < FRAME_COUNT; i++) {
+                    BytesBuffer data = BlobCacheUtil.getCacheDataByName(cache, names[i], dataBuffer, null, request);
+                    assertNotNull(names[i], data);
+                    dataBuffer = data;
+                    inBitmap = BlobCacheUtil.getCacheBitmapByData(data, pixelsBuffer, inBitmap, null, null);
+                    assertNotNull(names[i], inBitmap);
+                }
+            }
+            long heapReadNanos = (SystemClock.elapsedRealtimeNanos() - t) / (LOOPS * FRAME_COUNT);
+
+            t = SystemClock.elapsedRealtimeNanos();
+            for (int loop = 0; loop < LOOPS; loop++) {
+                for (int i = 0; i < FRAME_COUNT; i++) {
+                    inBitmap = BlobCacheUtil.getCacheBitmapByMappedName(cache, names[i], null, inBitmap, pixelsBuffer);
+                    assertNotNull(names[i], inBitmap);
+                }
+            }
+            long mappedReadNanos = (SystemClock.elapsedRealtimeNanos() - t) / (LOOPS * FRAME_COUNT);
+            cache.close();
+            BlobCache.deleteFiles(path);
+
+            Log.i(TAG, "codec=" + codec
+                    + ", rawBytesPerFrame=" + frames[0].getByteCount()
+                    + ", bytesPerFrame=" + bytesPerFrame
+                    + ", writeMsPerFrame=" + writeNanos / FRAME_COUNT / 1000000f
+                    + ", heapReadMsPerFrame=" + heapReadNanos / 1000000f
+                    + ", mappedReadMsPerFrame=" + mappedReadNanos / 1000000f);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.hewuzhao.frameanimation;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.hewuzhao.frameanimation.frameview.FrameItem;
+import com.hewuzhao.frameanimation.frameview.FrameList;
+import com.hewuzhao.frameanimation.utils.FrameParseUtil;
+import com.hewuzhao.frameanimation.utils.ResourceUtil;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 对比每帧按名字查找资源id(getIdentifier)和直接使用解析时记录的资源id的耗时，结果输出到logcat
+ */
+@RunWith(AndroidJUnit4.class)
+public class DrawableLookupBenchmark {
+    private static final String TAG = "DrawableLookupBenchmark";
+    private static final int LOOKUP_LOOPS = 1000;
+    private static final int DECODE_LOOPS = 5;
+
+    @Test
+    public void compareLookup() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FrameList frameList = FrameParseUtil.parse(R.drawable.big_animation_drawable);
+        assertNotNull(frameList);
+        final int count = frameList.getFrameItemSize();
+        assertTrue(count > 0);
+        String[] names = new String[count];
+        int[] resIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            FrameItem item = frameList.getFrameItemByIndex(i);
+            names[i] = item.getDrawableName();
+            resIds[i] = item.getResId();
+            assertTrue(names[i], resIds[i] != 0);
+        }
+
+        // 只比较查找资源id
+        String packageName = context.getPackageName();
+        int sum = 0;
+        long t = SystemClock.elapsedRealtimeNanos();
+        for (int loop = 0; loop < LOOKUP_LOOPS; loop++) {
+            for (int i = 0; i < count; i++) {
+                sum += context.getResources().getIdentifier(names[i], "drawable", packageName);
+            }
+        }
+        long identifierNanos = (SystemClock.elapsedRealtimeNanos() - t) / (LOOKUP_LOOPS * count);
+
+        t = SystemClock.elapsedRealtimeNanos();
+        for (int loop = 0; loop < LOOKUP_LOOPS; loop++) {
+            for (int i = 0; i < count; i++) {
+                sum -= frameList.getFrameItemByIndex(i).getResId();
+            }
+        }
+        long resIdNanos = (SystemClock.elapsedRealtimeNanos() - t) / (LOOKUP_LOOPS * count);
+        Log.d(TAG, "checksum=" + sum);
+
+        // 查找加解码，复用同一个inBitmap
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inBitmap = ResourceUtil.getBitmap(resIds[0], options);
+        assertNotNull(options.inBitmap);
+        t = SystemClock.elapsedRealtimeNanos();
+        for (int loop = 0; loop < DECODE_LOOPS; loop++) {
+            for (int i = 0; i < count; i++) {
+                options.inBitmap = ResourceUtil.getBitmap(names[i], options);
+            }
+        }
+        long decodeByNameNanos = (SystemClock.elapsedRealtimeNanos() - t) / (DECODE_LOOPS * count);
+
+        t = SystemClock.elapsedRealtimeNanos();
+        for (int loop = 0; loop < DECODE_LOOPS; loop++) {
+            for (int i = 0; i < count; i++) {
+                options.inBitmap = ResourceUtil.getBitmap(frameList.getFrameItemByIndex(i), options);
+            }
+        }
+        long decodeByIdNanos = (SystemClock.elapsedRealtimeNanos() - t) / (DECODE_LOOPS * count);
+        Bitmap last = options.inBitmap;
+        assertNotNull(last);
+        last.recycle();
+
+        Log.i(TAG, "frames=" + count
+                + ", getIdentifierUsPerFrame=" + identifierNanos / 1000f
+                + ", resIdUsPerFrame=" + resIdNanos / 1000f
+                + ", decodeByNameMsPerFrame=" + decodeByNameNanos / 1000000f
+                + ", decodeByIdMsPerFrame=" + decodeByIdNanos / 1000000f);
+    }
+}
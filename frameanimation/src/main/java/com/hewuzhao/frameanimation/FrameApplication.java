@@ -2,6 +2,8 @@ package com.hewuzhao.frameanimation;
 
 import android.app.Application;
 
+import com.hewuzhao.frameanimation.memory.FrameMemoryGovernor;
+
 /**
  * @author hewuzhao
  * @date 2020-02-01
@@ -14,5 +16,6 @@ public class FrameApplication extends Application {
     public void onCreate() {
         super.onCreate();
         sApplication = this;
+        registerComponentCallbacks(FrameMemoryGovernor.getInstance());
     }
 }
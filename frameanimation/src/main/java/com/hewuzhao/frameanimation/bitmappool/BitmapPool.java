@@ -0,0 +1,96 @@
+package com.hewuzhao.frameanimation.bitmappool;
+
+import android.graphics.Bitmap;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 进程内所有FrameTextureView共用的bitmap池，切换动画、view销毁时不再回收bitmap，
+ * 放回池里给之后解码相同尺寸的帧复用，减少大块内存的反复申请和GC。
+ * <p>
+ * 按宽、高、config分组，总大小超过上限时从最久没有用到的一组开始回收。
+ * 只接收可修改的bitmap，放回后调用方不能再使用。
+ */
+public class BitmapPool extends ReusePool<BitmapPool.Key, Bitmap> {
+
+    /**
+     * 默认上限：32MB，并且不超过最大堆内存的1/8
+     */
+    private static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private static class SingletonHolder {
+        private static final BitmapPool INSTANCE = new BitmapPool(
+                Math.min(DEFAULT_MAX_BYTES, Runtime.getRuntime().maxMemory() / 8));
+    }
+
+    public static BitmapPool getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    BitmapPool(long maxBytes) {
+        super(maxBytes);
+    }
+
+    /**
+     * 取一个宽高和config都相同的bitmap，没有时返回null
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        if (width <= 0 || height <= 0 || config == null) {
+            return null;
+        }
+        return get(new Key(width, height, config));
+    }
+
+    /**
+     * 放回一个不再使用的bitmap，不能复用或者放不下时直接回收
+     */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getConfig() == null) {
+            bitmap.recycle();
+            return;
+        }
+        put(bitmap, new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()),
+                bitmap.getAllocationByteCount());
+    }
+
+    @Override
+    void recycle(Bitmap bitmap) {
+        bitmap.recycle();
+    }
+
+    static final class Key {
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+
+        Key(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && height == key.height && config == key.config;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = width;
+            result = 31 * result + height;
+            result = 31 * result + (config == null ? 0 : config.hashCode());
+            return result;
+        }
+    }
+}
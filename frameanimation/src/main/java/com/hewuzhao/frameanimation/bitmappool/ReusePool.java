@@ -0,0 +1,178 @@
+package com.hewuzhao.frameanimation.bitmappool;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 按key分组的复用池，{@link BitmapPool}的实现。总大小超过上限时从最久没有用到的一组开始回收，
+ * 回收方式由子类决定，单元测试里可以不依赖真正的bitmap。
+ */
+abstract class ReusePool<K, V> {
+    private static final String TAG = "ReusePool";
+
+    /**
+     * 访问顺序排列，第一组是最久没有用到的
+     */
+    private final LinkedHashMap<K, ArrayDeque<Entry<V>>> mGroups = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mMaxBytes;
+    private long mByteCount;
+    private int mHitCount;
+    private int mMissCount;
+
+    ReusePool(long maxBytes) {
+        mMaxBytes = Math.max(maxBytes, 0);
+    }
+
+    /**
+     * 不再复用的对象，在锁外调用
+     */
+    abstract void recycle(V value);
+
+    /**
+     * 取一个key相同的对象，没有时返回null
+     */
+    synchronized V get(K key) {
+        ArrayDeque<Entry<V>> group = mGroups.get(key);
+        Entry<V> entry = group == null ? null : group.pollLast();
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        if (group.isEmpty()) {
+            mGroups.remove(key);
+        }
+        mByteCount -= entry.byteCount;
+        mHitCount++;
+        return entry.value;
+    }
+
+    /**
+     * 放回一个不再使用的对象，放不下时直接回收
+     */
+    void put(V value, K key, long byteCount) {
+        synchronized (this) {
+            if (byteCount <= mMaxBytes) {
+                ArrayDeque<Entry<V>> group = mGroups.get(key);
+                if (group == null) {
+                    group = new ArrayDeque<>();
+                    mGroups.put(key, group);
+                }
+                if (!containsSame(group, value)) {
+                    group.addLast(new Entry<>(value, byteCount));
+                    mByteCount += byteCount;
+                }
+                value = null;
+            }
+        }
+        if (value != null) {
+            recycle(value);
+        }
+        trimToSize(getMaxBytes());
+    }
+
+    /**
+     * 同一个对象放回两次会被两个地方同时使用
+     */
+    private static <V> boolean containsSame(ArrayDeque<Entry<V>> group, V value) {
+        for (Entry<V> entry : group) {
+            if (entry.value == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从最久没有用到的一组开始回收，直到总大小不超过maxBytes
+     *
+     * @return 回收的字节数
+     */
+    public long trimToSize(long maxBytes) {
+        long released = 0;
+        while (true) {
+            Entry<V> evicted;
+            synchronized (this) {
+                if (mByteCount <= maxBytes || mGroups.isEmpty()) {
+                    break;
+                }
+                Iterator<ArrayDeque<Entry<V>>> iterator = mGroups.values().iterator();
+                ArrayDeque<Entry<V>> group = iterator.next();
+                evicted = group.pollFirst();
+                if (group.isEmpty()) {
+                    iterator.remove();
+                }
+                if (evicted == null) {
+                    continue;
+                }
+                mByteCount -= evicted.byteCount;
+                released += evicted.byteCount;
+            }
+            // 不在锁里回收
+            recycle(evicted.value);
+        }
+        return released;
+    }
+
+    /**
+     * 内存不足时{@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_MODERATE}起回收一半，
+     * {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW}起全部回收
+     *
+     * @return 回收的字节数
+     */
+    public long trimMemory(int level) {
+        long released = 0;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            released = trimToSize(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            released = trimToSize(getByteCount() / 2);
+        }
+        if (released > 0) {
+            Log.i(TAG, "trimMemory, level=" + level + ", released=" + released);
+        }
+        return released;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        mMaxBytes = Math.max(maxBytes, 0);
+    }
+
+    public synchronized long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /**
+     * 池里对象的总大小
+     */
+    public synchronized long getByteCount() {
+        return mByteCount;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * 池里的一个对象和它占用的内存
+     */
+    private static final class Entry<V> {
+        final V value;
+        final long byteCount;
+
+        Entry(V value, long byteCount) {
+            this.value = value;
+            this.byteCount = byteCount;
+        }
+    }
+}
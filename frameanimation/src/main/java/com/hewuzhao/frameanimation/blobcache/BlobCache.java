@@ -1,20 +1,44 @@
 package com.hewuzhao.frameanimation.blobcache;
 
+import android.os.Build;
 import android.util.Log;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.Adler32;
 
 /**
  * @author hewuzhao
  * @date 2020-02-01
+ * <p>
+ * Lookups can run on any number of threads at the same time: each thread
+ * keeps its own scratch state and blobs are read with positional reads,
+ * which never move a file pointer. Only lookupMapped() maps the data files,
+ * one bounded window per region at a time. Writes (insert, clearEntry,
+ * copying a blob over to the active region, close) are serialized by the
+ * write side of a read-write lock, so they never overlap a lookup.
+ * <p>
+ * With write-behind started, insertAsync() only queues the blob; a
+ * background writer inserts it and syncs the files once for several blobs,
+ * as told by the {@link BlobSyncPolicy}.
+ * <p>
+ * How often the data of a blob is checksummed on read is told by the
+ * {@link BlobVerifyPolicy}. A blob written or verified once is remembered
+ * per index slot until its region is flipped.
  */
 public class BlobCache implements Closeable {
     private static final String TAG = "BlobCache";
@@ -42,6 +66,21 @@ public class BlobCache implements Closeable {
     private static final int BH_LENGTH = 16;
     private static final int BLOB_HEADER_SIZE = 20;
 
+    // size of the scratch buffer used to checksum and copy mapped blobs
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    // Size of a mapping window of a data file used by lookupMapped(). A blob
+    // larger than this gets a window of its own size.
+    private static final int MAP_WINDOW_SIZE = 8 * 1024 * 1024;
+
+    // Max number of blobs waiting for the background writer. A frame blob
+    // can be several megabytes, insertAsync() drops blobs beyond this.
+    private static final int MAX_PENDING_BLOBS = 4;
+
+    // How long the idle background writer waits before checking again
+    // whether it should sync or stop.
+    private static final long WRITER_IDLE_MS = 1000;
+
     private RandomAccessFile mIndexFile;
     private RandomAccessFile mDataFile0;
     private RandomAccessFile mDataFile1;
@@ -60,8 +99,85 @@ public class BlobCache implements Closeable {
     private int mActiveHashStart;
     private int mInactiveHashStart;
     private byte[] mIndexHeader = new byte[INDEX_HEADER_SIZE];
-    private byte[] mBlobHeader = new byte[BLOB_HEADER_SIZE];
-    private Adler32 mAdler32 = new Adler32();
+
+    // Read-only mapping windows of the ".0" and ".1" data files, indexed by
+    // region, and the file offsets they start at. They are only created by
+    // lookupMapped(), moved by mapRange() when a blob falls outside, and
+    // dropped whenever a data file may shrink, so a window never extends past
+    // the end of its file.
+    private final MappedByteBuffer[] mDataMaps = new MappedByteBuffer[2];
+    private final long[] mDataMapStarts = new long[2];
+
+    // Lookups hold the read lock, everything that modifies the index or the
+    // data files holds the write lock.
+    private final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
+
+    // Scratch state of one thread. It replaces what used to be shared member
+    // variables, so concurrent lookups cannot overwrite each other's results.
+    private static class ThreadState {
+        final byte[] blobHeader = new byte[BLOB_HEADER_SIZE];
+        final ByteBuffer blobHeaderBuffer = ByteBuffer.wrap(blobHeader);
+        final Adler32 adler32 = new Adler32();
+        byte[] chunk;
+
+        // Results of lookupInternal().
+        int slotOffset;
+        int fileOffset;
+
+        // The checksum stored in the header of the last blob found by
+        // readBlobHeader().
+        int blobChecksum;
+
+        // Number of reads of verified blobs, used by the SAMPLED policy.
+        int trustedReads;
+
+        // A blob found in the inactive region inside beginMappedRead(),
+        // which is copied over to the active region by endMappedRead().
+        long pendingCopyKey;
+
+        byte[] chunk() {
+            if (chunk == null) {
+                chunk = new byte[CHUNK_SIZE];
+            }
+            return chunk;
+        }
+    }
+
+    private final ThreadLocal<ThreadState> mThreadState = new ThreadLocal<ThreadState>() {
+        @Override
+        protected ThreadState initialValue() {
+            return new ThreadState();
+        }
+    };
+
+    // One bit per index slot of both regions, set when the blob the slot
+    // points to has been checksummed since it was written or read. Bits are
+    // set under the read lock and cleared under the write lock.
+    private AtomicLongArray mVerified;
+    private volatile int mVerifyPolicy = BlobVerifyPolicy.ALWAYS;
+    private volatile int mVerifySampleRate;
+
+    // Write-behind state. Blobs stay in mPendingBlobs until the writer has
+    // inserted them, so lookups can be served before they reach the disk.
+    private final Map<Long, byte[]> mPendingBlobs = new ConcurrentHashMap<>();
+    private final Object mWriterLock = new Object();
+    private BlockingQueue<PendingBlob> mPendingQueue;
+    private Thread mWriterThread;
+    private volatile boolean mWriterRunning;
+    private volatile int mSyncPolicy;
+    private volatile int mSyncValue;
+    private int mPendingCount;
+    private int mDroppedCount;
+
+    private static class PendingBlob {
+        final long key;
+        final byte[] data;
+
+        PendingBlob(long key, byte[] data) {
+            this.key = key;
+            this.data = data;
+        }
+    }
 
     // Creates the cache. Three files will be created:
     // path + ".idx", path + ".0", and path + ".1"
@@ -113,11 +229,18 @@ public class BlobCache implements Closeable {
     // called after this is called.
     @Override
     public void close() {
-        syncAll();
-        closeAll();
+        stopWriteBehind();
+        mLock.writeLock().lock();
+        try {
+            syncAll();
+            closeAll();
+        } finally {
+            mLock.writeLock().unlock();
+        }
     }
 
     private void closeAll() {
+        releaseDataMaps();
         closeSilently(mIndexChannel);
         closeSilently(mIndexFile);
         closeSilently(mDataFile0);
@@ -212,6 +335,7 @@ public class BlobCache implements Closeable {
                     0, mIndexFile.length());
             mIndexBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
+            mVerified = new AtomicLongArray((mMaxEntries * 2 + 63) / 64);
             setActiveVariables();
             return true;
         } catch (IOException ex) {
@@ -221,6 +345,8 @@ public class BlobCache implements Closeable {
     }
 
     private void setActiveVariables() throws IOException {
+        // The active file is truncated below, drop any mapping of it first.
+        releaseDataMaps();
         mActiveDataFile = (mActiveRegion == 0) ? mDataFile0 : mDataFile1;
         mInactiveDataFile = (mActiveRegion == 1) ? mDataFile0 : mDataFile1;
         mActiveDataFile.setLength(mActiveBytes);
@@ -288,6 +414,10 @@ public class BlobCache implements Closeable {
 
     // Clear the hash table starting from the specified offset.
     private void clearHash(int hashStart) {
+        int slotOffset = hashStart;
+        for (int i = 0; i < mMaxEntries; i++, slotOffset += 12) {
+            setVerified(slotOffset, false);
+        }
         byte[] zero = new byte[1024];
         mIndexBuffer.position(hashStart);
         for (int count = mMaxEntries * 12; count > 0; ) {
@@ -303,52 +433,279 @@ public class BlobCache implements Closeable {
             throw new RuntimeException("blob is too large!");
         }
 
-        if (mActiveBytes + BLOB_HEADER_SIZE + data.length > mMaxBytes
-                || mActiveEntries * 2 >= mMaxEntries) {
-            flipRegion();
-        }
+        ThreadState state = mThreadState.get();
+        mLock.writeLock().lock();
+        try {
+            if (mActiveBytes + BLOB_HEADER_SIZE + data.length > mMaxBytes
+                    || mActiveEntries * 2 >= mMaxEntries) {
+                flipRegion();
+            }
 
-        if (!lookupInternal(key, mActiveHashStart)) {
-            // If we don't have an existing entry with the same key, increase
-            // the entry count.
-            mActiveEntries++;
-            writeInt(mIndexHeader, IH_ACTIVE_ENTRIES, mActiveEntries);
-        }
+            if (!lookupInternal(key, mActiveHashStart, state)) {
+                // If we don't have an existing entry with the same key, increase
+                // the entry count.
+                mActiveEntries++;
+                writeInt(mIndexHeader, IH_ACTIVE_ENTRIES, mActiveEntries);
+            }
 
-        insertInternal(key, data, data.length);
-        updateIndexHeader();
+            insertInternal(key, data, 0, data.length, state);
+            updateIndexHeader();
+        } finally {
+            mLock.writeLock().unlock();
+        }
     }
 
     public void clearEntry(long key) throws IOException {
-        if (!lookupInternal(key, mActiveHashStart)) {
-            return; // Nothing to clear
+        ThreadState state = mThreadState.get();
+        mLock.writeLock().lock();
+        try {
+            if (!lookupInternal(key, mActiveHashStart, state)) {
+                return; // Nothing to clear
+            }
+            byte[] header = state.blobHeader;
+            Arrays.fill(header, (byte) 0);
+            setVerified(state.slotOffset, false);
+            mActiveDataFile.seek(state.fileOffset);
+            mActiveDataFile.write(header);
+            // Keep appending at the end of the active file.
+            mActiveDataFile.seek(mActiveBytes);
+        } finally {
+            mLock.writeLock().unlock();
         }
-        byte[] header = mBlobHeader;
-        Arrays.fill(header, (byte) 0);
-        mActiveDataFile.seek(mFileOffset);
-        mActiveDataFile.write(header);
     }
 
     // Appends the data to the active file. It also updates the hash entry.
     // The proper hash entry (suitable for insertion or replacement) must be
-    // pointed by mSlotOffset.
-    private void insertInternal(long key, byte[] data, int length)
-            throws IOException {
-        byte[] header = mBlobHeader;
-        int sum = checkSum(data);
+    // pointed by state.slotOffset. The write lock must be held.
+    private void insertInternal(long key, byte[] data, int offset, int length,
+                                ThreadState state) throws IOException {
+        byte[] header = state.blobHeader;
+        int sum = checkSum(data, offset, length);
         writeLong(header, BH_KEY, key);
         writeInt(header, BH_CHECKSUM, sum);
         writeInt(header, BH_OFFSET, mActiveBytes);
         writeInt(header, BH_LENGTH, length);
         mActiveDataFile.write(header);
-        mActiveDataFile.write(data, 0, length);
+        mActiveDataFile.write(data, offset, length);
+
+        mIndexBuffer.putLong(state.slotOffset, key);
+        mIndexBuffer.putInt(state.slotOffset + 8, mActiveBytes);
+        // The checksum was just computed from the data written.
+        setVerified(state.slotOffset, true);
+        mActiveBytes += BLOB_HEADER_SIZE + length;
+        writeInt(mIndexHeader, IH_ACTIVE_BYTES, mActiveBytes);
+    }
+
+    // Same as insertInternal(long, byte[], int, int, ThreadState), but the data
+    // is taken from the remaining bytes of a buffer, which may be a mapping or
+    // a slice of a larger array.
+    private void insertInternal(long key, ByteBuffer data, int length,
+                                ThreadState state) throws IOException {
+        if (data.hasArray()) {
+            insertInternal(key, data.array(), data.arrayOffset() + data.position(),
+                    length, state);
+            return;
+        }
+        byte[] header = state.blobHeader;
+        int sum = checkSum(data.duplicate(), state);
+        writeLong(header, BH_KEY, key);
+        writeInt(header, BH_CHECKSUM, sum);
+        writeInt(header, BH_OFFSET, mActiveBytes);
+        writeInt(header, BH_LENGTH, length);
+        mActiveDataFile.write(header);
+        byte[] chunk = state.chunk();
+        while (data.hasRemaining()) {
+            int todo = Math.min(data.remaining(), chunk.length);
+            data.get(chunk, 0, todo);
+            mActiveDataFile.write(chunk, 0, todo);
+        }
 
-        mIndexBuffer.putLong(mSlotOffset, key);
-        mIndexBuffer.putInt(mSlotOffset + 8, mActiveBytes);
+        mIndexBuffer.putLong(state.slotOffset, key);
+        mIndexBuffer.putInt(state.slotOffset + 8, mActiveBytes);
+        // The checksum was just computed from the data written.
+        setVerified(state.slotOffset, true);
         mActiveBytes += BLOB_HEADER_SIZE + length;
         writeInt(mIndexHeader, IH_ACTIVE_BYTES, mActiveBytes);
     }
 
+    // Starts the background writer used by insertAsync(). The sync policy
+    // decides when the writer syncs the files: after every "value" blobs
+    // (EVERY_N_BLOBS), when the oldest unsynced blob is "value" milliseconds
+    // old (INTERVAL), or only when the cache is closed (ON_CLOSE). Calling it
+    // again only changes the policy.
+    public void startWriteBehind(@BlobSyncPolicy int policy, int value) {
+        synchronized (mWriterLock) {
+            mSyncPolicy = policy;
+            mSyncValue = Math.max(value, 1);
+            if (mWriterThread != null) {
+                return;
+            }
+            mPendingQueue = new ArrayBlockingQueue<>(MAX_PENDING_BLOBS);
+            mWriterRunning = true;
+            mWriterThread = new Thread(new BlobWriter(), "BlobCacheWriter");
+            mWriterThread.setDaemon(true);
+            mWriterThread.start();
+        }
+    }
+
+    // Queues a (key, data) pair to be inserted by the background writer. The
+    // data must not be modified afterwards. Returns false if the queue is
+    // full and the blob was dropped.
+    //
+    // Without write-behind, the pair is inserted and the files are synced
+    // before returning.
+    public boolean insertAsync(long key, byte[] data) throws IOException {
+        if (DATA_HEADER_SIZE + BLOB_HEADER_SIZE + data.length > mMaxBytes) {
+            throw new RuntimeException("blob is too large!");
+        }
+        synchronized (mWriterLock) {
+            if (mWriterThread == null) {
+                insert(key, data);
+                syncAll();
+                return true;
+            }
+            if (!mWriterRunning) {
+                mDroppedCount++;
+                Log.w(TAG, "insertAsync, closing, drop key: " + key + ", dropped: " + mDroppedCount);
+                return false;
+            }
+            if (!mPendingQueue.offer(new PendingBlob(key, data))) {
+                mDroppedCount++;
+                Log.w(TAG, "insertAsync, too many pending blobs, drop key: " + key
+                        + ", dropped: " + mDroppedCount);
+                return false;
+            }
+            mPendingBlobs.put(key, data);
+            mPendingCount++;
+        }
+        return true;
+    }
+
+    // Returns the number of blobs insertAsync() has dropped since the cache
+    // was opened, because the queue was full or the cache was closing.
+    public int getDroppedWriteCount() {
+        synchronized (mWriterLock) {
+            return mDroppedCount;
+        }
+    }
+
+    // Blocks until every blob queued by insertAsync() has been inserted.
+    public void flushPendingBlobs() {
+        synchronized (mWriterLock) {
+            while (mPendingCount > 0 && mWriterThread != null) {
+                try {
+                    mWriterLock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Writes out the pending blobs, syncs them and stops the writer.
+    private void stopWriteBehind() {
+        Thread writer;
+        synchronized (mWriterLock) {
+            writer = mWriterThread;
+            mWriterRunning = false;
+        }
+        if (writer == null) {
+            return;
+        }
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (mWriterLock) {
+            mWriterThread = null;
+            mWriterLock.notifyAll();
+        }
+    }
+
+    private byte[] getPendingBlob(long key) {
+        // Skip the boxing of the key when nothing is pending.
+        if (mPendingBlobs.isEmpty()) {
+            return null;
+        }
+        return mPendingBlobs.get(key);
+    }
+
+    private class BlobWriter implements Runnable {
+        private int mUnsynced;
+        private long mFirstUnsyncedTime;
+
+        @Override
+        public void run() {
+            while (true) {
+                PendingBlob blob = null;
+                try {
+                    blob = mPendingQueue.poll(nextWaitMs(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    // woken up by stopWriteBehind()
+                }
+                if (blob != null) {
+                    write(blob);
+                }
+                if (mUnsynced > 0 && shouldSync()) {
+                    sync();
+                }
+                if (!mWriterRunning && mPendingQueue.isEmpty()) {
+                    if (mUnsynced > 0) {
+                        sync();
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void write(PendingBlob blob) {
+            try {
+                insert(blob.key, blob.data);
+                if (mUnsynced++ == 0) {
+                    mFirstUnsyncedTime = now();
+                }
+            } catch (Throwable t) {
+                Log.e(TAG, "BlobWriter, insert failed, key: " + blob.key, t);
+            } finally {
+                synchronized (mWriterLock) {
+                    mPendingBlobs.remove(blob.key, blob.data);
+                    mPendingCount--;
+                    mWriterLock.notifyAll();
+                }
+            }
+        }
+
+        private boolean shouldSync() {
+            switch (mSyncPolicy) {
+                case BlobSyncPolicy.EVERY_N_BLOBS:
+                    return mUnsynced >= mSyncValue;
+                case BlobSyncPolicy.INTERVAL:
+                    return now() - mFirstUnsyncedTime >= mSyncValue;
+                default:
+                    return false;
+            }
+        }
+
+        private long nextWaitMs() {
+            if (mUnsynced > 0 && mSyncPolicy == BlobSyncPolicy.INTERVAL) {
+                return Math.max(mSyncValue - (now() - mFirstUnsyncedTime), 1);
+            }
+            return WRITER_IDLE_MS;
+        }
+
+        private void sync() {
+            syncAll();
+            mUnsynced = 0;
+        }
+
+        private long now() {
+            return System.nanoTime() / 1000000;
+        }
+    }
+
     public static class LookupRequest {
         public long key;        // input: the key to find
         public byte[] buffer;   // input/output: the buffer to store the blob
@@ -357,13 +714,11 @@ public class BlobCache implements Closeable {
 
     // This method is for one-off lookup. For repeated lookup, use the version
     // accepting LookupRequest to avoid repeated memory allocation.
-    private LookupRequest mLookupRequest = new LookupRequest();
-
     public byte[] lookup(long key) throws IOException {
-        mLookupRequest.key = key;
-        mLookupRequest.buffer = null;
-        if (lookup(mLookupRequest)) {
-            return mLookupRequest.buffer;
+        LookupRequest req = new LookupRequest();
+        req.key = key;
+        if (lookup(req)) {
+            return req.buffer;
         } else {
             return null;
         }
@@ -380,78 +735,235 @@ public class BlobCache implements Closeable {
     // This method tries not to throw IOException even if the data file is
     // corrupted, but it can still throw IOException if things get strange.
     public boolean lookup(LookupRequest req) throws IOException {
-        // Look up in the active region first.
-        if (lookupInternal(req.key, mActiveHashStart)) {
-            if (getBlob(mActiveDataFile, mFileOffset, req)) {
+        byte[] pending = getPendingBlob(req.key);
+        if (pending != null) {
+            if (req.buffer == null || req.buffer.length < pending.length) {
+                req.buffer = new byte[pending.length];
+            }
+            System.arraycopy(pending, 0, req.buffer, 0, pending.length);
+            req.length = pending.length;
+            return true;
+        }
+
+        ThreadState state = mThreadState.get();
+        mLock.readLock().lock();
+        try {
+            // Look up in the active region first.
+            if (lookupInternal(req.key, mActiveHashStart, state)
+                    && getBlob(mActiveRegion, state.fileOffset, req, state)) {
                 return true;
             }
+
+            // Look up in the inactive region.
+            if (!lookupInternal(req.key, mInactiveHashStart, state)
+                    || !getBlob(1 - mActiveRegion, state.fileOffset, req, state)) {
+                return false;
+            }
+        } finally {
+            mLock.readLock().unlock();
         }
 
-        // We want to copy the data from the inactive file to the active file
-        // if it's available. So we keep the offset of the hash entry so we can
-        // avoid looking it up again.
-        int insertOffset = mSlotOffset;
+        // We want to copy the data from the inactive file to the active file.
+        copyToActiveRegion(req.key, ByteBuffer.wrap(req.buffer, 0, req.length), state);
+        return true;
+    }
+
+    // Returns a read-only view of the blob for the given key, or null if the
+    // blob is not available. The view is a slice of a memory mapping of the
+    // region file: its position is 0 and its limit is the blob length, and
+    // the data is never copied to the Java heap.
+    //
+    // The view is only valid until the next call that modifies this cache,
+    // because a region flip truncates the data file it maps. When other
+    // threads may write to this cache, call this method and use the view
+    // between beginMappedRead() and endMappedRead().
+    public ByteBuffer lookupMapped(long key) throws IOException {
+        // A blob still waiting for the writer is only in memory.
+        byte[] pending = getPendingBlob(key);
+        if (pending != null) {
+            return ByteBuffer.wrap(pending).asReadOnlyBuffer();
+        }
 
-        // Look up in the inactive region.
-        if (lookupInternal(req.key, mInactiveHashStart)) {
-            if (getBlob(mInactiveDataFile, mFileOffset, req)) {
-                // If we don't have enough space to insert this blob into
-                // the active file, just return it.
-                if (mActiveBytes + BLOB_HEADER_SIZE + req.length > mMaxBytes
-                        || mActiveEntries * 2 >= mMaxEntries) {
-                    return true;
+        ThreadState state = mThreadState.get();
+        ByteBuffer blob;
+        mLock.readLock().lock();
+        try {
+            // Look up in the active region first.
+            if (lookupInternal(key, mActiveHashStart, state)) {
+                blob = getMappedBlob(mActiveRegion, state.fileOffset, key, state);
+                if (blob != null) {
+                    return blob;
                 }
-                // Otherwise copy it over.
-                mSlotOffset = insertOffset;
-                try {
-                    insertInternal(req.key, req.buffer, req.length);
-                    mActiveEntries++;
-                    writeInt(mIndexHeader, IH_ACTIVE_ENTRIES, mActiveEntries);
-                    updateIndexHeader();
-                } catch (Throwable t) {
-                    Log.e(TAG, "cannot copy over");
+            }
+
+            // Look up in the inactive region.
+            if (!lookupInternal(key, mInactiveHashStart, state)) {
+                return null;
+            }
+            blob = getMappedBlob(1 - mActiveRegion, state.fileOffset, key, state);
+            if (blob == null) {
+                return null;
+            }
+        } finally {
+            mLock.readLock().unlock();
+        }
+
+        // We want to copy the data from the inactive file to the active file.
+        // That needs the write lock, so inside beginMappedRead() it is left to
+        // endMappedRead(). The copy only appends to the active file, the
+        // returned view maps the inactive one.
+        if (mLock.getReadHoldCount() == 0) {
+            copyToActiveRegion(key, blob.duplicate(), state);
+        } else {
+            state.pendingCopyKey = key;
+        }
+        return blob;
+    }
+
+    // Keeps writers out until endMappedRead() is called, so the views
+    // returned by lookupMapped() in between stay valid. Calls can be nested.
+    public void beginMappedRead() {
+        mLock.readLock().lock();
+    }
+
+    public void endMappedRead() {
+        mLock.readLock().unlock();
+        ThreadState state = mThreadState.get();
+        if (state.pendingCopyKey != 0 && mLock.getReadHoldCount() == 0) {
+            long key = state.pendingCopyKey;
+            state.pendingCopyKey = 0;
+            copyToActiveRegion(key, null, state);
+        }
+    }
+
+    // Copies a blob found in the inactive region over to the active region,
+    // so it survives the next flip. If data is null the blob is read from the
+    // inactive region again. This is skipped when another thread holds the
+    // lock, a later lookup will try again.
+    private void copyToActiveRegion(long key, ByteBuffer data, ThreadState state) {
+        if (!mLock.writeLock().tryLock()) {
+            return;
+        }
+        try {
+            // Another thread may have copied or inserted it meanwhile.
+            if (lookupInternal(key, mActiveHashStart, state)) {
+                return;
+            }
+            int insertOffset = state.slotOffset;
+            if (data == null) {
+                if (!lookupInternal(key, mInactiveHashStart, state)) {
+                    return;
+                }
+                data = getMappedBlob(1 - mActiveRegion, state.fileOffset, key, state);
+                if (data == null) {
+                    return;
                 }
-                return true;
             }
+            int length = data.remaining();
+            // If we don't have enough space to insert this blob into
+            // the active file, just leave it in the inactive one.
+            if (mActiveBytes + BLOB_HEADER_SIZE + length > mMaxBytes
+                    || mActiveEntries * 2 >= mMaxEntries) {
+                return;
+            }
+            state.slotOffset = insertOffset;
+            insertInternal(key, data, length, state);
+            mActiveEntries++;
+            writeInt(mIndexHeader, IH_ACTIVE_ENTRIES, mActiveEntries);
+            updateIndexHeader();
+        } catch (Throwable t) {
+            Log.e(TAG, "cannot copy over");
+        } finally {
+            mLock.writeLock().unlock();
         }
+    }
 
-        return false;
+    // Returns the number of heap bytes this cache holds and gives back when
+    // it is closed: the blobs still waiting to be written and the verified
+    // bits. Mapped files are not counted, see getMappedBytes().
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (byte[] data : mPendingBlobs.values()) {
+            bytes += data.length;
+        }
+        AtomicLongArray verified = mVerified;
+        if (verified != null) {
+            bytes += verified.length() * 8L;
+        }
+        return bytes;
     }
 
+    // Returns the number of bytes of the index file and the data files that
+    // are currently mapped. This is address space backed by the files, not
+    // memory the process holds; the data files are only mapped by
+    // lookupMapped().
+    public long getMappedBytes() {
+        long bytes = 0;
+        MappedByteBuffer indexBuffer = mIndexBuffer;
+        if (indexBuffer != null) {
+            bytes += indexBuffer.capacity();
+        }
+        synchronized (mDataMaps) {
+            for (MappedByteBuffer map : mDataMaps) {
+                if (map != null) {
+                    bytes += map.capacity();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    // Sets how often blob data is checksummed on read. With SAMPLED, a
+    // verified blob is checksummed again once every sampleRate reads on each
+    // thread.
+    public void setVerifyPolicy(@BlobVerifyPolicy int policy, int sampleRate) {
+        mVerifySampleRate = Math.max(sampleRate, 1);
+        mVerifyPolicy = policy;
+    }
 
-    // Copies the blob for the specified offset in the specified file to
+    // Returns true if the blob in the slot found by the last lookupInternal()
+    // has to be checksummed before it is returned.
+    private boolean shouldVerify(ThreadState state) {
+        switch (mVerifyPolicy) {
+            case BlobVerifyPolicy.FIRST_READ:
+                return !isVerified(state.slotOffset);
+            case BlobVerifyPolicy.SAMPLED:
+                return !isVerified(state.slotOffset)
+                        || ++state.trustedReads % mVerifySampleRate == 0;
+            default:
+                return true;
+        }
+    }
+
+    private boolean isVerified(int slotOffset) {
+        int slot = (slotOffset - INDEX_HEADER_SIZE) / 12;
+        return (mVerified.get(slot >>> 6) & (1L << (slot & 63))) != 0;
+    }
+
+    private void setVerified(int slotOffset, boolean verified) {
+        int slot = (slotOffset - INDEX_HEADER_SIZE) / 12;
+        int word = slot >>> 6;
+        long mask = 1L << (slot & 63);
+        while (true) {
+            long old = mVerified.get(word);
+            long bits = verified ? (old | mask) : (old & ~mask);
+            if (old == bits || mVerified.compareAndSet(word, old, bits)) {
+                return;
+            }
+        }
+    }
+
+    // Copies the blob for the specified offset in the specified region to
     // req.buffer. If req.buffer is null or too small, allocate a buffer and
     // assign it to req.buffer.
     // Returns false if the blob is not available (either the index file is
     // not sync with the data file, or one of them is corrupted). The length
     // of the blob is stored in the req.length variable.
-    private boolean getBlob(RandomAccessFile file, int offset,
-                            LookupRequest req) throws IOException {
-        byte[] header = mBlobHeader;
-        long oldPosition = file.getFilePointer();
+    private boolean getBlob(int region, int offset, LookupRequest req,
+                            ThreadState state) {
         try {
-            file.seek(offset);
-            if (file.read(header) != BLOB_HEADER_SIZE) {
-                Log.w(TAG, "cannot read blob header");
-                return false;
-            }
-            long blobKey = readLong(header, BH_KEY);
-            if (blobKey == 0) {
-                return false; // This entry has been cleared.
-            }
-            if (blobKey != req.key) {
-                Log.w(TAG, "blob key does not match: " + blobKey);
-                return false;
-            }
-            int sum = readInt(header, BH_CHECKSUM);
-            int blobOffset = readInt(header, BH_OFFSET);
-            if (blobOffset != offset) {
-                Log.w(TAG, "blob offset does not match: " + blobOffset);
-                return false;
-            }
-            int length = readInt(header, BH_LENGTH);
-            if (length < 0 || length > mMaxBytes - offset - BLOB_HEADER_SIZE) {
-                Log.w(TAG, "invalid blob length: " + length);
+            int length = readBlobHeader(region, offset, req.key, state);
+            if (length < 0) {
                 return false;
             }
             if (req.buffer == null || req.buffer.length < length) {
@@ -461,34 +973,166 @@ public class BlobCache implements Closeable {
             byte[] blob = req.buffer;
             req.length = length;
 
-            if (file.read(blob, 0, length) != length) {
+            if (!readFully(dataChannel(region), ByteBuffer.wrap(blob, 0, length),
+                    offset + BLOB_HEADER_SIZE)) {
                 Log.w(TAG, "cannot read blob data");
                 return false;
             }
-            if (checkSum(blob, 0, length) != sum) {
-                Log.w(TAG, "blob checksum does not match: " + sum);
-                return false;
+            if (shouldVerify(state)) {
+                if (checkSum(blob, 0, length) != state.blobChecksum) {
+                    Log.w(TAG, "blob checksum does not match: " + state.blobChecksum);
+                    return false;
+                }
+                setVerified(state.slotOffset, true);
             }
             return true;
         } catch (Throwable t) {
             Log.e(TAG, "getBlob failed.", t);
             return false;
-        } finally {
-            file.seek(oldPosition);
+        }
+    }
+
+    // Mapped counterpart of getBlob(). Returns a read-only slice covering the
+    // blob data at the specified offset of the specified region, or null if
+    // the blob is not available.
+    private ByteBuffer getMappedBlob(int region, int offset, long key,
+                                     ThreadState state) {
+        try {
+            ByteBuffer blob = mapBlob(region, offset, key, state);
+            if (blob == null) {
+                return null;
+            }
+            if (shouldVerify(state)) {
+                if (checkSum(blob.duplicate(), state) != state.blobChecksum) {
+                    Log.w(TAG, "blob checksum does not match: " + state.blobChecksum);
+                    return null;
+                }
+                setVerified(state.slotOffset, true);
+            }
+            return blob;
+        } catch (Throwable t) {
+            Log.e(TAG, "getMappedBlob failed.", t);
+            return null;
+        }
+    }
+
+    // Checks the header of the blob at the specified offset of the specified
+    // region and returns a read-only slice of a mapping window covering its
+    // data, or null if the header is not valid for the key. The checksum in
+    // the header is saved in state.blobChecksum, the data itself is not
+    // verified here.
+    private ByteBuffer mapBlob(int region, int offset, long key,
+                               ThreadState state) throws IOException {
+        int length = readBlobHeader(region, offset, key, state);
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer blob = mapRange(region, offset + BLOB_HEADER_SIZE, length);
+        if (blob == null) {
+            Log.w(TAG, "cannot read blob data");
+        }
+        return blob;
+    }
+
+    // Reads and checks the header of the blob at the specified offset of the
+    // specified region. Returns the length of the blob data, or -1 if the
+    // header is not valid for the key. The checksum in the header is saved in
+    // state.blobChecksum.
+    private int readBlobHeader(int region, int offset, long key,
+                               ThreadState state) throws IOException {
+        ByteBuffer header = state.blobHeaderBuffer;
+        header.clear();
+        if (!readFully(dataChannel(region), header, offset)) {
+            Log.w(TAG, "cannot read blob header");
+            return -1;
+        }
+        byte[] buf = state.blobHeader;
+        long blobKey = readLong(buf, BH_KEY);
+        if (blobKey == 0) {
+            return -1; // This entry has been cleared.
+        }
+        if (blobKey != key) {
+            Log.w(TAG, "blob key does not match: " + blobKey);
+            return -1;
+        }
+        int sum = readInt(buf, BH_CHECKSUM);
+        int blobOffset = readInt(buf, BH_OFFSET);
+        if (blobOffset != offset) {
+            Log.w(TAG, "blob offset does not match: " + blobOffset);
+            return -1;
+        }
+        int length = readInt(buf, BH_LENGTH);
+        if (length < 0 || length > mMaxBytes - offset - BLOB_HEADER_SIZE) {
+            Log.w(TAG, "invalid blob length: " + length);
+            return -1;
+        }
+        state.blobChecksum = sum;
+        return length;
+    }
+
+    private FileChannel dataChannel(int region) {
+        return ((region == 0) ? mDataFile0 : mDataFile1).getChannel();
+    }
+
+    // Reads the remaining bytes of dst from the channel, starting at the
+    // specified file position. Returns false if the file ends before that.
+    // Positional reads do not move the file pointer, so they can run on
+    // several threads at once.
+    private static boolean readFully(FileChannel channel, ByteBuffer dst,
+                                     long position) throws IOException {
+        int start = dst.position();
+        while (dst.hasRemaining()) {
+            if (channel.read(dst, position + dst.position() - start) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns a read-only slice covering "length" bytes at the
+    // specified offset of the data file of the specified region, or null if
+    // the file is shorter than that. The slice comes from the mapping window
+    // of the region, which is moved to start at the offset when the range
+    // falls outside of it. A window is at most MAP_WINDOW_SIZE bytes, or the
+    // length of the range if that is larger.
+    private ByteBuffer mapRange(int region, int offset, int length) throws IOException {
+        synchronized (mDataMaps) {
+            MappedByteBuffer map = mDataMaps[region];
+            long mapStart = mDataMapStarts[region];
+            if (map == null || offset < mapStart
+                    || offset + length > mapStart + map.capacity()) {
+                long fileLength = dataChannel(region).size();
+                if (fileLength < (long) offset + length) {
+                    return null;
+                }
+                long size = Math.min(Math.max(length, MAP_WINDOW_SIZE), fileLength - offset);
+                map = dataChannel(region).map(FileChannel.MapMode.READ_ONLY, offset, size);
+                mapStart = offset;
+                mDataMaps[region] = map;
+                mDataMapStarts[region] = mapStart;
+            }
+            ByteBuffer blob = map.duplicate();
+            blob.position((int) (offset - mapStart));
+            blob.limit((int) (offset - mapStart) + length);
+            return blob.slice();
+        }
+    }
+
+    private void releaseDataMaps() {
+        synchronized (mDataMaps) {
+            mDataMaps[0] = null;
+            mDataMaps[1] = null;
         }
     }
 
     // Tries to look up a key in the specified hash region.
     // Returns true if the lookup is successful.
-    // The slot offset in the index file is saved in mSlotOffset. If the lookup
-    // is successful, it's the slot found. Otherwise it's the slot suitable for
-    // insertion.
+    // The slot offset in the index file is saved in state.slotOffset. If the
+    // lookup is successful, it's the slot found. Otherwise it's the slot
+    // suitable for insertion.
     // If the lookup is successful, the file offset is also saved in
-    // mFileOffset.
-    private int mSlotOffset;
-    private int mFileOffset;
-
-    private boolean lookupInternal(long key, int hashStart) {
+    // state.fileOffset.
+    private boolean lookupInternal(long key, int hashStart, ThreadState state) {
         int slot = (int) (key % mMaxEntries);
         if (slot < 0) {
             slot += mMaxEntries;
@@ -499,11 +1143,11 @@ public class BlobCache implements Closeable {
             long candidateKey = mIndexBuffer.getLong(offset);
             int candidateOffset = mIndexBuffer.getInt(offset + 8);
             if (candidateOffset == 0) {
-                mSlotOffset = offset;
+                state.slotOffset = offset;
                 return false;
             } else if (candidateKey == key) {
-                mSlotOffset = offset;
-                mFileOffset = candidateOffset;
+                state.slotOffset = offset;
+                state.fileOffset = candidateOffset;
                 return true;
             } else {
                 if (++slot >= mMaxEntries) {
@@ -544,33 +1188,57 @@ public class BlobCache implements Closeable {
     // Returns the active count (mActiveEntries). This also verifies that
     // the active count matches matches what's inside the hash region.
     int getActiveCount() {
-        int count = 0;
-        for (int i = 0; i < mMaxEntries; i++) {
-            int offset = mActiveHashStart + i * 12;
-            long candidateKey = mIndexBuffer.getLong(offset);
-            int candidateOffset = mIndexBuffer.getInt(offset + 8);
-            if (candidateOffset != 0) {
-                ++count;
+        mLock.readLock().lock();
+        try {
+            int count = 0;
+            for (int i = 0; i < mMaxEntries; i++) {
+                int offset = mActiveHashStart + i * 12;
+                long candidateKey = mIndexBuffer.getLong(offset);
+                int candidateOffset = mIndexBuffer.getInt(offset + 8);
+                if (candidateOffset != 0) {
+                    ++count;
+                }
             }
-        }
-        if (count == mActiveEntries) {
-            return count;
-        } else {
-            Log.e(TAG, "wrong active count: " + mActiveEntries + " vs " + count);
-            return -1;  // signal failure.
+            if (count == mActiveEntries) {
+                return count;
+            } else {
+                Log.e(TAG, "wrong active count: " + mActiveEntries + " vs " + count);
+                return -1;  // signal failure.
+            }
+        } finally {
+            mLock.readLock().unlock();
         }
     }
 
     int checkSum(byte[] data) {
-        mAdler32.reset();
-        mAdler32.update(data);
-        return (int) mAdler32.getValue();
+        Adler32 adler32 = mThreadState.get().adler32;
+        adler32.reset();
+        adler32.update(data);
+        return (int) adler32.getValue();
     }
 
     int checkSum(byte[] data, int offset, int nbytes) {
-        mAdler32.reset();
-        mAdler32.update(data, offset, nbytes);
-        return (int) mAdler32.getValue();
+        Adler32 adler32 = mThreadState.get().adler32;
+        adler32.reset();
+        adler32.update(data, offset, nbytes);
+        return (int) adler32.getValue();
+    }
+
+    // Checksums the remaining bytes of the buffer, consuming them.
+    int checkSum(ByteBuffer data, ThreadState state) {
+        Adler32 adler32 = state.adler32;
+        adler32.reset();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            adler32.update(data);
+        } else {
+            byte[] chunk = state.chunk();
+            while (data.hasRemaining()) {
+                int todo = Math.min(data.remaining(), chunk.length);
+                data.get(chunk, 0, todo);
+                adler32.update(chunk, 0, todo);
+            }
+        }
+        return (int) adler32.getValue();
     }
 
     static void closeSilently(Closeable c) {
@@ -3,13 +3,22 @@ package com.hewuzhao.frameanimation.blobcache;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.hewuzhao.frameanimation.FrameApplication;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -24,11 +33,52 @@ public class BlobCacheManager {
     private static final String NAME_BLOBCACHE_SHAREDPREFERENCES = "BLOBCACHE_SHAREDPREFERENCES";
     private static final String KEY_CACHE_UP_TO_DATE = "cache-up-to-date";
 
+    private static final String SEAL_THREAD_NAME = "FRAME_SEAL_HANDLER_THREAD";
+
+    /**
+     * prebake.gradle生成的打包文件在assets下的目录
+     */
+    private static final String PREBAKE_ASSET_DIR = "frameanimation";
+
     private Map<String, BlobCache> mBlobCacheMap;
+
+    /**
+     * 通过acquireBlobCache使用每个缓存的个数，没有使用的缓存在内存不足时关闭
+     */
+    private Map<String, Integer> mBlobCacheHolders;
+
+    /**
+     * closeIdleBlobCaches移出的缓存：还没开始关闭的可以直接拿回来用，正在关闭的要等关闭完成才能重新打开，
+     * 否则两个实例会同时写同一组文件
+     */
+    private Map<String, BlobCache> mClosePendingMap;
+    private Set<String> mClosingSet;
     private boolean mOldCheckDoneMap = false;
 
+    /**
+     * 已打开的打包文件
+     */
+    private Map<String, SealedFrameFile> mSealedFileMap;
+
+    /**
+     * 已经检查过磁盘上是否有打包文件的缓存，以及正在打包、打包失败的缓存，避免重复处理
+     */
+    private Set<String> mSealCheckedSet;
+    private Set<String> mSealingSet;
+    private Set<String> mSealFailedSet;
+
+    private HandlerThread mSealHandlerThread;
+    private Handler mSealHandler;
+
     private BlobCacheManager() {
         mBlobCacheMap = new ConcurrentHashMap<>();
+        mBlobCacheHolders = new HashMap<>();
+        mClosePendingMap = new HashMap<>();
+        mClosingSet = new HashSet<>();
+        mSealedFileMap = new ConcurrentHashMap<>();
+        mSealCheckedSet = new HashSet<>();
+        mSealingSet = new HashSet<>();
+        mSealFailedSet = new HashSet<>();
     }
 
     private static class SingletonHolder {
@@ -42,10 +92,20 @@ public class BlobCacheManager {
     /**
      * Return null when we cannot instantiate a BlobCache, e.g.:
      * there is no SD card found.
-     * This can only be called from data thread.
+     * The same instance is returned to every caller of the same filename, and
+     * it can be read from several threads at once.
      */
     public BlobCache getBlobCache(String filename,
-                               int maxEntries, int maxBytes, int version) {
+                                  int maxEntries, int maxBytes, int version) {
+        return getBlobCache(filename, maxEntries, maxBytes, version, BlobSyncPolicy.INTERVAL, 1000);
+    }
+
+    /**
+     * 同上，新建的缓存会开启后台写入，按syncPolicy和syncValue批量同步磁盘
+     */
+    public synchronized BlobCache getBlobCache(String filename,
+                                               int maxEntries, int maxBytes, int version,
+                                               @BlobSyncPolicy int syncPolicy, int syncValue) {
         if (TextUtils.isEmpty(filename)) {
             return null;
         }
@@ -55,7 +115,7 @@ public class BlobCacheManager {
             removeOldFilesIfNecessary(context);
             mOldCheckDoneMap = true;
         }
-        BlobCache cache = mBlobCacheMap.get(filename);
+        BlobCache cache = findBlobCache(filename);
         if (cache == null) {
             File cacheDir = context.getExternalCacheDir();
             if (cacheDir == null) {
@@ -65,7 +125,8 @@ public class BlobCacheManager {
             createPath(path);
             path = path + "/" + filename;
             try {
-                cache = new BlobCache(path, maxEntries, maxBytes, false, version);
+                cache = new BlobCache(path, maxEntries, maxBytes, false, BlobCacheUtil.getCacheVersion(version));
+                cache.startWriteBehind(syncPolicy, syncValue);
                 mBlobCacheMap.put(filename, cache);
             } catch (Exception e) {
                 Log.e(TAG, "BlobCacheManager, Cannot instantiate cache, ex: " + e);
@@ -74,6 +135,253 @@ public class BlobCacheManager {
         return cache;
     }
 
+    /**
+     * 同上，同时记录使用者，不再使用时调用{@link #releaseBlobCache(String)}，之后内存不足时可以关闭
+     */
+    public synchronized BlobCache acquireBlobCache(String filename,
+                                                   int maxEntries, int maxBytes, int version,
+                                                   @BlobSyncPolicy int syncPolicy, int syncValue) {
+        BlobCache cache = getBlobCache(filename, maxEntries, maxBytes, version, syncPolicy, syncValue);
+        if (cache != null) {
+            Integer holders = mBlobCacheHolders.get(filename);
+            mBlobCacheHolders.put(filename, holders == null ? 1 : holders + 1);
+        }
+        return cache;
+    }
+
+    public synchronized void releaseBlobCache(String filename) {
+        Integer holders = mBlobCacheHolders.get(filename);
+        if (holders == null) {
+            return;
+        }
+        if (holders <= 1) {
+            mBlobCacheHolders.remove(filename);
+        } else {
+            mBlobCacheHolders.put(filename, holders - 1);
+        }
+    }
+
+    /**
+     * 关闭没有使用者、也没有在打包的缓存，关闭时需要把没写入的数据写入磁盘，在后台线程进行。
+     * 关闭完成前再次获取同一个缓存时，还没开始关闭的直接复用，正在关闭的等待关闭完成
+     *
+     * @return 关闭的缓存占用的堆内存，单位：字节；映射的文件不占用堆内存，不计算在内
+     */
+    public synchronized long closeIdleBlobCaches() {
+        final List<String> idle = new ArrayList<>();
+        long bytes = 0;
+        long mappedBytes = 0;
+        Iterator<Map.Entry<String, BlobCache>> iterator = mBlobCacheMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, BlobCache> entry = iterator.next();
+            String filename = entry.getKey();
+            if (mBlobCacheHolders.containsKey(filename) || mSealingSet.contains(filename)) {
+                continue;
+            }
+            BlobCache cache = entry.getValue();
+            bytes += cache.getMemoryBytes();
+            mappedBytes += cache.getMappedBytes();
+            idle.add(filename);
+            mClosePendingMap.put(filename, cache);
+            iterator.remove();
+        }
+        if (idle.isEmpty()) {
+            return 0;
+        }
+        Log.i(TAG, "closeIdleBlobCaches, count=" + idle.size() + ", bytes=" + bytes
+                + ", mappedBytes=" + mappedBytes);
+        getBackgroundHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                for (String filename : idle) {
+                    BlobCache cache = beginClose(filename);
+                    if (cache == null) {
+                        continue;
+                    }
+                    try {
+                        cache.close();
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                    } finally {
+                        endClose(filename);
+                    }
+                }
+            }
+        });
+        return bytes;
+    }
+
+    /**
+     * 已打开的缓存；等待关闭的缓存重新放回来使用；正在关闭的等关闭完成后返回null，由调用方重新打开
+     */
+    synchronized BlobCache findBlobCache(String filename) {
+        BlobCache cache = mBlobCacheMap.get(filename);
+        if (cache != null) {
+            return cache;
+        }
+        cache = mClosePendingMap.remove(filename);
+        if (cache != null) {
+            mBlobCacheMap.put(filename, cache);
+            return cache;
+        }
+        boolean interrupted = false;
+        while (mClosingSet.contains(filename)) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        // 等待时可能已经被其他线程重新打开
+        return mBlobCacheMap.get(filename);
+    }
+
+    /**
+     * 开始关闭等待关闭的缓存，已经被重新使用时返回null
+     */
+    synchronized BlobCache beginClose(String filename) {
+        BlobCache cache = mClosePendingMap.remove(filename);
+        if (cache != null) {
+            mClosingSet.add(filename);
+        }
+        return cache;
+    }
+
+    /**
+     * 关闭完成，唤醒等待重新打开的线程
+     */
+    synchronized void endClose(String filename) {
+        mClosingSet.remove(filename);
+        notifyAll();
+    }
+
+    // This is for testing only.
+    synchronized void putBlobCache(String filename, BlobCache cache) {
+        mBlobCacheMap.put(filename, cache);
+    }
+
+    /**
+     * 已打开的缓存映射的文件大小，单位：字节。这是文件映射占用的地址空间，不是堆内存
+     */
+    public synchronized long getMappedBytes() {
+        long bytes = 0;
+        for (BlobCache cache : mBlobCacheMap.values()) {
+            bytes += cache.getMappedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 获取一套动画的打包文件，没有或者和version、keys不匹配时返回null。
+     * 只有第一次调用会检查磁盘，之后只返回已打开的或新打包好的文件
+     */
+    public synchronized SealedFrameFile getSealedFrameFile(String filename, int version, long[] keys) {
+        if (TextUtils.isEmpty(filename) || keys == null || keys.length == 0) {
+            return null;
+        }
+        SealedFrameFile sealedFile = mSealedFileMap.get(filename);
+        if (sealedFile != null) {
+            if (sealedFile.matches(version, keys)) {
+                return sealedFile;
+            }
+            // 动画内容变了，重新打包
+            mSealedFileMap.remove(filename);
+            mSealFailedSet.remove(filename);
+            deleteFile(getSealedFile(filename));
+            return null;
+        }
+        if (!mSealCheckedSet.add(filename)) {
+            return null;
+        }
+        File file = getSealedFile(filename);
+        if (file != null && file.exists()) {
+            sealedFile = SealedFrameFile.open(file, version, keys);
+            if (sealedFile == null) {
+                Log.w(TAG, "getSealedFrameFile, invalid sealed file, delete it: " + file);
+                deleteFile(file);
+            }
+        }
+        if (sealedFile == null) {
+            // 构建时预烘焙的文件
+            sealedFile = openPrebakedFile(filename, version, keys);
+        }
+        if (sealedFile == null) {
+            return null;
+        }
+        mSealedFileMap.put(filename, sealedFile);
+        return sealedFile;
+    }
+
+    /**
+     * 在后台把缓存里的一套动画打包成只读文件，完成后通过getSealedFrameFile获取
+     */
+    public synchronized void sealAsync(final String filename, final int version,
+                                       final long[] keys, final byte[][] keyBytes) {
+        if (TextUtils.isEmpty(filename)
+                || mSealedFileMap.containsKey(filename)
+                || mSealingSet.contains(filename)
+                || mSealFailedSet.contains(filename)) {
+            return;
+        }
+        final BlobCache cache = mBlobCacheMap.get(filename);
+        final File file = getSealedFile(filename);
+        if (cache == null || file == null) {
+            return;
+        }
+        mSealingSet.add(filename);
+        getBackgroundHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                SealedFrameFile sealedFile = null;
+                if (SealedFrameFile.seal(cache, keys, keyBytes, version, file)) {
+                    sealedFile = SealedFrameFile.open(file, version, keys);
+                }
+                synchronized (BlobCacheManager.this) {
+                    mSealingSet.remove(filename);
+                    if (sealedFile != null) {
+                        mSealedFileMap.put(filename, sealedFile);
+                    } else {
+                        // 本次进程内不再重试
+                        mSealFailedSet.add(filename);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 打包、关闭缓存等后台任务的线程
+     */
+    private Handler getBackgroundHandler() {
+        if (mSealHandlerThread == null) {
+            mSealHandlerThread = new HandlerThread(SEAL_THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+            mSealHandlerThread.start();
+            mSealHandler = new Handler(mSealHandlerThread.getLooper());
+        }
+        return mSealHandler;
+    }
+
+    private SealedFrameFile openPrebakedFile(String filename, int version, long[] keys) {
+        Context context = FrameApplication.sApplication;
+        if (context == null) {
+            return null;
+        }
+        return SealedFrameFile.openAsset(context.getAssets(),
+                PREBAKE_ASSET_DIR + "/" + filename + ".sealed", version, keys);
+    }
+
+    private File getSealedFile(String filename) {
+        Context context = FrameApplication.sApplication;
+        File cacheDir = context == null ? null : context.getExternalCacheDir();
+        if (cacheDir == null) {
+            return null;
+        }
+        return new File(cacheDir.getAbsolutePath() + "/frameanimation/" + filename + ".sealed");
+    }
+
     private void createPath(String path) {
         File file = new File(path);
         if (!file.exists()) {
@@ -85,7 +393,7 @@ public class BlobCacheManager {
         }
     }
 
-    public void closeBlobCache(String fileName) {
+    public synchronized void closeBlobCache(String fileName) {
         if (fileName == null || fileName.isEmpty()) {
             return;
         }
@@ -93,6 +401,7 @@ public class BlobCacheManager {
         if (cache != null) {
             cache.close();
             mBlobCacheMap.remove(fileName);
+            mBlobCacheHolders.remove(fileName);
         }
     }
 
@@ -2,12 +2,18 @@ package com.hewuzhao.frameanimation.blobcache;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Rect;
 import android.util.Log;
 
+import com.hewuzhao.frameanimation.bitmappool.BitmapPool;
 import com.hewuzhao.frameanimation.bytespool.BytesBuffer;
+import com.hewuzhao.frameanimation.framesource.FrameSource;
+import com.hewuzhao.frameanimation.frameview.FrameItem;
 import com.hewuzhao.frameanimation.utils.ResourceUtil;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 
 /**
  * @author hewuzhao
@@ -19,8 +25,61 @@ public class BlobCacheUtil {
     private static final long POLY64REV = 0x95AC9329AC4BC9B5L;
     private static final long INITIALCRC = 0xFFFFFFFFFFFFFFFFL;
 
+    /**
+     * 缓存数据的格式版本，格式变化时递增
+     */
+    private static final int CACHE_FORMAT_VERSION = 1;
+
+    /**
+     * 像素后面的宽度、高度和元数据的长度
+     */
+    static final int TRAILER_INFO_SIZE = 12;
+
+    /**
+     * 元数据的低8位是像素的编码方式
+     */
+    private static final int META_CODEC_MASK = 0xff;
+
+    /**
+     * 元数据的第16位表示像素是和前一帧的差异数据，见{@link FrameDelta}
+     */
+    static final int META_DELTA = 1 << 16;
+
+    /**
+     * 元数据的第17位表示像素数据的最后DIRTY_BOUNDS_SIZE个字节是和前一帧不同的区域：left、top、right、bottom
+     */
+    static final int META_DIRTY = 1 << 17;
+    static final int DIRTY_BOUNDS_SIZE = 16;
+
+    /**
+     * 元数据的第8到15位是像素对应的Bitmap.Config，见{@link BlobPixelConfig}
+     */
+    private static final int META_CONFIG_SHIFT = 8;
+    private static final int META_CONFIG_MASK = 0xff << META_CONFIG_SHIFT;
+
+    /**
+     * 元数据的第18位表示所有像素都不透明
+     */
+    static final int META_OPAQUE = 1 << 18;
+
+    /**
+     * scanPixels的结果
+     */
+    static final int PIXELS_OPAQUE = 1;
+    static final int PIXELS_ALPHA_ONLY = 1 << 1;
+
     private static long[] sCrcTable = new long[256];
 
+    /**
+     * slice-by-8用的表，sCrcSliceTables[j][v]是crc的第j个字节为v、其余为0时，处理8个0字节的结果
+     */
+    private static long[][] sCrcSliceTables = new long[8][256];
+
+    /**
+     * 8个字节中最后一个字节的最高位为1时，查表结果需要异或的值
+     */
+    private static long sCrcSliceSignFix;
+
     static {
         // http://bioinf.cs.ucl.ac.uk/downloads/crc64/crc64.c
         long part;
@@ -32,12 +91,85 @@ public class BlobCacheUtil {
             }
             sCrcTable[i] = part;
         }
+
+        // 这里用的是算术右移，和标准CRC64不同，不能套用标准的slice-by-8推导。
+        // 算法对crc和数据都是线性的，所以直接用逐字节算法算出每个字节位置上每个值的结果，
+        // 唯一的差别是crc的符号位会被算术右移扩展，数据的符号位不会，单独修正，
+        // 这样和已有缓存的key完全一致
+        for (int j = 0; j < 8; j++) {
+            for (int v = 0; v < 256; v++) {
+                sCrcSliceTables[j][v] = crc64Bytewise((long) v << (j * 8), 0);
+            }
+        }
+        sCrcSliceSignFix = crc64Bytewise(0, Long.MIN_VALUE) ^ crc64Bytewise(Long.MIN_VALUE, 0);
     }
 
     private static long crc64Long(byte[] buffer) {
         long crc = INITIALCRC;
-        for (byte b : buffer) {
-            crc = sCrcTable[(((int) crc) ^ b) & 0xff] ^ (crc >> 8);
+        final int n = buffer.length;
+        int i = 0;
+        for (; i + 8 <= n; i += 8) {
+            long word = (buffer[i] & 0xffL)
+                    | ((buffer[i + 1] & 0xffL) << 8)
+                    | ((buffer[i + 2] & 0xffL) << 16)
+                    | ((buffer[i + 3] & 0xffL) << 24)
+                    | ((buffer[i + 4] & 0xffL) << 32)
+                    | ((buffer[i + 5] & 0xffL) << 40)
+                    | ((buffer[i + 6] & 0xffL) << 48)
+                    | ((buffer[i + 7] & 0xffL) << 56);
+            crc = crc64Slice(crc, word);
+        }
+        for (; i < n; i++) {
+            crc = sCrcTable[(((int) crc) ^ buffer[i]) & 0xff] ^ (crc >> 8);
+        }
+        return crc;
+    }
+
+    /**
+     * 和crc64Long(getBytes(in))的结果相同，但不分配内存
+     */
+    private static long crc64Long(String in) {
+        long crc = INITIALCRC;
+        final int n = in.length();
+        int i = 0;
+        for (; i + 4 <= n; i += 4) {
+            long word = in.charAt(i)
+                    | ((long) in.charAt(i + 1) << 16)
+                    | ((long) in.charAt(i + 2) << 32)
+                    | ((long) in.charAt(i + 3) << 48);
+            crc = crc64Slice(crc, word);
+        }
+        for (; i < n; i++) {
+            char ch = in.charAt(i);
+            crc = sCrcTable[(((int) crc) ^ ch) & 0xff] ^ (crc >> 8);
+            crc = sCrcTable[(((int) crc) ^ (ch >> 8)) & 0xff] ^ (crc >> 8);
+        }
+        return crc;
+    }
+
+    /**
+     * 一次处理8个字节，word是按小端序组成的8个字节
+     */
+    private static long crc64Slice(long crc, long word) {
+        final long[][] t = sCrcSliceTables;
+        long x = crc ^ word;
+        crc = t[0][(int) x & 0xff]
+                ^ t[1][(int) (x >>> 8) & 0xff]
+                ^ t[2][(int) (x >>> 16) & 0xff]
+                ^ t[3][(int) (x >>> 24) & 0xff]
+                ^ t[4][(int) (x >>> 32) & 0xff]
+                ^ t[5][(int) (x >>> 40) & 0xff]
+                ^ t[6][(int) (x >>> 48) & 0xff]
+                ^ t[7][(int) (x >>> 56)];
+        return word < 0 ? crc ^ sCrcSliceSignFix : crc;
+    }
+
+    /**
+     * 逐字节处理word的8个字节，只用于生成slice-by-8的表
+     */
+    private static long crc64Bytewise(long crc, long word) {
+        for (int i = 0; i < 8; i++) {
+            crc = sCrcTable[(((int) crc) ^ (int) (word >>> (i * 8))) & 0xff] ^ (crc >> 8);
         }
         return crc;
     }
@@ -53,6 +185,16 @@ public class BlobCacheUtil {
     }
 
     public static BytesBuffer getCacheDataByName(BlobCache blobCache, String name, BytesBuffer bytesBuffer, byte[] key, BlobCache.LookupRequest request) {
+        if (key == null) {
+            key = getBytes(name);
+        }
+        return getCacheDataByKey(blobCache, crc64Long(key), key, bytesBuffer, request);
+    }
+
+    /**
+     * 同getCacheDataByName，cacheKey和key由调用方预先算好，见{@link #getCacheKey(byte[])}
+     */
+    public static BytesBuffer getCacheDataByKey(BlobCache blobCache, long cacheKey, byte[] key, BytesBuffer bytesBuffer, BlobCache.LookupRequest request) {
 
         try {
             if (bytesBuffer == null) {
@@ -61,33 +203,59 @@ public class BlobCacheUtil {
             if (request == null) {
                 request = new BlobCache.LookupRequest();
             }
-            if (key == null) {
-                key = getBytes(name);
-            }
-            request.key = crc64Long(key);
+            request.key = cacheKey;
             request.buffer = bytesBuffer.data;
 
             if (blobCache.lookup(request)) {
                 if (isSameKey(key, request.buffer, request.length)) {
                     bytesBuffer.data = request.buffer;
-                    bytesBuffer.offset = key.length + 8;
+                    bytesBuffer.offset = key.length + TRAILER_INFO_SIZE;
                     bytesBuffer.length = request.length - bytesBuffer.offset;
 
                     return bytesBuffer;
                 }
             } else {
-                Log.e(TAG, "getCacheDataByName, not found, name=" + name);
+                Log.e(TAG, "getCacheDataByKey, not found, key=" + cacheKey);
             }
         } catch (Exception ex) {
             ex.printStackTrace();
-            Log.e(TAG, "getCacheDataByName error, name: " + name + ", ex: " + ex);
+            Log.e(TAG, "getCacheDataByKey error, key: " + cacheKey + ", ex: " + ex);
         }
 
         return null;
     }
 
+    /**
+     * 该方法的pixelsBuffer需要调用方按数据长度分配，改为使用BytesBuffer，由方法内部按需扩容
+     */
+    @Deprecated
     public static Bitmap getCacheBitmapByData(BytesBuffer dataBuffer, ByteBuffer pixelsBuffer, Bitmap inBitmap,
                                               BytesBuffer widthBuffer, BytesBuffer heightBuffer) {
+        BytesBuffer buffer = null;
+        if (pixelsBuffer != null && pixelsBuffer.hasArray() && pixelsBuffer.arrayOffset() == 0) {
+            buffer = new BytesBuffer();
+            buffer.data = pixelsBuffer.array();
+        }
+        return getCacheBitmapByData(dataBuffer, buffer, inBitmap, widthBuffer, heightBuffer);
+    }
+
+    /**
+     * @param pixelsBuffer 编码过的数据解码到这里，长度不够时会重新分配，未编码的数据直接拷贝到bitmap，不经过这里
+     */
+    public static Bitmap getCacheBitmapByData(BytesBuffer dataBuffer, BytesBuffer pixelsBuffer, Bitmap inBitmap,
+                                              BytesBuffer widthBuffer, BytesBuffer heightBuffer) {
+        return getCacheBitmapByData(dataBuffer, pixelsBuffer, inBitmap, widthBuffer, heightBuffer, null, 0, null);
+    }
+
+    /**
+     * 同上，开启差异编码时传入参考帧和当前帧的序号，差异数据应用在参考帧上，
+     * 参考帧不是前一帧时返回null
+     *
+     * @param dirty 不为null时，写入和前一帧不同的区域，没有记录时是整个bitmap
+     */
+    public static Bitmap getCacheBitmapByData(BytesBuffer dataBuffer, BytesBuffer pixelsBuffer, Bitmap inBitmap,
+                                              BytesBuffer widthBuffer, BytesBuffer heightBuffer,
+                                              DeltaReference reference, int index, Rect dirty) {
         if (dataBuffer == null || dataBuffer.data == null) {
             return null;
         }
@@ -106,6 +274,8 @@ public class BlobCacheUtil {
             System.arraycopy(dataBuffer.data, dataBuffer.length + 4, hb, 0, 4);
             int width = ResourceUtil.byte2int(wb);
             int height = ResourceUtil.byte2int(hb);
+            // 读取元数据，在高度的后面4位
+            int meta = BlobCache.readInt(dataBuffer.data, dataBuffer.length + 8);
 
             widthBuffer.length = 0;
             widthBuffer.offset = 0;
@@ -113,35 +283,8 @@ public class BlobCacheUtil {
             heightBuffer.length = 0;
             heightBuffer.offset = 0;
 
-            Bitmap bitmap = null;
-            if (inBitmap == null) {
-                Log.e(TAG, "getCacheBitmapByData, inBitmap is null");
-            } else if (inBitmap.isRecycled()) {
-                Log.e(TAG, "getCacheBitmapByData, inBitmap is recycled.");
-            } else if (inBitmap.getWidth() != width) {
-                Log.e(TAG, "getCacheBitmapByData, inBitmap width is not fit.");
-            } else if (inBitmap.getHeight() != height) {
-                Log.e(TAG, "getCacheBitmapByData, inBitmap height is not fit.");
-            } else {
-                bitmap = inBitmap;
-            }
-            if (bitmap == null) {
-                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-                if (bitmap == null) {
-                    Log.e(TAG, "getCacheBitmapByData, Bitmap.createBitmap bitmap is null, may be something error.");
-                }
-            }
-
-            if (bitmap != null) {
-                if (pixelsBuffer == null) {
-                    pixelsBuffer = ByteBuffer.allocate(dataBuffer.data.length);
-                }
-                pixelsBuffer.put(dataBuffer.data);
-                pixelsBuffer.clear();
-                bitmap.copyPixelsFromBuffer(pixelsBuffer);
-                pixelsBuffer.clear();
-                return bitmap;
-            }
+            ByteBuffer data = ByteBuffer.wrap(dataBuffer.data, 0, dataBuffer.length);
+            return copyToBitmap(data, width, height, meta, inBitmap, pixelsBuffer, reference, index, dirty);
         } catch (Exception ex) {
             ex.printStackTrace();
             Log.e(TAG, "getCacheBitmapByData, ex=" + ex);
@@ -152,89 +295,380 @@ public class BlobCacheUtil {
         return null;
     }
 
+    public static Bitmap getCacheBitmapByMappedName(BlobCache blobCache, String name, byte[] key, Bitmap inBitmap) {
+        return getCacheBitmapByMappedName(blobCache, name, key, inBitmap, null);
+    }
+
     /**
-     * 该方法拆分为 getCacheDataByName 和 getCacheBitmapByData
+     * 通过内存映射读取缓存，缓存数据不拷贝到Java堆上，直接从映射的数据文件拷贝到bitmap，
+     * 编码过的数据从映射的数据文件解码到pixelsBuffer
      */
-    @Deprecated
-    public static Bitmap getCacheBitmapByName(BlobCache blobCache, String name, Bitmap inBitmap,
-                                              BytesBuffer bytesBuffer, BytesBuffer widthBuffer,
-                                              BytesBuffer heightBuffer, byte[] key) {
-
-        if (bytesBuffer == null) {
-            bytesBuffer = new BytesBuffer();
+    public static Bitmap getCacheBitmapByMappedName(BlobCache blobCache, String name, byte[] key, Bitmap inBitmap,
+                                                    BytesBuffer pixelsBuffer) {
+        if (key == null) {
+            key = getBytes(name);
         }
+        return getCacheBitmapByMappedKey(blobCache, crc64Long(key), key, inBitmap, pixelsBuffer);
+    }
+
+    /**
+     * 同getCacheBitmapByMappedName，cacheKey和key由调用方预先算好，见{@link #getCacheKey(byte[])}
+     */
+    public static Bitmap getCacheBitmapByMappedKey(BlobCache blobCache, long cacheKey, byte[] key, Bitmap inBitmap,
+                                                   BytesBuffer pixelsBuffer) {
+        return getCacheBitmapByMappedKey(blobCache, cacheKey, key, inBitmap, pixelsBuffer, null, 0, null);
+    }
+
+    /**
+     * 同上，reference、index和dirty见
+     * {@link #getCacheBitmapByData(BytesBuffer, BytesBuffer, Bitmap, BytesBuffer, BytesBuffer, DeltaReference, int, Rect)}
+     */
+    public static Bitmap getCacheBitmapByMappedKey(BlobCache blobCache, long cacheKey, byte[] key, Bitmap inBitmap,
+                                                   BytesBuffer pixelsBuffer, DeltaReference reference, int index,
+                                                   Rect dirty) {
+        // 映射的数据在拷贝到bitmap之前必须保持有效，期间不允许其他线程写缓存
+        blobCache.beginMappedRead();
         try {
+            ByteBuffer blob = blobCache.lookupMapped(cacheKey);
+            if (blob == null) {
+                Log.e(TAG, "getCacheBitmapByMappedKey, not found, key=" + cacheKey);
+                return null;
+            }
+            int length = blob.remaining();
+            if (length < key.length + TRAILER_INFO_SIZE || !isSameKey(key, blob, length)) {
+                Log.e(TAG, "getCacheBitmapByMappedKey, key is not same, key=" + cacheKey);
+                return null;
+            }
+            // 数据格式：bitmap像素(可能经过编码) + 宽度(4位) + 高度(4位) + 元数据(4位) + key
+            int pixelsLength = length - key.length - TRAILER_INFO_SIZE;
+            blob.order(ByteOrder.LITTLE_ENDIAN);
+            int width = blob.getInt(pixelsLength);
+            int height = blob.getInt(pixelsLength + 4);
+            int meta = blob.getInt(pixelsLength + 8);
+
+            blob.limit(pixelsLength);
+            Bitmap bitmap = copyToBitmap(blob, width, height, meta, inBitmap, pixelsBuffer, reference, index, dirty);
+            if (bitmap == null) {
+                Log.e(TAG, "getCacheBitmapByMappedKey, failed, key=" + cacheKey);
+            }
+            return bitmap;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "getCacheBitmapByMappedKey error, key: " + cacheKey + ", ex: " + ex);
+        } finally {
+            blobCache.endMappedRead();
+        }
+        return null;
+    }
+
+    /**
+     * 按元数据里的编码方式解码像素，未编码的数据原样返回
+     *
+     * @param data      像素数据，从position到limit
+     * @param rawLength 解码后的像素长度
+     */
+    static ByteBuffer decodePixels(ByteBuffer data, int meta, int rawLength, BytesBuffer pixelsBuffer) {
+        int codecId = meta & META_CODEC_MASK;
+        if (codecId == BlobCodecType.NONE) {
+            return data.remaining() < rawLength ? null : data;
+        }
+        BlobCodec codec = BlobCodecs.get(codecId);
+        if (codec == null) {
+            Log.e(TAG, "decodePixels, unknown codec: " + codecId);
+            return null;
+        }
+        if (pixelsBuffer == null) {
+            pixelsBuffer = new BytesBuffer();
+        }
+        if (pixelsBuffer.data == null || pixelsBuffer.data.length < rawLength) {
+            pixelsBuffer.data = new byte[rawLength];
+        }
+        if (codec.decode(data, pixelsBuffer.data, 0, rawLength) != rawLength) {
+            return null;
+        }
+        return ByteBuffer.wrap(pixelsBuffer.data, 0, rawLength);
+    }
 
-            BlobCache.LookupRequest request = new BlobCache.LookupRequest();
-            if (key == null) {
-                key = getBytes(name);
+    /**
+     * 同上，reference不为null时，解码结果同时作为下一帧的参考帧；差异数据直接在参考帧上解码
+     *
+     * @param index 当前帧的序号
+     */
+    static ByteBuffer decodePixels(ByteBuffer data, int meta, int rawLength, BytesBuffer pixelsBuffer,
+                                   DeltaReference reference, int index) {
+        if (reference == null) {
+            if ((meta & META_DELTA) != 0) {
+                Log.e(TAG, "decodePixels, delta frame without reference, index=" + index);
+                return null;
             }
-            request.key = crc64Long(key);
-            request.buffer = bytesBuffer.data;
+            return decodePixels(data, meta, rawLength, pixelsBuffer);
+        }
+        if ((meta & META_DELTA) != 0) {
+            if (!reference.isFrame(index - 1, rawLength)) {
+                Log.e(TAG, "decodePixels, reference is not the previous frame, index=" + index);
+                reference.reset();
+                return null;
+            }
+            if (!FrameDelta.apply(data, reference.pixels, rawLength)) {
+                Log.e(TAG, "decodePixels, apply delta failed, index=" + index);
+                reference.reset();
+                return null;
+            }
+            reference.update(rawLength, index);
+            return ByteBuffer.wrap(reference.pixels, 0, rawLength);
+        }
 
-            if (blobCache.lookup(request)) {
-                if (isSameKey(key, request.buffer, request.length)) {
-                    bytesBuffer.data = request.buffer;
-                    bytesBuffer.offset = key.length + 8;
-                    bytesBuffer.length = request.length - bytesBuffer.offset;
+        int codecId = meta & META_CODEC_MASK;
+        byte[] pixels = reference.obtain(rawLength);
+        if (codecId == BlobCodecType.NONE) {
+            if (data.remaining() < rawLength) {
+                return null;
+            }
+            data.duplicate().get(pixels, 0, rawLength);
+        } else {
+            BlobCodec codec = BlobCodecs.get(codecId);
+            if (codec == null) {
+                Log.e(TAG, "decodePixels, unknown codec: " + codecId);
+                return null;
+            }
+            if (codec.decode(data.duplicate(), pixels, 0, rawLength) != rawLength) {
+                return null;
+            }
+        }
+        reference.update(rawLength, index);
+        return ByteBuffer.wrap(pixels, 0, rawLength);
+    }
 
-                    if (widthBuffer == null) {
-                        widthBuffer = new BytesBuffer(4);
-                    }
-                    byte[] wb = widthBuffer.data;
-                    System.arraycopy(bytesBuffer.data, bytesBuffer.length, wb, 0, 4);
-                    if (heightBuffer == null) {
-                        heightBuffer = new BytesBuffer(4);
-                    }
-                    byte[] hb = heightBuffer.data;
-                    System.arraycopy(bytesBuffer.data, bytesBuffer.length + 4, hb, 0, 4);
-                    int width = ResourceUtil.byte2int(wb);
-                    int height = ResourceUtil.byte2int(hb);
+    /**
+     * 把一帧的像素数据解码到bitmap，尽量复用inBitmap
+     *
+     * @param data 像素数据，从position到limit，可能包含末尾的不同区域
+     */
+    static Bitmap copyToBitmap(ByteBuffer data, int width, int height, int meta, Bitmap inBitmap,
+                               BytesBuffer pixelsBuffer, DeltaReference reference, int index, Rect dirty) {
+        final int config = getPixelConfig(meta);
+        final int bytesPerPixel = getBytesPerPixel(config);
+        if (bytesPerPixel == 0) {
+            Log.e(TAG, "copyToBitmap, unknown pixel config, meta=" + meta);
+            return null;
+        }
+        if (!readDirtyBounds(data, meta, width, height, dirty)) {
+            Log.e(TAG, "copyToBitmap, invalid dirty bounds, meta=" + meta);
+            return null;
+        }
+        Bitmap bitmap = obtainBitmap(inBitmap, width, height, getBitmapConfig(config));
+        if (bitmap == null) {
+            return null;
+        }
+        ByteBuffer pixels = decodePixels(data, meta, width * height * bytesPerPixel, pixelsBuffer, reference, index);
+        if (pixels == null) {
+            Log.e(TAG, "copyToBitmap, decode pixels failed, meta=" + meta);
+            return null;
+        }
+        bitmap.copyPixelsFromBuffer(pixels);
+        // 复用的bitmap可能是其他帧解码出来的，按这一帧的数据重新设置
+        bitmap.setHasAlpha((meta & META_OPAQUE) == 0 && config != BlobPixelConfig.RGB_565);
+        return bitmap;
+    }
 
-                    widthBuffer.length = 0;
-                    widthBuffer.offset = 0;
+    @BlobPixelConfig
+    static int getPixelConfig(int meta) {
+        return (meta & META_CONFIG_MASK) >>> META_CONFIG_SHIFT;
+    }
 
-                    heightBuffer.length = 0;
-                    heightBuffer.offset = 0;
+    /**
+     * 未知的config返回0
+     */
+    static int getBytesPerPixel(@BlobPixelConfig int config) {
+        switch (config) {
+            case BlobPixelConfig.ARGB_8888:
+                return 4;
+            case BlobPixelConfig.RGB_565:
+                return 2;
+            case BlobPixelConfig.ALPHA_8:
+                return 1;
+            default:
+                return 0;
+        }
+    }
 
-                    Bitmap bitmap = null;
-                    if (inBitmap != null && !inBitmap.isRecycled() && inBitmap.getWidth() == width && inBitmap.getHeight() == height) {
-                        bitmap = inBitmap;
-                    }
-                    if (bitmap == null) {
-                        Log.e(TAG, "option inBitmap is null or width and height not fit, name: "
-                                + name + ", width=" + width + ", height=" + height);
-
-                        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-                        if (bitmap == null) {
-                            Log.e(TAG, "Bitmap.createBitmap bitmap is null, may be something error, name: " + name);
-                        }
-                    }
+    /**
+     * 不支持的config返回-1
+     */
+    static int toPixelConfig(Bitmap.Config config) {
+        if (config == Bitmap.Config.ARGB_8888) {
+            return BlobPixelConfig.ARGB_8888;
+        } else if (config == Bitmap.Config.RGB_565) {
+            return BlobPixelConfig.RGB_565;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return BlobPixelConfig.ALPHA_8;
+        }
+        return -1;
+    }
 
-                    if (bitmap != null) {
-                        ByteBuffer buf = ByteBuffer.wrap(bytesBuffer.data, 0, bytesBuffer.length);
-                        bitmap.copyPixelsFromBuffer(buf);
-                        buf.clear();
-                        return bitmap;
-                    }
-                }
-            } else {
-                Log.e(TAG, "getCacheBitmapByName, not found, name=" + name);
+    static Bitmap.Config getBitmapConfig(@BlobPixelConfig int config) {
+        switch (config) {
+            case BlobPixelConfig.RGB_565:
+                return Bitmap.Config.RGB_565;
+            case BlobPixelConfig.ALPHA_8:
+                return Bitmap.Config.ALPHA_8;
+            default:
+                return Bitmap.Config.ARGB_8888;
+        }
+    }
+
+    /**
+     * 从像素数据的末尾取出和前一帧不同的区域，并把data的limit移到区域之前
+     *
+     * @param dirty 为null时只移动limit，没有记录时设置为整个bitmap
+     * @return 数据不完整时返回false
+     */
+    static boolean readDirtyBounds(ByteBuffer data, int meta, int width, int height, Rect dirty) {
+        if ((meta & META_DIRTY) == 0) {
+            if (dirty != null) {
+                dirty.set(0, 0, width, height);
+            }
+            return true;
+        }
+        if (data.remaining() < DIRTY_BOUNDS_SIZE) {
+            return false;
+        }
+        int offset = data.limit() - DIRTY_BOUNDS_SIZE;
+        data.limit(offset);
+        if (dirty != null) {
+            ByteOrder order = data.order();
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            dirty.set(data.getInt(offset), data.getInt(offset + 4), data.getInt(offset + 8), data.getInt(offset + 12));
+            data.order(order);
+            if (!dirty.isEmpty() && (dirty.left < 0 || dirty.top < 0 || dirty.right > width || dirty.bottom > height)) {
+                dirty.set(0, 0, width, height);
+            }
+        }
+        return true;
+    }
+
+    static Bitmap obtainBitmap(Bitmap inBitmap, int width, int height) {
+        return obtainBitmap(inBitmap, width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 尽量复用inBitmap，宽高或config不匹配时，内存够用就重新配置，否则重新创建；
+     * 需要新建时先从{@link BitmapPool}取
+     */
+    static Bitmap obtainBitmap(Bitmap inBitmap, int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = null;
+        if (inBitmap == null) {
+            Log.e(TAG, "obtainBitmap, inBitmap is null");
+        } else if (inBitmap.isRecycled()) {
+            Log.e(TAG, "obtainBitmap, inBitmap is recycled.");
+        } else if (inBitmap.getWidth() == width && inBitmap.getHeight() == height
+                && inBitmap.getConfig() == config) {
+            bitmap = inBitmap;
+        } else if (inBitmap.isMutable()
+                && inBitmap.getAllocationByteCount() >= width * height * getBytesPerPixel(toPixelConfig(config))) {
+            try {
+                inBitmap.reconfigure(width, height, config);
+                bitmap = inBitmap;
+            } catch (Exception ex) {
+                Log.e(TAG, "obtainBitmap, reconfigure failed, ex=" + ex);
+            }
+        } else {
+            Log.e(TAG, "obtainBitmap, inBitmap is not fit, size=" + inBitmap.getWidth() + "x" + inBitmap.getHeight()
+                    + ", config=" + inBitmap.getConfig());
+        }
+        if (bitmap == null) {
+            bitmap = BitmapPool.getInstance().get(width, height, config);
+        }
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+            if (bitmap == null) {
+                Log.e(TAG, "obtainBitmap, Bitmap.createBitmap bitmap is null, may be something error.");
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            Log.e(TAG, "decode bitmap from blobcache error, name: " + name + ", ex: " + ex);
-        } finally {
-            bytesBuffer.length = 0;
-            bytesBuffer.offset = 0;
         }
+        return bitmap;
+    }
 
-        return null;
+    /**
+     * 该方法拆分为 getCacheDataByName 和 getCacheBitmapByData
+     */
+    @Deprecated
+    public static Bitmap getCacheBitmapByName(BlobCache blobCache, String name, Bitmap inBitmap,
+                                              BytesBuffer bytesBuffer, BytesBuffer widthBuffer,
+                                              BytesBuffer heightBuffer, byte[] key) {
+
+        BytesBuffer dataBuffer = getCacheDataByName(blobCache, name, bytesBuffer, key, null);
+        return getCacheBitmapByData(dataBuffer, (BytesBuffer) null, inBitmap, widthBuffer, heightBuffer);
     }
 
     public static void saveImageByBlobCache(Bitmap bitmap, String drawableName, BlobCache blobCache) {
+        saveImageByBlobCache(bitmap, drawableName, blobCache, BlobCodecType.NONE);
+    }
+
+    /**
+     * @param codecType 像素的编码方式，编码后不比原数据小时按不编码存储
+     */
+    public static void saveImageByBlobCache(Bitmap bitmap, String drawableName, BlobCache blobCache,
+                                            @BlobCodecType int codecType) {
+        saveImageByBlobCache(bitmap, drawableName, blobCache, codecType, null, 0, 0, false);
+    }
+
+    /**
+     * 从帧来源解码frameItem后保存，例如提前把assets、zip里的帧写入缓存
+     */
+    public static void saveImageByBlobCache(FrameSource source, FrameItem frameItem, BlobCache blobCache,
+                                            @BlobCodecType int codecType) {
+        Bitmap bitmap = source.decodeFrame(frameItem, new BitmapFactory.Options());
+        if (bitmap == null) {
+            Log.e(TAG, "save image to blob cache, decode failed, source: " + source.getKey()
+                    + ", name: " + frameItem.getDrawableName());
+            return;
+        }
+        saveImageByBlobCache(bitmap, frameItem, blobCache, codecType, null, 0, 0, false);
+        bitmap.recycle();
+    }
+
+    /**
+     * 同上，reference不为null时记录和前一帧不同的区域，用于局部绘制。
+     * keyframeInterval大于0时开启差异编码：index是keyframeInterval的整数倍，或者参考帧不是前一帧时存完整的一帧，
+     * 否则存和前一帧的差异，差异数据不到原数据的一半时才使用。保存后当前帧成为新的参考帧
+     *
+     * @param index            当前帧的序号
+     * @param keyframeInterval 完整帧的间隔
+     * @param lowBitDepth      是否把不透明的帧存成RGB_565(有精度损失)，只有透明度的帧存成ALPHA_8
+     */
+    public static void saveImageByBlobCache(Bitmap bitmap, String drawableName, BlobCache blobCache,
+                                            @BlobCodecType int codecType, DeltaReference reference,
+                                            int index, int keyframeInterval, boolean lowBitDepth) {
+        byte[] keyBytes = getBytes(drawableName);
+        saveImageByBlobCache(bitmap, drawableName, getCacheKey(keyBytes), keyBytes, blobCache, codecType,
+                reference, index, keyframeInterval, lowBitDepth);
+    }
+
+    /**
+     * 同上，使用解析时算好的缓存key，保存时不再计算
+     */
+    public static void saveImageByBlobCache(Bitmap bitmap, FrameItem frameItem, BlobCache blobCache,
+                                            @BlobCodecType int codecType, DeltaReference reference,
+                                            int index, int keyframeInterval, boolean lowBitDepth) {
+        byte[] keyBytes = frameItem.getCacheKeyBytes();
+        if (keyBytes == null) {
+            saveImageByBlobCache(bitmap, frameItem.getDrawableName(), blobCache, codecType,
+                    reference, index, keyframeInterval, lowBitDepth);
+            return;
+        }
+        saveImageByBlobCache(bitmap, frameItem.getDrawableName(), frameItem.getCacheKey(), keyBytes, blobCache,
+                codecType, reference, index, keyframeInterval, lowBitDepth);
+    }
+
+    private static void saveImageByBlobCache(Bitmap bitmap, String drawableName, long cacheKey, byte[] key,
+                                             BlobCache blobCache, @BlobCodecType int codecType,
+                                             DeltaReference reference, int index, int keyframeInterval,
+                                             boolean lowBitDepth) {
         if (blobCache == null) {
             Log.e(TAG, "saveImageByBlobCache, blob cache is null.");
+            if (reference != null) {
+                reference.reset();
+            }
             return;
         }
         long t1 = System.currentTimeMillis();
@@ -243,6 +677,9 @@ public class BlobCacheUtil {
             bitmap = ResourceUtil.getBitmap(drawableName, options);
             if (bitmap == null) {
                 Log.e(TAG, "save image to blob cache, bitmap is null, name: " + drawableName);
+                if (reference != null) {
+                    reference.reset();
+                }
                 return;
             }
         }
@@ -250,34 +687,191 @@ public class BlobCacheUtil {
         try {
             final int width = bitmap.getWidth();
             final int height = bitmap.getHeight();
+            int config = toPixelConfig(bitmap.getConfig());
+            if (config < 0) {
+                Log.e(TAG, "save image to blob cache, unsupported config: " + bitmap.getConfig() + ", name: " + drawableName);
+                if (reference != null) {
+                    reference.reset();
+                }
+                return;
+            }
 
-            byte[] key = BlobCacheUtil.getBytes(drawableName);
-            ByteBuffer bu = ByteBuffer.allocate(bitmap.getByteCount());
-            bitmap.copyPixelsToBuffer(bu);
-            byte[] value = bu.array();
-            ByteBuffer buffer = ByteBuffer.allocate(key.length + value.length + 8);
-            buffer.put(value);
-            buffer.put(ResourceUtil.int2byte(width));
-            buffer.put(ResourceUtil.int2byte(height));
-            buffer.put(key);
-
-            blobCache.insert(BlobCacheUtil.getCacheKey(drawableName), buffer.array());
+            ByteBuffer rawBuffer = ByteBuffer.allocate(bitmap.getByteCount());
+            bitmap.copyPixelsToBuffer(rawBuffer);
+            byte[] raw = rawBuffer.array();
+            int rawLength = width * height * getBytesPerPixel(config);
+            int flags = 0;
+            if (config == BlobPixelConfig.ARGB_8888) {
+                int pixelFlags = scanPixels(raw, width * height);
+                if ((pixelFlags & PIXELS_OPAQUE) != 0) {
+                    flags |= META_OPAQUE;
+                    if (lowBitDepth) {
+                        raw = toRgb565(raw, width * height);
+                        config = BlobPixelConfig.RGB_565;
+                    }
+                } else if ((pixelFlags & PIXELS_ALPHA_ONLY) != 0 && lowBitDepth) {
+                    raw = toAlpha8(raw, width * height);
+                    config = BlobPixelConfig.ALPHA_8;
+                }
+                rawLength = width * height * getBytesPerPixel(config);
+            } else if (config == BlobPixelConfig.RGB_565) {
+                flags |= META_OPAQUE;
+            }
+
+            // 数据格式：bitmap像素(可能经过编码) + [不同的区域(16位)] + 宽度(4位) + 高度(4位) + 元数据(4位) + key
+            final int trailerLength = TRAILER_INFO_SIZE + key.length;
+            int tailLength = trailerLength;
+            byte[] payload = raw;
+            int pixelsLength = rawLength;
+            int codecId = BlobCodecType.NONE;
+            int[] dirty = null;
+            if (reference != null) {
+                boolean hasPrevious = reference.isFrame(index - 1, rawLength);
+                if (hasPrevious) {
+                    dirty = new int[4];
+                    FrameDelta.computeDirtyBounds(raw, reference.pixels, width, height,
+                            getBytesPerPixel(config), dirty);
+                    tailLength += DIRTY_BOUNDS_SIZE;
+                }
+                boolean keyframe = keyframeInterval <= 0
+                        || index % keyframeInterval == 0
+                        || !hasPrevious;
+                if (!keyframe) {
+                    byte[] delta = new byte[rawLength / 2];
+                    int deltaLength = FrameDelta.encode(raw, reference.pixels, rawLength, delta, 0, rawLength / 2);
+                    if (deltaLength >= 0) {
+                        payload = delta;
+                        pixelsLength = deltaLength;
+                        flags |= META_DELTA;
+                    }
+                }
+                // 当前帧成为下一帧的参考帧，数组不再修改，直接交给参考帧
+                reference.set(raw, rawLength, index);
+            }
+            BlobCodec codec = codecType == BlobCodecType.NONE ? null : BlobCodecs.get(codecType);
+            if ((flags & META_DELTA) == 0 && codec != null) {
+                byte[] encoded = new byte[codec.maxEncodedLength(rawLength)];
+                int encodedLength = codec.encode(raw, 0, rawLength, encoded, 0);
+                // 压缩不了时直接存原始像素
+                if (encodedLength < rawLength) {
+                    payload = encoded;
+                    pixelsLength = encodedLength;
+                    codecId = codec.getId();
+                }
+            }
+
+            byte[] data = Arrays.copyOf(payload, pixelsLength + tailLength);
+            if (dirty != null) {
+                // 不同的区域放在像素数据的末尾，打包文件里也会保留
+                ByteBuffer bounds = ByteBuffer.wrap(data, pixelsLength, DIRTY_BOUNDS_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                for (int value : dirty) {
+                    bounds.putInt(value);
+                }
+                pixelsLength += DIRTY_BOUNDS_SIZE;
+                flags |= META_DIRTY;
+            }
+            int meta = codecId | (config << META_CONFIG_SHIFT) | flags;
+            ByteBuffer trailer = ByteBuffer.wrap(data, pixelsLength, trailerLength);
+            trailer.put(ResourceUtil.int2byte(width));
+            trailer.put(ResourceUtil.int2byte(height));
+            trailer.put(ResourceUtil.int2byte(meta));
+            trailer.put(key);
+
+            // 开启了后台写缓存时只是入队，由后台线程批量写入和同步磁盘
+            blobCache.insertAsync(cacheKey, data);
         } catch (Exception ex) {
             ex.printStackTrace();
             Log.e(TAG, "save imge by blob cache error, name: " + drawableName + ", ex: " + ex);
+            if (reference != null) {
+                reference.reset();
+            }
         } finally {
-            blobCache.syncAll();
             Log.e(TAG, "save image to blob cache, cost time: " + (System.currentTimeMillis() - t1) + ", name: " + drawableName);
         }
     }
 
+    /**
+     * 检查ARGB_8888的像素(内存中依次是R、G、B、A，alpha预乘)
+     *
+     * @return PIXELS_OPAQUE：所有像素都不透明；PIXELS_ALPHA_ONLY：所有像素的颜色都是0，只有透明度
+     */
+    static int scanPixels(byte[] rgba, int pixelCount) {
+        boolean opaque = true;
+        boolean alphaOnly = true;
+        for (int i = 0, p = 0; i < pixelCount && (opaque || alphaOnly); i++, p += 4) {
+            if (rgba[p + 3] != (byte) 0xff) {
+                opaque = false;
+            }
+            if ((rgba[p] | rgba[p + 1] | rgba[p + 2]) != 0) {
+                alphaOnly = false;
+            }
+        }
+        return (opaque ? PIXELS_OPAQUE : 0) | (alphaOnly ? PIXELS_ALPHA_ONLY : 0);
+    }
+
+    /**
+     * ARGB_8888转RGB_565，和Skia一样直接截掉低位，按小端序存储
+     */
+    static byte[] toRgb565(byte[] rgba, int pixelCount) {
+        byte[] out = new byte[pixelCount * 2];
+        for (int i = 0, p = 0, o = 0; i < pixelCount; i++, p += 4, o += 2) {
+            int r = rgba[p] & 0xff;
+            int g = rgba[p + 1] & 0xff;
+            int b = rgba[p + 2] & 0xff;
+            int color = ((r >> 3) << 11) | ((g >> 2) << 5) | (b >> 3);
+            out[o] = (byte) color;
+            out[o + 1] = (byte) (color >> 8);
+        }
+        return out;
+    }
+
+    /**
+     * ARGB_8888转ALPHA_8，只保留透明度
+     */
+    static byte[] toAlpha8(byte[] rgba, int pixelCount) {
+        byte[] out = new byte[pixelCount];
+        for (int i = 0, p = 3; i < pixelCount; i++, p += 4) {
+            out[i] = rgba[p];
+        }
+        return out;
+    }
+
+    /**
+     * 和动画的version组合成BlobCache的version，缓存格式变化后旧的缓存会被重置
+     */
+    public static int getCacheVersion(int version) {
+        return (CACHE_FORMAT_VERSION << 24) | (version & 0xffffff);
+    }
+
     public static long getCacheKey(String path) {
         if (path == null || path.isEmpty()) {
             return 0;
         }
 
-        byte[] key = BlobCacheUtil.getBytes(path);
-        return BlobCacheUtil.crc64Long(key);
+        return crc64Long(path);
+    }
+
+    /**
+     * key为{@link #getBytes(String)}的结果
+     */
+    public static long getCacheKey(byte[] key) {
+        return crc64Long(key);
+    }
+
+    static boolean isSameKey(byte[] key, ByteBuffer buffer, int bufferLen) {
+        if (buffer == null || key == null) {
+            return false;
+        }
+        int n = key.length;
+        if (bufferLen < n) {
+            return false;
+        }
+        for (int i = n - 1, j = bufferLen - 1; i >= 0; i--, j--) {
+            if (key[i] != buffer.get(j)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private static boolean isSameKey(byte[] key, byte[] buffer, int bufferLen) {
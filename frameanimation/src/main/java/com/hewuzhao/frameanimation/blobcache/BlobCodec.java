@@ -0,0 +1,34 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 缓存帧数据的编解码器，位于BlobCacheUtil和BlobCache之间
+ */
+public interface BlobCodec {
+
+    @BlobCodecType
+    int getId();
+
+    /**
+     * 长度为length的数据编码后的最大长度
+     */
+    int maxEncodedLength(int length);
+
+    /**
+     * 编码src中[srcOff, srcOff + srcLen)的数据到dst的dstOff处
+     *
+     * @return 编码后的长度
+     */
+    int encode(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff);
+
+    /**
+     * 解码src中剩余的全部数据到dst的dstOff处，最多写入dstLen个字节，src的position会被改变
+     *
+     * @return 解码后的长度，数据损坏时返回-1
+     */
+    int decode(ByteBuffer src, byte[] dst, int dstOff, int dstLen);
+}
@@ -0,0 +1,30 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static com.hewuzhao.frameanimation.blobcache.BlobCodecType.LZ4;
+import static com.hewuzhao.frameanimation.blobcache.BlobCodecType.NONE;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 缓存帧数据的编码方式，id会记录在每个blob里，不能修改已有的值
+ */
+@IntDef({NONE, LZ4})
+@Retention(RetentionPolicy.SOURCE)
+public @interface BlobCodecType {
+
+    /**
+     * 不编码，直接存储像素
+     */
+    int NONE = 0;
+
+    /**
+     * LZ4 block格式压缩
+     */
+    int LZ4 = 1;
+}
@@ -0,0 +1,25 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class BlobCodecs {
+
+    private static final BlobCodec NONE = new NoneCodec();
+    private static final BlobCodec LZ4 = new Lz4Codec();
+
+    /**
+     * 根据id获取编解码器，未知的id返回null
+     */
+    public static BlobCodec get(@BlobCodecType int id) {
+        switch (id) {
+            case BlobCodecType.NONE:
+                return NONE;
+            case BlobCodecType.LZ4:
+                return LZ4;
+            default:
+                return null;
+        }
+    }
+}
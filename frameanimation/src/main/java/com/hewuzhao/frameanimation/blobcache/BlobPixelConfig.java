@@ -0,0 +1,36 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static com.hewuzhao.frameanimation.blobcache.BlobPixelConfig.ALPHA_8;
+import static com.hewuzhao.frameanimation.blobcache.BlobPixelConfig.ARGB_8888;
+import static com.hewuzhao.frameanimation.blobcache.BlobPixelConfig.RGB_565;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 缓存帧像素对应的Bitmap.Config，id会记录在每个blob里，不能修改已有的值
+ */
+@IntDef({ARGB_8888, RGB_565, ALPHA_8})
+@Retention(RetentionPolicy.SOURCE)
+public @interface BlobPixelConfig {
+
+    /**
+     * 每个像素4个字节，alpha预乘
+     */
+    int ARGB_8888 = 0;
+
+    /**
+     * 每个像素2个字节，没有透明度
+     */
+    int RGB_565 = 1;
+
+    /**
+     * 每个像素1个字节，只有透明度，颜色是黑色
+     */
+    int ALPHA_8 = 2;
+}
@@ -0,0 +1,36 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static com.hewuzhao.frameanimation.blobcache.BlobSyncPolicy.EVERY_N_BLOBS;
+import static com.hewuzhao.frameanimation.blobcache.BlobSyncPolicy.INTERVAL;
+import static com.hewuzhao.frameanimation.blobcache.BlobSyncPolicy.ON_CLOSE;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 后台写缓存时，同步(fsync)磁盘的时机
+ */
+@IntDef({EVERY_N_BLOBS, INTERVAL, ON_CLOSE})
+@Retention(RetentionPolicy.SOURCE)
+public @interface BlobSyncPolicy {
+
+    /**
+     * 每写入N个blob同步一次
+     */
+    int EVERY_N_BLOBS = 1;
+
+    /**
+     * 有未同步的blob时，每隔T毫秒同步一次
+     */
+    int INTERVAL = 2;
+
+    /**
+     * 只在关闭缓存时同步
+     */
+    int ON_CLOSE = 3;
+}
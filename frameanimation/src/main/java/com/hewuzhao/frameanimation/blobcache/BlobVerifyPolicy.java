@@ -0,0 +1,36 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static com.hewuzhao.frameanimation.blobcache.BlobVerifyPolicy.ALWAYS;
+import static com.hewuzhao.frameanimation.blobcache.BlobVerifyPolicy.FIRST_READ;
+import static com.hewuzhao.frameanimation.blobcache.BlobVerifyPolicy.SAMPLED;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 读取缓存时校验blob数据校验和的时机
+ */
+@IntDef({ALWAYS, FIRST_READ, SAMPLED})
+@Retention(RetentionPolicy.SOURCE)
+public @interface BlobVerifyPolicy {
+
+    /**
+     * 每次读取都校验
+     */
+    int ALWAYS = 1;
+
+    /**
+     * 每个blob在当前区域里只在第一次读取时校验，之后信任，区域切换后重新校验
+     */
+    int FIRST_READ = 2;
+
+    /**
+     * 同FIRST_READ，另外每读取N次抽样校验一次
+     */
+    int SAMPLED = 3;
+}
@@ -0,0 +1,56 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 差异编码用的参考帧，保存最近一次解码或缓存的那一帧的像素。
+ * 解码队列里的几个bitmap是轮流复用的，inBitmap里并不是前一帧，所以单独保存一份。
+ * <p>
+ * 只能在解码线程使用。
+ */
+public class DeltaReference {
+    byte[] pixels;
+    int length;
+
+    /**
+     * pixels里是第几帧，-1表示无效
+     */
+    int index = -1;
+
+    /**
+     * pixels里是否是第index帧的length个字节
+     */
+    boolean isFrame(int index, int length) {
+        return this.index >= 0 && this.index == index && this.length == length;
+    }
+
+    /**
+     * 获取至少length个字节的数组，用于写入新的一帧，写入完成前参考帧无效
+     */
+    byte[] obtain(int length) {
+        index = -1;
+        if (pixels == null || pixels.length < length) {
+            pixels = new byte[length];
+        }
+        return pixels;
+    }
+
+    /**
+     * 用一个新的数组替换参考帧，省去一次拷贝
+     */
+    void set(byte[] pixels, int length, int index) {
+        this.pixels = pixels;
+        this.length = length;
+        this.index = index;
+    }
+
+    void update(int length, int index) {
+        this.length = length;
+        this.index = index;
+    }
+
+    public void reset() {
+        index = -1;
+    }
+}
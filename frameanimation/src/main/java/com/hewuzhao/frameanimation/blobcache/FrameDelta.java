@@ -0,0 +1,177 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 相邻两帧的差异编码：和前一帧异或后，相同的部分只记录长度，不同的部分记录异或值。
+ * <p>
+ * 格式：若干段 [相同的字节数(varint)][不同的字节数(varint)][异或值]，末尾相同的部分省略。
+ * 解码时直接在前一帧的像素上原地异或，得到当前帧。
+ * <p>
+ * 另外提供两帧不同区域的计算，用于局部绘制。
+ */
+public class FrameDelta {
+
+    /**
+     * 不同的部分之间，相同的字节少于这个数时合并成一段，减少段数
+     */
+    private static final int MIN_SKIP = 8;
+
+    /**
+     * 对比current和reference的前length个字节，编码到dst
+     *
+     * @param maxLength 编码后的最大长度
+     * @return 编码后的长度，超过maxLength时返回-1
+     */
+    public static int encode(byte[] current, byte[] reference, int length, byte[] dst, int dstOff, int maxLength) {
+        final int dstEnd = dstOff + Math.min(maxLength, dst.length - dstOff);
+        int out = dstOff;
+        int pos = 0;
+        while (pos < length) {
+            int skipStart = pos;
+            while (pos < length && current[pos] == reference[pos]) {
+                pos++;
+            }
+            if (pos == length) {
+                break;
+            }
+            int skip = pos - skipStart;
+
+            int literalStart = pos;
+            while (pos < length) {
+                while (pos < length && current[pos] != reference[pos]) {
+                    pos++;
+                }
+                int gapEnd = pos;
+                while (gapEnd < length && gapEnd - pos < MIN_SKIP && current[gapEnd] == reference[gapEnd]) {
+                    gapEnd++;
+                }
+                if (gapEnd == length || gapEnd - pos >= MIN_SKIP) {
+                    break;
+                }
+                // 相同的部分太短，并入不同的部分
+                pos = gapEnd;
+            }
+            int literal = pos - literalStart;
+
+            if (out + 10 + literal > dstEnd) {
+                return -1;
+            }
+            out = writeVarint(dst, out, skip);
+            out = writeVarint(dst, out, literal);
+            for (int i = literalStart; i < pos; i++) {
+                dst[out++] = (byte) (current[i] ^ reference[i]);
+            }
+        }
+        return out - dstOff;
+    }
+
+    /**
+     * 把src中从position到limit的差异数据应用到pixels的前length个字节上
+     *
+     * @return 数据损坏时返回false，此时pixels的内容不确定
+     */
+    public static boolean apply(ByteBuffer src, byte[] pixels, int length) {
+        ByteBuffer in = src.duplicate();
+        int pos = 0;
+        while (in.hasRemaining()) {
+            int skip = readVarint(in);
+            int literal = readVarint(in);
+            if (skip < 0 || literal < 0) {
+                return false;
+            }
+            long end = (long) pos + skip + literal;
+            if (end > length || literal > in.remaining()) {
+                return false;
+            }
+            pos += skip;
+            for (int i = 0; i < literal; i++) {
+                pixels[pos++] ^= in.get();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算两帧不同的区域，按像素计算
+     *
+     * @param bounds 依次写入left、top、right、bottom，right和bottom不包含在内，两帧完全相同时都是0
+     * @return 两帧是否有不同
+     */
+    public static boolean computeDirtyBounds(byte[] current, byte[] previous, int width, int height,
+                                             int bytesPerPixel, int[] bounds) {
+        final int rowBytes = width * bytesPerPixel;
+        int top = 0;
+        while (top < height && isSameRange(current, previous, top * rowBytes, (top + 1) * rowBytes)) {
+            top++;
+        }
+        if (top == height) {
+            bounds[0] = bounds[1] = bounds[2] = bounds[3] = 0;
+            return false;
+        }
+        int bottom = height;
+        while (bottom > top && isSameRange(current, previous, (bottom - 1) * rowBytes, bottom * rowBytes)) {
+            bottom--;
+        }
+
+        int left = rowBytes;
+        int right = 0;
+        for (int y = top; y < bottom; y++) {
+            final int rowStart = y * rowBytes;
+            int l = 0;
+            while (l < left && current[rowStart + l] == previous[rowStart + l]) {
+                l++;
+            }
+            left = l;
+            int r = rowBytes;
+            while (r > right && current[rowStart + r - 1] == previous[rowStart + r - 1]) {
+                r--;
+            }
+            right = r;
+        }
+        bounds[0] = left / bytesPerPixel;
+        bounds[1] = top;
+        bounds[2] = (right + bytesPerPixel - 1) / bytesPerPixel;
+        bounds[3] = bottom;
+        return true;
+    }
+
+    private static boolean isSameRange(byte[] a, byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int writeVarint(byte[] dst, int out, int value) {
+        while ((value & ~0x7f) != 0) {
+            dst[out++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        dst[out++] = (byte) value;
+        return out;
+    }
+
+    /**
+     * @return 数据不完整或超出int范围时返回-1
+     */
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!in.hasRemaining()) {
+                return -1;
+            }
+            int b = in.get() & 0xff;
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value < 0 ? -1 : value;
+            }
+        }
+        return -1;
+    }
+}
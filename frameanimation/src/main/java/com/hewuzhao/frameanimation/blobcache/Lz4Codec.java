@@ -0,0 +1,187 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 纯Java实现的LZ4 block格式编解码，解码只有字面量拷贝和回溯拷贝，速度接近内存拷贝
+ * <p>
+ * 格式参考：https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md
+ */
+public class Lz4Codec implements BlobCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int RUN_MASK = 15;
+    private static final int ML_MASK = 15;
+    private static final int HASH_LOG = 12;
+    // 连续找不到匹配时加大步长，跳过不可压缩的数据
+    private static final int SKIP_STRENGTH = 6;
+
+    @Override
+    public int getId() {
+        return BlobCodecType.LZ4;
+    }
+
+    @Override
+    public int maxEncodedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    @Override
+    public int encode(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        final int srcEnd = srcOff + srcLen;
+        final int matchLimit = srcEnd - LAST_LITERALS;
+        final int mfLimit = srcEnd - MF_LIMIT;
+        // 哈希表存储的是位置+1，0表示空
+        final int[] table = new int[1 << HASH_LOG];
+
+        int ip = srcOff;
+        int anchor = srcOff;
+        int op = dstOff;
+        while (ip < mfLimit) {
+            int sequence = readInt(src, ip);
+            int h = hash(sequence);
+            int ref = table[h] - 1;
+            table[h] = ip + 1;
+            if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                ip += 1 + ((ip - anchor) >>> SKIP_STRENGTH);
+                continue;
+            }
+
+            // 向前扩展匹配
+            while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                ip--;
+                ref--;
+            }
+            // 向后扩展匹配
+            int matchLen = MIN_MATCH;
+            while (ip + matchLen < matchLimit && src[ip + matchLen] == src[ref + matchLen]) {
+                matchLen++;
+            }
+
+            op = writeLiterals(src, anchor, ip - anchor, matchLen - MIN_MATCH, dst, op);
+            int offset = ip - ref;
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            if (matchLen - MIN_MATCH >= ML_MASK) {
+                op = writeLength(matchLen - MIN_MATCH - ML_MASK, dst, op);
+            }
+            ip += matchLen;
+            anchor = ip;
+        }
+
+        // 最后的字面量
+        op = writeLiterals(src, anchor, srcEnd - anchor, 0, dst, op);
+        return op - dstOff;
+    }
+
+    /**
+     * 写入token、字面量长度和字面量，token的低4位是matchLength
+     */
+    private static int writeLiterals(byte[] src, int srcOff, int literalLen, int matchLength,
+                                     byte[] dst, int op) {
+        int token = Math.min(matchLength, ML_MASK);
+        if (literalLen >= RUN_MASK) {
+            dst[op++] = (byte) ((RUN_MASK << 4) | token);
+            op = writeLength(literalLen - RUN_MASK, dst, op);
+        } else {
+            dst[op++] = (byte) ((literalLen << 4) | token);
+        }
+        System.arraycopy(src, srcOff, dst, op, literalLen);
+        return op + literalLen;
+    }
+
+    private static int writeLength(int length, byte[] dst, int op) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    @Override
+    public int decode(ByteBuffer src, byte[] dst, int dstOff, int dstLen) {
+        try {
+            int sp = src.position();
+            final int srcEnd = src.limit();
+            int dp = dstOff;
+            final int dstEnd = dstOff + dstLen;
+            while (sp < srcEnd) {
+                int token = src.get(sp++) & 0xff;
+
+                int literalLen = token >>> 4;
+                if (literalLen == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src.get(sp++) & 0xff;
+                        literalLen += b;
+                    } while (b == 255);
+                }
+                if (literalLen > dstEnd - dp || literalLen > srcEnd - sp) {
+                    return -1;
+                }
+                src.position(sp);
+                src.get(dst, dp, literalLen);
+                sp += literalLen;
+                dp += literalLen;
+                if (sp == srcEnd) {
+                    // 最后一个序列只有字面量
+                    break;
+                }
+
+                int offset = (src.get(sp) & 0xff) | ((src.get(sp + 1) & 0xff) << 8);
+                sp += 2;
+                if (offset == 0 || offset > dp - dstOff) {
+                    return -1;
+                }
+                int matchLen = token & ML_MASK;
+                if (matchLen == ML_MASK) {
+                    int b;
+                    do {
+                        b = src.get(sp++) & 0xff;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+                if (matchLen > dstEnd - dp) {
+                    return -1;
+                }
+                copyMatch(dst, dp - offset, dp, matchLen);
+                dp += matchLen;
+            }
+            src.position(srcEnd);
+            return dp - dstOff;
+        } catch (IndexOutOfBoundsException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * 回溯拷贝，offset小于匹配长度时数据是以offset为周期重复的，每次可以拷贝已写出的整段周期
+     */
+    private static void copyMatch(byte[] dst, int ref, int dp, int matchLen) {
+        int copied = 0;
+        while (copied < matchLen) {
+            int n = Math.min(dp + copied - ref, matchLen - copied);
+            System.arraycopy(dst, ref, dst, dp + copied, n);
+            copied += n;
+        }
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(byte[] buf, int offset) {
+        return (buf[offset] & 0xff)
+                | ((buf[offset + 1] & 0xff) << 8)
+                | ((buf[offset + 2] & 0xff) << 16)
+                | ((buf[offset + 3] & 0xff) << 24);
+    }
+}
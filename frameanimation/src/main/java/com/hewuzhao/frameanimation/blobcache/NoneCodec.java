@@ -0,0 +1,38 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 不做任何编码，原样拷贝
+ */
+public class NoneCodec implements BlobCodec {
+
+    @Override
+    public int getId() {
+        return BlobCodecType.NONE;
+    }
+
+    @Override
+    public int maxEncodedLength(int length) {
+        return length;
+    }
+
+    @Override
+    public int encode(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        System.arraycopy(src, srcOff, dst, dstOff, srcLen);
+        return srcLen;
+    }
+
+    @Override
+    public int decode(ByteBuffer src, byte[] dst, int dstOff, int dstLen) {
+        int length = src.remaining();
+        if (length > dstLen) {
+            return -1;
+        }
+        src.get(dst, dstOff, length);
+        return length;
+    }
+}
@@ -0,0 +1,420 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Build;
+import android.util.Log;
+
+import com.hewuzhao.frameanimation.bytespool.BytesBuffer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 一套动画的所有帧都进入BlobCache后打包成的只读文件，播放时按帧序号直接读取，
+ * 不再经过BlobCache的哈希索引、blob头校验和key比较。
+ * <p>
+ * 文件格式（小端序）：
+ * <pre>
+ * header:  magic(4) + 格式版本(4) + 缓存版本(4) + 帧数(4) + 帧表的Adler32(4) + 保留(12)
+ * 帧表:    每帧 key(8) + offset(8) + size(4) + width(4) + height(4) + meta(4) + 像素的Adler32(4)，按播放顺序
+ * 像素:    按播放顺序连续存放，和BlobCache里的像素数据一致(可能经过编码)
+ * </pre>
+ * 文件写完之后不再修改，读取时不需要加锁。
+ * 帧表在打开时校验，像素在读取时按{@link BlobVerifyPolicy}校验，和BlobCache一样，默认每次读取都校验。
+ */
+public class SealedFrameFile {
+    private static final String TAG = "SealedFrameFile";
+
+    private static final int MAGIC = 0x5EA1F4A0;
+    private static final int FORMAT_VERSION = 2;
+
+    // header offset
+    private static final int SH_MAGIC = 0;
+    private static final int SH_FORMAT_VERSION = 4;
+    private static final int SH_VERSION = 8;
+    private static final int SH_FRAME_COUNT = 12;
+    private static final int SH_TABLE_CHECKSUM = 16;
+    private static final int HEADER_SIZE = 32;
+
+    // frame table entry offset
+    private static final int FE_KEY = 0;
+    private static final int FE_OFFSET = 8;
+    private static final int FE_SIZE = 16;
+    private static final int FE_WIDTH = 20;
+    private static final int FE_HEIGHT = 24;
+    private static final int FE_META = 28;
+    private static final int FE_CHECKSUM = 32;
+    private static final int FRAME_ENTRY_SIZE = 36;
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Android O以下Adler32不能直接读ByteBuffer，先复制到这里
+     */
+    private static final ThreadLocal<byte[]> sChunk = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[CHUNK_SIZE];
+        }
+    };
+
+    private final MappedByteBuffer mMap;
+    private final int mVersion;
+    private final long[] mKeys;
+    private final int[] mOffsets;
+    private final int[] mSizes;
+    private final int[] mWidths;
+    private final int[] mHeights;
+    private final int[] mMetas;
+    private final int[] mChecksums;
+
+    /**
+     * 校验通过的帧。多个解码线程同时读写，没看到其他线程的结果时只是多校验一次
+     */
+    private final boolean[] mVerified;
+    private final AtomicInteger mTrustedReads = new AtomicInteger();
+    private volatile int mVerifyPolicy = BlobVerifyPolicy.ALWAYS;
+    private volatile int mVerifySampleRate = 1;
+
+    private SealedFrameFile(MappedByteBuffer map, int version, int frameCount) {
+        mMap = map;
+        mVersion = version;
+        mKeys = new long[frameCount];
+        mOffsets = new int[frameCount];
+        mSizes = new int[frameCount];
+        mWidths = new int[frameCount];
+        mHeights = new int[frameCount];
+        mMetas = new int[frameCount];
+        mChecksums = new int[frameCount];
+        mVerified = new boolean[frameCount];
+    }
+
+    /**
+     * 把keys对应的帧从blobCache里按顺序打包到file，有任何一帧不在缓存里就放弃
+     *
+     * @param version  动画的version
+     * @param keyBytes 每帧的key字节，用于和缓存数据末尾的key比较
+     * @return 是否成功
+     */
+    public static boolean seal(BlobCache blobCache, long[] keys, byte[][] keyBytes, int version, File file) {
+        long t1 = System.currentTimeMillis();
+        final int frameCount = keys.length;
+        final int tableSize = frameCount * FRAME_ENTRY_SIZE;
+        File tmpFile = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = null;
+        boolean success = false;
+        try {
+            out = new RandomAccessFile(tmpFile, "rw");
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            ByteBuffer table = ByteBuffer.allocate(tableSize).order(ByteOrder.LITTLE_ENDIAN);
+            long offset = HEADER_SIZE + tableSize;
+            for (int i = 0; i < frameCount; i++) {
+                blobCache.beginMappedRead();
+                try {
+                    ByteBuffer blob = blobCache.lookupMapped(keys[i]);
+                    byte[] key = keyBytes[i];
+                    if (blob == null) {
+                        Log.e(TAG, "seal, frame is not in cache, index=" + i);
+                        return false;
+                    }
+                    int length = blob.remaining();
+                    if (length < key.length + BlobCacheUtil.TRAILER_INFO_SIZE
+                            || !BlobCacheUtil.isSameKey(key, blob, length)) {
+                        Log.e(TAG, "seal, key is not same, index=" + i);
+                        return false;
+                    }
+                    // 缓存数据格式：像素 + 宽度(4位) + 高度(4位) + 元数据(4位) + key
+                    int size = length - key.length - BlobCacheUtil.TRAILER_INFO_SIZE;
+                    blob.order(ByteOrder.LITTLE_ENDIAN);
+                    if (offset + size > Integer.MAX_VALUE) {
+                        Log.e(TAG, "seal, animation is too large.");
+                        return false;
+                    }
+                    table.putLong(keys[i]);
+                    table.putLong(offset);
+                    table.putInt(size);
+                    table.putInt(blob.getInt(size));
+                    table.putInt(blob.getInt(size + 4));
+                    table.putInt(blob.getInt(size + 8));
+
+                    blob.limit(size);
+                    table.putInt(checkSum(blob.duplicate()));
+                    channel.position(offset);
+                    while (blob.hasRemaining()) {
+                        channel.write(blob);
+                    }
+                    offset += size;
+                } finally {
+                    blobCache.endMappedRead();
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(SH_MAGIC, MAGIC);
+            header.putInt(SH_FORMAT_VERSION, FORMAT_VERSION);
+            header.putInt(SH_VERSION, BlobCacheUtil.getCacheVersion(version));
+            header.putInt(SH_FRAME_COUNT, frameCount);
+            header.putInt(SH_TABLE_CHECKSUM, checkSum(table.array(), tableSize));
+            table.clear();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (table.hasRemaining()) {
+                channel.write(table);
+            }
+            out.getFD().sync();
+            out.close();
+            out = null;
+            success = tmpFile.renameTo(file);
+            return success;
+        } catch (Throwable t) {
+            Log.e(TAG, "seal failed.", t);
+            return false;
+        } finally {
+            BlobCache.closeSilently(out);
+            if (!success) {
+                tmpFile.delete();
+            }
+            Log.i(TAG, "seal, success=" + success + ", cost time: " + (System.currentTimeMillis() - t1)
+                    + ", file: " + file);
+        }
+    }
+
+    /**
+     * 打开打包文件，文件和version、keys不匹配或已损坏时返回null
+     */
+    public static SealedFrameFile open(File file, int version, long[] keys) {
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile in = null;
+        try {
+            in = new RandomAccessFile(file, "r");
+            long fileLength = in.length();
+            if (fileLength < HEADER_SIZE || fileLength > Integer.MAX_VALUE) {
+                Log.w(TAG, "invalid file length: " + fileLength);
+                return null;
+            }
+            MappedByteBuffer map = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+            return open(map, fileLength, version, keys);
+        } catch (IOException ex) {
+            Log.e(TAG, "open failed, file: " + file, ex);
+            return null;
+        } finally {
+            // 映射在文件关闭后仍然有效
+            BlobCache.closeSilently(in);
+        }
+    }
+
+    /**
+     * 打开打包在assets里的文件(构建时由prebake.gradle生成)，asset必须是不压缩的，
+     * 不存在、和version、keys不匹配或已损坏时返回null
+     */
+    public static SealedFrameFile openAsset(AssetManager assets, String path, int version, long[] keys) {
+        AssetFileDescriptor afd = null;
+        FileInputStream in = null;
+        try {
+            afd = assets.openFd(path);
+            long length = afd.getLength();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                Log.w(TAG, "invalid asset length: " + length);
+                return null;
+            }
+            in = afd.createInputStream();
+            MappedByteBuffer map = in.getChannel().map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), length);
+            return open(map, length, version, keys);
+        } catch (FileNotFoundException ex) {
+            // 没有预烘焙的文件，或者asset被压缩了
+            return null;
+        } catch (IOException ex) {
+            Log.e(TAG, "openAsset failed, path: " + path, ex);
+            return null;
+        } finally {
+            BlobCache.closeSilently(in);
+            BlobCache.closeSilently(afd);
+        }
+    }
+
+    private static SealedFrameFile open(MappedByteBuffer map, long fileLength, int version, long[] keys) {
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.getInt(SH_MAGIC) != MAGIC
+                || map.getInt(SH_FORMAT_VERSION) != FORMAT_VERSION
+                || map.getInt(SH_VERSION) != BlobCacheUtil.getCacheVersion(version)) {
+            Log.w(TAG, "magic or version does not match.");
+            return null;
+        }
+        final int frameCount = map.getInt(SH_FRAME_COUNT);
+        if (frameCount != keys.length
+                || HEADER_SIZE + (long) frameCount * FRAME_ENTRY_SIZE > fileLength) {
+            Log.w(TAG, "frame count does not match: " + frameCount);
+            return null;
+        }
+        byte[] table = new byte[frameCount * FRAME_ENTRY_SIZE];
+        ByteBuffer tableBuffer = map.duplicate();
+        tableBuffer.position(HEADER_SIZE);
+        tableBuffer.get(table);
+        if (checkSum(table, table.length) != map.getInt(SH_TABLE_CHECKSUM)) {
+            Log.w(TAG, "frame table checksum does not match.");
+            return null;
+        }
+
+        SealedFrameFile sealedFile = new SealedFrameFile(map, version, frameCount);
+        for (int i = 0; i < frameCount; i++) {
+            int entry = HEADER_SIZE + i * FRAME_ENTRY_SIZE;
+            long key = map.getLong(entry + FE_KEY);
+            long offset = map.getLong(entry + FE_OFFSET);
+            int size = map.getInt(entry + FE_SIZE);
+            if (key != keys[i] || size < 0 || offset < HEADER_SIZE || offset + size > fileLength) {
+                Log.w(TAG, "invalid frame entry, index=" + i);
+                return null;
+            }
+            sealedFile.mKeys[i] = key;
+            sealedFile.mOffsets[i] = (int) offset;
+            sealedFile.mSizes[i] = size;
+            sealedFile.mWidths[i] = map.getInt(entry + FE_WIDTH);
+            sealedFile.mHeights[i] = map.getInt(entry + FE_HEIGHT);
+            sealedFile.mMetas[i] = map.getInt(entry + FE_META);
+            sealedFile.mChecksums[i] = map.getInt(entry + FE_CHECKSUM);
+        }
+        return sealedFile;
+    }
+
+    /**
+     * 读取像素时的校验方式，同{@link BlobCache#setVerifyPolicy(int, int)}
+     */
+    public void setVerifyPolicy(@BlobVerifyPolicy int policy, int sampleRate) {
+        mVerifySampleRate = Math.max(sampleRate, 1);
+        mVerifyPolicy = policy;
+    }
+
+    public int getFrameCount() {
+        return mKeys.length;
+    }
+
+    /**
+     * 是否是同一套动画打包的
+     */
+    public boolean matches(int version, long[] keys) {
+        if (version != mVersion || keys.length != mKeys.length) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != mKeys[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取第index帧，尽量复用inBitmap，编码过的数据先解码到pixelsBuffer
+     *
+     * @param cacheKey 第index帧的key，不一致时返回null
+     */
+    public Bitmap getBitmap(int index, long cacheKey, Bitmap inBitmap, BytesBuffer pixelsBuffer) {
+        return getBitmap(index, cacheKey, inBitmap, pixelsBuffer, null, null);
+    }
+
+    /**
+     * 同上，存在差异编码的帧时需要传入参考帧
+     *
+     * @param dirty 不为null时，写入和前一帧不同的区域，没有记录时是整个bitmap
+     */
+    public Bitmap getBitmap(int index, long cacheKey, Bitmap inBitmap, BytesBuffer pixelsBuffer,
+                            DeltaReference reference, Rect dirty) {
+        if (index < 0 || index >= mKeys.length || mKeys[index] != cacheKey) {
+            Log.e(TAG, "getBitmap, frame does not match, index=" + index);
+            return null;
+        }
+        try {
+            if (!verifyFrame(index)) {
+                return null;
+            }
+            Bitmap bitmap = BlobCacheUtil.copyToBitmap(getFrameData(index), mWidths[index], mHeights[index], mMetas[index],
+                    inBitmap, pixelsBuffer, reference, index, dirty);
+            if (bitmap == null) {
+                Log.e(TAG, "getBitmap, decode pixels failed, index=" + index);
+            }
+            return bitmap;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "getBitmap error, index: " + index + ", ex: " + ex);
+            return null;
+        }
+    }
+
+    /**
+     * 按校验方式检查第index帧的像素，不一致时返回false，由调用方改为从缓存读取
+     */
+    boolean verifyFrame(int index) {
+        if (!shouldVerify(index)) {
+            return true;
+        }
+        if (checkSum(getFrameData(index)) != mChecksums[index]) {
+            Log.e(TAG, "verifyFrame, checksum does not match, index=" + index);
+            mVerified[index] = false;
+            return false;
+        }
+        mVerified[index] = true;
+        return true;
+    }
+
+    private boolean shouldVerify(int index) {
+        switch (mVerifyPolicy) {
+            case BlobVerifyPolicy.FIRST_READ:
+                return !mVerified[index];
+            case BlobVerifyPolicy.SAMPLED:
+                return !mVerified[index] || mTrustedReads.incrementAndGet() % mVerifySampleRate == 0;
+            default:
+                return true;
+        }
+    }
+
+    private ByteBuffer getFrameData(int index) {
+        ByteBuffer data = mMap.duplicate();
+        data.position(mOffsets[index]);
+        data.limit(mOffsets[index] + mSizes[index]);
+        return data;
+    }
+
+    /**
+     * 校验buffer剩余的数据，会读完buffer
+     */
+    private static int checkSum(ByteBuffer data) {
+        Adler32 adler32 = new Adler32();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            adler32.update(data);
+        } else {
+            byte[] chunk = sChunk.get();
+            while (data.hasRemaining()) {
+                int todo = Math.min(data.remaining(), chunk.length);
+                data.get(chunk, 0, todo);
+                adler32.update(chunk, 0, todo);
+            }
+        }
+        return (int) adler32.getValue();
+    }
+
+    private static int checkSum(byte[] data, int length) {
+        Adler32 adler32 = new Adler32();
+        adler32.update(data, 0, length);
+        return (int) adler32.getValue();
+    }
+}
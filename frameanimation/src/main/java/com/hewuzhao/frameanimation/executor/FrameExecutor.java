@@ -0,0 +1,191 @@
+package com.hewuzhao.frameanimation.executor;
+
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 所有FrameTextureView共享的解码线程池和绘制线程。
+ * <p>
+ * 每个view的解码任务提交到自己的{@link FrameLane}，线程数按CPU核数确定，不随view的个数增加；
+ * 线程空闲时先取优先级高的队列，同一优先级的队列每次执行一个任务后排到队尾，轮流执行。
+ * 绘制任务很短并且需要Choreographer，所有view共用一个绘制线程的Looper，每个view用自己的Handler。
+ */
+public class FrameExecutor {
+    private static final String TAG = "FrameExecutor";
+
+    private static final String DECODE_THREAD_NAME = "FRAME_DECODE_THREAD";
+    private static final String DRAW_THREAD_NAME = "FRAME_DRAW_HANDLER_THREAD";
+
+    /**
+     * 最多的解码线程数
+     */
+    private static final int MAX_THREAD_COUNT = 4;
+
+    private static final int PRIORITY_COUNT = LanePriority.LOW + 1;
+
+    private final int mThreadCount;
+
+    /**
+     * 每个优先级有任务可以执行的队列，下标是优先级
+     */
+    private final ArrayDeque<FrameLane>[] mReadyLanes;
+
+    private int mStartedThreadCount;
+    private int mIdleThreadCount;
+
+    private HandlerThread mDrawHandlerThread;
+
+    private static class SingletonHolder {
+        private static final FrameExecutor INSTANCE = new FrameExecutor(defaultThreadCount());
+    }
+
+    public static FrameExecutor getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * 留一个核给主线程和绘制线程，至少两个解码线程
+     */
+    private static int defaultThreadCount() {
+        final int cpuCount = Runtime.getRuntime().availableProcessors();
+        return Math.max(2, Math.min(cpuCount - 1, MAX_THREAD_COUNT));
+    }
+
+    @SuppressWarnings("unchecked")
+    FrameExecutor(int threadCount) {
+        mThreadCount = Math.max(1, threadCount);
+        mReadyLanes = new ArrayDeque[PRIORITY_COUNT];
+        for (int i = 0; i < PRIORITY_COUNT; i++) {
+            mReadyLanes[i] = new ArrayDeque<>();
+        }
+    }
+
+    public int getThreadCount() {
+        return mThreadCount;
+    }
+
+    public FrameLane newLane(@LanePriority int priority) {
+        return new FrameLane(this, priority);
+    }
+
+    /**
+     * 所有view共用的绘制线程的Looper
+     */
+    public synchronized Looper getDrawLooper() {
+        if (mDrawHandlerThread == null || !mDrawHandlerThread.isAlive()) {
+            mDrawHandlerThread = new HandlerThread(DRAW_THREAD_NAME);
+            mDrawHandlerThread.start();
+        }
+        return mDrawHandlerThread.getLooper();
+    }
+
+    synchronized void post(FrameLane lane, Runnable task) {
+        lane.mTasks.offer(task);
+        enqueueIfRunnable(lane);
+    }
+
+    synchronized void clear(FrameLane lane) {
+        lane.mTasks.clear();
+        if (lane.mQueued) {
+            mReadyLanes[lane.mPriority].remove(lane);
+            lane.mQueued = false;
+        }
+    }
+
+    synchronized void setConcurrency(FrameLane lane, int concurrency) {
+        lane.mConcurrency = concurrency;
+        enqueueIfRunnable(lane);
+    }
+
+    synchronized void setPriority(FrameLane lane, int priority) {
+        if (lane.mPriority == priority) {
+            return;
+        }
+        if (lane.mQueued) {
+            mReadyLanes[lane.mPriority].remove(lane);
+            mReadyLanes[priority].offer(lane);
+        }
+        lane.mPriority = priority;
+    }
+
+    synchronized int getPendingCount(FrameLane lane) {
+        return lane.mTasks.size();
+    }
+
+    /**
+     * 队列有任务可以执行时放入就绪队列，需要时启动新的线程
+     */
+    private void enqueueIfRunnable(FrameLane lane) {
+        if (lane.mQueued || !lane.isRunnable()) {
+            return;
+        }
+        lane.mQueued = true;
+        mReadyLanes[lane.mPriority].offer(lane);
+        if (mIdleThreadCount > 0) {
+            notify();
+        } else if (mStartedThreadCount < mThreadCount) {
+            startThread(mStartedThreadCount++);
+        }
+    }
+
+    private void startThread(int index) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, DECODE_THREAD_NAME + "_" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void loop() {
+        while (true) {
+            FrameLane lane;
+            Runnable task;
+            synchronized (this) {
+                while ((lane = pollReadyLane()) == null) {
+                    mIdleThreadCount++;
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        ex.printStackTrace();
+                    } finally {
+                        mIdleThreadCount--;
+                    }
+                }
+                lane.mQueued = false;
+                task = lane.mTasks.poll();
+                lane.mRunningCount++;
+                // 还有任务可以并发执行时排到队尾，其他队列先执行
+                enqueueIfRunnable(lane);
+            }
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+                Log.e(TAG, "task failed, ex=" + ex);
+            }
+            synchronized (this) {
+                lane.mRunningCount--;
+                enqueueIfRunnable(lane);
+            }
+        }
+    }
+
+    private FrameLane pollReadyLane() {
+        for (ArrayDeque<FrameLane> lanes : mReadyLanes) {
+            FrameLane lane = lanes.poll();
+            if (lane != null) {
+                return lane;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.hewuzhao.frameanimation.executor;
+
+import java.util.ArrayDeque;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 一个view在{@link FrameExecutor}上的任务队列。
+ * <p>
+ * 任务按提交的顺序开始执行，同时执行的任务不超过{@link #setConcurrency(int)}个，并发数为1时就是串行队列。
+ * 每次只从队列里取一个任务执行，执行后排到同一优先级的队尾，多个view之间轮流执行。
+ */
+public class FrameLane {
+
+    private final FrameExecutor mExecutor;
+
+    /**
+     * 下面的字段都由mExecutor的锁保护
+     */
+    final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+    int mPriority;
+    int mConcurrency = 1;
+    int mRunningCount;
+
+    /**
+     * 是否已经在FrameExecutor的就绪队列里
+     */
+    boolean mQueued;
+
+    FrameLane(FrameExecutor executor, @LanePriority int priority) {
+        mExecutor = executor;
+        mPriority = priority;
+    }
+
+    public void post(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        mExecutor.post(this, task);
+    }
+
+    /**
+     * 移除还没开始执行的任务，正在执行的任务不受影响
+     */
+    public void clear() {
+        mExecutor.clear(this);
+    }
+
+    /**
+     * 同时执行的最多任务数，至少为1
+     */
+    public void setConcurrency(int concurrency) {
+        mExecutor.setConcurrency(this, Math.max(1, concurrency));
+    }
+
+    public void setPriority(@LanePriority int priority) {
+        mExecutor.setPriority(this, priority);
+    }
+
+    /**
+     * 还没开始执行的任务数
+     */
+    public int getPendingCount() {
+        return mExecutor.getPendingCount(this);
+    }
+
+    /**
+     * 还有任务可以开始执行
+     */
+    boolean isRunnable() {
+        return !mTasks.isEmpty() && mRunningCount < mConcurrency;
+    }
+}
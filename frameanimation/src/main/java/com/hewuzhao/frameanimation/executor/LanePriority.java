@@ -0,0 +1,36 @@
+package com.hewuzhao.frameanimation.executor;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static com.hewuzhao.frameanimation.executor.LanePriority.HIGH;
+import static com.hewuzhao.frameanimation.executor.LanePriority.LOW;
+import static com.hewuzhao.frameanimation.executor.LanePriority.NORMAL;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * {@link FrameLane}的优先级，共享线程空闲时先执行优先级高的队列，同一优先级的队列轮流执行
+ */
+@IntDef({HIGH, NORMAL, LOW})
+@Retention(RetentionPolicy.SOURCE)
+public @interface LanePriority {
+
+    /**
+     * 用户正在看的动画
+     */
+    int HIGH = 0;
+
+    /**
+     * 默认
+     */
+    int NORMAL = 1;
+
+    /**
+     * 不在屏幕上、暂时可以慢一点的动画
+     */
+    int LOW = 2;
+}
@@ -0,0 +1,79 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.hewuzhao.frameanimation.frameview.FrameItem;
+import com.hewuzhao.frameanimation.frameview.FrameList;
+import com.hewuzhao.frameanimation.utils.FrameParseUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * assets下一个目录里的图片，按文件名排序，每帧时长相同。
+ * assets只在安装包更新后变化，缓存的版本取自安装包的更新时间
+ */
+public class AssetFrameSource implements FrameSource {
+    private static final String TAG = "AssetFrameSource";
+
+    private final AssetManager mAssetManager;
+    private final String mDir;
+    private final int mDuration;
+
+    /**
+     * @param dir      assets下的目录，例如"anim/loading"
+     * @param duration 每帧的时长，毫秒
+     */
+    public AssetFrameSource(AssetManager assetManager, String dir, int duration) {
+        mAssetManager = assetManager;
+        mDir = dir;
+        mDuration = duration;
+    }
+
+    @Override
+    public String getKey() {
+        return "asset:" + mDir;
+    }
+
+    @Override
+    public FrameList loadFrameList() {
+        try {
+            String[] names = mAssetManager.list(mDir);
+            return FrameParseUtil.parse("asset_" + mDir,
+                    names == null ? null : Arrays.asList(names), mDuration, FrameParseUtil.getPackageVersion());
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "loadFrameList, ex: " + ex + ", dir=" + mDir);
+            return null;
+        }
+    }
+
+    @Override
+    public Bitmap decodeFrame(FrameItem frameItem, BitmapFactory.Options options) {
+        InputStream in = null;
+        try {
+            // 按帧连续读取，使用ACCESS_STREAMING
+            in = mAssetManager.open(mDir + "/" + frameItem.getDrawableName(), AssetManager.ACCESS_STREAMING);
+            return BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "decodeFrame, ex: " + ex + ", name=" + frameItem.getDrawableName());
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+}
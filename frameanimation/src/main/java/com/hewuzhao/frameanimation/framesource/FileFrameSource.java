@@ -0,0 +1,84 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.hewuzhao.frameanimation.blobcache.BlobCacheUtil;
+import com.hewuzhao.frameanimation.frameview.FrameItem;
+import com.hewuzhao.frameanimation.frameview.FrameList;
+import com.hewuzhao.frameanimation.utils.FrameParseUtil;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 文件目录里的图片，例如下载后解压的动画，按文件名排序，每帧时长相同。
+ * 缓存文件名带上目录路径和每张图片的名字、大小、修改时间算出的hash，替换、增删图片后不会读到旧的缓存；
+ * 只修改目录的修改时间不能发现替换同名图片。
+ */
+public class FileFrameSource implements FrameSource {
+
+    private final File mDir;
+    private final int mDuration;
+    private final int mVersion;
+
+    /**
+     * @param duration 每帧的时长，毫秒
+     */
+    public FileFrameSource(File dir, int duration) {
+        this(dir, duration, 1);
+    }
+
+    /**
+     * @param duration 每帧的时长，毫秒
+     * @param version  缓存的版本，例如下载的动画的版本号，和已有的缓存不一致时重置缓存
+     */
+    public FileFrameSource(File dir, int duration, int version) {
+        mDir = dir;
+        mDuration = duration;
+        mVersion = version;
+    }
+
+    @Override
+    public String getKey() {
+        return "file:" + mDir.getAbsolutePath();
+    }
+
+    @Override
+    public FrameList loadFrameList() {
+        String[] names = mDir.list();
+        if (names == null) {
+            return null;
+        }
+        Arrays.sort(names);
+        return FrameParseUtil.parse("dir_" + mDir.getName() + "_" + Long.toHexString(getContentHash(mDir, names)),
+                Arrays.asList(names), mDuration, mVersion);
+    }
+
+    @Override
+    public Bitmap decodeFrame(FrameItem frameItem, BitmapFactory.Options options) {
+        return BitmapFactory.decodeFile(new File(mDir, frameItem.getDrawableName()).getPath(), options);
+    }
+
+    /**
+     * 目录路径和每张图片的名字、大小、修改时间算出的hash
+     *
+     * @param names 排好序的文件名
+     */
+    static long getContentHash(File dir, String[] names) {
+        StringBuilder builder = new StringBuilder(dir.getAbsolutePath());
+        for (String name : names) {
+            if (!FrameParseUtil.isImageName(name)) {
+                continue;
+            }
+            File file = new File(dir, name);
+            builder.append('/').append(name)
+                    .append(':').append(file.length())
+                    .append(':').append(file.lastModified());
+        }
+        return BlobCacheUtil.getCacheKey(builder.toString());
+    }
+}
@@ -0,0 +1,39 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.hewuzhao.frameanimation.frameview.FrameItem;
+import com.hewuzhao.frameanimation.frameview.FrameList;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 帧的来源，FrameTextureView通过它读取动画列表、解码每一帧。
+ * <p>
+ * 已有的实现：{@link ResourceFrameSource}（res/drawable下的animation-list）、{@link AssetFrameSource}（assets目录）、
+ * {@link FileFrameSource}（文件目录）、{@link ZipFrameSource}（直接读取zip文件，不解压）、
+ * {@link SpriteSheetFrameSource}（精灵图）。
+ * 方法都在解码线程调用，decodeFrame会被多个解码线程同时调用。
+ */
+public interface FrameSource {
+
+    /**
+     * 唯一标识，key相同表示同一个动画：再次播放时不会重新开始，多个view播放时共享解码
+     */
+    String getKey();
+
+    /**
+     * 读取动画列表，失败时返回null或者空列表
+     */
+    FrameList loadFrameList();
+
+    /**
+     * 解码一帧，和BitmapFactory一样使用options，例如inBitmap、inSampleSize、inJustDecodeBounds
+     *
+     * @param frameItem loadFrameList返回的帧
+     * @return 解码失败返回null
+     */
+    Bitmap decodeFrame(FrameItem frameItem, BitmapFactory.Options options);
+}
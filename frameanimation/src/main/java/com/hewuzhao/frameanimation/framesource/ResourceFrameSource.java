@@ -0,0 +1,48 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import androidx.annotation.DrawableRes;
+
+import com.hewuzhao.frameanimation.frameview.FrameItem;
+import com.hewuzhao.frameanimation.frameview.FrameList;
+import com.hewuzhao.frameanimation.utils.FrameParseUtil;
+import com.hewuzhao.frameanimation.utils.ResourceUtil;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * res/drawable下的animation-list，每帧按解析时记录的资源id解码
+ */
+public class ResourceFrameSource implements FrameSource {
+
+    private final int mResId;
+
+    /**
+     * @param resId 帧动画文件id
+     */
+    public ResourceFrameSource(@DrawableRes int resId) {
+        mResId = resId;
+    }
+
+    public int getResId() {
+        return mResId;
+    }
+
+    @Override
+    public String getKey() {
+        return String.valueOf(mResId);
+    }
+
+    @Override
+    public FrameList loadFrameList() {
+        return FrameParseUtil.parse(mResId);
+    }
+
+    @Override
+    public Bitmap decodeFrame(FrameItem frameItem, BitmapFactory.Options options) {
+        return ResourceUtil.getBitmap(frameItem, options);
+    }
+}
@@ -0,0 +1,461 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+
+import com.hewuzhao.frameanimation.bitmappool.BitmapPool;
+import com.hewuzhao.frameanimation.blobcache.BlobCacheUtil;
+import com.hewuzhao.frameanimation.frameview.FrameItem;
+import com.hewuzhao.frameanimation.frameview.FrameList;
+import com.hewuzhao.frameanimation.memory.FrameMemoryGovernor;
+import com.hewuzhao.frameanimation.utils.FrameParseUtil;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 精灵图：所有帧拼在一张图里，再用一个文本文件记录每帧的区域，省去每帧打开、解析一个图片文件。
+ * <p>
+ * 帧列表文件每行一帧，按行的顺序播放，#开头的行是注释：
+ * <pre>
+ * # 名字 x y 宽 高 [时长]
+ * frame_00 0 0 120 120 40
+ * frame_01 120 0 120 120
+ * </pre>
+ * 没有写时长的帧使用构造时的时长。取出的帧和其他来源一样进入解码队列、缓存和缩放，
+ * 取帧的方式见{@link SpriteSheetMode}：COPY模式下精灵图常驻内存，系统内存不足时释放，下次取帧时重新解码。
+ * key和缓存文件名由精灵图和帧列表的完整路径组成，文件还带上两者的修改时间和大小；
+ * assets里的只在安装包更新后变化，缓存的版本取自安装包的更新时间。
+ * 不再使用时调用{@link #close()}。
+ */
+public class SpriteSheetFrameSource implements FrameSource, Closeable, FrameMemoryGovernor.Trimmable {
+    private static final String TAG = "SpriteSheetFrameSource";
+
+    /**
+     * AUTO模式下，精灵图按ARGB_8888解码后超过这个大小时用BitmapRegionDecoder
+     */
+    public static final long DEFAULT_REGION_THRESHOLD = 16 * 1024 * 1024;
+
+    /**
+     * 帧列表文件里的一帧
+     */
+    static class SpriteFrame {
+        final String name;
+        final int left;
+        final int top;
+        final int width;
+        final int height;
+        final int duration;
+
+        SpriteFrame(String name, int left, int top, int width, int height, int duration) {
+            this.name = name;
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+            this.duration = duration;
+        }
+    }
+
+    private final AssetManager mAssetManager;
+    private final String mAtlasPath;
+    private final String mManifestPath;
+    private final int mDuration;
+    @SpriteSheetMode
+    private final int mMode;
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * 多个解码线程同时从精灵图复制时拿读锁，释放精灵图时拿写锁。
+     * 需要同时拿this的锁时，先拿这个锁
+     */
+    private final ReadWriteLock mAtlasLock = new ReentrantReadWriteLock();
+
+    /**
+     * 下面的字段由this的锁保护，mAtlas的释放还要拿mAtlasLock的写锁
+     */
+    private Map<String, SpriteFrame> mFrames;
+    private boolean mUseRegion;
+    private Bitmap mAtlas;
+    private BitmapRegionDecoder mRegionDecoder;
+
+    /**
+     * 精灵图和帧列表都是文件
+     *
+     * @param duration 帧列表里没有写时长的帧的时长，毫秒
+     */
+    public SpriteSheetFrameSource(File atlas, File manifest, int duration, @SpriteSheetMode int mode) {
+        this(null, atlas.getAbsolutePath(), manifest.getAbsolutePath(), duration, mode);
+    }
+
+    public SpriteSheetFrameSource(File atlas, File manifest, int duration) {
+        this(atlas, manifest, duration, SpriteSheetMode.AUTO);
+    }
+
+    /**
+     * 精灵图和帧列表都在assets里
+     *
+     * @param atlasPath    assets里精灵图的路径
+     * @param manifestPath assets里帧列表的路径
+     * @param duration     帧列表里没有写时长的帧的时长，毫秒
+     */
+    public SpriteSheetFrameSource(AssetManager assetManager, String atlasPath, String manifestPath,
+                                  int duration, @SpriteSheetMode int mode) {
+        mAssetManager = assetManager;
+        mAtlasPath = atlasPath;
+        mManifestPath = manifestPath;
+        mDuration = duration;
+        mMode = mode;
+    }
+
+    public SpriteSheetFrameSource(AssetManager assetManager, String atlasPath, String manifestPath, int duration) {
+        this(assetManager, atlasPath, manifestPath, duration, SpriteSheetMode.AUTO);
+    }
+
+    @Override
+    public String getKey() {
+        return (mAssetManager == null ? "sprite:" : "sprite-asset:")
+                + getIdentity(mAtlasPath, mManifestPath, mAssetManager == null);
+    }
+
+    @Override
+    public FrameList loadFrameList() {
+        List<FrameItem> itemList = new ArrayList<>();
+        synchronized (this) {
+            if (!ensureOpen()) {
+                return null;
+            }
+            for (SpriteFrame frame : mFrames.values()) {
+                itemList.add(FrameParseUtil.newFrameItem(frame.name, frame.duration));
+            }
+        }
+        final boolean isFile = mAssetManager == null;
+        String fileName = (isFile ? "sprite_" : "sprite_asset_") + new File(mAtlasPath).getName() + "_"
+                + Long.toHexString(BlobCacheUtil.getCacheKey(getIdentity(mAtlasPath, mManifestPath, isFile)));
+        return FrameParseUtil.newFrameList(fileName, itemList, isFile ? 1 : FrameParseUtil.getPackageVersion());
+    }
+
+    @Override
+    public Bitmap decodeFrame(FrameItem frameItem, BitmapFactory.Options options) {
+        final SpriteFrame frame;
+        final BitmapRegionDecoder regionDecoder;
+        synchronized (this) {
+            if (!ensureOpen()) {
+                return null;
+            }
+            frame = mFrames.get(frameItem.getDrawableName());
+            regionDecoder = mUseRegion ? mRegionDecoder : null;
+        }
+        if (frame == null) {
+            Log.e(TAG, "decodeFrame, no frame, name=" + frameItem.getDrawableName() + ", atlas=" + mAtlasPath);
+            return null;
+        }
+        final int sampleSize = Math.max(options.inSampleSize, 1);
+        final int width = getSampledSize(frame.width, sampleSize);
+        final int height = getSampledSize(frame.height, sampleSize);
+        if (options.inJustDecodeBounds) {
+            options.outWidth = width;
+            options.outHeight = height;
+            return null;
+        }
+
+        Bitmap inBitmap = options.inBitmap;
+        if (inBitmap != null && (!inBitmap.isMutable() || inBitmap.isRecycled()
+                || inBitmap.getWidth() != width || inBitmap.getHeight() != height)) {
+            // 尺寸不同的inBitmap不复用，和BitmapFactory一样由调用方处理
+            options.inBitmap = null;
+        }
+        try {
+            if (regionDecoder != null) {
+                return regionDecoder.decodeRegion(new Rect(frame.left, frame.top,
+                        frame.left + frame.width, frame.top + frame.height), options);
+            }
+            return copyFrame(frame, width, height, options.inBitmap);
+        } catch (Exception ex) {
+            // 解码时close了
+            ex.printStackTrace();
+            Log.e(TAG, "decodeFrame, ex: " + ex + ", name=" + frame.name);
+            return null;
+        }
+    }
+
+    /**
+     * 从解码好的精灵图里复制出一帧。复制时只拿读锁，多个解码线程可以同时复制，复制时精灵图不会被释放
+     */
+    private Bitmap copyFrame(SpriteFrame frame, int width, int height, Bitmap inBitmap) {
+        mAtlasLock.readLock().lock();
+        try {
+            Bitmap atlas = getAtlas();
+            if (atlas == null) {
+                return null;
+            }
+            Bitmap bitmap = inBitmap;
+            if (bitmap == null || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+                bitmap = BitmapPool.getInstance().get(width, height, Bitmap.Config.ARGB_8888);
+            }
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } else {
+                bitmap.eraseColor(Color.TRANSPARENT);
+            }
+            Canvas canvas = new Canvas(bitmap);
+            canvas.drawBitmap(atlas, new Rect(frame.left, frame.top, frame.left + frame.width, frame.top + frame.height),
+                    new Rect(0, 0, width, height), mPaint);
+            return bitmap;
+        } finally {
+            mAtlasLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 返回常驻的精灵图，被释放了就重新解码，已经close时返回null
+     */
+    private synchronized Bitmap getAtlas() {
+        if (mFrames == null) {
+            // 已经close了
+            return null;
+        }
+        if (mAtlas == null || mAtlas.isRecycled()) {
+            mAtlas = decodeAtlas();
+        }
+        return mAtlas;
+    }
+
+    /**
+     * 内存不足时释放常驻的精灵图，等正在进行的复制结束后再释放
+     */
+    @Override
+    public long onTrimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0;
+        }
+        mAtlasLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (mAtlas == null) {
+                    return 0;
+                }
+                long bytes = mAtlas.getByteCount();
+                mAtlas.recycle();
+                mAtlas = null;
+                Log.i(TAG, "onTrimMemory, level=" + level + ", released=" + bytes + ", atlas=" + mAtlasPath);
+                return bytes;
+            }
+        } finally {
+            mAtlasLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        FrameMemoryGovernor.getInstance().unregister(this);
+        mAtlasLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (mAtlas != null) {
+                    mAtlas.recycle();
+                    mAtlas = null;
+                }
+                if (mRegionDecoder != null) {
+                    mRegionDecoder.recycle();
+                    mRegionDecoder = null;
+                }
+                mFrames = null;
+            }
+        } finally {
+            mAtlasLock.writeLock().unlock();
+        }
+    }
+
+    private boolean ensureOpen() {
+        if (mFrames != null) {
+            return true;
+        }
+        long t1 = System.currentTimeMillis();
+        InputStream in = null;
+        try {
+            in = open(mManifestPath);
+            List<SpriteFrame> frames = parseManifest(new BufferedReader(new InputStreamReader(in, "UTF-8")),
+                    mDuration);
+            in.close();
+            in = null;
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            in = open(mAtlasPath);
+            BitmapFactory.decodeStream(in, null, options);
+            in.close();
+            in = null;
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                Log.e(TAG, "ensureOpen, atlas decode failed, atlas=" + mAtlasPath);
+                return false;
+            }
+            final int atlasWidth = options.outWidth;
+            final int atlasHeight = options.outHeight;
+
+            Map<String, SpriteFrame> frameMap = new LinkedHashMap<>();
+            for (SpriteFrame frame : frames) {
+                if (frame.left + frame.width > atlasWidth || frame.top + frame.height > atlasHeight) {
+                    Log.w(TAG, "ensureOpen, frame out of atlas, name=" + frame.name);
+                    continue;
+                }
+                frameMap.put(frame.name, frame);
+            }
+
+            mUseRegion = shouldUseRegion(mMode, atlasWidth, atlasHeight, DEFAULT_REGION_THRESHOLD);
+            if (mUseRegion) {
+                if (mAssetManager == null) {
+                    mRegionDecoder = BitmapRegionDecoder.newInstance(mAtlasPath, false);
+                } else {
+                    in = open(mAtlasPath);
+                    mRegionDecoder = BitmapRegionDecoder.newInstance(in, false);
+                }
+                if (mRegionDecoder == null) {
+                    return false;
+                }
+            } else {
+                FrameMemoryGovernor.getInstance().register(this);
+            }
+            mFrames = frameMap;
+            Log.i(TAG, "ensureOpen, frames=" + frameMap.size() + ", atlas=" + atlasWidth + "x" + atlasHeight
+                    + ", region=" + mUseRegion + ", time=" + (System.currentTimeMillis() - t1));
+            return true;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "ensureOpen, ex: " + ex + ", atlas=" + mAtlasPath + ", manifest=" + mManifestPath);
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private Bitmap decodeAtlas() {
+        long t1 = System.currentTimeMillis();
+        InputStream in = null;
+        try {
+            in = open(mAtlasPath);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            Bitmap atlas = BitmapFactory.decodeStream(in, null, options);
+            Log.i(TAG, "decodeAtlas, success=" + (atlas != null) + ", time=" + (System.currentTimeMillis() - t1));
+            return atlas;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "decodeAtlas, ex: " + ex + ", atlas=" + mAtlasPath);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private InputStream open(String path) throws IOException {
+        return mAssetManager == null ? new FileInputStream(path) : mAssetManager.open(path);
+    }
+
+    /**
+     * 解析帧列表文件，格式错误或者名字重复时抛出IOException
+     *
+     * @param duration 没有写时长的帧的时长
+     */
+    static List<SpriteFrame> parseManifest(BufferedReader reader, int duration) throws IOException {
+        List<SpriteFrame> frames = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 5 && fields.length != 6) {
+                throw new IOException("invalid sprite frame, line " + lineNumber + ": " + line);
+            }
+            try {
+                SpriteFrame frame = new SpriteFrame(fields[0],
+                        Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+                        fields.length == 6 ? Integer.parseInt(fields[5]) : duration);
+                if (frame.left < 0 || frame.top < 0 || frame.width <= 0 || frame.height <= 0) {
+                    throw new IOException("invalid sprite frame rect, line " + lineNumber + ": " + line);
+                }
+                if (!names.add(frame.name)) {
+                    throw new IOException("duplicate sprite frame name, line " + lineNumber + ": " + line);
+                }
+                frames.add(frame);
+            } catch (NumberFormatException ex) {
+                throw new IOException("invalid sprite frame, line " + lineNumber + ": " + line);
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * 精灵图和帧列表的完整路径，文件还带上修改时间和大小，任意一个变化时得到不同的结果
+     */
+    static String getIdentity(String atlasPath, String manifestPath, boolean isFile) {
+        StringBuilder builder = new StringBuilder(atlasPath).append('|').append(manifestPath);
+        if (isFile) {
+            File atlas = new File(atlasPath);
+            File manifest = new File(manifestPath);
+            builder.append('|').append(atlas.lastModified()).append(':').append(atlas.length())
+                    .append('|').append(manifest.lastModified()).append(':').append(manifest.length());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 和BitmapFactory的inSampleSize一样向下取整，至少1个像素
+     */
+    static int getSampledSize(int size, int sampleSize) {
+        return Math.max(size / Math.max(sampleSize, 1), 1);
+    }
+
+    static boolean shouldUseRegion(@SpriteSheetMode int mode, int atlasWidth, int atlasHeight, long threshold) {
+        if (mode == SpriteSheetMode.COPY) {
+            return false;
+        }
+        if (mode == SpriteSheetMode.REGION) {
+            return true;
+        }
+        return (long) atlasWidth * atlasHeight * 4 > threshold;
+    }
+}
@@ -0,0 +1,36 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static com.hewuzhao.frameanimation.framesource.SpriteSheetMode.AUTO;
+import static com.hewuzhao.frameanimation.framesource.SpriteSheetMode.COPY;
+import static com.hewuzhao.frameanimation.framesource.SpriteSheetMode.REGION;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 从精灵图取出每一帧的方式
+ */
+@IntDef({AUTO, COPY, REGION})
+@Retention(RetentionPolicy.SOURCE)
+public @interface SpriteSheetMode {
+
+    /**
+     * 精灵图解码后不超过{@link SpriteSheetFrameSource#DEFAULT_REGION_THRESHOLD}时用COPY，否则用REGION
+     */
+    int AUTO = 0;
+
+    /**
+     * 整张精灵图解码到内存，每帧从中复制出对应的区域
+     */
+    int COPY = 1;
+
+    /**
+     * 用BitmapRegionDecoder每帧只解码对应的区域，精灵图不常驻内存
+     */
+    int REGION = 2;
+}
@@ -0,0 +1,395 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.hewuzhao.frameanimation.frameview.FrameItem;
+import com.hewuzhao.frameanimation.frameview.FrameList;
+import com.hewuzhao.frameanimation.utils.FrameParseUtil;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 直接读取zip文件里的图片，不解压，例如下载的动画包。
+ * <p>
+ * 第一次使用时读取zip末尾的central directory，记录每个文件的压缩方式、大小和local header的位置；
+ * 解码时按位置读取（FileChannel的按位置读取，多个解码线程可以同时读），stored的文件直接解码，deflated的文件边解压边解码。
+ * 不支持zip64和加密的文件。缓存文件名带上zip的修改时间和大小，替换zip后不会读到旧的缓存。
+ * 不再使用时调用{@link #close()}关闭文件。
+ */
+public class ZipFrameSource implements FrameSource, Closeable {
+    private static final String TAG = "ZipFrameSource";
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final int FLAG_ENCRYPTED = 1;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * central directory里的一个文件
+     */
+    static class Entry {
+        final String name;
+        final int method;
+        final long compressedSize;
+        final long size;
+        final long headerOffset;
+
+        /**
+         * 数据开始的位置，第一次读取时从local header算出，-1表示还没算
+         */
+        volatile long dataOffset = -1;
+
+        Entry(String name, int method, long compressedSize, long size, long headerOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.headerOffset = headerOffset;
+        }
+    }
+
+    private final File mFile;
+    private final String mDir;
+    private final int mDuration;
+
+    /**
+     * 下面的字段由this的锁保护
+     */
+    private RandomAccessFile mRandomAccessFile;
+    private FileChannel mChannel;
+    private Map<String, Entry> mEntries;
+
+    /**
+     * @param file     zip文件
+     * @param dir      zip里的目录，""表示根目录
+     * @param duration 每帧的时长，毫秒
+     */
+    public ZipFrameSource(File file, String dir, int duration) {
+        mFile = file;
+        if (dir == null || dir.isEmpty()) {
+            mDir = "";
+        } else {
+            mDir = dir.endsWith("/") ? dir : dir + "/";
+        }
+        mDuration = duration;
+    }
+
+    public ZipFrameSource(File file, int duration) {
+        this(file, "", duration);
+    }
+
+    @Override
+    public String getKey() {
+        return "zip:" + mFile.getAbsolutePath() + "!" + mDir;
+    }
+
+    @Override
+    public FrameList loadFrameList() {
+        List<String> names = new ArrayList<>();
+        synchronized (this) {
+            if (!ensureOpen()) {
+                return null;
+            }
+            for (String name : mEntries.keySet()) {
+                if (name.length() > mDir.length() && name.startsWith(mDir)
+                        && name.indexOf('/', mDir.length()) < 0) {
+                    names.add(name.substring(mDir.length()));
+                }
+            }
+        }
+        String fileName = "zip_" + mFile.getName() + "_" + mDir + "_"
+                + Long.toHexString(mFile.lastModified() ^ mFile.length());
+        return FrameParseUtil.parse(fileName, names, mDuration);
+    }
+
+    @Override
+    public Bitmap decodeFrame(FrameItem frameItem, BitmapFactory.Options options) {
+        InputStream in = null;
+        try {
+            in = openStream(frameItem.getDrawableName());
+            if (in == null) {
+                return null;
+            }
+            return BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "decodeFrame, ex: " + ex + ", name=" + frameItem.getDrawableName());
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mRandomAccessFile != null) {
+            try {
+                mRandomAccessFile.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        mRandomAccessFile = null;
+        mChannel = null;
+        mEntries = null;
+    }
+
+    /**
+     * 打开dir下名字为name的文件，不存在或者不支持时返回null
+     */
+    InputStream openStream(String name) throws IOException {
+        Entry entry;
+        FileChannel channel;
+        synchronized (this) {
+            if (!ensureOpen()) {
+                return null;
+            }
+            entry = mEntries.get(mDir + name);
+            channel = mChannel;
+        }
+        if (entry == null) {
+            Log.e(TAG, "openStream, no entry, name=" + name + ", file=" + mFile);
+            return null;
+        }
+        long dataOffset = entry.dataOffset;
+        if (dataOffset < 0) {
+            dataOffset = readDataOffset(channel, entry);
+            entry.dataOffset = dataOffset;
+        }
+        InputStream in = new ChannelInputStream(channel, dataOffset, entry.compressedSize);
+        if (entry.method == METHOD_STORED) {
+            return new BufferedInputStream(in, BUFFER_SIZE);
+        }
+        return new EntryInflaterInputStream(in);
+    }
+
+    private boolean ensureOpen() {
+        if (mEntries != null) {
+            return true;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "r");
+            FileChannel channel = file.getChannel();
+            long t1 = System.currentTimeMillis();
+            Map<String, Entry> entries = readEntries(channel);
+            Log.i(TAG, "ensureOpen, entries=" + entries.size() + ", time=" + (System.currentTimeMillis() - t1)
+                    + ", file=" + mFile);
+            mRandomAccessFile = file;
+            mChannel = channel;
+            mEntries = entries;
+            return true;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "ensureOpen, ex: " + ex + ", file=" + mFile);
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 读取central directory，key是文件在zip里的完整路径
+     */
+    static Map<String, Entry> readEntries(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        if (fileSize < EOCD_SIZE) {
+            throw new ZipException("file is too small, size=" + fileSize);
+        }
+        // end of central directory在文件末尾，后面可能跟着最多64K的注释
+        final int tailSize = (int) Math.min(fileSize, EOCD_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(channel, fileSize - tailSize, tailSize);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new ZipException("end of central directory not found");
+        }
+        final int count = tail.getShort(eocd + 10) & 0xFFFF;
+        final long cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        final long cenOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || cenOffset == 0xFFFFFFFFL) {
+            throw new ZipException("zip64 is not supported");
+        }
+        if (cenOffset + cenSize > fileSize - tailSize + eocd) {
+            throw new ZipException("invalid central directory, offset=" + cenOffset + ", size=" + cenSize);
+        }
+
+        ByteBuffer cen = read(channel, cenOffset, (int) cenSize);
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (position + CEN_HEADER_SIZE > cenSize || cen.getInt(position) != CEN_SIGNATURE) {
+                throw new ZipException("invalid central directory entry, index=" + i);
+            }
+            final int flags = cen.getShort(position + 8) & 0xFFFF;
+            final int method = cen.getShort(position + 10) & 0xFFFF;
+            final long compressedSize = cen.getInt(position + 20) & 0xFFFFFFFFL;
+            final long size = cen.getInt(position + 24) & 0xFFFFFFFFL;
+            final int nameLength = cen.getShort(position + 28) & 0xFFFF;
+            final int extraLength = cen.getShort(position + 30) & 0xFFFF;
+            final int commentLength = cen.getShort(position + 32) & 0xFFFF;
+            final long headerOffset = cen.getInt(position + 42) & 0xFFFFFFFFL;
+            if (position + CEN_HEADER_SIZE + nameLength > cenSize) {
+                throw new ZipException("invalid central directory entry, index=" + i);
+            }
+            String name = new String(cen.array(), position + CEN_HEADER_SIZE, nameLength, UTF_8);
+            position += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+            if ((flags & FLAG_ENCRYPTED) != 0 || (method != METHOD_STORED && method != METHOD_DEFLATED)) {
+                Log.w(TAG, "readEntries, unsupported entry, name=" + name + ", method=" + method);
+                continue;
+            }
+            entries.put(name, new Entry(name, method, compressedSize, size, headerOffset));
+        }
+        return entries;
+    }
+
+    /**
+     * local header里的文件名、extra长度可能和central directory里的不一样，按local header算数据的位置
+     */
+    private static long readDataOffset(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer header = read(channel, entry.headerOffset, LOC_HEADER_SIZE);
+        if (header.getInt(0) != LOC_SIGNATURE) {
+            throw new ZipException("invalid local header, name=" + entry.name);
+        }
+        final int nameLength = header.getShort(26) & 0xFFFF;
+        final int extraLength = header.getShort(28) & 0xFFFF;
+        return entry.headerOffset + LOC_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("unexpected end of file, position=" + position + ", size=" + size);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * 按位置读取channel里的一段，不改变channel的位置，多个线程可以同时读
+     */
+    private static class ChannelInputStream extends InputStream {
+        private final FileChannel mChannel;
+        private long mPosition;
+        private long mRemaining;
+
+        ChannelInputStream(FileChannel channel, long position, long length) {
+            mChannel = channel;
+            mPosition = position;
+            mRemaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (mRemaining <= 0) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            final int count = mChannel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, mRemaining)), mPosition);
+            if (count < 0) {
+                throw new EOFException("unexpected end of zip entry");
+            }
+            mPosition += count;
+            mRemaining -= count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(mRemaining, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * 解压deflated的文件，关闭时释放Inflater；
+     * 输入读完后补一个字节，nowrap模式的Inflater需要它才能结束，和ZipFile的处理一样
+     */
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean mEof;
+
+        EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true), BUFFER_SIZE);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (mEof) {
+                throw new EOFException("unexpected end of zip entry");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                mEof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            inf.end();
+        }
+    }
+}
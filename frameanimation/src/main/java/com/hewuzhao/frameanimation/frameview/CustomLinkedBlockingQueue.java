@@ -40,8 +40,10 @@ public class CustomLinkedBlockingQueue {
     private final Condition notFull = putLock.newCondition();
     /**
      * The capacity bound, or Integer.MAX_VALUE if none
+     * <p>
+     * 可以在使用中调整，变小时已经在队列里的元素不受影响，取到低于新容量后才能继续放入
      */
-    private final int capacity;
+    private volatile int capacity;
     /**
      * the first element in the queue
      */
@@ -83,7 +85,7 @@ public class CustomLinkedBlockingQueue {
              * signalled if it ever changes from capacity. Similarly
              * for all other uses of count in other wait guards.
              */
-            while (count.get() == capacity && !destroy.get()) {
+            while (count.get() >= capacity && !destroy.get()) {
                 notFull.await();
             }
             enqueue(bitmap);
@@ -107,7 +109,7 @@ public class CustomLinkedBlockingQueue {
             throw new NullPointerException();
         }
         final AtomicInteger count = this.count;
-        if (count.get() == capacity) {
+        if (count.get() >= capacity) {
             return false;
         }
         int c = -1;
@@ -130,6 +132,38 @@ public class CustomLinkedBlockingQueue {
         return c >= 0;
     }
 
+    /**
+     * 不阻塞，队列为空时返回null
+     */
+    public LinkedBitmap poll() {
+        if (destroy.get()) {
+            return null;
+        }
+        final AtomicInteger count = this.count;
+        if (count.get() == 0) {
+            return null;
+        }
+        LinkedBitmap x = null;
+        int c = -1;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lock();
+        try {
+            if (count.get() > 0) {
+                x = dequeue();
+                c = count.getAndDecrement();
+                if (c > 1) {
+                    notEmpty.signal();
+                }
+            }
+        } finally {
+            takeLock.unlock();
+        }
+        if (c >= capacity) {
+            signalNotFull();
+        }
+        return x;
+    }
+
     public LinkedBitmap take() throws InterruptedException {
         if (destroy.get()) {
             return null;
@@ -151,7 +185,7 @@ public class CustomLinkedBlockingQueue {
         } finally {
             takeLock.unlock();
         }
-        if (c == capacity) {
+        if (c >= capacity) {
             signalNotFull();
         }
         return x;
@@ -161,8 +195,34 @@ public class CustomLinkedBlockingQueue {
         return count.get();
     }
 
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 调整容量，变大时唤醒等待放入的线程
+     */
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final int old = this.capacity;
+        this.capacity = capacity;
+        if (capacity > old) {
+            final ReentrantLock putLock = this.putLock;
+            putLock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                putLock.unlock();
+            }
+        }
+    }
+
     /**
      * insert element into the end of queue
+     * <p>
+     * head和tail在队列为空和只有一个元素时会同时被put和take修改，链表操作需要和dequeue互斥
      *
      * @param bitmap
      */
@@ -170,13 +230,14 @@ public class CustomLinkedBlockingQueue {
         if (destroy.get()) {
             return;
         }
-        if (head == null) {
-            head = bitmap;
-            tail = bitmap;
-            bitmap.next = null;
-        } else {
-            tail.next = bitmap;
+        synchronized (this) {
             bitmap.next = null;
+            if (tail == null) {
+                head = bitmap;
+            } else {
+                tail.next = bitmap;
+            }
+            tail = bitmap;
         }
     }
 
@@ -189,13 +250,18 @@ public class CustomLinkedBlockingQueue {
         if (destroy.get()) {
             return null;
         }
-        LinkedBitmap p = head;
-        if (p == null) {
-            return null;
-        } else {
-            head = head.next;
+        synchronized (this) {
+            LinkedBitmap p = head;
+            if (p == null) {
+                return null;
+            }
+            head = p.next;
+            if (head == null) {
+                tail = null;
+            }
+            p.next = null;
+            return p;
         }
-        return p;
     }
 
     /**
@@ -272,10 +338,7 @@ public class CustomLinkedBlockingQueue {
                 return;
             }
             while (p != null) {
-                if (p.bitmap != null && !p.bitmap.isRecycled()) {
-                    p.bitmap.recycle();
-                }
-                p.bitmap = null;
+                p.recycle();
                 p = p.next;
             }
             head = tail = null;
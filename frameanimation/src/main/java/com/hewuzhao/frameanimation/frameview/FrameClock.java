@@ -0,0 +1,28 @@
+package com.hewuzhao.frameanimation.frameview;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 绘制线程安排下一帧用的时钟，时间单位和SystemClock.uptimeMillis一致。
+ * <p>
+ * 同一时间只有一个等待中的回调，{@link #schedule(Runnable, long)}会替换之前还没执行的回调。
+ * 测试时可以用假的时钟替换，统计实际显示时间和时间线的偏差。
+ */
+public interface FrameClock {
+
+    /**
+     * 当前时间
+     */
+    long uptimeMillis();
+
+    /**
+     * 在targetTime执行callback，已经过了targetTime时尽快执行
+     */
+    void schedule(Runnable callback, long targetTime);
+
+    /**
+     * 取消等待中的回调
+     */
+    void cancel();
+}
@@ -8,8 +8,23 @@ public class FrameItem {
 
     private String drawableName;
 
+    /**
+     * drawable的资源id，解析时从xml里直接得到
+     */
+    private int resId;
+
     private int duration;
 
+    /**
+     * 缓存的key，解析时算好，读缓存时不再处理字符串
+     */
+    private long cacheKey;
+
+    /**
+     * drawableName的UTF-16LE字节，缓存数据的末尾会存一份，用于校验
+     */
+    private byte[] cacheKeyBytes;
+
     public String getDrawableName() {
         return drawableName;
     }
@@ -18,6 +33,30 @@ public class FrameItem {
         this.drawableName = drawableName;
     }
 
+    public int getResId() {
+        return resId;
+    }
+
+    public void setResId(int resId) {
+        this.resId = resId;
+    }
+
+    public long getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(long cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    public byte[] getCacheKeyBytes() {
+        return cacheKeyBytes;
+    }
+
+    public void setCacheKeyBytes(byte[] cacheKeyBytes) {
+        this.cacheKeyBytes = cacheKeyBytes;
+    }
+
     public int getDuration() {
         return duration;
     }
@@ -1,5 +1,8 @@
 package com.hewuzhao.frameanimation.frameview;
 
+import com.hewuzhao.frameanimation.blobcache.BlobCodecType;
+import com.hewuzhao.frameanimation.blobcache.BlobSyncPolicy;
+import com.hewuzhao.frameanimation.blobcache.BlobVerifyPolicy;
 import com.hewuzhao.frameanimation.utils.CommonUtil;
 
 import java.util.List;
@@ -18,6 +21,34 @@ public class FrameList {
 
     private int maxBytes;
 
+    @BlobSyncPolicy
+    private int syncPolicy = BlobSyncPolicy.INTERVAL;
+
+    private int syncValue = 1000;
+
+    @BlobCodecType
+    private int codec = BlobCodecType.NONE;
+
+    @BlobVerifyPolicy
+    private int verifyPolicy = BlobVerifyPolicy.FIRST_READ;
+
+    private int verifySampleRate = 100;
+
+    /**
+     * 差异编码的完整帧间隔，0表示不使用差异编码
+     */
+    private int deltaInterval;
+
+    /**
+     * 缓存时是否把不透明的帧存成RGB_565，只有透明度的帧存成ALPHA_8
+     */
+    private boolean lowBitDepth;
+
+    /**
+     * 是否按view的尺寸用inSampleSize缩小解码，缩小后的帧单独缓存
+     */
+    private boolean decodeToViewSize;
+
     private boolean oneShot;
 
     private List<FrameItem> frameItemList;
@@ -54,6 +85,73 @@ public class FrameList {
         this.maxBytes = maxBytes;
     }
 
+    @BlobSyncPolicy
+    public int getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public void setSyncPolicy(@BlobSyncPolicy int syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    public int getSyncValue() {
+        return syncValue;
+    }
+
+    public void setSyncValue(int syncValue) {
+        this.syncValue = syncValue;
+    }
+
+    @BlobCodecType
+    public int getCodec() {
+        return codec;
+    }
+
+    public void setCodec(@BlobCodecType int codec) {
+        this.codec = codec;
+    }
+
+    @BlobVerifyPolicy
+    public int getVerifyPolicy() {
+        return verifyPolicy;
+    }
+
+    public void setVerifyPolicy(@BlobVerifyPolicy int verifyPolicy) {
+        this.verifyPolicy = verifyPolicy;
+    }
+
+    public int getVerifySampleRate() {
+        return verifySampleRate;
+    }
+
+    public void setVerifySampleRate(int verifySampleRate) {
+        this.verifySampleRate = verifySampleRate;
+    }
+
+    public int getDeltaInterval() {
+        return deltaInterval;
+    }
+
+    public void setDeltaInterval(int deltaInterval) {
+        this.deltaInterval = deltaInterval;
+    }
+
+    public boolean isLowBitDepth() {
+        return lowBitDepth;
+    }
+
+    public void setLowBitDepth(boolean lowBitDepth) {
+        this.lowBitDepth = lowBitDepth;
+    }
+
+    public boolean isDecodeToViewSize() {
+        return decodeToViewSize;
+    }
+
+    public void setDecodeToViewSize(boolean decodeToViewSize) {
+        this.decodeToViewSize = decodeToViewSize;
+    }
+
     public List<FrameItem> getFrameItemList() {
         return frameItemList;
     }
@@ -74,6 +172,30 @@ public class FrameList {
         return CommonUtil.size(frameItemList);
     }
 
+    /**
+     * 按播放顺序的每帧缓存key
+     */
+    public long[] getCacheKeys() {
+        int size = getFrameItemSize();
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = frameItemList.get(i).getCacheKey();
+        }
+        return keys;
+    }
+
+    /**
+     * 按播放顺序的每帧缓存key字节
+     */
+    public byte[][] getCacheKeyBytes() {
+        int size = getFrameItemSize();
+        byte[][] keyBytes = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            keyBytes[i] = frameItemList.get(i).getCacheKeyBytes();
+        }
+        return keyBytes;
+    }
+
     public FrameItem getFrameItemByIndex(int index) {
         if (index < 0 || index >= getFrameItemSize()) {
             return null;
@@ -0,0 +1,172 @@
+package com.hewuzhao.frameanimation.frameview;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 根据每帧的解码耗时和播放间隔，调整提前解码的帧数（【已解码Bitmap存储队列】的容量）。
+ * <p>
+ * 每{@link #WINDOW}帧评估一次：窗口内最慢的一帧解码耗时需要几帧的播放时间来掩盖，就至少提前解码几帧；
+ * 绘制时没有已解码的帧（卡顿）立即加一帧，每个窗口最多加一次；连续两个窗口没有卡顿并且提前解码的帧数有富余时减一帧。
+ * 提前解码的帧数不超过内存预算能容纳的帧数。
+ */
+public class FramePrefetchController {
+
+    /**
+     * 评估的窗口大小，单位：帧
+     */
+    static final int WINDOW = 30;
+
+    /**
+     * 提前解码的最少、最多帧数
+     */
+    public static final int MIN_DEPTH = 1;
+    public static final int MAX_DEPTH = 8;
+
+    private final int mInitialDepth;
+
+    private int mDepth;
+
+    /**
+     * 内存预算，单位：字节，以及每帧bitmap的大小
+     */
+    private long mBudgetBytes;
+    private long mFrameBytes;
+
+    /**
+     * 同时解码的线程数，每个线程也占用一帧的内存
+     */
+    private int mWorkerCount = 1;
+
+    /**
+     * 当前窗口内的帧数、最慢的一帧解码耗时与其播放间隔的比值、卡顿次数
+     */
+    private int mWindowFrames;
+    private float mWindowPeakRatio;
+    private int mWindowStalls;
+    private boolean mGrewInWindow;
+
+    /**
+     * 连续没有卡顿的窗口数
+     */
+    private int mCalmWindows;
+
+    /**
+     * 总的卡顿次数
+     */
+    private int mStallCount;
+
+    public FramePrefetchController(int initialDepth, long budgetBytes) {
+        mInitialDepth = clamp(initialDepth, MIN_DEPTH, MAX_DEPTH);
+        mDepth = mInitialDepth;
+        mBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * 切换动画时重新开始统计
+     */
+    public synchronized void reset(int workerCount) {
+        mWorkerCount = Math.max(1, workerCount);
+        mFrameBytes = 0;
+        mDepth = mInitialDepth;
+        mStallCount = 0;
+        mCalmWindows = 0;
+        resetWindow();
+    }
+
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        mBudgetBytes = budgetBytes;
+        mDepth = Math.min(mDepth, getMaxDepth());
+    }
+
+    /**
+     * 每提交一帧调用一次
+     *
+     * @param decodeMillis 这一帧的解码耗时
+     * @param duration     这一帧的播放间隔
+     * @param frameBytes   这一帧bitmap占用的内存
+     */
+    public synchronized void onFrameDecoded(long decodeMillis, int duration, long frameBytes) {
+        if (frameBytes > mFrameBytes) {
+            mFrameBytes = frameBytes;
+            mDepth = Math.min(mDepth, getMaxDepth());
+        }
+        float ratio = (float) decodeMillis / Math.max(duration, 1);
+        if (ratio > mWindowPeakRatio) {
+            mWindowPeakRatio = ratio;
+        }
+        if (++mWindowFrames < WINDOW) {
+            return;
+        }
+
+        final int needed = (int) Math.ceil(mWindowPeakRatio);
+        if (mWindowStalls > 0) {
+            mCalmWindows = 0;
+        } else {
+            mCalmWindows++;
+        }
+        if (needed > mDepth) {
+            mDepth = needed;
+        } else if (mCalmWindows >= 2 && needed < mDepth) {
+            mDepth--;
+            mCalmWindows = 0;
+        }
+        mDepth = clamp(mDepth, MIN_DEPTH, getMaxDepth());
+        resetWindow();
+    }
+
+    /**
+     * 绘制时没有已解码的帧
+     */
+    public synchronized void onStall() {
+        mStallCount++;
+        mWindowStalls++;
+        mCalmWindows = 0;
+        if (!mGrewInWindow) {
+            mGrewInWindow = true;
+            mDepth = clamp(mDepth + 1, MIN_DEPTH, getMaxDepth());
+        }
+    }
+
+    /**
+     * 内存不足时提前解码的帧数降到最少，之后重新根据解码耗时和卡顿增加
+     */
+    public synchronized void trim() {
+        mDepth = MIN_DEPTH;
+        mCalmWindows = 0;
+        resetWindow();
+    }
+
+    /**
+     * 当前提前解码的帧数
+     */
+    public synchronized int getDepth() {
+        return mDepth;
+    }
+
+    public synchronized int getStallCount() {
+        return mStallCount;
+    }
+
+    /**
+     * 内存预算能容纳的最多提前解码帧数，还不知道每帧大小时按MAX_DEPTH计算
+     */
+    private int getMaxDepth() {
+        if (mFrameBytes <= 0 || mBudgetBytes <= 0) {
+            return MAX_DEPTH;
+        }
+        long frames = mBudgetBytes / mFrameBytes - mWorkerCount;
+        return (int) Math.max(MIN_DEPTH, Math.min(frames, MAX_DEPTH));
+    }
+
+    private void resetWindow() {
+        mWindowFrames = 0;
+        mWindowPeakRatio = 0;
+        mWindowStalls = 0;
+        mGrewInWindow = false;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(value, max));
+    }
+}
@@ -0,0 +1,124 @@
+package com.hewuzhao.frameanimation.frameview;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 多个线程并行解码时，按解码顺序号把解码完成的帧重新排好序。
+ * <p>
+ * 每个解码线程先{@link #claim()}领取顺序号，解码完成后{@link #put(int, LinkedBitmap)}放回；
+ * {@link #pollNext()}只按顺序号从小到大取出，前面的帧还没解码完成时返回null。
+ * 顺序号在{@link #reset()}之后不会重新从0开始，reset之前领取的顺序号放回时会被丢弃。
+ */
+public class FrameReorderBuffer {
+
+    /**
+     * 已领取还没取出的帧的槽位，下标是顺序号对容量取余
+     */
+    private final LinkedBitmap[] mSlots;
+    private final int[] mSequences;
+
+    /**
+     * 下一个领取的顺序号
+     */
+    private int mNextClaim;
+
+    /**
+     * 下一个取出的顺序号
+     */
+    private int mNextPoll;
+
+    /**
+     * 最近一次reset时的顺序号，之前领取的都已失效
+     */
+    private int mBase;
+
+    /**
+     * @param capacity 同时领取还没取出的帧的最大个数，由调用方保证不会超过
+     */
+    public FrameReorderBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        mSlots = new LinkedBitmap[capacity];
+        mSequences = new int[capacity];
+    }
+
+    /**
+     * 领取下一个顺序号
+     */
+    public synchronized int claim() {
+        return mNextClaim++;
+    }
+
+    /**
+     * 顺序号从最近一次reset开始的序号，用来换算帧的索引
+     */
+    public synchronized int getOrdinal(int sequence) {
+        return sequence - mBase;
+    }
+
+    /**
+     * 放回解码完成的帧
+     *
+     * @return 顺序号在reset之前领取的，或者已经取出过，返回false，帧由调用方处理
+     */
+    public synchronized boolean put(int sequence, LinkedBitmap bitmap) {
+        if (sequence - mNextPoll < 0 || sequence - mNextClaim >= 0) {
+            return false;
+        }
+        if (sequence - mNextPoll >= mSlots.length) {
+            throw new IllegalStateException("too many pending frames, sequence=" + sequence + ", next=" + mNextPoll);
+        }
+        final int slot = slotOf(sequence);
+        mSlots[slot] = bitmap;
+        mSequences[slot] = sequence;
+        return true;
+    }
+
+    /**
+     * 按顺序取出下一帧，还没解码完成时返回null
+     */
+    public synchronized LinkedBitmap pollNext() {
+        final int slot = slotOf(mNextPoll);
+        LinkedBitmap bitmap = mSlots[slot];
+        if (bitmap == null || mSequences[slot] != mNextPoll) {
+            return null;
+        }
+        mSlots[slot] = null;
+        mNextPoll++;
+        return bitmap;
+    }
+
+    /**
+     * 已经解码完成，在等待前面的帧的个数
+     */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (LinkedBitmap bitmap : mSlots) {
+            if (bitmap != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 丢弃所有等待中的帧并回收bitmap，之前领取的顺序号全部失效
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < mSlots.length; i++) {
+            LinkedBitmap bitmap = mSlots[i];
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            mSlots[i] = null;
+        }
+        mBase = mNextClaim;
+        mNextPoll = mNextClaim;
+    }
+
+    private int slotOf(int sequence) {
+        return (sequence & Integer.MAX_VALUE) % mSlots.length;
+    }
+}
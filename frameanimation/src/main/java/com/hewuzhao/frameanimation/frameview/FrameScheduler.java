@@ -0,0 +1,103 @@
+package com.hewuzhao.frameanimation.frameview;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 按{@link FrameTimeline}的绝对时间安排每一帧的绘制，绘制和消息调度的耗时不会逐帧累积。
+ * <p>
+ * 时间线在显示第一帧时开始。不丢帧时，如果某一帧显示得太晚（后一帧的时间都已经到了），
+ * 时间线从这一帧重新开始，之后的帧整体顺延，而不是连续快速绘制去追赶；丢帧时保持原来的时间线。
+ */
+public class FrameScheduler {
+
+    /**
+     * 该显示的帧还没有解码好时，重试的间隔，单位：毫秒
+     */
+    static final int STALL_RETRY_INTERVAL = 16;
+
+    private final FrameClock mClock;
+
+    private FrameTimeline mTimeline;
+
+    /**
+     * 最近一次显示的帧的序号，以及最近一次安排绘制时它的值
+     */
+    private int mLastPresentedOrdinal = -1;
+    private int mScheduledOrdinal = -1;
+
+    public FrameScheduler(FrameClock clock) {
+        mClock = clock;
+    }
+
+    public FrameClock getClock() {
+        return mClock;
+    }
+
+    /**
+     * 切换动画时设置新的时间线
+     */
+    public synchronized void setTimeline(FrameTimeline timeline) {
+        mTimeline = timeline;
+        mLastPresentedOrdinal = -1;
+        mScheduledOrdinal = -1;
+    }
+
+    public synchronized FrameTimeline getTimeline() {
+        return mTimeline;
+    }
+
+    /**
+     * 暂停或者重新开始绘制时调用，之后显示的第一帧重新开始时间线
+     */
+    public synchronized void stop() {
+        mClock.cancel();
+        if (mTimeline != null) {
+            mTimeline.stop();
+        }
+    }
+
+    /**
+     * 显示了第ordinal帧
+     *
+     * @param dropLateFrames 是否丢弃过期的帧，丢帧时太晚显示也不重新开始时间线
+     */
+    public synchronized void onFramePresented(int ordinal, boolean dropLateFrames) {
+        mLastPresentedOrdinal = ordinal;
+        if (mTimeline == null) {
+            return;
+        }
+        final long now = mClock.uptimeMillis();
+        if (!mTimeline.isStarted() || (!dropLateFrames && mTimeline.isLate(ordinal, now))) {
+            mTimeline.start(now, ordinal);
+        }
+    }
+
+    public synchronized int getLastPresentedOrdinal() {
+        return mLastPresentedOrdinal;
+    }
+
+    /**
+     * 安排下一帧的绘制
+     *
+     * @return 安排的时间
+     */
+    public long scheduleNext(Runnable callback) {
+        final long target;
+        synchronized (this) {
+            final long now = mClock.uptimeMillis();
+            if (mTimeline == null || !mTimeline.isStarted() || mLastPresentedOrdinal < 0) {
+                // 还没有显示过帧
+                target = now + STALL_RETRY_INTERVAL;
+            } else if (mScheduledOrdinal == mLastPresentedOrdinal && mTimeline.getPresentationTime(mLastPresentedOrdinal + 1) <= now) {
+                // 上一次安排之后没有显示新的帧，下一帧已经该显示了，稍后再试，避免空转
+                target = now + STALL_RETRY_INTERVAL;
+            } else {
+                target = mTimeline.getPresentationTime(mLastPresentedOrdinal + 1);
+            }
+            mScheduledOrdinal = mLastPresentedOrdinal;
+        }
+        mClock.schedule(callback, target);
+        return target;
+    }
+}
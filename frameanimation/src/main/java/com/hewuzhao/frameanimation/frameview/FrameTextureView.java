@@ -1,5 +1,6 @@
 package com.hewuzhao.frameanimation.frameview;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.ContextWrapper;
 import android.content.res.TypedArray;
@@ -9,9 +10,11 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.SurfaceTexture;
 import android.os.Handler;
-import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.TextureView;
@@ -23,23 +26,31 @@ import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
 import com.hewuzhao.frameanimation.R;
+import com.hewuzhao.frameanimation.bitmappool.BitmapPool;
 import com.hewuzhao.frameanimation.blobcache.BlobCache;
 import com.hewuzhao.frameanimation.blobcache.BlobCacheManager;
 import com.hewuzhao.frameanimation.blobcache.BlobCacheUtil;
+import com.hewuzhao.frameanimation.blobcache.BlobCodecType;
+import com.hewuzhao.frameanimation.blobcache.DeltaReference;
+import com.hewuzhao.frameanimation.blobcache.SealedFrameFile;
 import com.hewuzhao.frameanimation.bytespool.BytesBuffer;
+import com.hewuzhao.frameanimation.executor.FrameExecutor;
+import com.hewuzhao.frameanimation.executor.FrameLane;
+import com.hewuzhao.frameanimation.executor.LanePriority;
+import com.hewuzhao.frameanimation.framesource.FrameSource;
+import com.hewuzhao.frameanimation.framesource.ResourceFrameSource;
+import com.hewuzhao.frameanimation.memory.FrameMemoryGovernor;
 import com.hewuzhao.frameanimation.utils.CommonUtil;
 import com.hewuzhao.frameanimation.utils.FrameParseUtil;
 import com.hewuzhao.frameanimation.utils.MatrixUtil;
-import com.hewuzhao.frameanimation.utils.ResourceUtil;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * @author hewuzhao
@@ -48,13 +59,35 @@ import java.util.concurrent.locks.ReentrantLock;
 public class FrameTextureView extends TextureView {
     private static final String TAG = "FrameTextureView";
 
-    private static final String DRAW_THREAD_NAME = "DRAW_HANDLER_THREAD";
-    private static final String DECODE_THREAD_NAME = "DECODE_HANDLER_THREAD";
+    /**
+     * 初始的提前解码帧数（【已解码Bitmap存储队列】的容量），播放中根据解码耗时调整，见{@link FramePrefetchController}
+     */
+    private static final int INITIAL_PREFETCH_DEPTH = 2;
+
+    /**
+     * 默认的提前解码内存预算，单位：字节
+     */
+    private static final long DEFAULT_PREFETCH_BUDGET = 32L * 1024 * 1024;
+
+    /**
+     * 开始播放前预解码的帧数
+     */
+    private static final int PRELOAD_COUNT = 2;
 
     /**
-     * bitmap缓存个数
+     * 解码线程的最大个数
      */
-    private static final int BUFFER_SIZE = 3;
+    private static final int MAX_DECODE_THREAD_COUNT = 4;
+
+    /**
+     * 同时存在的LinkedBitmap最多个数
+     */
+    private static final int MAX_LINKED_BITMAP_COUNT = FramePrefetchController.MAX_DEPTH + MAX_DECODE_THREAD_COUNT;
+
+    /**
+     * 统计解码帧率的时间窗口，单位毫秒
+     */
+    private static final int DECODE_FPS_WINDOW = 1000;
 
     /**
      * 默认的一帧时间间隔
@@ -67,9 +100,24 @@ public class FrameTextureView extends TextureView {
     private final AtomicInteger mIndexDrawing = new AtomicInteger();
 
     /**
-     * 正在解码的索引
+     * 多个线程解码时，把解码完成的帧按播放顺序排好，再放入【已解码Bitmap存储队列】
+     */
+    private final FrameReorderBuffer mReorderBuffer = new FrameReorderBuffer(MAX_LINKED_BITMAP_COUNT);
+
+    /**
+     * 按顺序提交解码完成的帧，同一时间只有一个线程提交
+     */
+    private final ReentrantLock mCommitLock = new ReentrantLock();
+
+    /**
+     * 每次切换动画资源时加一，之前的解码任务和还没提交的帧都作废
      */
-    private final AtomicInteger mIndexDecoding = new AtomicInteger();
+    private final AtomicInteger mDecodeGeneration = new AtomicInteger();
+
+    /**
+     * 当前动画正在使用的LinkedBitmap个数，不够用时新建，最多是解码线程数加上提前解码的帧数
+     */
+    private final AtomicInteger mLinkedBitmapCount = new AtomicInteger();
 
     /**
      * surface 是否alive
@@ -88,42 +136,165 @@ public class FrameTextureView extends TextureView {
     private int mScaleType = FrameScaleType.CENTER;
 
     /**
-     * 已解码Bitmap存储队列
+     * 已解码Bitmap存储队列。解码线程是共享的，放入时不能阻塞，容量按LinkedBitmap的最多个数，
+     * 提前解码的帧数由{@link #obtainLinkedBitmap()}的上限控制
      */
-    private final CustomLinkedBlockingQueue mDecodedBitmapQueue = new CustomLinkedBlockingQueue(BUFFER_SIZE);
+    private final CustomLinkedBlockingQueue mDecodedBitmapQueue = new CustomLinkedBlockingQueue(MAX_LINKED_BITMAP_COUNT);
 
     /**
-     * 已绘制的Bitmap队列
+     * 最近一次生效的提前解码帧数
      */
-    private final CustomLinkedBlockingQueue mDrawnBitmapQueue = new CustomLinkedBlockingQueue(BUFFER_SIZE);
+    private volatile int mAppliedPrefetchDepth = INITIAL_PREFETCH_DEPTH;
 
     /**
-     * bitmap解码线程
+     * 根据解码耗时调整提前解码的帧数
      */
-    private HandlerThread mDecodeHandlerThread;
+    private final FramePrefetchController mPrefetchController =
+            new FramePrefetchController(INITIAL_PREFETCH_DEPTH, DEFAULT_PREFETCH_BUDGET);
 
     /**
-     * 绘制线程
+     * 已绘制的Bitmap队列，容量按LinkedBitmap的最多个数，避免放不回去
      */
-    private HandlerThread mDrawHandlerThread;
+    private final CustomLinkedBlockingQueue mDrawnBitmapQueue = new CustomLinkedBlockingQueue(MAX_LINKED_BITMAP_COUNT);
 
     /**
-     * 解码handler
+     * 在共享解码线程池上的任务队列，同时执行的任务数就是实际使用的解码线程数
      */
-    private Handler mDecodeHandler;
+    private final FrameLane mDecodeLane = FrameExecutor.getInstance().newLane(LanePriority.NORMAL);
 
     /**
-     * 绘制handler
+     * 绘制handler，所有view共用一个绘制线程
      */
     private Handler mDrawHandler;
 
     /**
-     * 解码图片的配置
+     * 最近一次开始循环解码时的mDecodeGeneration，同一个generation只开始一次
+     */
+    private int mDecodeWorkersGeneration = -1;
+
+    /**
+     * 是否和播放同一个动画资源的其他view共享解码的帧
+     */
+    private boolean mShareFrames;
+
+    /**
+     * 当前订阅的共享帧，没有共享时为null
+     */
+    private volatile SharedFrameSource mSharedSource;
+
+    /**
+     * 每次订阅新建一个，离开后之前的帧放回时可以区分出来
+     */
+    private volatile SharedSubscriber mSharedSubscriber;
+
+    /**
+     * 循环播放时所有帧常驻内存的预算，单位：字节，0表示不常驻
+     */
+    private long mResidentBudget;
+
+    /**
+     * 当前动画常驻内存的帧，没有开启、超出预算或者内存不足放弃后为null
+     */
+    private volatile ResidentFrames<Bitmap> mResidentFrames;
+
+    /**
+     * 当前动画最近解码的一帧的宽高和config，从bitmap池取bitmap时使用，切换动画时清空
+     */
+    private volatile int mFrameWidth;
+    private volatile int mFrameHeight;
+    private volatile Bitmap.Config mFrameConfig;
+
+    /**
+     * 内存不足时释放内存，见{@link #trimMemory(int)}
+     */
+    private final FrameMemoryGovernor.Trimmable mTrimmable = new FrameMemoryGovernor.Trimmable() {
+        @Override
+        public long onTrimMemory(int level) {
+            return trimMemory(level);
+        }
+    };
+
+    /**
+     * 没有可用的LinkedBitmap而暂停的解码任务，有bitmap绘制完放回时继续
+     */
+    private final List<DecodeRunnable> mParkedDecodeRunnables = new ArrayList<>();
+
+    /**
+     * 每个解码任务的解码配置和buffer
+     */
+    private final DecodeWorker[] mDecodeWorkers = new DecodeWorker[MAX_DECODE_THREAD_COUNT];
+
+    /**
+     * 设置的解码线程数，下一次startWithFrameSrc时生效
+     */
+    private int mDecodeThreadCount = 1;
+
+    /**
+     * 当前动画实际使用的解码线程数，使用差异编码缓存时只能按顺序解码，只用一个线程
+     */
+    private volatile int mActiveDecodeThreadCount = 1;
+
+    /**
+     * 解码跟不上时是否丢弃已经过期的帧，保持时间线，而不是整体变慢
+     */
+    private volatile boolean mDropLateFrames;
+
+    /**
+     * 当前动画的播放时间线
      */
-    private final BitmapFactory.Options mDecodeOptions = new BitmapFactory.Options();
+    private volatile FrameTimeline mTimeline;
+
+    /**
+     * 按时间线安排绘制线程的每一帧，和绘制线程一起创建
+     */
+    private volatile FrameScheduler mFrameScheduler;
+
+    /**
+     * 当前动画开始播放以来，解码前、绘制前丢弃的过期帧数，以及显示的帧数
+     */
+    private final AtomicInteger mDecodeDroppedCount = new AtomicInteger();
+    private final AtomicInteger mDrawDroppedCount = new AtomicInteger();
+    private final AtomicInteger mPresentedCount = new AtomicInteger();
+
+    /**
+     * 最近一个统计窗口内，每秒按顺序提交给绘制的帧数
+     */
+    private volatile float mDecodeFps;
+    private long mDecodeFpsStartTime;
+    private int mDecodeFpsFrames;
 
     protected Matrix mDrawMatrix;
 
+    /**
+     * 上一次绘制时的Matrix、bitmap宽高和帧序号，用于判断能否只绘制和前一帧不同的区域
+     */
+    private final Matrix mLastDrawMatrix = new Matrix();
+    private int mLastDrawnWidth;
+    private int mLastDrawnHeight;
+    private int mLastDrawnIndex = -1;
+
+    /**
+     * surface重建、尺寸或缩放类型变化后，下一帧需要完整绘制
+     */
+    private final AtomicBoolean mNeedFullRedraw = new AtomicBoolean(true);
+
+    /**
+     * 局部绘制的区域，view坐标
+     */
+    private final Rect mDirtyRect = new Rect();
+    private final RectF mDirtyRectF = new RectF();
+
+    /**
+     * 当前帧绘制到view上的区域，以及绘制时canvas的裁剪区域
+     */
+    private final RectF mBitmapRectF = new RectF();
+    private final Rect mClipRect = new Rect();
+
+    /**
+     * 当前帧是否不透明并且铺满了整个view，是的话view设置为不透明
+     */
+    private final AtomicBoolean mContentOpaque = new AtomicBoolean(false);
+
     /**
      * 开启动画时，可能surface还没创建好，需要在surface创建好后去开启动画
      */
@@ -140,19 +311,24 @@ public class FrameTextureView extends TextureView {
     private final ReentrantLock mDrawingLock = new ReentrantLock();
 
     /**
-     * 【解码锁】[解码图片] 跟 [回收所有图片] 这两个操作需要互斥
+     * 【解码锁】[解码图片] 跟 [回收所有图片] 这两个操作需要互斥，多个解码线程之间不互斥
      */
-    private final ReentrantLock mDecodingLock = new ReentrantLock();
+    private final ReentrantReadWriteLock mDecodingLock = new ReentrantReadWriteLock();
 
     /**
-     * 当前在绘制的帧动画资源id
+     * 当前在绘制的帧来源
      */
-    private int mCurrentResId = -1;
+    private volatile FrameSource mFrameSource;
 
     /**
      * 是否使用缓存方式
      */
     private boolean mUseCache;
+
+    /**
+     * 使用缓存时，是否通过内存映射直接读取缓存文件（不拷贝到Java堆）
+     */
+    private boolean mUseMappedCache;
     /**
      * 真动画列表数据集
      */
@@ -164,34 +340,29 @@ public class FrameTextureView extends TextureView {
     private BlobCache mBlobCache;
 
     /**
-     * 使用缓存时，读取bitmap的buffer数据
-     */
-    private BytesBuffer mDataBuffer;
-
-    /**
-     * 使用缓存时，读取bitmap时获取bitmap宽度的数据
+     * mBlobCache的文件名，不再使用时通知BlobCacheManager，内存不足时可以关闭
      */
-    private BytesBuffer mWidthBuffer;
+    private String mBlobCacheName;
 
     /**
-     * 使用缓存时，读取bitmap时获取bitmap高度的数据
+     * 所有帧都进入缓存后打包成的只读文件，存在时优先从这里读取
      */
-    private BytesBuffer mHeightBuffer;
+    private volatile SealedFrameFile mSealedFile;
 
     /**
-     * 使用缓存时，读取bitmap时name转换的key
+     * 当前这一轮播放中从缓存读取到的帧数，一整轮都来自缓存时触发打包
      */
-    private Map<String, byte[]> mKeyMap;
+    private int mCacheHitCount;
 
     /**
-     * 使用缓存时，用于copy数据到bitmap的buffer
+     * 使用缓存时，前一帧的像素，用于差异编码和记录和前一帧不同的区域
      */
-    private ByteBuffer mPixelsBuffer;
+    private DeltaReference mDeltaReference;
 
     /**
-     * 使用缓存时，用于查询缓存的请求；
+     * 当前动画解码时的inSampleSize，开始播放时根据view的尺寸计算，见{@link #updateSampleSize(FrameList)}
      */
-    private BlobCache.LookupRequest mLookupRequest;
+    private int mSampleSize = 1;
 
     public FrameTextureView(Context context) {
         super(context);
@@ -209,8 +380,18 @@ public class FrameTextureView extends TextureView {
     }
 
     protected void init(Context context, AttributeSet attrs) {
+        FrameMemoryGovernor.getInstance().register(mTrimmable);
         TypedArray array = context.obtainStyledAttributes(attrs, R.styleable.FrameTextureView);
         mUseCache = array.getBoolean(R.styleable.FrameTextureView_useCache, false);
+        mUseMappedCache = array.getBoolean(R.styleable.FrameTextureView_useMappedCache, false);
+        setDecodeThreadCount(array.getInt(R.styleable.FrameTextureView_decodeThreads, 1));
+        mDropLateFrames = array.getBoolean(R.styleable.FrameTextureView_dropLateFrames, false);
+        mShareFrames = array.getBoolean(R.styleable.FrameTextureView_shareFrames, false);
+        mResidentBudget = Math.max(array.getInt(R.styleable.FrameTextureView_residentBytes, 0), 0);
+        final int prefetchBudget = array.getInt(R.styleable.FrameTextureView_prefetchBudget, 0);
+        if (prefetchBudget > 0) {
+            setPrefetchBudget(prefetchBudget);
+        }
         final int src = array.getResourceId(R.styleable.FrameTextureView_src, -1);
         array.recycle();
         if (mUseCache && src != -1) {
@@ -219,19 +400,11 @@ public class FrameTextureView extends TextureView {
                 public void run() {
                     mFrameList = FrameParseUtil.parse(src);
 
-                    mBlobCache = BlobCacheManager.getInstance().getBlobCache(
-                            mFrameList.getFileName(),
-                            mFrameList.getMaxEntries(),
-                            mFrameList.getMaxBytes(),
-                            mFrameList.getVersion());
+                    openBlobCache(mFrameList);
                 }
             });
         }
 
-        mDecodeOptions.inMutable = true;
-        mDecodeOptions.inDensity = Bitmap.DENSITY_NONE;
-        mDecodeOptions.inScaled = false;
-
         mDrawMatrix = new Matrix();
         setOpaque(false);
         setSurfaceTextureListener(new SurfaceTextureListener() {
@@ -239,6 +412,7 @@ public class FrameTextureView extends TextureView {
             public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
                 Log.i(TAG, "surface created.");
                 mIsSurfaceAlive.set(true);
+                mNeedFullRedraw.set(true);
                 if (mNeedToStartDrawThread) {
                     mNeedToStartDrawThread = false;
                     startDrawThread();
@@ -247,7 +421,7 @@ public class FrameTextureView extends TextureView {
 
             @Override
             public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
-
+                mNeedFullRedraw.set(true);
             }
 
             @Override
@@ -352,25 +526,38 @@ public class FrameTextureView extends TextureView {
      * @param resId 资源id
      */
     public void startWithFrameSrc(@DrawableRes int resId) {
-        Log.i(TAG, "startWithFrameSrc, resId=" + resId
-                + ", mCurrentResId=" + mCurrentResId + ", status=" + mStatus);
+        startWithFrameSource(new ResourceFrameSource(resId));
+    }
+
+    /**
+     * 设置帧来源，例如assets、文件目录、zip文件，见{@link FrameSource}。和当前的key相同时只恢复播放
+     */
+    public void startWithFrameSource(FrameSource source) {
+        Log.i(TAG, "startWithFrameSource, source=" + source.getKey()
+                + ", current=" + getFrameSourceKey() + ", status=" + mStatus);
         if (isDestroy()) {
             return;
         }
-        if (resId == mCurrentResId) {
+        if (source.getKey().equals(getFrameSourceKey())) {
             if (isPause()) {
                 setStatus(FrameViewStatus.START);
                 startDrawThread();
-                startDecodeThread(new DecodeRunnable());
+                if (isSharedOwner()) {
+                    startDecodeWorkers(mDecodeGeneration.get());
+                }
             }
             return;
         }
-        mCurrentResId = resId;
+        mFrameSource = source;
+        mNeedFullRedraw.set(true);
+        // 之前的解码任务全部作废
+        final int generation = mDecodeGeneration.incrementAndGet();
         // 初始化状态
         setStatus(FrameViewStatus.IDLE);
         // 释放之前的资源
+        leaveSharedSource();
+        releaseResidentFrames();
         destroyBitmapQueue();
-        clearKeyMap();
         clearPixelsBuffer();
 
         // 解码新的资源列表数据
@@ -382,24 +569,28 @@ public class FrameTextureView extends TextureView {
                     return;
                 }
                 // 解析动画列表数据
-                mFrameList = FrameParseUtil.parse(mCurrentResId);
-                List<FrameItem> list = mFrameList.getFrameItemList();
-                if (CommonUtil.isEmpty(list)) {
+                FrameList frameList = mFrameSource.loadFrameList();
+                if (frameList == null || CommonUtil.isEmpty(frameList.getFrameItemList())) {
                     Log.e(TAG, "startWithFrameSrc, frame list parse error, list is empty.");
                     return;
                 }
+                mFrameList = frameList;
 
+                updateSampleSize(mFrameList);
                 if (mUseCache) {
-                    mBlobCache = BlobCacheManager.getInstance().getBlobCache(
-                            mFrameList.getFileName(),
-                            mFrameList.getMaxEntries(),
-                            mFrameList.getMaxBytes(),
-                            mFrameList.getVersion());
+                    openBlobCache(mFrameList);
                 }
+                // 差异编码的帧依赖前一帧，只能按顺序解码
+                mActiveDecodeThreadCount = mUseCache && mFrameList.getDeltaInterval() > 0 ? 1 : mDecodeThreadCount;
+                mTimeline = FrameTimeline.create(mFrameList, DEFAULT_DURATION);
+                createResidentFrames(mFrameList, generation);
 
                 // 纠正索引
-                mIndexDecoding.set(0);
                 mIndexDrawing.set(0);
+                mFrameConfig = null;
+                mDecodeDroppedCount.set(0);
+                mDrawDroppedCount.set(0);
+                mPresentedCount.set(0);
 
                 // 重置队列
                 resetBitmapQueue();
@@ -408,40 +599,58 @@ public class FrameTextureView extends TextureView {
                     return;
                 }
 
-                // 预解码两个bitmap到解码队列
-                int index = mIndexDecoding.getAndIncrement();
-                LinkedBitmap linkedBitmap = new LinkedBitmap();
-                linkedBitmap.bitmap = decodeBitmap(mFrameList.getFrameItemByIndex(index));
-                putDecodedBitmap(linkedBitmap);
-
-                index = mIndexDecoding.getAndIncrement();
-                LinkedBitmap linkedBitmap1 = new LinkedBitmap();
-                linkedBitmap1.bitmap = decodeBitmap(mFrameList.getFrameItemByIndex(index));
-                putDecodedBitmap(linkedBitmap1);
+                // 开始播放前不接收共享的帧，订阅后由owner解码
+                joinSharedSource(mFrameList);
+                if (isSharedOwner()) {
+                    // 预解码两个bitmap到解码队列
+                    DecodeWorker worker = getDecodeWorker(0);
+                    for (int i = 0; i < PRELOAD_COUNT; i++) {
+                        mLinkedBitmapCount.incrementAndGet();
+                        decodeNextFrame(worker, new LinkedBitmap(), generation);
+                    }
+                }
 
                 if (isDestroy()) {
                     Log.e(TAG, "startWithFrameSrc, 333 is destroy, return.");
                     return;
                 }
 
-                Log.i(TAG, "startWithFrameSrc, start draw, resId=" + mCurrentResId);
-                if (mDecodeHandler == null) {
-                    Log.e(TAG, "startWithFrameSrc, decode handler is null, may be is destroy.");
-                    return;
-                }
+                Log.i(TAG, "startWithFrameSrc, start draw, source=" + getFrameSourceKey());
                 // 开始播放动画
                 setStatus(FrameViewStatus.START);
-                mDecodeHandler.post(new DecodeRunnable());
+                if (isSharedOwner()) {
+                    startDecodeWorkers(generation);
+                }
                 if (mIsSurfaceAlive.get()) {
                     startDrawThread();
                 } else {
-                    Log.i(TAG, "startWithFrameSrc, surface is not alive, resId=" + mCurrentResId);
+                    Log.i(TAG, "startWithFrameSrc, surface is not alive, source=" + getFrameSourceKey());
                     mNeedToStartDrawThread = true;
                 }
             }
         });
     }
 
+    /**
+     * 当前帧来源的key，还没有设置时返回null
+     */
+    public String getFrameSourceKey() {
+        FrameSource source = mFrameSource;
+        return source == null ? null : source.getKey();
+    }
+
+    public FrameSource getFrameSource() {
+        return mFrameSource;
+    }
+
+    /**
+     * 从当前帧来源解码一帧
+     */
+    private Bitmap decodeFrame(FrameItem frameItem, BitmapFactory.Options options) {
+        FrameSource source = mFrameSource;
+        return source == null ? null : source.decodeFrame(frameItem, options);
+    }
+
     public boolean isPause() {
         return mStatus.get() == FrameViewStatus.PAUSE;
     }
@@ -463,6 +672,7 @@ public class FrameTextureView extends TextureView {
             return;
         }
         setStatus(FrameViewStatus.PAUSE);
+        stopTimeline();
     }
 
     public void resume() {
@@ -475,50 +685,266 @@ public class FrameTextureView extends TextureView {
         startDrawThread();
     }
 
+    /**
+     * 设置了decodeToViewSize时，根据第一帧的尺寸、view的尺寸和缩放类型计算inSampleSize；
+     * view还没有布局完成时按原图尺寸解码
+     */
+    private void updateSampleSize(FrameList frameList) {
+        int sampleSize = 1;
+        if (frameList.isDecodeToViewSize()) {
+            final int width = getWidth();
+            final int height = getHeight();
+            FrameItem firstItem = frameList.getFrameItemByIndex(0);
+            if (width > 0 && height > 0 && firstItem != null) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                options.inScaled = false;
+                decodeFrame(firstItem, options);
+                sampleSize = MatrixUtil.calculateInSampleSize(options.outWidth, options.outHeight,
+                        width, height, mScaleType);
+            } else {
+                Log.e(TAG, "updateSampleSize, view is not laid out, width=" + width + ", height=" + height);
+            }
+        }
+        mSampleSize = sampleSize;
+    }
+
+    /**
+     * 缩小解码的帧和原图尺寸的帧分开缓存，文件名带上inSampleSize
+     */
+    private String getCacheFileName(FrameList frameList) {
+        final int sampleSize = mSampleSize;
+        return sampleSize > 1 ? frameList.getFileName() + "_s" + sampleSize : frameList.getFileName();
+    }
+
     /**
      * 开启解码线程
      */
+    private void openBlobCache(FrameList frameList) {
+        releaseBlobCache();
+        final String name = getCacheFileName(frameList);
+        BlobCache blobCache = BlobCacheManager.getInstance().acquireBlobCache(
+                name,
+                frameList.getMaxEntries(),
+                frameList.getMaxBytes(),
+                frameList.getVersion(),
+                frameList.getSyncPolicy(),
+                frameList.getSyncValue());
+        if (blobCache != null) {
+            blobCache.setVerifyPolicy(frameList.getVerifyPolicy(), frameList.getVerifySampleRate());
+        }
+        synchronized (mDecodeWorkers) {
+            mBlobCache = blobCache;
+            mBlobCacheName = blobCache == null ? null : name;
+        }
+        mDeltaReference = new DeltaReference();
+        mSealedFile = getSealedFrameFile(frameList);
+        mCacheHitCount = 0;
+    }
+
+    /**
+     * 不再使用当前的缓存，内存不足时可以由BlobCacheManager关闭
+     */
+    private void releaseBlobCache() {
+        String name;
+        synchronized (mDecodeWorkers) {
+            name = mBlobCacheName;
+            mBlobCacheName = null;
+            mBlobCache = null;
+        }
+        if (name != null) {
+            BlobCacheManager.getInstance().releaseBlobCache(name);
+        }
+    }
+
+    /**
+     * 打包文件，像素的校验方式和缓存一致
+     */
+    private SealedFrameFile getSealedFrameFile(FrameList frameList) {
+        SealedFrameFile sealedFile = BlobCacheManager.getInstance().getSealedFrameFile(
+                getCacheFileName(frameList), frameList.getVersion(), frameList.getCacheKeys());
+        if (sealedFile != null) {
+            sealedFile.setVerifyPolicy(frameList.getVerifyPolicy(), frameList.getVerifySampleRate());
+        }
+        return sealedFile;
+    }
+
+    /**
+     * 统计每一轮播放中从缓存读取到的帧数，一整轮都来自缓存时在后台打包，
+     * 下一轮开始时如果已经打包完成，就切换到打包文件
+     */
+    private void updateSealState(int index, boolean fromCache) {
+        FrameList frameList = mFrameList;
+        if (frameList == null || mSealedFile != null) {
+            return;
+        }
+        final int size = frameList.getFrameItemSize();
+        if (index == 0) {
+            mSealedFile = getSealedFrameFile(frameList);
+            mCacheHitCount = 0;
+        }
+        if (fromCache) {
+            mCacheHitCount++;
+        }
+        if (index == size - 1 && mCacheHitCount == size && mSealedFile == null) {
+            BlobCacheManager.getInstance().sealAsync(getCacheFileName(frameList), frameList.getVersion(),
+                    frameList.getCacheKeys(), frameList.getCacheKeyBytes());
+        }
+    }
+
+    /**
+     * 清除还没开始的解码任务后提交runnable，并发数恢复为1，保证runnable不会和之后提交的任务同时执行
+     */
     private void startDecodeThread(Runnable runnable) {
-        if (mDecodeHandlerThread == null) {
-            mDecodeHandlerThread = new HandlerThread(DECODE_THREAD_NAME);
+        clearParkedDecodeRunnables();
+        mDecodeLane.clear();
+        mDecodeLane.setConcurrency(1);
+        mDecodeLane.post(runnable);
+    }
+
+    /**
+     * 在共享解码线程池上开始循环解码，每个DecodeWorker一个任务，同时执行
+     */
+    private void startDecodeWorkers(int generation) {
+        synchronized (mDecodeWorkers) {
+            // 同一个generation的解码任务一直在循环，不重复开始
+            if (mDecodeWorkersGeneration == generation) {
+                return;
+            }
+            mDecodeWorkersGeneration = generation;
         }
-        if (!mDecodeHandlerThread.isAlive()) {
-            mDecodeHandlerThread.start();
+        final int count = mActiveDecodeThreadCount;
+        Log.i(TAG, "startDecodeWorkers, count=" + count + ", generation=" + generation);
+        clearParkedDecodeRunnables();
+        mDecodeLane.clear();
+        mDecodeLane.setConcurrency(count);
+        for (int i = 0; i < count; i++) {
+            mDecodeLane.post(new DecodeRunnable(getDecodeWorker(i), generation));
         }
-        if (mDecodeHandler == null) {
-            mDecodeHandler = new Handler(mDecodeHandlerThread.getLooper());
+    }
+
+    /**
+     * 开启了shareFrames时，订阅同一个资源、同一个解码尺寸的共享帧。只播放一次的动画需要从第一帧开始，不共享
+     */
+    private void joinSharedSource(FrameList frameList) {
+        if (!mShareFrames || frameList.isOneShot()) {
+            return;
         }
-        mDecodeHandler.removeCallbacksAndMessages(null);
-        mDecodeHandler.post(runnable);
+        mSharedSubscriber = new SharedSubscriber();
+        mSharedSource = SharedFrameSource.subscribe(
+                SharedFrameSource.keyOf(getFrameSourceKey(), mSampleSize), mSharedSubscriber);
+        Log.i(TAG, "joinSharedSource, source=" + getFrameSourceKey() + ", owner=" + isSharedOwner()
+                + ", subscribers=" + mSharedSource.getSubscriberCount());
     }
 
     /**
-     * 开启绘制线程
+     * 取消订阅共享帧，收到的共享帧放回
      */
-    private void startDrawThread() {
-        Log.i(TAG, "startDrawThread, resId=" + mCurrentResId + ", status=" + mStatus);
-        if (isDestroy()) {
+    private void leaveSharedSource() {
+        SharedFrameSource source = mSharedSource;
+        SharedSubscriber subscriber = mSharedSubscriber;
+        if (source == null) {
             return;
         }
-        if (mDrawHandlerThread == null) {
-            mDrawHandlerThread = new HandlerThread(DRAW_THREAD_NAME);
+        mSharedSource = null;
+        mSharedSubscriber = null;
+        source.unsubscribe(subscriber);
+        releaseSharedFrames();
+    }
+
+    /**
+     * 没有共享，或者由这个view负责解码
+     */
+    private boolean isSharedOwner() {
+        SharedFrameSource source = mSharedSource;
+        return source == null || source.isOwner(mSharedSubscriber);
+    }
+
+    /**
+     * 把【已解码的bitmap队列】里共享的帧放回，自己解码的帧不受影响
+     */
+    private void releaseSharedFrames() {
+        List<LinkedBitmap> own = new ArrayList<>();
+        LinkedBitmap bitmap;
+        while ((bitmap = mDecodedBitmapQueue.poll()) != null) {
+            if (bitmap.sharedFrom != null) {
+                SharedFrameSource.release(bitmap);
+            } else {
+                own.add(bitmap);
+            }
+        }
+        for (LinkedBitmap b : own) {
+            mDecodedBitmapQueue.offer(b);
+        }
+    }
+
+    /**
+     * 暂停解码任务，等有LinkedBitmap可以使用时再继续
+     */
+    private void parkDecodeRunnable(DecodeRunnable runnable) {
+        synchronized (mParkedDecodeRunnables) {
+            mParkedDecodeRunnables.add(runnable);
+        }
+        // 放入之前可能刚好有bitmap放回，避免一直等待
+        if (mDrawnBitmapQueue.size() > 0) {
+            unparkDecodeRunnable();
+        }
+    }
+
+    private void unparkDecodeRunnable() {
+        DecodeRunnable runnable;
+        synchronized (mParkedDecodeRunnables) {
+            if (mParkedDecodeRunnables.isEmpty()) {
+                return;
+            }
+            runnable = mParkedDecodeRunnables.remove(0);
+        }
+        mDecodeLane.post(runnable);
+    }
+
+    private void clearParkedDecodeRunnables() {
+        synchronized (mParkedDecodeRunnables) {
+            mParkedDecodeRunnables.clear();
         }
-        if (!mDrawHandlerThread.isAlive()) {
-            mDrawHandlerThread.start();
+    }
+
+    private DecodeWorker getDecodeWorker(int index) {
+        synchronized (mDecodeWorkers) {
+            DecodeWorker worker = mDecodeWorkers[index];
+            if (worker == null) {
+                worker = new DecodeWorker(index);
+                mDecodeWorkers[index] = worker;
+            }
+            return worker;
         }
+    }
 
+    /**
+     * 开启绘制线程
+     */
+    private void startDrawThread() {
+        Log.i(TAG, "startDrawThread, source=" + getFrameSourceKey() + ", status=" + mStatus);
+        if (isDestroy()) {
+            return;
+        }
+        // 时间线从开始绘制的第一帧重新计算
+        stopTimeline();
         if (mDrawHandler == null) {
-            mDrawHandler = new Handler(mDrawHandlerThread.getLooper());
+            mDrawHandler = new Handler(FrameExecutor.getInstance().getDrawLooper());
+            mFrameScheduler = new FrameScheduler(new VsyncFrameClock(mDrawHandler));
         }
+        mFrameScheduler.setTimeline(mTimeline);
         mDrawHandler.removeCallbacksAndMessages(null);
         mDrawHandler.post(new DrawRunnable());
     }
 
     private void resetBitmapQueue() {
+        // 等正在提交的帧提交完，之后提交的旧帧都会因为generation变化被丢弃
+        mCommitLock.lock();
         try {
-            // 尝试获取【绘制锁】【解码锁】，避免正在解码时回收了mDecodeOptions中的inBitmap，进而导致崩溃
+            // 尝试获取【绘制锁】【解码锁】，避免正在解码时回收了解码配置中的inBitmap，进而导致崩溃
             // (超时50毫秒，防止阻塞主线程)
-            mDecodingLock.tryLock(50, TimeUnit.MILLISECONDS);
+            mDecodingLock.writeLock().tryLock(50, TimeUnit.MILLISECONDS);
             mDrawingLock.tryLock(50, TimeUnit.MILLISECONDS);
             try {
                 mDecodedBitmapQueue.resetData();
@@ -531,12 +957,18 @@ public class FrameTextureView extends TextureView {
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
-            mDecodeOptions.inBitmap = null;
+            mReorderBuffer.reset();
+            mLinkedBitmapCount.set(0);
+            mPrefetchController.reset(mActiveDecodeThreadCount);
+            mAppliedPrefetchDepth = mPrefetchController.getDepth();
+            clearDecodeInBitmap();
+            resetDecodeFps();
         } catch (Exception ex) {
             ex.printStackTrace();
         } finally {
+            mCommitLock.unlock();
             try {
-                mDecodingLock.unlock();
+                mDecodingLock.writeLock().unlock();
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
@@ -550,9 +982,9 @@ public class FrameTextureView extends TextureView {
 
     private void destroyBitmapQueue() {
         try {
-            // 尝试获取【绘制锁】【解码锁】，避免正在解码时回收了mDecodeOptions中的inBitmap，进而导致崩溃
+            // 尝试获取【绘制锁】【解码锁】，避免正在解码时回收了解码配置中的inBitmap，进而导致崩溃
             // (超时50毫秒，防止阻塞主线程)
-            mDecodingLock.tryLock(50, TimeUnit.MILLISECONDS);
+            mDecodingLock.writeLock().tryLock(50, TimeUnit.MILLISECONDS);
             mDrawingLock.tryLock(50, TimeUnit.MILLISECONDS);
             try {
                 mDecodedBitmapQueue.destroy();
@@ -565,12 +997,13 @@ public class FrameTextureView extends TextureView {
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
-            mDecodeOptions.inBitmap = null;
+            mReorderBuffer.reset();
+            clearDecodeInBitmap();
         } catch (Exception ex) {
             ex.printStackTrace();
         } finally {
             try {
-                mDecodingLock.unlock();
+                mDecodingLock.writeLock().unlock();
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
@@ -591,20 +1024,27 @@ public class FrameTextureView extends TextureView {
         }
         Log.i(TAG, "destroy FrameTextureView, start.");
         setStatus(FrameViewStatus.DESTROY);
+        mDecodeGeneration.incrementAndGet();
+        leaveSharedSource();
+        releaseResidentFrames();
+        FrameMemoryGovernor.getInstance().unregister(mTrimmable);
+        releaseBlobCache();
         destroyHandler();
         destroyBitmapQueue();
-        destroyThread();
         destroyBytesBuffer();
         destroyLookupRequest();
-        clearKeyMap();
         clearPixelsBuffer();
+        mSealedFile = null;
         Log.i(TAG, "destroy FrameTextureView, end.");
     }
 
     private void destroyHandler() {
-        if (mDecodeHandler != null) {
-            mDecodeHandler.removeCallbacksAndMessages(null);
-            mDecodeHandler = null;
+        clearParkedDecodeRunnables();
+        mDecodeLane.clear();
+
+        if (mFrameScheduler != null) {
+            mFrameScheduler.stop();
+            mFrameScheduler = null;
         }
 
         if (mDrawHandler != null) {
@@ -613,98 +1053,258 @@ public class FrameTextureView extends TextureView {
         }
     }
 
-    private void destroyThread() {
-        try {
-            if (mDecodeHandlerThread != null) {
-                mDecodeHandlerThread.quit();
-                mDecodeHandlerThread = null;
+    private void destroyBytesBuffer() {
+        synchronized (mDecodeWorkers) {
+            for (DecodeWorker worker : mDecodeWorkers) {
+                if (worker == null) {
+                    continue;
+                }
+                if (worker.dataBuffer != null) {
+                    worker.dataBuffer.data = null;
+                    worker.dataBuffer = null;
+                }
+                if (worker.widthBuffer != null) {
+                    worker.widthBuffer.data = null;
+                    worker.widthBuffer = null;
+                }
+                if (worker.heightBuffer != null) {
+                    worker.heightBuffer.data = null;
+                    worker.heightBuffer = null;
+                }
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
         }
+    }
 
-        try {
-            if (mDrawHandlerThread != null) {
-                mDrawHandlerThread.quit();
-                mDrawHandlerThread = null;
+    private void clearPixelsBuffer() {
+        synchronized (mDecodeWorkers) {
+            for (DecodeWorker worker : mDecodeWorkers) {
+                if (worker != null) {
+                    worker.pixelsBuffer = null;
+                }
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
         }
+        mDeltaReference = null;
     }
 
-    private void destroyBytesBuffer() {
-        if (mDataBuffer != null) {
-            mDataBuffer.data = null;
-            mDataBuffer = null;
-        }
-        if (mWidthBuffer != null) {
-            mWidthBuffer.data = null;
-            mWidthBuffer = null;
-        }
-        if (mHeightBuffer != null) {
-            mHeightBuffer.data = null;
-            mHeightBuffer = null;
+    private void destroyLookupRequest() {
+        synchronized (mDecodeWorkers) {
+            for (DecodeWorker worker : mDecodeWorkers) {
+                if (worker != null) {
+                    worker.lookupRequest = null;
+                }
+            }
         }
     }
 
-    private void clearKeyMap() {
-        if (mKeyMap != null) {
-            mKeyMap.clear();
+    private void clearDecodeInBitmap() {
+        synchronized (mDecodeWorkers) {
+            for (DecodeWorker worker : mDecodeWorkers) {
+                if (worker != null) {
+                    worker.options.inBitmap = null;
+                }
+            }
         }
     }
 
-    private void clearPixelsBuffer() {
-        if (mPixelsBuffer != null) {
-            mPixelsBuffer.clear();
-            mPixelsBuffer = null;
-        }
+    /**
+     * 设置了decodeToViewSize时，缩放类型影响解码尺寸，下一次startWithFrameSrc时生效
+     */
+    public void setScaleType(@FrameScaleType int scaleType) {
+        mScaleType = scaleType;
+        mNeedFullRedraw.set(true);
     }
 
-    private void destroyLookupRequest() {
-        mLookupRequest = null;
+    /**
+     * 使用缓存时，是否通过内存映射直接读取缓存文件
+     */
+    public void setUseMappedCache(boolean useMappedCache) {
+        mUseMappedCache = useMappedCache;
     }
 
-    public void setScaleType(@FrameScaleType int scaleType) {
-        mScaleType = scaleType;
+    /**
+     * 设置解码线程数(1~4)，即在所有view共享的解码线程池上同时解码的帧数，解码后再按顺序交给绘制线程，
+     * 下一次startWithFrameSrc时生效。使用差异编码的缓存时只能按顺序解码，始终只用一个线程
+     */
+    public void setDecodeThreadCount(int count) {
+        mDecodeThreadCount = Math.max(1, Math.min(count, MAX_DECODE_THREAD_COUNT));
     }
 
     /**
-     * 绘制一帧
+     * 设置是否和播放同一个动画资源、解码尺寸相同的其他view共享解码的帧：只有一个view解码，
+     * 每个view按自己的缩放类型绘制，下一次startWithFrameSrc时生效。只播放一次的动画不共享
      */
-    private void drawOneFrame() {
-        if (!mIsSurfaceAlive.get()) {
-            Log.e(TAG, "drawOneFrame, suface is not alive.");
-            return;
-        }
-        if (!isStart()) {
-            Log.e(TAG, "drawOneFrame, status is not start, status=" + mStatus);
-            return;
-        }
-        LinkedBitmap linkedBitmap = getDecodedBitmap();
-        if (linkedBitmap != null && linkedBitmap.bitmap != null) {
-            if (!isStart()) {
-                // 如果是暂停状态，则取出来后，要添加到已绘制的队列里，避免恢复动画时【绘制队列】和【解码队列】都为空的情况
-                if (isPause()) {
-                    putDrawnBitmap(linkedBitmap);
-                }
-                return;
+    public void setShareFrames(boolean shareFrames) {
+        mShareFrames = shareFrames;
+    }
+
+    /**
+     * 当前共享同一个动画资源的view个数，包括自己；没有共享时返回0
+     */
+    public int getSharedViewCount() {
+        SharedFrameSource source = mSharedSource;
+        return source == null ? 0 : source.getSubscriberCount();
+    }
+
+    /**
+     * 设置循环播放时所有帧常驻内存的预算，单位：字节，0表示不常驻，下一次startWithFrameSrc时生效。
+     * 第一轮解码出的帧总大小不超过预算时，之后每一轮直接使用内存里的帧，不再读取缓存和解码；
+     * 超出预算或者系统内存不足时回到从缓存或者资源解码。只播放一次的动画不常驻
+     */
+    public void setResidentBudget(long bytes) {
+        mResidentBudget = Math.max(bytes, 0);
+    }
+
+    /**
+     * 当前常驻内存的帧数，没有常驻时返回0
+     */
+    public int getResidentFrameCount() {
+        ResidentFrames<Bitmap> residentFrames = mResidentFrames;
+        return residentFrames == null ? 0 : residentFrames.getPinnedCount();
+    }
+
+    /**
+     * 当前动画是否所有帧都已经常驻内存
+     */
+    public boolean isResident() {
+        ResidentFrames<Bitmap> residentFrames = mResidentFrames;
+        return residentFrames != null && residentFrames.isComplete();
+    }
+
+    /**
+     * 设置在共享解码线程池上的优先级，例如不在屏幕上的动画可以设置为{@link LanePriority#LOW}
+     */
+    public void setDecodePriority(@LanePriority int priority) {
+        mDecodeLane.setPriority(priority);
+    }
+
+    /**
+     * 当前动画实际使用的解码线程数
+     */
+    public int getDecodeThreadCount() {
+        return mActiveDecodeThreadCount;
+    }
+
+    /**
+     * 设置是否按绝对时间线播放：每帧按duration排出显示时间，解码跟不上时，解码前和绘制前都丢弃已经过期的帧，
+     * 保持动画的整体时长；关闭时解码跟不上会让整个动画变慢
+     */
+    public void setDropLateFrames(boolean dropLateFrames) {
+        mDropLateFrames = dropLateFrames;
+    }
+
+    /**
+     * 当前动画开始播放以来丢弃的过期帧数，包括解码前和绘制前丢弃的
+     */
+    public int getDroppedFrameCount() {
+        return mDecodeDroppedCount.get() + mDrawDroppedCount.get();
+    }
+
+    /**
+     * 当前动画开始播放以来，解码前丢弃的过期帧数
+     */
+    public int getDecodeDroppedFrameCount() {
+        return mDecodeDroppedCount.get();
+    }
+
+    /**
+     * 当前动画开始播放以来显示的帧数
+     */
+    public int getPresentedFrameCount() {
+        return mPresentedCount.get();
+    }
+
+    /**
+     * 设置提前解码的内存预算，单位：字节。提前解码的帧数和解码线程占用的bitmap总共不超过这个大小，至少提前解码一帧
+     */
+    public void setPrefetchBudget(long bytes) {
+        mPrefetchController.setBudgetBytes(bytes);
+    }
+
+    /**
+     * 当前提前解码的帧数
+     */
+    public int getPrefetchDepth() {
+        return mPrefetchController.getDepth();
+    }
+
+    /**
+     * 当前动画开始播放以来，该绘制时还没有解码好的帧的次数
+     */
+    public int getStallCount() {
+        return mPrefetchController.getStallCount();
+    }
+
+    /**
+     * 最近一秒内每秒按顺序交给绘制线程的帧数。帧的播放间隔比解码耗时短时，就是当前解码线程数下能持续的解码帧率
+     */
+    public float getDecodeFps() {
+        return mDecodeFps;
+    }
+
+    /**
+     * 绘制一帧
+     *
+     * @return 是否取出了一帧，还没有解码好的帧时返回false
+     */
+    private boolean drawOneFrame() {
+        if (!mIsSurfaceAlive.get()) {
+            Log.e(TAG, "drawOneFrame, suface is not alive.");
+            return false;
+        }
+        if (!isStart()) {
+            Log.e(TAG, "drawOneFrame, status is not start, status=" + mStatus);
+            return false;
+        }
+        if (mDecodedBitmapQueue.size() == 0) {
+            // 该绘制时还没有解码好的帧，需要提前解码更多帧
+            mPrefetchController.onStall();
+            applyPrefetchDepth();
+        }
+        LinkedBitmap linkedBitmap = skipLateFrames(getDecodedBitmap());
+        if (linkedBitmap == null) {
+            // 绘制线程是共享的，不等待解码，按时间线稍后再试
+            return false;
+        }
+        if (linkedBitmap.bitmap != null) {
+            if (!isStart()) {
+                // 如果是暂停状态，则取出来后，要添加到已绘制的队列里，避免恢复动画时【绘制队列】和【解码队列】都为空的情况
+                if (isPause()) {
+                    putDrawnBitmap(linkedBitmap);
+                }
+                return false;
             }
             if (!mIsSurfaceAlive.get()) {
-                return;
+                return false;
             }
+            onFramePresented(linkedBitmap);
             Bitmap bitmap = linkedBitmap.bitmap;
             MatrixUtil.configureDrawMatrix(bitmap, getWidth(), getHeight(), mDrawMatrix, mScaleType);
+            updateContentOpaque(bitmap);
+            final boolean partial = prepareDirtyRect(linkedBitmap, bitmap);
+            if (partial && mDirtyRect.isEmpty()) {
+                // 和前一帧完全相同，不需要绘制
+                mLastDrawnIndex = linkedBitmap.index;
+                putDrawnBitmap(linkedBitmap);
+                mIndexDrawing.incrementAndGet();
+                return true;
+            }
             Canvas canvas = null;
+            boolean drawn = false;
             try {
-                canvas = lockCanvas();
+                // 局部绘制时，dirty区域可能会被系统扩大，canvas的裁剪区域就是实际需要绘制的区域
+                canvas = partial ? lockCanvas(mDirtyRect) : lockCanvas();
                 if (canvas != null) {
                     try {
                         // 获取【绘制锁】，防止绘制中，surface销毁了导致崩溃
                         mDrawingLock.lockInterruptibly();
                         if (mIsSurfaceAlive.get() && !bitmap.isRecycled()) {
-                            clearCanvas(canvas);
+                            // 不透明的帧覆盖了整个绘制区域时，不需要先清除
+                            if (bitmap.hasAlpha() || !canvas.getClipBounds(mClipRect)
+                                    || !mBitmapRectF.contains(mClipRect.left, mClipRect.top, mClipRect.right, mClipRect.bottom)) {
+                                clearCanvas(canvas);
+                            }
                             canvas.drawBitmap(bitmap, mDrawMatrix, null);
+                            drawn = true;
                         }
                     } catch (Exception ex) {
                         ex.printStackTrace();
@@ -725,11 +1325,71 @@ public class FrameTextureView extends TextureView {
                     }
                 } catch (Exception ex) {
                     ex.printStackTrace();
+                    drawn = false;
                 }
             }
+            if (drawn) {
+                mLastDrawMatrix.set(mDrawMatrix);
+                mLastDrawnWidth = bitmap.getWidth();
+                mLastDrawnHeight = bitmap.getHeight();
+                mLastDrawnIndex = linkedBitmap.index;
+            } else {
+                mNeedFullRedraw.set(true);
+            }
             putDrawnBitmap(linkedBitmap);
         }
         mIndexDrawing.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 计算当前帧绘制到view上的区域，帧不透明并且铺满view时，把view设置为不透明，合成时不需要混合
+     */
+    private void updateContentOpaque(Bitmap bitmap) {
+        mBitmapRectF.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        mDrawMatrix.mapRect(mBitmapRectF);
+        final boolean opaque = !bitmap.hasAlpha() && mBitmapRectF.contains(0, 0, getWidth(), getHeight());
+        if (mContentOpaque.getAndSet(opaque) != opaque) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    setOpaque(mContentOpaque.get());
+                }
+            });
+        }
+    }
+
+    /**
+     * 判断这一帧能否只绘制和前一帧不同的区域，可以时把区域换算到view坐标，写入mDirtyRect。
+     * 上一次绘制的不是前一帧，或者surface、Matrix、bitmap宽高变化了，都需要完整绘制
+     */
+    private boolean prepareDirtyRect(LinkedBitmap linkedBitmap, Bitmap bitmap) {
+        if (mNeedFullRedraw.getAndSet(false)) {
+            return false;
+        }
+        if (linkedBitmap.index <= 0
+                || mLastDrawnIndex < 0
+                || linkedBitmap.index != mLastDrawnIndex + 1
+                || bitmap.getWidth() != mLastDrawnWidth
+                || bitmap.getHeight() != mLastDrawnHeight
+                || !mDrawMatrix.equals(mLastDrawMatrix)) {
+            return false;
+        }
+        Rect dirty = linkedBitmap.dirty;
+        if (dirty.isEmpty()) {
+            mDirtyRect.setEmpty();
+            return true;
+        }
+        if (dirty.left <= 0 && dirty.top <= 0
+                && dirty.right >= bitmap.getWidth() && dirty.bottom >= bitmap.getHeight()) {
+            return false;
+        }
+        mDirtyRectF.set(dirty);
+        mDrawMatrix.mapRect(mDirtyRectF);
+        mDirtyRectF.roundOut(mDirtyRect);
+        // 缩放时边缘的像素会受到相邻像素的影响，多绘制一个像素
+        mDirtyRect.inset(-1, -1);
+        return true;
     }
 
     /**
@@ -738,6 +1398,15 @@ public class FrameTextureView extends TextureView {
      * @param bitmap 已绘制的bitmap（不阻塞）
      */
     private void putDrawnBitmap(LinkedBitmap bitmap) {
+        if (SharedFrameSource.isShared(bitmap)) {
+            // 共享的帧所有view都绘制完后才放回解码它的view
+            SharedFrameSource.release(bitmap);
+            return;
+        }
+        offerDrawnBitmap(bitmap);
+    }
+
+    private void offerDrawnBitmap(LinkedBitmap bitmap) {
         if (isDestroy()) {
             return;
         }
@@ -747,6 +1416,7 @@ public class FrameTextureView extends TextureView {
             ex.printStackTrace();
             Log.e(TAG, "putDrawnBitmap, ex=" + ex);
         }
+        unparkDecodeRunnable();
     }
 
     /**
@@ -774,20 +1444,13 @@ public class FrameTextureView extends TextureView {
     }
 
     /**
-     * 从【解码bitmap队列】里取bitmap
-     * （可能会阻塞）
+     * 从【解码bitmap队列】里取bitmap，没有时返回null
      */
     private LinkedBitmap getDecodedBitmap() {
         if (isDestroy()) {
             return null;
         }
-        LinkedBitmap bitmap = null;
-        try {
-            bitmap = mDecodedBitmapQueue.take();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return bitmap;
+        return mDecodedBitmapQueue.poll();
     }
 
     /**
@@ -801,60 +1464,518 @@ public class FrameTextureView extends TextureView {
     }
 
     /**
-     * 从【已绘制的bitmap队列】里取废弃的已绘制的bitmap
+     * 取一个用来解码的LinkedBitmap：优先复用已绘制的；每个解码线程各占一个，再加上提前解码的帧数，
+     * 个数不够时新建，达到上限后返回null，等绘制完成放回。提前解码的帧数变小后，多出来的bitmap在这里回收
      */
-    private LinkedBitmap getDrawnBitmap() {
-        if (isDestroy()) {
+    private LinkedBitmap obtainLinkedBitmap() {
+        final int limit = mActiveDecodeThreadCount + mPrefetchController.getDepth();
+        LinkedBitmap bitmap;
+        while ((bitmap = mDrawnBitmapQueue.poll()) != null) {
+            int count = mLinkedBitmapCount.get();
+            if (count <= limit || !mLinkedBitmapCount.compareAndSet(count, count - 1)) {
+                return bitmap;
+            }
+            bitmap.recycle();
+        }
+        while (true) {
+            int count = mLinkedBitmapCount.get();
+            if (count >= limit) {
+                break;
+            }
+            if (mLinkedBitmapCount.compareAndSet(count, count + 1)) {
+                return new LinkedBitmap();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 领取下一帧解码到linkedBitmap，放入【重排队列】后按顺序提交
+     */
+    private void decodeNextFrame(DecodeWorker worker, LinkedBitmap linkedBitmap, int generation) {
+        FrameList frameList = mFrameList;
+        if (frameList == null) {
+            return;
+        }
+        final int sequence = mReorderBuffer.claim();
+        final int ordinal = mReorderBuffer.getOrdinal(sequence);
+        final int size = frameList.getFrameItemSize();
+        final int index = ordinal >= 0 && size > 0 ? ordinal % size : -1;
+        FrameItem frameItem = frameList.getFrameItemByIndex(index);
+        Bitmap bitmap = null;
+        boolean resident = false;
+        if (frameItem == null) {
+            Log.e(TAG, "decodeNextFrame, index=" + index + ", frameItem is null.");
+        } else if ((bitmap = getResidentFrame(index, linkedBitmap)) != null) {
+            resident = true;
+        } else if (isLateForDecode(frameList, ordinal, index)) {
+            mDecodeDroppedCount.incrementAndGet();
+        } else {
+            // 常驻的bitmap可能还在绘制，不能作为inBitmap；没有可以复用的bitmap时从bitmap池取
+            Bitmap inBitmap = linkedBitmap.resident ? null : linkedBitmap.bitmap;
+            Bitmap pooled = inBitmap == null ? obtainPooledBitmap() : null;
+            worker.options.inBitmap = pooled != null ? pooled : inBitmap;
+            final long start = SystemClock.uptimeMillis();
+            bitmap = decodeBitmap(worker, frameItem, index, linkedBitmap);
+            linkedBitmap.decodeMillis = SystemClock.uptimeMillis() - start;
+            if (bitmap == null) {
+                Log.e(TAG, "decodeNextFrame, bitmap is null, index=" + index);
+            } else {
+                mFrameWidth = bitmap.getWidth();
+                mFrameHeight = bitmap.getHeight();
+                mFrameConfig = bitmap.getConfig();
+            }
+            if (pooled != null && pooled != bitmap) {
+                BitmapPool.getInstance().put(pooled);
+            }
+        }
+        if (bitmap == null) {
+            // 解码失败或者过期的帧跳过，LinkedBitmap按顺序提交时放回【已绘制的bitmap队列】复用
+            linkedBitmap.index = -1;
+        } else {
+            Bitmap old = linkedBitmap.bitmap;
+            if (old != null && old != bitmap && !linkedBitmap.resident) {
+                // 没能复用的bitmap放回bitmap池
+                BitmapPool.getInstance().put(old);
+            }
+            linkedBitmap.bitmap = bitmap;
+            linkedBitmap.resident = resident;
+            linkedBitmap.index = index;
+            linkedBitmap.ordinal = ordinal;
+        }
+        if (!mReorderBuffer.put(sequence, linkedBitmap)) {
+            Log.i(TAG, "decodeNextFrame, frame is out of date, index=" + index);
+            return;
+        }
+        commitDecodedFrames(generation);
+    }
+
+    /**
+     * 按当前动画最近解码的一帧的尺寸从bitmap池取，还没有解码过时返回null
+     */
+    private Bitmap obtainPooledBitmap() {
+        final Bitmap.Config config = mFrameConfig;
+        return config == null ? null : BitmapPool.getInstance().get(mFrameWidth, mFrameHeight, config);
+    }
+
+    /**
+     * 第index帧已经常驻内存时直接使用，不读取缓存也不解码
+     */
+    private Bitmap getResidentFrame(int index, LinkedBitmap linkedBitmap) {
+        ResidentFrames<Bitmap> residentFrames = mResidentFrames;
+        if (residentFrames == null) {
             return null;
         }
-        LinkedBitmap bitmap = null;
-        try {
-            bitmap = mDrawnBitmapQueue.take();
-        } catch (Exception e) {
-            e.printStackTrace();
+        Bitmap bitmap = residentFrames.get(index, linkedBitmap.dirty);
+        if (bitmap != null) {
+            linkedBitmap.fromCache = true;
+            linkedBitmap.decodeMillis = 0;
         }
         return bitmap;
     }
 
     /**
-     * 解码图片
+     * 按时间线播放时，解码前已经过期的帧不再解码。
+     * 使用差异编码的缓存时，后面的帧依赖前一帧，不能跳过；只播放一次的最后一帧也不跳过
+     */
+    private boolean isLateForDecode(FrameList frameList, int ordinal, int index) {
+        FrameTimeline timeline = mTimeline;
+        if (!mDropLateFrames || timeline == null) {
+            return false;
+        }
+        if (mUseCache && frameList.getDeltaInterval() > 0) {
+            return false;
+        }
+        if (isOneShotLastFrame(frameList, index)) {
+            return false;
+        }
+        return timeline.isLate(ordinal, SystemClock.uptimeMillis());
+    }
+
+    private static boolean isOneShotLastFrame(FrameList frameList, int index) {
+        return frameList.isOneShot() && index == frameList.getFrameItemSize() - 1;
+    }
+
+    private void stopTimeline() {
+        FrameScheduler scheduler = mFrameScheduler;
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+        FrameTimeline timeline = mTimeline;
+        if (timeline != null) {
+            timeline.stop();
+        }
+    }
+
+    /**
+     * 按时间线播放时，取出的帧已经过期并且后面的帧已经解码好了，就丢弃这一帧，直到找到没有过期的帧或者没有更多的帧
+     */
+    private LinkedBitmap skipLateFrames(LinkedBitmap linkedBitmap) {
+        FrameTimeline timeline = mTimeline;
+        FrameList frameList = mFrameList;
+        if (!mDropLateFrames || timeline == null || frameList == null) {
+            return linkedBitmap;
+        }
+        final long now = SystemClock.uptimeMillis();
+        while (linkedBitmap != null && linkedBitmap.bitmap != null
+                && timeline.isLate(linkedBitmap.ordinal, now)
+                && !isOneShotLastFrame(frameList, linkedBitmap.index)
+                && mDecodedBitmapQueue.size() > 0) {
+            LinkedBitmap next = mDecodedBitmapQueue.poll();
+            if (next == null) {
+                break;
+            }
+            putDrawnBitmap(linkedBitmap);
+            mDrawDroppedCount.incrementAndGet();
+            linkedBitmap = next;
+        }
+        return linkedBitmap;
+    }
+
+    /**
+     * 记录显示的帧，时间线还没开始时从这一帧开始
+     */
+    private void onFramePresented(LinkedBitmap linkedBitmap) {
+        mPresentedCount.incrementAndGet();
+        FrameScheduler scheduler = mFrameScheduler;
+        if (scheduler != null) {
+            scheduler.onFramePresented(linkedBitmap.ordinal, mDropLateFrames);
+        }
+        if (mDropLateFrames) {
+            // 丢弃帧后绘制索引跟着实际显示的帧走
+            mIndexDrawing.set(linkedBitmap.index);
+        }
+    }
+
+    /**
+     * 把【重排队列】里已经排好序的帧依次提交：保存到缓存、统计打包状态、放入【已解码Bitmap存储队列】。
+     * 保存缓存时记录和前一帧不同的区域，也需要按顺序进行
+     */
+    private void commitDecodedFrames(int generation) {
+        mCommitLock.lock();
+        try {
+            LinkedBitmap linkedBitmap;
+            while ((linkedBitmap = mReorderBuffer.pollNext()) != null) {
+                if (generation != mDecodeGeneration.get() || isDestroy()) {
+                    return;
+                }
+                if (linkedBitmap.index < 0) {
+                    putDrawnBitmap(linkedBitmap);
+                    continue;
+                }
+                final boolean resident = linkedBitmap.resident;
+                if (mUseCache && !resident) {
+                    if (!linkedBitmap.fromCache) {
+                        saveToCache(linkedBitmap);
+                    }
+                    updateSealState(linkedBitmap.index, linkedBitmap.fromCache);
+                }
+                if (!resident) {
+                    pinResidentFrame(linkedBitmap);
+                }
+                if (publishSharedFrame(linkedBitmap) && isPause()) {
+                    // 暂停中只解码给共享的view，自己不持有
+                    SharedFrameSource.release(linkedBitmap);
+                } else {
+                    putDecodedBitmap(linkedBitmap);
+                }
+                updateDecodeFps();
+                updatePrefetchDepth(linkedBitmap);
+            }
+        } finally {
+            mCommitLock.unlock();
+        }
+    }
+
+    /**
+     * 开启了常驻内存时，循环播放的动画在第一轮记录解码出的每一帧。只播放一次的动画不常驻
+     */
+    private void createResidentFrames(FrameList frameList, int generation) {
+        if (mResidentBudget <= 0 || frameList.isOneShot()) {
+            return;
+        }
+        ResidentFrames<Bitmap> residentFrames = new ResidentFrames<>(frameList.getFrameItemSize(), mResidentBudget);
+        synchronized (mDecodeWorkers) {
+            if (generation != mDecodeGeneration.get() || isDestroy()) {
+                return;
+            }
+            mResidentFrames = residentFrames;
+        }
+    }
+
+    /**
+     * 按顺序提交的帧记录为常驻，超出预算时放弃常驻，继续从缓存或者资源解码
+     */
+    private void pinResidentFrame(LinkedBitmap linkedBitmap) {
+        ResidentFrames<Bitmap> residentFrames = mResidentFrames;
+        Bitmap bitmap = linkedBitmap.bitmap;
+        if (residentFrames == null || bitmap == null) {
+            return;
+        }
+        if (residentFrames.pin(linkedBitmap.index, bitmap, bitmap.getAllocationByteCount(), linkedBitmap.dirty)) {
+            linkedBitmap.resident = true;
+            if (residentFrames.isComplete() && linkedBitmap.index == mFrameList.getFrameItemSize() - 1) {
+                Log.i(TAG, "pinResidentFrame, all frames are resident, bytes=" + residentFrames.getByteCount()
+                        + ", source=" + getFrameSourceKey());
+            }
+        } else {
+            Log.i(TAG, "pinResidentFrame, over budget, budget=" + mResidentBudget + ", source=" + getFrameSourceKey());
+            releaseResidentFrames();
+        }
+    }
+
+    /**
+     * 放弃常驻的帧，之后回到从缓存或者资源解码。正在使用的常驻bitmap不回收，由GC回收
+     *
+     * @return 常驻的帧占用的内存
+     */
+    private long releaseResidentFrames() {
+        ResidentFrames<Bitmap> residentFrames;
+        synchronized (mDecodeWorkers) {
+            residentFrames = mResidentFrames;
+            mResidentFrames = null;
+        }
+        if (residentFrames == null) {
+            return 0;
+        }
+        final long bytes = residentFrames.getByteCount();
+        residentFrames.clear();
+        return bytes;
+    }
+
+    /**
+     * 内存不足时按级别释放内存：
+     * {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_MODERATE}时提前解码的帧数降到最少，回收多出来的已绘制的bitmap；
+     * {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW}、{@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_CRITICAL}时
+     * 再放弃常驻的帧，释放解码用的buffer；
+     * {@link ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN}及以上是界面不可见或者进程在后台，不是按运行中的紧张程度排列的，
+     * 单独处理：短时间内不会绘制，同样全部释放
+     *
+     * @return 释放的字节数
+     */
+    private long trimMemory(int level) {
+        if (isDestroy()) {
+            return 0;
+        }
+        final boolean releaseAll;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            releaseAll = true;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            releaseAll = true;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            releaseAll = false;
+        } else {
+            return 0;
+        }
+        long released = 0;
+        if (releaseAll) {
+            // 先放弃常驻，之后回收的bitmap不再重复统计
+            released += releaseResidentFrames();
+            released += releaseDecodeBuffers();
+        }
+        released += shrinkPrefetch();
+        Log.i(TAG, "trimMemory, level=" + level + ", released=" + released + ", source=" + getFrameSourceKey());
+        return released;
+    }
+
+    /**
+     * 提前解码的帧数降到最少，超出的已绘制的LinkedBitmap直接回收，之后再根据解码耗时增加
+     */
+    private long shrinkPrefetch() {
+        mPrefetchController.trim();
+        applyPrefetchDepth();
+        final int limit = mActiveDecodeThreadCount + mPrefetchController.getDepth();
+        long released = 0;
+        LinkedBitmap linkedBitmap;
+        while (mLinkedBitmapCount.get() > limit && (linkedBitmap = mDrawnBitmapQueue.poll()) != null) {
+            mLinkedBitmapCount.decrementAndGet();
+            Bitmap bitmap = linkedBitmap.bitmap;
+            if (!linkedBitmap.resident && bitmap != null && !bitmap.isRecycled()) {
+                released += bitmap.getAllocationByteCount();
+            }
+            // 内存不足，不放回bitmap池
+            linkedBitmap.recycle(false);
+        }
+        return released;
+    }
+
+    /**
+     * 释放读取缓存用的buffer，下次解码时重新创建
+     */
+    private long releaseDecodeBuffers() {
+        long released = 0;
+        synchronized (mDecodeWorkers) {
+            for (DecodeWorker worker : mDecodeWorkers) {
+                if (worker == null) {
+                    continue;
+                }
+                released += sizeOf(worker.dataBuffer) + sizeOf(worker.pixelsBuffer);
+                worker.dataBuffer = null;
+                worker.pixelsBuffer = null;
+            }
+        }
+        return released;
+    }
+
+    private static long sizeOf(BytesBuffer buffer) {
+        return buffer == null || buffer.data == null ? 0 : buffer.data.length;
+    }
+
+    /**
+     * 解码的帧发给共享同一个资源的其他view
+     *
+     * @return 是否有其他view接收了这一帧
+     */
+    private boolean publishSharedFrame(LinkedBitmap linkedBitmap) {
+        SharedFrameSource source = mSharedSource;
+        return source != null && source.publish(mSharedSubscriber, linkedBitmap);
+    }
+
+    /**
+     * 从资源解码的帧保存到缓存，同时更新差异编码的参考帧
+     */
+    private void saveToCache(LinkedBitmap linkedBitmap) {
+        FrameList frameList = mFrameList;
+        FrameItem frameItem = frameList == null ? null : frameList.getFrameItemByIndex(linkedBitmap.index);
+        if (frameItem == null) {
+            return;
+        }
+        try {
+            // 获取【解码锁】，避免保存时已经处于destroy状态，bitmap被回收了而崩溃
+            mDecodingLock.readLock().lockInterruptibly();
+            if (!isDestroy() && !linkedBitmap.bitmap.isRecycled()) {
+                BlobCacheUtil.saveImageByBlobCache(linkedBitmap.bitmap, frameItem, mBlobCache,
+                        frameList.getCodec(), mDeltaReference, linkedBitmap.index, frameList.getDeltaInterval(),
+                        frameList.isLowBitDepth());
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "saveToCache, ex: " + ex + ", name=" + frameItem.getDrawableName());
+        } finally {
+            try {
+                mDecodingLock.readLock().unlock();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 用这一帧的解码耗时和播放间隔调整提前解码的帧数
+     */
+    private void updatePrefetchDepth(LinkedBitmap linkedBitmap) {
+        FrameList frameList = mFrameList;
+        FrameItem frameItem = frameList == null ? null : frameList.getFrameItemByIndex(linkedBitmap.index);
+        int duration = frameItem == null || frameItem.getDuration() <= 0 ? DEFAULT_DURATION : frameItem.getDuration();
+        Bitmap bitmap = linkedBitmap.bitmap;
+        long frameBytes = bitmap == null || bitmap.isRecycled() ? 0 : bitmap.getAllocationByteCount();
+        mPrefetchController.onFrameDecoded(linkedBitmap.decodeMillis, duration, frameBytes);
+        applyPrefetchDepth();
+    }
+
+    private void applyPrefetchDepth() {
+        final int depth = mPrefetchController.getDepth();
+        if (depth != mAppliedPrefetchDepth) {
+            Log.i(TAG, "prefetch depth=" + depth + ", stalls=" + mPrefetchController.getStallCount());
+            mAppliedPrefetchDepth = depth;
+            // 提前解码的帧数变大后可以新建LinkedBitmap
+            unparkDecodeRunnable();
+        }
+    }
+
+    private void resetDecodeFps() {
+        mDecodeFps = 0;
+        mDecodeFpsStartTime = 0;
+        mDecodeFpsFrames = 0;
+    }
+
+    /**
+     * 每提交一帧调用一次，每个统计窗口结束时更新解码帧率
+     */
+    private void updateDecodeFps() {
+        final long now = SystemClock.uptimeMillis();
+        if (mDecodeFpsStartTime == 0) {
+            mDecodeFpsStartTime = now;
+            mDecodeFpsFrames = 0;
+            return;
+        }
+        mDecodeFpsFrames++;
+        final long elapsed = now - mDecodeFpsStartTime;
+        if (elapsed >= DECODE_FPS_WINDOW) {
+            mDecodeFps = mDecodeFpsFrames * 1000f / elapsed;
+            Log.i(TAG, "decode fps=" + mDecodeFps + ", threads=" + mActiveDecodeThreadCount
+                    + ", presented=" + mPresentedCount.get() + ", dropped=" + getDroppedFrameCount());
+            mDecodeFpsStartTime = now;
+            mDecodeFpsFrames = 0;
+        }
+    }
+
+    /**
+     * 解码图片，先从缓存读取，没有的话从资源解码，linkedBitmap.fromCache记录是否来自缓存
      */
-    private Bitmap decodeBitmap(FrameItem frameItem) {
+    private Bitmap decodeBitmap(DecodeWorker worker, FrameItem frameItem, int index, LinkedBitmap linkedBitmap) {
         final String name = frameItem.getDrawableName();
+        final BitmapFactory.Options options = worker.options;
+        final Rect dirty = linkedBitmap.dirty;
         Bitmap bitmap = null;
+        linkedBitmap.fromCache = false;
         if (mUseCache) {
-            if (mDataBuffer == null) {
-                mDataBuffer = new BytesBuffer();
+            BytesBuffer dataBuffer = worker.dataBuffer;
+            if (dataBuffer == null) {
+                dataBuffer = new BytesBuffer();
+                worker.dataBuffer = dataBuffer;
             }
-            if (mWidthBuffer == null) {
-                mWidthBuffer = new BytesBuffer(4);
+            BytesBuffer widthBuffer = worker.widthBuffer;
+            if (widthBuffer == null) {
+                widthBuffer = new BytesBuffer(4);
+                worker.widthBuffer = widthBuffer;
             }
-            if (mHeightBuffer == null) {
-                mHeightBuffer = new BytesBuffer(4);
-            }
-            if (mKeyMap == null) {
-                mKeyMap = new ConcurrentHashMap<>();
-            }
-            byte[] key = mKeyMap.get(name);
-            if (key == null) {
-                key = BlobCacheUtil.getBytes(name);
-                mKeyMap.put(name, key);
+            BytesBuffer heightBuffer = worker.heightBuffer;
+            if (heightBuffer == null) {
+                heightBuffer = new BytesBuffer(4);
+                worker.heightBuffer = heightBuffer;
             }
+            final long cacheKey = frameItem.getCacheKey();
+            final byte[] key = frameItem.getCacheKeyBytes();
 
-            if (mLookupRequest == null) {
-                mLookupRequest = new BlobCache.LookupRequest();
+            BlobCache.LookupRequest lookupRequest = worker.lookupRequest;
+            if (lookupRequest == null) {
+                lookupRequest = new BlobCache.LookupRequest();
+                worker.lookupRequest = lookupRequest;
+            }
+            BytesBuffer pixelsBuffer = worker.pixelsBuffer;
+            if (pixelsBuffer == null) {
+                pixelsBuffer = new BytesBuffer();
+                worker.pixelsBuffer = pixelsBuffer;
             }
             try {
-                // 获取【解码锁】，避免在解码图片时已经处于destroy状态，导致mDecodeOptions中inBitmap被回收了而崩溃
-                mDecodingLock.lockInterruptibly();
+                // 获取【解码锁】，避免在解码图片时已经处于destroy状态，导致inBitmap被回收了而崩溃
+                mDecodingLock.readLock().lockInterruptibly();
                 if (!isDestroy()) {
-                    BytesBuffer bytesBuffer = BlobCacheUtil.getCacheDataByName(mBlobCache, name, mDataBuffer, key, mLookupRequest);
-                    if (bytesBuffer != null && bytesBuffer.data != null) {
-                        mDataBuffer = bytesBuffer;
-                        if (mPixelsBuffer == null || mPixelsBuffer.capacity() != bytesBuffer.data.length) {
-                            mPixelsBuffer = ByteBuffer.allocate(bytesBuffer.data.length);
+                    // 参考帧只在有差异编码的帧时用于解码，这时只有一个解码线程；
+                    // 不使用差异编码时只在按顺序提交、保存时记录和前一帧不同的区域
+                    FrameList frameList = mFrameList;
+                    DeltaReference deltaReference = frameList != null && frameList.getDeltaInterval() > 0
+                            ? mDeltaReference : null;
+                    SealedFrameFile sealedFile = mSealedFile;
+                    if (sealedFile != null) {
+                        // 优先从打包文件读取
+                        bitmap = sealedFile.getBitmap(index, cacheKey, options.inBitmap, pixelsBuffer,
+                                deltaReference, dirty);
+                    }
+                    if (bitmap == null) {
+                        if (mUseMappedCache) {
+                            bitmap = BlobCacheUtil.getCacheBitmapByMappedKey(mBlobCache, cacheKey, key, options.inBitmap,
+                                    pixelsBuffer, deltaReference, index, dirty);
+                        } else {
+                            BytesBuffer bytesBuffer = BlobCacheUtil.getCacheDataByKey(mBlobCache, cacheKey, key, dataBuffer, lookupRequest);
+                            if (bytesBuffer != null && bytesBuffer.data != null) {
+                                worker.dataBuffer = bytesBuffer;
+                                bitmap = BlobCacheUtil.getCacheBitmapByData(bytesBuffer, pixelsBuffer, options.inBitmap,
+                                        widthBuffer, heightBuffer, deltaReference, index, dirty);
+                            }
                         }
-                        bitmap = BlobCacheUtil.getCacheBitmapByData(bytesBuffer, mPixelsBuffer, mDecodeOptions.inBitmap, mWidthBuffer, mHeightBuffer);
                     }
                 }
             } catch (Exception ex) {
@@ -862,24 +1983,31 @@ public class FrameTextureView extends TextureView {
                 Log.e(TAG, "decodeBitmap, from cache, ex=" + ex + ", name=" + name);
             } finally {
                 try {
-                    mDecodingLock.unlock();
+                    mDecodingLock.readLock().unlock();
                 } catch (Exception ex) {
                     ex.printStackTrace();
                 }
             }
 
             if (bitmap != null) {
+                linkedBitmap.fromCache = true;
                 return bitmap;
             }
         }
 
         try {
-            // 获取【解码锁】，避免在解码图片时已经处于destroy状态，导致mDecodeOptions中inBitmap被回收了而崩溃
-            mDecodingLock.lockInterruptibly();
+            // 获取【解码锁】，避免在解码图片时已经处于destroy状态，导致inBitmap被回收了而崩溃
+            mDecodingLock.readLock().lockInterruptibly();
             if (!isDestroy()) {
-                bitmap = ResourceUtil.getBitmap(name, mDecodeOptions);
-                if (mUseCache) {
-                    BlobCacheUtil.saveImageByBlobCache(bitmap, name, mBlobCache);
+                Bitmap inBitmap = options.inBitmap;
+                if (inBitmap != null && inBitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+                    // 从缓存读取的RGB_565、ALPHA_8帧不能用来解码原图，否则会丢失透明度或颜色
+                    options.inBitmap = null;
+                }
+                options.inSampleSize = mSampleSize;
+                bitmap = decodeFrame(frameItem, options);
+                if (bitmap != null && dirty != null) {
+                    dirty.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
                 }
             }
         } catch (Exception ex) {
@@ -887,7 +2015,7 @@ public class FrameTextureView extends TextureView {
             Log.e(TAG, "decodeBitmap, ex: " + ex + ", name=" + name);
         } finally {
             try {
-                mDecodingLock.unlock();
+                mDecodingLock.readLock().unlock();
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
@@ -911,15 +2039,15 @@ public class FrameTextureView extends TextureView {
                 boolean isOneShot = mFrameList.isOneShot();
                 if (isOneShot) {
                     setStatus(FrameViewStatus.END);
-                } else {
-                    drawOneFrame();
+                } else if (drawOneFrame()) {
                     mIndexDrawing.set(0);
                 }
             } else {
                 drawOneFrame();
             }
 
-            if (mDrawHandler != null) {
+            FrameScheduler scheduler = mFrameScheduler;
+            if (mDrawHandler != null && scheduler != null) {
                 if (mFrameList == null) {
                     return;
                 }
@@ -929,68 +2057,140 @@ public class FrameTextureView extends TextureView {
                 if (!mIsSurfaceAlive.get()) {
                     return;
                 }
-                int duration = DEFAULT_DURATION;
-                FrameItem frameItem = mFrameList.getFrameItemByIndex(mIndexDrawing.get());
-                if (frameItem != null) {
-                    duration = frameItem.getDuration();
-                }
-                mDrawHandler.postDelayed(this, duration);
+                // 按时间线安排下一帧，在离它最近的一次vsync绘制，绘制本身的耗时不会累积成延迟
+                scheduler.scheduleNext(this);
             }
         }
     }
 
     private class DecodeRunnable implements Runnable {
 
+        private final DecodeWorker mWorker;
+
+        /**
+         * 创建时的mDecodeGeneration，切换动画资源后不再继续解码
+         */
+        private final int mGeneration;
+
+        DecodeRunnable(DecodeWorker worker, int generation) {
+            mWorker = worker;
+            mGeneration = generation;
+        }
+
         @Override
         public void run() {
             if (isDestroy()) {
                 Log.e(TAG, "DecodeRunnable, is destroy.");
                 return;
             }
-            if (mFrameList == null) {
-                Log.e(TAG, "DecodeRunnable, frame list is null.");
+            if (mGeneration != mDecodeGeneration.get()) {
+                Log.i(TAG, "DecodeRunnable, generation changed, worker=" + mWorker.index);
                 return;
             }
-
-            int index = mIndexDecoding.getAndIncrement();
-            if (index >= mFrameList.getFrameItemSize()) {
-                index = 0;
-                mIndexDecoding.set(1);
-            }
-
-            FrameItem frameItem = mFrameList.getFrameItemByIndex(index);
-            if (frameItem == null) {
-                Log.e(TAG, "DecodeRunnable, index=" + index + ", frameItem is null.");
+            if (mFrameList == null) {
+                Log.e(TAG, "DecodeRunnable, frame list is null.");
                 return;
             }
 
-            LinkedBitmap linkedBitmap = getDrawnBitmap();
+            LinkedBitmap linkedBitmap = obtainLinkedBitmap();
             if (isDestroy()) {
                 Log.e(TAG, "DecodeRunnable, is destroy.");
                 return;
             }
             if (linkedBitmap == null) {
-                linkedBitmap = new LinkedBitmap();
+                // 解码线程是共享的，不能阻塞等待，绘制完有bitmap放回时再继续
+                parkDecodeRunnable(this);
+                return;
             }
-            mDecodeOptions.inBitmap = linkedBitmap.bitmap;
-            Bitmap bitmap = decodeBitmap(frameItem);
+            decodeNextFrame(mWorker, linkedBitmap, mGeneration);
             if (isDestroy()) {
                 Log.e(TAG, "DecodeRunnable, is destroy.");
                 return;
             }
-            if (bitmap == null) {
-                Log.e(TAG, "DecodeRunnable, bitmap is null.");
-            } else {
-                linkedBitmap.bitmap = bitmap;
-                putDecodedBitmap(linkedBitmap);
+
+            // 排到队尾，其他view的解码任务可以先执行
+            mDecodeLane.post(this);
+        }
+    }
+
+    private class SharedSubscriber implements SharedFrameSource.Subscriber {
+
+        @Override
+        public boolean onSharedFrame(LinkedBitmap frame) {
+            if (!isStart() || mSharedSubscriber != this) {
+                return false;
             }
+            return mDecodedBitmapQueue.offer(frame);
+        }
 
-            if (mDecodeHandler != null) {
-                if (isDestroy()) {
-                    return;
-                }
-                mDecodeHandler.post(this);
+        @Override
+        public void onFrameReleased(LinkedBitmap frame) {
+            if (mSharedSubscriber != this) {
+                // 离开之后才绘制完的旧帧，已经不属于当前的动画
+                frame.recycle();
+                return;
             }
+            offerDrawnBitmap(frame);
+        }
+
+        @Override
+        public void onOwnerChanged(boolean becomeOwner) {
+            Log.i(TAG, "onOwnerChanged, becomeOwner=" + becomeOwner + ", source=" + getFrameSourceKey());
+            // 之前的owner的帧作废，新的owner的帧序号重新开始，时间线从下一次显示的帧重新计算
+            releaseSharedFrames();
+            FrameTimeline timeline = mTimeline;
+            if (timeline != null) {
+                timeline.stop();
+            }
+            mNeedFullRedraw.set(true);
+            if (becomeOwner && (isStart() || isPause())) {
+                startDecodeWorkers(mDecodeGeneration.get());
+            }
+        }
+    }
+
+    /**
+     * 一个解码任务的解码配置和buffer，每个同时执行的解码任务一份，互不共享
+     */
+    private static class DecodeWorker {
+
+        final int index;
+
+        /**
+         * 解码图片的配置
+         */
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+
+        /**
+         * 使用缓存时，读取bitmap的buffer数据
+         */
+        BytesBuffer dataBuffer;
+
+        /**
+         * 使用缓存时，读取bitmap时获取bitmap宽度的数据
+         */
+        BytesBuffer widthBuffer;
+
+        /**
+         * 使用缓存时，读取bitmap时获取bitmap高度的数据
+         */
+        BytesBuffer heightBuffer;
+
+        /**
+         * 使用缓存时，编码过的缓存数据解码后的像素
+         */
+        BytesBuffer pixelsBuffer;
+
+        /**
+         * 使用缓存时，用于查询缓存的请求；
+         */
+        BlobCache.LookupRequest lookupRequest;
+
+        DecodeWorker(int index) {
+            this.index = index;
+            options.inMutable = true;
+            options.inDensity = Bitmap.DENSITY_NONE;
+            options.inScaled = false;
         }
     }
 }
@@ -0,0 +1,97 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import java.util.List;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 按每帧的duration排出的绝对播放时间线，时间单位和传入的now一致（SystemClock.uptimeMillis）。
+ * <p>
+ * 帧用序号(ordinal)表示：从开始解码算起的第几帧，循环播放时一直增加，第ordinal帧的索引是ordinal % 帧数。
+ * 第ordinal帧的显示时间是{@link #getPresentationTime(int)}，到第ordinal + 1帧的显示时间还没显示出来就算过期。
+ * <p>
+ * 时间线在第一次绘制时{@link #start(long, int)}，暂停后{@link #stop()}，恢复时重新开始。
+ */
+public class FrameTimeline {
+
+    /**
+     * 一轮中每一帧相对第0帧的开始时间
+     */
+    private final long[] mOffsets;
+
+    /**
+     * 一轮的总时长
+     */
+    private final long mLoopDuration;
+
+    private boolean mStarted;
+    private long mStartTime;
+    private long mStartOffset;
+
+    /**
+     * @param defaultDuration duration小于等于0的帧使用的时长
+     */
+    public static FrameTimeline create(FrameList frameList, int defaultDuration) {
+        List<FrameItem> items = frameList.getFrameItemList();
+        int size = items == null ? 0 : items.size();
+        int[] durations = new int[size];
+        for (int i = 0; i < size; i++) {
+            int duration = items.get(i).getDuration();
+            durations[i] = duration > 0 ? duration : defaultDuration;
+        }
+        return new FrameTimeline(durations);
+    }
+
+    public FrameTimeline(int[] durations) {
+        mOffsets = new long[durations.length];
+        long offset = 0;
+        for (int i = 0; i < durations.length; i++) {
+            mOffsets[i] = offset;
+            offset += Math.max(durations[i], 1);
+        }
+        mLoopDuration = offset;
+    }
+
+    /**
+     * 第ordinal帧在now显示，之后的帧按duration排在它后面
+     */
+    public synchronized void start(long now, int ordinal) {
+        mStartTime = now;
+        mStartOffset = offsetOf(ordinal);
+        mStarted = true;
+    }
+
+    public synchronized void stop() {
+        mStarted = false;
+    }
+
+    public synchronized boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * 第ordinal帧的显示时间，时间线没有开始时返回-1
+     */
+    public synchronized long getPresentationTime(int ordinal) {
+        if (!mStarted) {
+            return -1;
+        }
+        return mStartTime + offsetOf(ordinal) - mStartOffset;
+    }
+
+    /**
+     * now时第ordinal帧是否已经过期：后一帧的显示时间已经到了。时间线没有开始时不会过期
+     */
+    public synchronized boolean isLate(int ordinal, long now) {
+        return mStarted && now >= mStartTime + offsetOf(ordinal + 1) - mStartOffset;
+    }
+
+    private long offsetOf(int ordinal) {
+        final int size = mOffsets.length;
+        if (size == 0 || ordinal < 0) {
+            return 0;
+        }
+        return (long) (ordinal / size) * mLoopDuration + mOffsets[ordinal % size];
+    }
+}
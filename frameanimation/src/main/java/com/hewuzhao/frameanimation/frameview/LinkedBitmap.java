@@ -1,6 +1,11 @@
 package com.hewuzhao.frameanimation.frameview;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.hewuzhao.frameanimation.bitmappool.BitmapPool;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author hewuzhao
@@ -9,4 +14,73 @@ import android.graphics.Bitmap;
 public class LinkedBitmap {
     public Bitmap bitmap;
     public LinkedBitmap next;
+
+    /**
+     * bitmap是第几帧，-1表示未知
+     */
+    public int index = -1;
+
+    /**
+     * bitmap是开始解码以来的第几帧，循环播放时一直增加，见{@link FrameTimeline}
+     */
+    public int ordinal = -1;
+
+    /**
+     * 和前一帧不同的区域，bitmap坐标；为空表示和前一帧完全相同
+     */
+    public final Rect dirty = new Rect();
+
+    /**
+     * bitmap是否从缓存读取，不是的话按顺序提交时保存到缓存
+     */
+    public boolean fromCache;
+
+    /**
+     * 解码这一帧的耗时，单位毫秒
+     */
+    public long decodeMillis;
+
+    /**
+     * bitmap是否常驻内存，见{@link ResidentFrames}。常驻的bitmap不能作为inBitmap解码
+     */
+    public boolean resident;
+
+    /**
+     * 共享给其他view时，还没绘制完这一帧的view个数，包括解码的view自己，见{@link SharedFrameSource}
+     */
+    public final AtomicInteger shareCount = new AtomicInteger();
+
+    /**
+     * 共享给其他view时，解码这一帧的view，所有view都绘制完后放回它
+     */
+    public SharedFrameSource.Subscriber publisher;
+
+    /**
+     * 其他view解码后共享过来的帧，指向解码的view的LinkedBitmap，bitmap不属于这个view
+     */
+    public LinkedBitmap sharedFrom;
+
+    /**
+     * 不再使用这个LinkedBitmap，bitmap放回{@link BitmapPool}给之后的帧复用
+     */
+    public void recycle() {
+        recycle(true);
+    }
+
+    /**
+     * 共享中的bitmap可能还在其他view上绘制，常驻的bitmap可能还在其他LinkedBitmap里，都不回收，交给GC
+     *
+     * @param reuse 是否放回{@link BitmapPool}，否则直接回收
+     */
+    public void recycle(boolean reuse) {
+        if (sharedFrom == null && shareCount.get() == 0 && !resident && bitmap != null && !bitmap.isRecycled()) {
+            if (reuse) {
+                BitmapPool.getInstance().put(bitmap);
+            } else {
+                bitmap.recycle();
+            }
+        }
+        bitmap = null;
+        resident = false;
+    }
 }
@@ -0,0 +1,115 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import android.graphics.Rect;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 循环播放的小动画，第一轮解码出的每一帧都留在内存里，之后每一轮直接使用，不再读取缓存和解码。
+ * <p>
+ * 所有帧的总大小超过预算时不再常驻，第一帧就能估算出总大小的，直接放弃。
+ * 常驻的bitmap可能同时被多个LinkedBitmap引用，不能再作为inBitmap解码，也不主动回收。
+ * 这里只记录引用和调用方给出的大小，不访问bitmap本身。
+ *
+ * @param <T> 帧的类型，播放时是Bitmap
+ */
+public class ResidentFrames<T> {
+
+    private final Object[] mFrames;
+    private final Rect[] mDirtyRects;
+    private final long mBudgetBytes;
+
+    private long mByteCount;
+    private int mPinnedCount;
+    private boolean mOverBudget;
+
+    /**
+     * @param frameCount  一轮的帧数
+     * @param budgetBytes 所有帧总共可以占用的内存，单位：字节
+     */
+    public ResidentFrames(int frameCount, long budgetBytes) {
+        mFrames = new Object[Math.max(frameCount, 0)];
+        mDirtyRects = new Rect[mFrames.length];
+        mBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * 记录第index帧，已经记录过的忽略
+     *
+     * @param byteCount bitmap占用的内存
+     * @param dirty     和前一帧不同的区域
+     * @return 超出预算时返回false，之后不再记录
+     */
+    public synchronized boolean pin(int index, T bitmap, long byteCount, Rect dirty) {
+        if (mOverBudget) {
+            return false;
+        }
+        if (index < 0 || index >= mFrames.length || bitmap == null) {
+            return true;
+        }
+        if (mFrames[index] != null) {
+            return true;
+        }
+        // 每一帧的大小一般相同，按第一帧估算总大小
+        final long estimate = mPinnedCount == 0 ? byteCount * mFrames.length : mByteCount + byteCount;
+        if (estimate > mBudgetBytes) {
+            mOverBudget = true;
+            clear();
+            return false;
+        }
+        mFrames[index] = bitmap;
+        mDirtyRects[index] = new Rect(dirty);
+        mByteCount += byteCount;
+        mPinnedCount++;
+        return true;
+    }
+
+    /**
+     * 第index帧常驻的bitmap，还没有记录时返回null
+     *
+     * @param outDirty 输出和前一帧不同的区域
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T get(int index, Rect outDirty) {
+        if (index < 0 || index >= mFrames.length) {
+            return null;
+        }
+        T bitmap = (T) mFrames[index];
+        if (bitmap != null && outDirty != null) {
+            outDirty.set(mDirtyRects[index]);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 是否所有帧都已经常驻
+     */
+    public synchronized boolean isComplete() {
+        return mFrames.length > 0 && mPinnedCount == mFrames.length;
+    }
+
+    public synchronized boolean isOverBudget() {
+        return mOverBudget;
+    }
+
+    public synchronized int getPinnedCount() {
+        return mPinnedCount;
+    }
+
+    public synchronized long getByteCount() {
+        return mByteCount;
+    }
+
+    /**
+     * 放弃所有常驻的帧，正在使用的bitmap由GC回收
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < mFrames.length; i++) {
+            mFrames[i] = null;
+            mDirtyRects[i] = null;
+        }
+        mByteCount = 0;
+        mPinnedCount = 0;
+    }
+}
@@ -0,0 +1,186 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 多个view同时播放同一个动画资源、解码尺寸也相同时，只由其中一个view解码，解码出的帧共享给其他view绘制。
+ * <p>
+ * 第一个订阅的view负责解码（owner），它按顺序提交的每一帧通过{@link #publish(Subscriber, LinkedBitmap)}
+ * 发给其他订阅的view，其他view收到的是指向同一个bitmap的LinkedBitmap，各自按自己的缩放类型绘制到自己的surface上。
+ * 每一帧记录还没绘制完的view个数，最后一个view绘制完后才放回owner的【已绘制的bitmap队列】复用。
+ * owner离开时由下一个订阅的view接着解码。
+ */
+public class SharedFrameSource {
+
+    /**
+     * 订阅共享帧的view
+     */
+    public interface Subscriber {
+
+        /**
+         * 收到owner解码的一帧，不接收时返回false，例如暂停中
+         */
+        boolean onSharedFrame(LinkedBitmap frame);
+
+        /**
+         * owner解码的一帧所有view都绘制完了，只会在owner上调用
+         */
+        void onFrameReleased(LinkedBitmap frame);
+
+        /**
+         * owner离开了，之前收到的帧作废
+         *
+         * @param becomeOwner 是否由这个view接着解码
+         */
+        void onOwnerChanged(boolean becomeOwner);
+    }
+
+    private static final Map<String, SharedFrameSource> SOURCES = new HashMap<>();
+
+    private final String mKey;
+
+    /**
+     * 下面的字段由SOURCES的锁保护
+     */
+    private final List<Subscriber> mSubscribers = new ArrayList<>();
+    private Subscriber mOwner;
+
+    private SharedFrameSource(String key) {
+        mKey = key;
+    }
+
+    /**
+     * @param sourceKey  帧来源的key，见{@link com.hewuzhao.frameanimation.framesource.FrameSource#getKey()}
+     * @param sampleSize 解码时的inSampleSize
+     */
+    public static String keyOf(String sourceKey, int sampleSize) {
+        return sourceKey + "_s" + sampleSize;
+    }
+
+    /**
+     * 订阅key对应的共享帧，还没有view订阅时subscriber成为owner
+     */
+    public static SharedFrameSource subscribe(String key, Subscriber subscriber) {
+        synchronized (SOURCES) {
+            SharedFrameSource source = SOURCES.get(key);
+            if (source == null) {
+                source = new SharedFrameSource(key);
+                SOURCES.put(key, source);
+            }
+            if (!source.mSubscribers.contains(subscriber)) {
+                source.mSubscribers.add(subscriber);
+            }
+            if (source.mOwner == null) {
+                source.mOwner = subscriber;
+            }
+            return source;
+        }
+    }
+
+    /**
+     * 取消订阅。owner取消时，下一个订阅的view成为owner，其他view之前收到的帧作废
+     */
+    public void unsubscribe(Subscriber subscriber) {
+        Subscriber newOwner;
+        List<Subscriber> remaining;
+        synchronized (SOURCES) {
+            if (!mSubscribers.remove(subscriber)) {
+                return;
+            }
+            if (mSubscribers.isEmpty()) {
+                SOURCES.remove(mKey);
+            }
+            if (mOwner != subscriber) {
+                return;
+            }
+            mOwner = mSubscribers.isEmpty() ? null : mSubscribers.get(0);
+            newOwner = mOwner;
+            remaining = new ArrayList<>(mSubscribers);
+        }
+        // 不在锁里回调，避免和view自己的锁互相等待
+        for (Subscriber s : remaining) {
+            s.onOwnerChanged(s == newOwner);
+        }
+    }
+
+    public boolean isOwner(Subscriber subscriber) {
+        synchronized (SOURCES) {
+            return mOwner == subscriber;
+        }
+    }
+
+    public int getSubscriberCount() {
+        synchronized (SOURCES) {
+            return mSubscribers.size();
+        }
+    }
+
+    /**
+     * owner按顺序提交一帧时调用，发给其他订阅的view
+     *
+     * @return 是否有其他view接收了这一帧。接收了的话frame由owner持有一份引用，
+     * owner绘制完或者不绘制时都要调用{@link #release(LinkedBitmap)}
+     */
+    public boolean publish(Subscriber publisher, LinkedBitmap frame) {
+        List<Subscriber> followers;
+        synchronized (SOURCES) {
+            if (mOwner != publisher || mSubscribers.size() <= 1) {
+                return false;
+            }
+            followers = new ArrayList<>(mSubscribers);
+            followers.remove(publisher);
+        }
+        frame.publisher = publisher;
+        // 先算上所有view的引用，分发过程中不会提前归零
+        frame.shareCount.set(followers.size() + 1);
+        int accepted = 0;
+        for (Subscriber follower : followers) {
+            LinkedBitmap shared = new LinkedBitmap();
+            shared.bitmap = frame.bitmap;
+            shared.index = frame.index;
+            shared.ordinal = frame.ordinal;
+            shared.dirty.set(frame.dirty);
+            shared.sharedFrom = frame;
+            if (follower.onSharedFrame(shared)) {
+                accepted++;
+            } else {
+                frame.shareCount.decrementAndGet();
+            }
+        }
+        if (accepted == 0) {
+            frame.shareCount.set(0);
+            frame.publisher = null;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 一个view绘制完或者丢弃了共享的帧，最后一个view释放时放回owner
+     *
+     * @param frame owner的帧，或者其他view收到的共享帧
+     */
+    public static void release(LinkedBitmap frame) {
+        LinkedBitmap target = frame.sharedFrom != null ? frame.sharedFrom : frame;
+        if (target.shareCount.decrementAndGet() == 0) {
+            Subscriber publisher = target.publisher;
+            target.publisher = null;
+            if (publisher != null) {
+                publisher.onFrameReleased(target);
+            }
+        }
+    }
+
+    /**
+     * 是否需要调用{@link #release(LinkedBitmap)}释放，而不是直接放回【已绘制的bitmap队列】
+     */
+    public static boolean isShared(LinkedBitmap frame) {
+        return frame.sharedFrom != null || frame.shareCount.get() > 0;
+    }
+}
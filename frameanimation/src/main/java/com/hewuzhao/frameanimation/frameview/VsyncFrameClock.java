@@ -0,0 +1,138 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 通过Choreographer把每一帧对齐到离目标时间最近的一次屏幕刷新(vsync)。
+ * <p>
+ * 目标时间前一个刷新周期开始，每次vsync检查一次，目标时间落在这次vsync的前后半个周期内就执行回调。
+ * Choreographer按线程区分，只能在handler所在的线程使用；刷新周期根据相邻两次vsync的间隔估算。
+ */
+public class VsyncFrameClock implements FrameClock {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * 默认按60Hz估算刷新周期
+     */
+    private static final long DEFAULT_VSYNC_PERIOD_NANOS = 1000000000L / 60;
+
+    private final Handler mHandler;
+
+    private volatile Choreographer mChoreographer;
+
+    /**
+     * 估算的刷新周期，以及上一次vsync的时间
+     */
+    private long mVsyncPeriodNanos = DEFAULT_VSYNC_PERIOD_NANOS;
+    private long mLastFrameTimeNanos;
+
+    private Runnable mCallback;
+    private long mTargetTime;
+
+    private final Runnable mWaitVsyncRunnable = new Runnable() {
+        @Override
+        public void run() {
+            getChoreographer().postFrameCallback(mFrameCallback);
+        }
+    };
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onVsync(frameTimeNanos);
+        }
+    };
+
+    /**
+     * @param handler 绘制线程的handler
+     */
+    public VsyncFrameClock(Handler handler) {
+        mHandler = handler;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public void schedule(Runnable callback, long targetTime) {
+        final long waitTime;
+        synchronized (this) {
+            mCallback = callback;
+            mTargetTime = targetTime;
+            waitTime = targetTime - mVsyncPeriodNanos / NANOS_PER_MILLI;
+        }
+        removeFrameCallback();
+        mHandler.removeCallbacks(mWaitVsyncRunnable);
+        if (waitTime > uptimeMillis()) {
+            mHandler.postAtTime(mWaitVsyncRunnable, waitTime);
+        } else {
+            mHandler.post(mWaitVsyncRunnable);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (this) {
+            mCallback = null;
+        }
+        mHandler.removeCallbacks(mWaitVsyncRunnable);
+        removeFrameCallback();
+    }
+
+    private void onVsync(long frameTimeNanos) {
+        final Runnable callback;
+        synchronized (this) {
+            updateVsyncPeriod(frameTimeNanos);
+            if (mCallback == null) {
+                return;
+            }
+            if (!isNearestVsync(frameTimeNanos, mVsyncPeriodNanos, mTargetTime * NANOS_PER_MILLI)) {
+                getChoreographer().postFrameCallback(mFrameCallback);
+                return;
+            }
+            callback = mCallback;
+            mCallback = null;
+        }
+        callback.run();
+    }
+
+    /**
+     * 相邻两次vsync的间隔接近当前估算值时才更新，中间跳过了vsync的间隔不计入
+     */
+    private void updateVsyncPeriod(long frameTimeNanos) {
+        final long interval = frameTimeNanos - mLastFrameTimeNanos;
+        mLastFrameTimeNanos = frameTimeNanos;
+        if (interval > mVsyncPeriodNanos / 2 && interval < mVsyncPeriodNanos * 3 / 2) {
+            mVsyncPeriodNanos = (mVsyncPeriodNanos * 7 + interval) / 8;
+        }
+    }
+
+    /**
+     * 目标时间是否在这次vsync的后半个周期之前，即这次vsync是离目标时间最近的一次或者已经晚了
+     */
+    static boolean isNearestVsync(long frameTimeNanos, long periodNanos, long targetNanos) {
+        return frameTimeNanos + periodNanos / 2 >= targetNanos;
+    }
+
+    private Choreographer getChoreographer() {
+        if (mChoreographer == null) {
+            mChoreographer = Choreographer.getInstance();
+        }
+        return mChoreographer;
+    }
+
+    private void removeFrameCallback() {
+        Choreographer choreographer = mChoreographer;
+        if (choreographer != null) {
+            choreographer.removeFrameCallback(mFrameCallback);
+        }
+    }
+}
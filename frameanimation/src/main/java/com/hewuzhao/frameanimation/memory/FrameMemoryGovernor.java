@@ -0,0 +1,180 @@
+package com.hewuzhao.frameanimation.memory;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import com.hewuzhao.frameanimation.bitmappool.BitmapPool;
+import com.hewuzhao.frameanimation.blobcache.BlobCacheManager;
+import com.hewuzhao.frameanimation.utils.FrameParseUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 统一响应系统内存不足，在{@link com.hewuzhao.frameanimation.FrameApplication}里注册。
+ * <p>
+ * 每次onTrimMemory依次通知注册的{@link Trimmable}（每个FrameTextureView一个），再按级别回收{@link BitmapPool}，
+ * 内存不足达到{@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW}时再关闭没有view使用的BlobCache，
+ * 记录每个级别累计释放的字节数。onLowMemory按{@link ComponentCallbacks2#TRIM_MEMORY_COMPLETE}处理。
+ */
+public class FrameMemoryGovernor implements ComponentCallbacks2 {
+    private static final String TAG = "FrameMemoryGovernor";
+
+    /**
+     * 内存不足时可以释放内存的对象
+     */
+    public interface Trimmable {
+
+        /**
+         * @param level onTrimMemory的级别
+         * @return 释放的字节数
+         */
+        long onTrimMemory(int level);
+    }
+
+    /**
+     * 只弱引用注册的对象，没有unregister的view也可以被回收
+     */
+    private final Set<Trimmable> mTrimmables = Collections.newSetFromMap(new WeakHashMap<Trimmable, Boolean>());
+
+    /**
+     * 每个级别累计释放的字节数
+     */
+    private final Map<Integer, Long> mReleasedBytes = new TreeMap<>();
+
+    private int mLastLevel = -1;
+    private long mLastReleasedBytes;
+
+    private static class SingletonHolder {
+        private static final FrameMemoryGovernor INSTANCE = new FrameMemoryGovernor();
+    }
+
+    public static FrameMemoryGovernor getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    FrameMemoryGovernor() {
+    }
+
+    public void register(Trimmable trimmable) {
+        synchronized (mTrimmables) {
+            mTrimmables.add(trimmable);
+        }
+    }
+
+    public void unregister(Trimmable trimmable) {
+        synchronized (mTrimmables) {
+            mTrimmables.remove(trimmable);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // 同一个资源id在新的配置下可能对应另一个xml
+        FrameParseUtil.clearCache();
+    }
+
+    /**
+     * 按level释放内存
+     *
+     * @return 这一次释放的字节数
+     */
+    public long trimMemory(int level) {
+        List<Trimmable> trimmables;
+        synchronized (mTrimmables) {
+            trimmables = new ArrayList<>(mTrimmables);
+        }
+        long released = 0;
+        for (Trimmable trimmable : trimmables) {
+            try {
+                released += trimmable.onTrimMemory(level);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                Log.e(TAG, "trimMemory, ex: " + ex);
+            }
+        }
+        // view回收的bitmap可能放回了bitmap池，最后回收
+        released += trimBitmapPool(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            released += trimCaches();
+        }
+        synchronized (mReleasedBytes) {
+            Long total = mReleasedBytes.get(level);
+            mReleasedBytes.put(level, (total == null ? 0 : total) + released);
+            mLastLevel = level;
+            mLastReleasedBytes = released;
+        }
+        Log.i(TAG, "trimMemory, level=" + level + ", released=" + released + ", views=" + trimmables.size());
+        return released;
+    }
+
+    /**
+     * 按级别回收bitmap池里的bitmap
+     */
+    long trimBitmapPool(int level) {
+        return BitmapPool.getInstance().trimMemory(level);
+    }
+
+    /**
+     * 关闭没有view使用的缓存
+     */
+    long trimCaches() {
+        return BlobCacheManager.getInstance().closeIdleBlobCaches();
+    }
+
+    /**
+     * level级别累计释放的字节数
+     */
+    public long getReleasedBytes(int level) {
+        synchronized (mReleasedBytes) {
+            Long total = mReleasedBytes.get(level);
+            return total == null ? 0 : total;
+        }
+    }
+
+    /**
+     * 每个级别累计释放的字节数，key是级别
+     */
+    public Map<Integer, Long> getReleasedBytesByLevel() {
+        synchronized (mReleasedBytes) {
+            return new TreeMap<>(mReleasedBytes);
+        }
+    }
+
+    /**
+     * 最近一次onTrimMemory的级别，还没有时返回-1
+     */
+    public int getLastTrimLevel() {
+        synchronized (mReleasedBytes) {
+            return mLastLevel;
+        }
+    }
+
+    /**
+     * 最近一次onTrimMemory释放的字节数
+     */
+    public long getLastReleasedBytes() {
+        synchronized (mReleasedBytes) {
+            return mLastReleasedBytes;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.hewuzhao.frameanimation.utils;
+
+import android.util.Log;
+
+import com.hewuzhao.frameanimation.blobcache.BlobCacheUtil;
+import com.hewuzhao.frameanimation.frameview.FrameItem;
+import com.hewuzhao.frameanimation.frameview.FrameList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Adler32;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ * <p>
+ * 解析好的动画列表编译成的二进制文件，之后启动时一次读取，不再解析xml。
+ * <p>
+ * 文件格式（小端序）：
+ * <pre>
+ * header:  magic(4) + 格式版本(4) + 安装包更新时间(8) + 资源id(4) + body长度(4) + body的Adler32(4) + 文件路径
+ * body:    version、maxEntries、maxBytes、syncPolicy、syncValue、codec、verifyPolicy、verifySampleRate、
+ *          deltaInterval(各4) + 开关(4) + 文件名 + 帧数(4)
+ *          每帧 资源id(4) + duration(4) + 缓存key(8) + 名字
+ * 字符串:  UTF-8字节数(2) + UTF-8字节
+ * </pre>
+ * 安装包更新时间、资源id或者文件路径不一致时作废：资源id在重新打包后可能会变，
+ * 文件路径是按当前配置（屏幕密度、语言、横竖屏等）选中的xml，配置变化后可能是另一个文件。
+ */
+public class FrameManifest {
+    private static final String TAG = "FrameManifest";
+
+    private static final int MAGIC = 0xF4A3E1F0;
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int HEADER_SIZE = 28;
+
+    private static final int FLAG_ONE_SHOT = 1;
+    private static final int FLAG_LOW_BIT_DEPTH = 1 << 1;
+    private static final int FLAG_DECODE_TO_VIEW_SIZE = 1 << 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 写入file，先写临时文件再重命名，写到一半的文件不会被读到
+     *
+     * @param path  资源id对应的xml文件路径
+     * @param stamp 安装包的更新时间
+     * @return 是否成功
+     */
+    public static boolean write(FrameList frameList, int resId, String path, long stamp, File file) {
+        byte[] data = encode(frameList, resId, path, stamp);
+        if (data == null) {
+            return false;
+        }
+        File tmpFile = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+        boolean success = false;
+        try {
+            out = new FileOutputStream(tmpFile);
+            out.write(data);
+            out.getFD().sync();
+            out.close();
+            out = null;
+            success = tmpFile.renameTo(file);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "write, ex: " + ex + ", file=" + file);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            if (!success) {
+                tmpFile.delete();
+            }
+        }
+        return success;
+    }
+
+    /**
+     * 读取file，不存在、损坏、或者和resId、path、stamp不一致时返回null
+     */
+    public static FrameList read(File file, int resId, String path, long stamp) {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        RandomAccessFile in = null;
+        try {
+            in = new RandomAccessFile(file, "r");
+            long length = in.length();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                return null;
+            }
+            byte[] data = new byte[(int) length];
+            in.readFully(data);
+            return decode(data, resId, path, stamp);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Log.e(TAG, "read, ex: " + ex + ", file=" + file);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    static byte[] encode(FrameList frameList, int resId, String path, long stamp) {
+        List<FrameItem> items = frameList.getFrameItemList();
+        if (CommonUtil.isEmpty(items)) {
+            return null;
+        }
+        byte[] pathBytes = toBytes(path);
+        final int headerSize = HEADER_SIZE + 2 + pathBytes.length;
+        byte[] fileName = toBytes(frameList.getFileName());
+        byte[][] names = new byte[items.size()][];
+        int bodySize = 10 * 4 + 2 + fileName.length + 4;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = toBytes(items.get(i).getDrawableName());
+            bodySize += 4 + 4 + 8 + 2 + names[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(headerSize + bodySize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(headerSize);
+        buffer.putInt(frameList.getVersion());
+        buffer.putInt(frameList.getMaxEntries());
+        buffer.putInt(frameList.getMaxBytes());
+        buffer.putInt(frameList.getSyncPolicy());
+        buffer.putInt(frameList.getSyncValue());
+        buffer.putInt(frameList.getCodec());
+        buffer.putInt(frameList.getVerifyPolicy());
+        buffer.putInt(frameList.getVerifySampleRate());
+        buffer.putInt(frameList.getDeltaInterval());
+        int flags = 0;
+        if (frameList.isOneShot()) {
+            flags |= FLAG_ONE_SHOT;
+        }
+        if (frameList.isLowBitDepth()) {
+            flags |= FLAG_LOW_BIT_DEPTH;
+        }
+        if (frameList.isDecodeToViewSize()) {
+            flags |= FLAG_DECODE_TO_VIEW_SIZE;
+        }
+        buffer.putInt(flags);
+        putString(buffer, fileName);
+        buffer.putInt(items.size());
+        for (int i = 0; i < names.length; i++) {
+            FrameItem item = items.get(i);
+            buffer.putInt(item.getResId());
+            buffer.putInt(item.getDuration());
+            buffer.putLong(item.getCacheKey());
+            putString(buffer, names[i]);
+        }
+
+        byte[] data = buffer.array();
+        Adler32 checksum = new Adler32();
+        checksum.update(data, headerSize, bodySize);
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putLong(stamp);
+        buffer.putInt(resId);
+        buffer.putInt(bodySize);
+        buffer.putInt((int) checksum.getValue());
+        putString(buffer, pathBytes);
+        return data;
+    }
+
+    static FrameList decode(byte[] data, int resId, String path, long stamp) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                Log.w(TAG, "decode, unknown format.");
+                return null;
+            }
+            if (buffer.getLong() != stamp || buffer.getInt() != resId) {
+                Log.i(TAG, "decode, out of date, resId=" + resId);
+                return null;
+            }
+            final int bodySize = buffer.getInt();
+            final int expected = buffer.getInt();
+            if (!getString(buffer).equals(path == null ? "" : path)) {
+                Log.i(TAG, "decode, path changed, resId=" + resId + ", path=" + path);
+                return null;
+            }
+            final int headerSize = buffer.position();
+            if (bodySize != data.length - headerSize) {
+                Log.w(TAG, "decode, invalid body size=" + bodySize);
+                return null;
+            }
+            Adler32 checksum = new Adler32();
+            checksum.update(data, headerSize, bodySize);
+            if ((int) checksum.getValue() != expected) {
+                Log.w(TAG, "decode, checksum mismatch.");
+                return null;
+            }
+
+            FrameList frameList = new FrameList();
+            frameList.setVersion(buffer.getInt());
+            frameList.setMaxEntries(buffer.getInt());
+            frameList.setMaxBytes(buffer.getInt());
+            frameList.setSyncPolicy(buffer.getInt());
+            frameList.setSyncValue(buffer.getInt());
+            frameList.setCodec(buffer.getInt());
+            frameList.setVerifyPolicy(buffer.getInt());
+            frameList.setVerifySampleRate(buffer.getInt());
+            frameList.setDeltaInterval(buffer.getInt());
+            final int flags = buffer.getInt();
+            frameList.setOneShot((flags & FLAG_ONE_SHOT) != 0);
+            frameList.setLowBitDepth((flags & FLAG_LOW_BIT_DEPTH) != 0);
+            frameList.setDecodeToViewSize((flags & FLAG_DECODE_TO_VIEW_SIZE) != 0);
+            frameList.setFileName(getString(buffer));
+            final int count = buffer.getInt();
+            if (count <= 0 || count > bodySize) {
+                Log.w(TAG, "decode, invalid frame count=" + count);
+                return null;
+            }
+            List<FrameItem> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                FrameItem item = new FrameItem();
+                item.setResId(buffer.getInt());
+                item.setDuration(buffer.getInt());
+                item.setCacheKey(buffer.getLong());
+                String name = getString(buffer);
+                item.setDrawableName(name);
+                item.setCacheKeyBytes(BlobCacheUtil.getBytes(name));
+                items.add(item);
+            }
+            frameList.setFrameItemList(items);
+            return frameList;
+        } catch (BufferUnderflowException ex) {
+            Log.w(TAG, "decode, truncated data.");
+            return null;
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final int length = buffer.getShort() & 0xFFFF;
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
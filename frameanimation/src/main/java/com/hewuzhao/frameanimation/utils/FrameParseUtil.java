@@ -11,14 +11,23 @@ import android.util.TypedValue;
 import androidx.annotation.DrawableRes;
 
 import com.hewuzhao.frameanimation.FrameApplication;
+import com.hewuzhao.frameanimation.blobcache.BlobCacheUtil;
+import com.hewuzhao.frameanimation.blobcache.BlobCodecType;
+import com.hewuzhao.frameanimation.blobcache.BlobSyncPolicy;
+import com.hewuzhao.frameanimation.blobcache.BlobVerifyPolicy;
 import com.hewuzhao.frameanimation.frameview.FrameItem;
 import com.hewuzhao.frameanimation.frameview.FrameList;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * @author hewuzhao
@@ -28,22 +37,231 @@ public class FrameParseUtil {
     private static final String TAG = "FrameParseUtil";
 
     /**
-     * 帧动画文件解析
+     * 编译好的动画列表文件所在的目录，和缓存文件放在一起
+     */
+    private static final String MANIFEST_DIR = "frameanimation";
+
+    /**
+     * 解析好的动画列表，key是帧动画文件id和按当前配置选中的xml文件路径。解析后不再修改，所有view共用
+     */
+    private static final Map<String, FrameList> sFrameListCache = new HashMap<>();
+
+    private static volatile boolean sManifestEnabled = true;
+
+    /**
+     * 安装包的更新时间，编译好的动画列表文件用它判断是否过期，-1表示还没获取
+     */
+    private static long sPackageStamp = -1;
+
+    /**
+     * 帧动画文件解析，解析过的直接返回；开启了编译好的动画列表文件时先读取文件，没有或者过期才解析xml
      *
      * @param resId 帧动画文件id
      */
     public static FrameList parse(@DrawableRes int resId) {
+        final String path = getResourcePath(resId);
+        if (TextUtils.isEmpty(path)) {
+            return new FrameList();
+        }
+        final String key = resId + ":" + path;
+        synchronized (sFrameListCache) {
+            FrameList cached = sFrameListCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        long t1 = System.currentTimeMillis();
+        final boolean manifestEnabled = sManifestEnabled;
+        File manifest = manifestEnabled ? getManifestFile(resId, path) : null;
+        final long stamp = manifest == null ? -1 : getPackageStamp();
+        FrameList frameList = stamp == -1 ? null : FrameManifest.read(manifest, resId, path, stamp);
+        final boolean fromManifest = frameList != null;
+        if (frameList == null) {
+            frameList = parseXml(path);
+        }
+        if (CommonUtil.isEmpty(frameList.getFrameItemList())) {
+            return frameList;
+        }
+        if (!fromManifest && stamp != -1) {
+            FrameManifest.write(frameList, resId, path, stamp, manifest);
+        }
+        Log.i(TAG, "parse, resId=" + resId + ", path=" + path + ", fromManifest=" + fromManifest
+                + ", frames=" + frameList.getFrameItemSize() + ", time=" + (System.currentTimeMillis() - t1));
+        synchronized (sFrameListCache) {
+            // 同时解析同一个文件时，使用先解析好的
+            FrameList cached = sFrameListCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            sFrameListCache.put(key, frameList);
+        }
+        return frameList;
+    }
+
+    /**
+     * 是否把解析好的动画列表编译成二进制文件保存，之后启动时不再解析xml，默认开启
+     */
+    public static void setManifestEnabled(boolean enabled) {
+        sManifestEnabled = enabled;
+    }
+
+    /**
+     * 清空解析好的动画列表，下次重新读取。配置变化后同一个资源id可能对应另一个xml，由FrameMemoryGovernor调用
+     */
+    public static void clearCache() {
+        synchronized (sFrameListCache) {
+            sFrameListCache.clear();
+        }
+    }
+
+    /**
+     * 没有xml的帧来源(assets、目录、zip)按文件名排序生成动画列表，每帧时长相同，其他配置使用xml的默认值
+     *
+     * @param fileName 缓存文件名，只保留字母、数字和下划线
+     * @param names    帧的文件名，不是图片的忽略
+     * @param duration 每帧的时长，毫秒
+     */
+    public static FrameList parse(String fileName, List<String> names, int duration) {
+        return parse(fileName, names, duration, 1);
+    }
+
+    /**
+     * 同上
+     *
+     * @param version 缓存的版本，和已有的缓存不一致时重置缓存
+     */
+    public static FrameList parse(String fileName, List<String> names, int duration, int version) {
+        List<String> imageNames = new ArrayList<>();
+        if (names != null) {
+            for (String name : names) {
+                if (isImageName(name)) {
+                    imageNames.add(name);
+                }
+            }
+        }
+        Collections.sort(imageNames);
+
+        List<FrameItem> itemList = new ArrayList<>(imageNames.size());
+        for (String name : imageNames) {
+            itemList.add(newFrameItem(name, duration));
+        }
+        return newFrameList(fileName, itemList, version);
+    }
+
+    /**
+     * 生成一帧，算好缓存的key
+     *
+     * @param name     帧的名字，也是缓存里的名字，同一个动画里不能重复
+     * @param duration 时长，毫秒
+     */
+    public static FrameItem newFrameItem(String name, int duration) {
+        FrameItem frameItem = new FrameItem();
+        frameItem.setDrawableName(name);
+        frameItem.setDuration(duration);
+        byte[] keyBytes = BlobCacheUtil.getBytes(name);
+        frameItem.setCacheKeyBytes(keyBytes);
+        frameItem.setCacheKey(BlobCacheUtil.getCacheKey(keyBytes));
+        return frameItem;
+    }
+
+    /**
+     * 没有xml时生成动画列表，缓存配置使用xml的默认值
+     *
+     * @param fileName 缓存文件名，只保留字母、数字和下划线
+     */
+    public static FrameList newFrameList(String fileName, List<FrameItem> itemList) {
+        return newFrameList(fileName, itemList, 1);
+    }
+
+    /**
+     * 同上
+     *
+     * @param version 缓存的版本，和已有的缓存不一致时重置缓存
+     */
+    public static FrameList newFrameList(String fileName, List<FrameItem> itemList, int version) {
         FrameList frameList = new FrameList();
-        List<FrameItem> itemList = new ArrayList<>();
-        Context context = FrameApplication.sApplication;
-        Resources res = context.getResources();
+        frameList.setFileName(fileName == null ? null : fileName.replaceAll("[^A-Za-z0-9_]", "_"));
+        frameList.setVersion(version);
+        frameList.setMaxEntries(Math.max(itemList.size(), 100));
+        frameList.setMaxBytes(524288000);
+        frameList.setFrameItemList(itemList);
+        return frameList;
+    }
+
+    /**
+     * 是否是BitmapFactory能解码的图片文件名
+     */
+    public static boolean isImageName(String name) {
+        if (name == null || name.isEmpty() || name.endsWith("/")) {
+            return false;
+        }
+        String lower = name.toLowerCase(Locale.US);
+        return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg")
+                || lower.endsWith(".webp");
+    }
+
+    /**
+     * 资源id按当前配置选中的xml文件路径，例如res/drawable-xhdpi-v4/anim_loading.xml
+     */
+    private static String getResourcePath(@DrawableRes int resId) {
         TypedValue value = new TypedValue();
+        FrameApplication.sApplication.getResources().getValueForDensity(resId, 0, value, true);
+        return value.string == null ? null : value.string.toString();
+    }
 
-        res.getValueForDensity(resId, 0, value, true);
-        String file = value.string.toString();
-        if (TextUtils.isEmpty(file)) {
-            return frameList;
+    /**
+     * 不同配置选中的xml分开保存，切换配置时不会互相覆盖
+     */
+    private static File getManifestFile(int resId, String path) {
+        Context context = FrameApplication.sApplication;
+        File cacheDir = context == null ? null : context.getExternalCacheDir();
+        if (cacheDir == null) {
+            return null;
+        }
+        File dir = new File(cacheDir, MANIFEST_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            return null;
+        }
+        return new File(dir, resId + "_" + Integer.toHexString(path.hashCode()) + ".manifest");
+    }
+
+    /**
+     * 安装包的更新时间，安装包里的资源(res、assets)只在更新后变化，用来判断缓存是否过期
+     *
+     * @return 获取失败返回-1
+     */
+    public static synchronized long getPackageStamp() {
+        if (sPackageStamp == -1) {
+            Context context = FrameApplication.sApplication;
+            try {
+                sPackageStamp = context.getPackageManager()
+                        .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                Log.e(TAG, "getPackageStamp, ex=" + ex);
+            }
         }
+        return sPackageStamp;
+    }
+
+    /**
+     * 安装包的更新时间转成缓存的版本，更新后assets里的动画使用新的缓存
+     */
+    public static int getPackageVersion() {
+        final long stamp = getPackageStamp();
+        return (int) (stamp ^ (stamp >>> 32));
+    }
+
+    /**
+     * 解析xml
+     *
+     * @param file 资源id对应的xml文件路径
+     */
+    private static FrameList parseXml(String file) {
+        FrameList frameList = new FrameList();
+        List<FrameItem> itemList = new ArrayList<>();
+        Context context = FrameApplication.sApplication;
+        Resources res = context.getResources();
 
         try {
             AssetManager assetManager = context.getAssets();
@@ -84,6 +302,52 @@ public class FrameParseUtil {
                                             frameList.setVersion(version);
                                             break;
                                         }
+                                        case "syncPolicy": {
+                                            // default: 每隔syncValue毫秒同步一次
+                                            int syncPolicy = parser.getAttributeIntValue(i, BlobSyncPolicy.INTERVAL);
+                                            frameList.setSyncPolicy(syncPolicy);
+                                            break;
+                                        }
+                                        case "syncValue": {
+                                            int syncValue = parser.getAttributeIntValue(i, 1000);
+                                            frameList.setSyncValue(syncValue);
+                                            break;
+                                        }
+                                        case "codec": {
+                                            // default: 不编码
+                                            int codec = parser.getAttributeIntValue(i, BlobCodecType.NONE);
+                                            frameList.setCodec(codec);
+                                            break;
+                                        }
+                                        case "verifyPolicy": {
+                                            // default: 每帧只在第一次读取时校验
+                                            int verifyPolicy = parser.getAttributeIntValue(i, BlobVerifyPolicy.FIRST_READ);
+                                            frameList.setVerifyPolicy(verifyPolicy);
+                                            break;
+                                        }
+                                        case "verifySampleRate": {
+                                            int verifySampleRate = parser.getAttributeIntValue(i, 100);
+                                            frameList.setVerifySampleRate(verifySampleRate);
+                                            break;
+                                        }
+                                        case "deltaInterval": {
+                                            // default: 不使用差异编码
+                                            int deltaInterval = parser.getAttributeIntValue(i, 0);
+                                            frameList.setDeltaInterval(deltaInterval);
+                                            break;
+                                        }
+                                        case "lowBitDepth": {
+                                            // default: 按ARGB_8888存储
+                                            boolean lowBitDepth = parser.getAttributeBooleanValue(i, false);
+                                            frameList.setLowBitDepth(lowBitDepth);
+                                            break;
+                                        }
+                                        case "decodeToViewSize": {
+                                            // default: 按原图尺寸解码
+                                            boolean decodeToViewSize = parser.getAttributeBooleanValue(i, false);
+                                            frameList.setDecodeToViewSize(decodeToViewSize);
+                                            break;
+                                        }
                                     }
                                 }
                             }
@@ -101,11 +365,15 @@ public class FrameParseUtil {
                                             if (TextUtils.isEmpty(drawable)) {
                                                 throw new XmlPullParserException("the drawable is empty, need a drawable.");
                                             }
-                                            drawable = drawable.replace("@", "");
-                                            String path = res.getResourceName(Integer.parseInt(drawable));
+                                            final int drawableId = Integer.parseInt(drawable.replace("@", ""));
+                                            frameItem.setResId(drawableId);
+                                            String path = res.getResourceName(drawableId);
                                             String[] dr = path.split("/");
                                             drawable = dr[dr.length - 1];
                                             frameItem.setDrawableName(drawable);
+                                            byte[] keyBytes = BlobCacheUtil.getBytes(drawable);
+                                            frameItem.setCacheKeyBytes(keyBytes);
+                                            frameItem.setCacheKey(BlobCacheUtil.getCacheKey(keyBytes));
                                             break;
                                         }
                                         case "duration": {
@@ -80,4 +80,47 @@ public class MatrixUtil {
             }
         }
     }
+
+    /**
+     * 根据ScaleType计算解码时的inSampleSize，取2的幂，保证缩小后的宽高仍不小于绘制到view上的宽高
+     * <p>
+     * CENTER、MATRIX不缩放绘制，始终返回1
+     *
+     * @param srcWidth  原图宽度
+     * @param srcHeight 原图高度
+     * @param width     view width
+     * @param height    view height
+     */
+    public static int calculateInSampleSize(int srcWidth, int srcHeight, int width, int height, @FrameScaleType int scaleType) {
+        if (srcWidth <= 0 || srcHeight <= 0 || width <= 0 || height <= 0) {
+            return 1;
+        }
+        float scaleX = (float) width / (float) srcWidth;
+        float scaleY = (float) height / (float) srcHeight;
+        switch (scaleType) {
+            case FrameScaleType.MATRIX:
+            case FrameScaleType.CENTER: {
+                return 1;
+            }
+            case FrameScaleType.CENTER_CROP: {
+                scaleX = scaleY = Math.max(scaleX, scaleY);
+                break;
+            }
+            case FrameScaleType.FIT_XY: {
+                break;
+            }
+            default: {
+                // CENTER_INSIDE和FIT_START、FIT_CENTER、FIT_END
+                scaleX = scaleY = Math.min(scaleX, scaleY);
+            }
+        }
+        // 绘制到view上的宽高
+        final int reqWidth = (int) Math.ceil(srcWidth * scaleX);
+        final int reqHeight = (int) Math.ceil(srcHeight * scaleY);
+        int sampleSize = 1;
+        while (srcWidth / (sampleSize * 2) >= reqWidth && srcHeight / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
 }
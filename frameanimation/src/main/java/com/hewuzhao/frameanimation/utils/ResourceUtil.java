@@ -5,6 +5,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
 import com.hewuzhao.frameanimation.FrameApplication;
+import com.hewuzhao.frameanimation.frameview.FrameItem;
 
 /**
  * @author hewuzhao
@@ -47,9 +48,30 @@ public class ResourceUtil {
     }
 
 
+    /**
+     * 按名字解码，每次都要通过getIdentifier查找资源id，比较慢，解码帧时用{@link #getBitmap(FrameItem, BitmapFactory.Options)}
+     */
     public static Bitmap getBitmap(String drawableName, BitmapFactory.Options options) {
-        return BitmapFactory.decodeResource(FrameApplication.sApplication.getResources(),
-                getDrawableId(FrameApplication.sApplication, drawableName), options);
+        return getBitmap(getDrawableId(FrameApplication.sApplication, drawableName), options);
+    }
+
+    /**
+     * 按解析时记录的资源id解码；没有资源id(不是从xml解析的帧)时按名字查找一次并记录到frameItem
+     */
+    public static Bitmap getBitmap(FrameItem frameItem, BitmapFactory.Options options) {
+        int resId = frameItem.getResId();
+        if (resId == 0) {
+            resId = getDrawableId(FrameApplication.sApplication, frameItem.getDrawableName());
+            frameItem.setResId(resId);
+        }
+        return getBitmap(resId, options);
+    }
+
+    public static Bitmap getBitmap(int resId, BitmapFactory.Options options) {
+        if (resId == 0) {
+            return null;
+        }
+        return BitmapFactory.decodeResource(FrameApplication.sApplication.getResources(), resId, options);
     }
 
     private static int getDrawableId(Context context, String resName) {
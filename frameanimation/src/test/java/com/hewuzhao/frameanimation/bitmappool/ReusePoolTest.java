@@ -0,0 +1,123 @@
+package com.hewuzhao.frameanimation.bitmappool;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class ReusePoolTest {
+
+    private static final String LARGE = "100x100_ARGB_8888";
+    private static final String SMALL = "50x50_ARGB_8888";
+    private static final String SMALL_565 = "50x50_RGB_565";
+
+    @Test
+    public void reusesSameSizeAndConfig() {
+        TestPool pool = new TestPool(1000);
+        Object value = new Object();
+        pool.put(value, SMALL, 100);
+        assertEquals(100, pool.getByteCount());
+
+        assertNull(pool.get(SMALL_565));
+        assertNull(pool.get(LARGE));
+        assertSame(value, pool.get(new String(SMALL)));
+        assertNull(pool.get(SMALL));
+        assertEquals(0, pool.getByteCount());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(3, pool.getMissCount());
+    }
+
+    @Test
+    public void sameValueIsPooledOnce() {
+        TestPool pool = new TestPool(1000);
+        Object value = new Object();
+        pool.put(value, SMALL, 100);
+        pool.put(value, SMALL, 100);
+        assertEquals(100, pool.getByteCount());
+        assertSame(value, pool.get(SMALL));
+        assertNull(pool.get(SMALL));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedGroup() {
+        TestPool pool = new TestPool(300);
+        Object large = new Object();
+        Object small = new Object();
+        Object small565 = new Object();
+        pool.put(large, LARGE, 100);
+        pool.put(small, SMALL, 100);
+        pool.put(small565, SMALL_565, 100);
+
+        // 用过LARGE这一组后，最久没有用到的是SMALL
+        Object reused = pool.get(LARGE);
+        assertSame(large, reused);
+        pool.put(reused, LARGE, 100);
+        pool.put(new Object(), SMALL_565, 100);
+
+        assertEquals(300, pool.getByteCount());
+        assertNull(pool.get(SMALL));
+        assertSame(large, pool.get(LARGE));
+    }
+
+    @Test
+    public void tooLargeIsNotPooled() {
+        TestPool pool = new TestPool(100);
+        Object large = new Object();
+        pool.put(large, LARGE, 101);
+        assertEquals(0, pool.getByteCount());
+        assertNull(pool.get(LARGE));
+        assertEquals(1, pool.recycled.size());
+        assertSame(large, pool.recycled.get(0));
+    }
+
+    @Test
+    public void trimMemoryByLevel() {
+        TestPool pool = new TestPool(1000);
+        for (int i = 0; i < 4; i++) {
+            pool.put(new Object(), SMALL, 100);
+        }
+        assertEquals(0, pool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE - 1));
+        assertEquals(200, pool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(200, pool.getByteCount());
+        assertEquals(200, pool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(0, pool.getByteCount());
+    }
+
+    @Test
+    public void lowerMaxBytesAppliesOnNextPut() {
+        TestPool pool = new TestPool(1000);
+        pool.put(new Object(), SMALL, 100);
+        pool.put(new Object(), SMALL, 100);
+        pool.setMaxBytes(100);
+        Object third = new Object();
+        pool.put(third, SMALL, 100);
+        assertEquals(100, pool.getByteCount());
+        assertSame(third, pool.get(SMALL));
+    }
+
+    /**
+     * 只记录回收了哪些对象，不需要真正的bitmap
+     */
+    private static class TestPool extends ReusePool<String, Object> {
+        final List<Object> recycled = new ArrayList<>();
+
+        TestPool(long maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        void recycle(Object value) {
+            recycled.add(value);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * N reader threads look up blobs of one shared cache while a writer keeps
+ * inserting into it and flipping its regions. A lookup may miss a blob
+ * dropped by a flip, but it must never return a corrupted one.
+ *
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class BlobCacheConcurrencyTest {
+    private static final int READER_COUNT = 8;
+    private static final int READS_PER_READER = 500;
+    private static final int BLOB_COUNT = 24;
+    private static final int BLOB_SIZE = 32 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private String mPath;
+    private BlobCache mCache;
+    private byte[][] mBlobs;
+
+    @Before
+    public void setUp() throws Exception {
+        mPath = new File(mFolder.getRoot(), "cache").getAbsolutePath();
+        // Two thirds of the blobs fill a region, so the writer keeps flipping.
+        mCache = new BlobCache(mPath, 100, BLOB_COUNT * BLOB_SIZE * 2 / 3, true, 1);
+
+        Random random = new Random(42);
+        mBlobs = new byte[BLOB_COUNT][];
+        for (int i = 0; i < BLOB_COUNT; i++) {
+            mBlobs[i] = new byte[BLOB_SIZE - i];
+            random.nextBytes(mBlobs[i]);
+        }
+        for (int i = 0; i < BLOB_COUNT; i++) {
+            mCache.insert(keyOf(i), mBlobs[i]);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mCache.close();
+    }
+
+    @Test
+    public void concurrentReadersWithWriter() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger hits = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int r = 0; r < READER_COUNT; r++) {
+            final int seed = r;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    BlobCache.LookupRequest req = new BlobCache.LookupRequest();
+                    try {
+                        start.await();
+                        for (int n = 0; n < READS_PER_READER; n++) {
+                            int i = random.nextInt(BLOB_COUNT);
+                            if (random.nextBoolean()) {
+                                req.key = keyOf(i);
+                                if (mCache.lookup(req)) {
+                                    assertEquals(mBlobs[i].length, req.length);
+                                    assertTrue(Arrays.equals(mBlobs[i],
+                                            Arrays.copyOf(req.buffer, req.length)));
+                                    hits.incrementAndGet();
+                                }
+                            } else {
+                                mCache.beginMappedRead();
+                                try {
+                                    ByteBuffer blob = mCache.lookupMapped(keyOf(i));
+                                    if (blob != null) {
+                                        byte[] data = new byte[blob.remaining()];
+                                        blob.get(data);
+                                        assertTrue(Arrays.equals(mBlobs[i], data));
+                                        hits.incrementAndGet();
+                                    }
+                                } finally {
+                                    mCache.endMappedRead();
+                                }
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            }));
+        }
+
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int n = 0; n < BLOB_COUNT * 4; n++) {
+                        int i = n % BLOB_COUNT;
+                        mCache.insert(keyOf(i), mBlobs[i]);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        }));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertTrue(hits.get() > 0);
+        assertTrue(mCache.getActiveCount() >= 0);
+    }
+
+    @Test
+    public void mappedLookupMatchesCopyingLookup() throws Exception {
+        for (int i = 0; i < BLOB_COUNT; i++) {
+            byte[] copied = mCache.lookup(keyOf(i));
+            ByteBuffer mapped = mCache.lookupMapped(keyOf(i));
+            if (copied == null) {
+                assertNull(mapped);
+                continue;
+            }
+            assertTrue(mapped.isReadOnly());
+            byte[] data = new byte[mapped.remaining()];
+            mapped.get(data);
+            assertTrue(Arrays.equals(mBlobs[i], data));
+            assertTrue(Arrays.equals(mBlobs[i], Arrays.copyOf(copied, mBlobs[i].length)));
+        }
+    }
+
+    @Test
+    public void onlyMappedLookupMapsDataFiles() throws Exception {
+        final long indexBytes = mCache.getMappedBytes();
+        final long heapBytes = mCache.getMemoryBytes();
+        int hits = 0;
+        for (int i = 0; i < BLOB_COUNT; i++) {
+            byte[] copied = mCache.lookup(keyOf(i));
+            if (copied != null) {
+                assertTrue(Arrays.equals(mBlobs[i], Arrays.copyOf(copied, mBlobs[i].length)));
+                hits++;
+            }
+        }
+        assertTrue(hits > 0);
+        assertEquals(indexBytes, mCache.getMappedBytes());
+
+        for (int i = 0; i < BLOB_COUNT; i++) {
+            mCache.lookupMapped(keyOf(i));
+        }
+        // At most one window per region, never a whole data file.
+        assertTrue(mCache.getMappedBytes() > indexBytes);
+        assertTrue(mCache.getMappedBytes() <= indexBytes + 2L * BLOB_COUNT * BLOB_SIZE);
+        // Mappings are not heap, closing the cache does not give them back to the heap.
+        assertEquals(heapBytes, mCache.getMemoryBytes());
+    }
+
+    private static long keyOf(int i) {
+        return 0x1000L + i * 31L;
+    }
+}
@@ -0,0 +1,59 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class BlobCacheKeyTest {
+
+    @Test
+    public void sliceBy8MatchesBytewiseCrc() {
+        Random random = new Random(3);
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertEquals("length=" + length, referenceCrc64(data), BlobCacheUtil.getCacheKey(data));
+        }
+    }
+
+    @Test
+    public void stringKeyMatchesByteKey() {
+        Random random = new Random(4);
+        String[] names = {"a", "big_00", "small_animation_19", "帧动画_01", "abcdefghijklmnopq"};
+        for (String name : names) {
+            assertEquals(name, referenceCrc64(BlobCacheUtil.getBytes(name)), BlobCacheUtil.getCacheKey(name));
+        }
+        for (int i = 0; i < 1000; i++) {
+            char[] chars = new char[random.nextInt(40) + 1];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) random.nextInt(0x10000);
+            }
+            String name = new String(chars);
+            assertEquals(referenceCrc64(BlobCacheUtil.getBytes(name)), BlobCacheUtil.getCacheKey(name));
+        }
+    }
+
+    // The byte-at-a-time CRC64 the cache keys were always computed with.
+    private static long referenceCrc64(byte[] buffer) {
+        long[] table = new long[256];
+        for (int i = 0; i < 256; i++) {
+            long part = i;
+            for (int j = 0; j < 8; j++) {
+                long x = ((int) part & 1) != 0 ? 0x95AC9329AC4BC9B5L : 0;
+                part = (part >> 1) ^ x;
+            }
+            table[i] = part;
+        }
+        long crc = 0xFFFFFFFFFFFFFFFFL;
+        for (byte b : buffer) {
+            crc = table[(((int) crc) ^ b) & 0xff] ^ (crc >> 8);
+        }
+        return crc;
+    }
+}
@@ -0,0 +1,79 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * An idle cache closes on the background thread. Acquiring it again before
+ * that finishes must not open a second instance on the same files.
+ *
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class BlobCacheManagerTest {
+    private static final long KEY = 7;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private BlobCacheManager mManager;
+    private BlobCache mCache;
+    private String mName;
+
+    @Before
+    public void setUp() throws Exception {
+        mManager = BlobCacheManager.getInstance();
+        mName = mFolder.getRoot().getName();
+        mCache = new BlobCache(new File(mFolder.getRoot(), "cache").getAbsolutePath(), 10, 1024 * 1024, true, 1);
+        mCache.insert(KEY, new byte[]{1, 2, 3});
+        mManager.putBlobCache(mName, mCache);
+    }
+
+    @Test
+    public void acquireBeforeCloseStartsReusesCache() throws Exception {
+        mManager.closeIdleBlobCaches();
+        assertTrue(mCache == mManager.findBlobCache(mName));
+        // The background close skips a cache that is in use again.
+        assertNull(mManager.beginClose(mName));
+        assertTrue(Arrays.equals(new byte[]{1, 2, 3}, mCache.lookup(KEY)));
+
+        mManager.closeIdleBlobCaches();
+        assertTrue(mCache == mManager.beginClose(mName));
+        mCache.close();
+        mManager.endClose(mName);
+    }
+
+    @Test
+    public void acquireWhileClosingWaitsForClose() throws Exception {
+        mManager.closeIdleBlobCaches();
+        assertTrue(mCache == mManager.beginClose(mName));
+
+        final AtomicReference<BlobCache> found = new AtomicReference<>(mCache);
+        Thread finder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                found.set(mManager.findBlobCache(mName));
+            }
+        });
+        finder.start();
+        finder.join(200);
+        assertTrue(finder.isAlive());
+
+        mCache.close();
+        mManager.endClose(mName);
+        finder.join(5000);
+        assertFalse(finder.isAlive());
+        // The caller opens a new instance once the old one is closed.
+        assertNull(found.get());
+    }
+}
@@ -0,0 +1,104 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class BlobCacheVerifyTest {
+    private static final long KEY = 42;
+    // data file magic + blob header
+    private static final int FIRST_BLOB_DATA = 4 + 20;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private String mPath;
+
+    @Before
+    public void setUp() throws Exception {
+        mPath = new File(mFolder.getRoot(), "cache").getAbsolutePath();
+    }
+
+    @Test
+    public void firstReadIsVerifiedAfterReopen() throws Exception {
+        BlobCache cache = new BlobCache(mPath, 10, 1024 * 1024, true, 1);
+        cache.insert(KEY, newBlob());
+        cache.close();
+        corrupt();
+
+        cache = new BlobCache(mPath, 10, 1024 * 1024, false, 1);
+        cache.setVerifyPolicy(BlobVerifyPolicy.FIRST_READ, 1);
+        assertNull(cache.lookup(KEY));
+        assertNull(cache.lookupMapped(KEY));
+        cache.close();
+    }
+
+    @Test
+    public void verifiedBlobsAreTrustedUntilPolicyChanges() throws Exception {
+        BlobCache cache = new BlobCache(mPath, 10, 1024 * 1024, true, 1);
+        cache.setVerifyPolicy(BlobVerifyPolicy.FIRST_READ, 1);
+        byte[] blob = newBlob();
+        cache.insert(KEY, blob);
+        assertTrue(Arrays.equals(blob, cache.lookup(KEY)));
+        corrupt();
+
+        // Written, so trusted without checksumming again.
+        assertNotNull(cache.lookup(KEY));
+        assertNotNull(cache.lookupMapped(KEY));
+
+        cache.setVerifyPolicy(BlobVerifyPolicy.ALWAYS, 1);
+        assertNull(cache.lookup(KEY));
+        assertNull(cache.lookupMapped(KEY));
+        cache.close();
+    }
+
+    @Test
+    public void sampledPolicyVerifiesEveryNthRead() throws Exception {
+        BlobCache cache = new BlobCache(mPath, 10, 1024 * 1024, true, 1);
+        cache.setVerifyPolicy(BlobVerifyPolicy.SAMPLED, 3);
+        cache.insert(KEY, newBlob());
+        corrupt();
+
+        int failures = 0;
+        for (int i = 0; i < 9; i++) {
+            if (cache.lookup(KEY) == null) {
+                failures++;
+            }
+        }
+        assertFalse(failures == 0);
+        assertTrue("failures=" + failures, failures <= 3);
+        cache.close();
+    }
+
+    private static byte[] newBlob() {
+        byte[] blob = new byte[4096];
+        for (int i = 0; i < blob.length; i++) {
+            blob[i] = (byte) i;
+        }
+        return blob;
+    }
+
+    private void corrupt() throws Exception {
+        RandomAccessFile file = new RandomAccessFile(mPath + ".0", "rw");
+        try {
+            file.seek(FIRST_BLOB_DATA + 100);
+            file.write(0x55);
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class BlobCacheWriteBehindTest {
+    private static final int BLOB_COUNT = 20;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private String mPath;
+
+    @Before
+    public void setUp() throws Exception {
+        mPath = new File(mFolder.getRoot(), "cache").getAbsolutePath();
+    }
+
+    @Test
+    public void pendingBlobsAreReadableAndSurviveClose() throws Exception {
+        byte[][] blobs = new byte[BLOB_COUNT][];
+        BlobCache cache = new BlobCache(mPath, 100, 1024 * 1024, true, 1);
+        cache.startWriteBehind(BlobSyncPolicy.ON_CLOSE, 0);
+        for (int i = 0; i < BLOB_COUNT; i++) {
+            blobs[i] = new byte[1000 + i];
+            Arrays.fill(blobs[i], (byte) i);
+            while (!cache.insertAsync(i + 1, blobs[i])) {
+                cache.flushPendingBlobs();
+            }
+            // Visible right away, whether or not the writer got to it.
+            assertTrue(Arrays.equals(blobs[i], cache.lookup(i + 1)));
+        }
+        cache.close();
+
+        cache = new BlobCache(mPath, 100, 1024 * 1024, false, 1);
+        try {
+            for (int i = 0; i < BLOB_COUNT; i++) {
+                byte[] data = cache.lookup(i + 1);
+                assertNotNull(data);
+                assertTrue(Arrays.equals(blobs[i], data));
+            }
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void droppedWritesAreCounted() throws Exception {
+        BlobCache cache = new BlobCache(mPath, 100, 1024 * 1024, true, 1);
+        try {
+            cache.startWriteBehind(BlobSyncPolicy.ON_CLOSE, 0);
+            int dropped = 0;
+            for (int i = 0; i < BLOB_COUNT; i++) {
+                if (!cache.insertAsync(i + 1, new byte[1000])) {
+                    dropped++;
+                }
+            }
+            assertEquals(dropped, cache.getDroppedWriteCount());
+            cache.flushPendingBlobs();
+            assertEquals(BLOB_COUNT - dropped, cache.getActiveCount());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void everyNBlobsPolicyFlushes() throws Exception {
+        BlobCache cache = new BlobCache(mPath, 100, 1024 * 1024, true, 1);
+        try {
+            cache.startWriteBehind(BlobSyncPolicy.EVERY_N_BLOBS, 3);
+            for (int i = 0; i < BLOB_COUNT; i++) {
+                while (!cache.insertAsync(i + 1, new byte[]{(byte) i})) {
+                    cache.flushPendingBlobs();
+                }
+            }
+            cache.flushPendingBlobs();
+            assertTrue(cache.getActiveCount() == BLOB_COUNT);
+        } finally {
+            cache.close();
+        }
+    }
+}
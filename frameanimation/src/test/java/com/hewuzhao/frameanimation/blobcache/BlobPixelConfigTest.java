@@ -0,0 +1,82 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class BlobPixelConfigTest {
+
+    @Test
+    public void scanOpaquePixels() {
+        byte[] rgba = {
+                10, 20, 30, (byte) 0xff,
+                0, 0, 0, (byte) 0xff,
+        };
+        assertEquals(BlobCacheUtil.PIXELS_OPAQUE, BlobCacheUtil.scanPixels(rgba, 2));
+    }
+
+    @Test
+    public void scanAlphaOnlyPixels() {
+        byte[] rgba = {
+                0, 0, 0, 0,
+                0, 0, 0, (byte) 0x80,
+        };
+        assertEquals(BlobCacheUtil.PIXELS_ALPHA_ONLY, BlobCacheUtil.scanPixels(rgba, 2));
+
+        // 全黑不透明的帧两者都是，按不透明处理
+        byte[] black = {0, 0, 0, (byte) 0xff};
+        assertEquals(BlobCacheUtil.PIXELS_OPAQUE | BlobCacheUtil.PIXELS_ALPHA_ONLY,
+                BlobCacheUtil.scanPixels(black, 1));
+    }
+
+    @Test
+    public void scanTranslucentColorPixels() {
+        byte[] rgba = {
+                10, 20, 30, (byte) 0xff,
+                5, 0, 0, (byte) 0x80,
+        };
+        assertEquals(0, BlobCacheUtil.scanPixels(rgba, 2));
+    }
+
+    @Test
+    public void convertToRgb565() {
+        byte[] rgba = {
+                (byte) 0xff, 0, 0, (byte) 0xff,
+                0, (byte) 0xff, 0, (byte) 0xff,
+                0, 0, (byte) 0xff, (byte) 0xff,
+                (byte) 0x87, (byte) 0x43, (byte) 0x21, (byte) 0xff,
+        };
+        // 0x87>>3=0x10, 0x43>>2=0x10, 0x21>>3=0x04 -> 0x8204
+        byte[] expected = {
+                0x00, (byte) 0xf8,
+                (byte) 0xe0, 0x07,
+                0x1f, 0x00,
+                0x04, (byte) 0x82,
+        };
+        assertArrayEquals(expected, BlobCacheUtil.toRgb565(rgba, 4));
+    }
+
+    @Test
+    public void convertToAlpha8() {
+        byte[] rgba = {
+                0, 0, 0, 1,
+                0, 0, 0, (byte) 0xfe,
+        };
+        assertArrayEquals(new byte[]{1, (byte) 0xfe}, BlobCacheUtil.toAlpha8(rgba, 2));
+    }
+
+    @Test
+    public void configInMeta() {
+        int meta = BlobCodecType.LZ4 | (BlobPixelConfig.RGB_565 << 8) | BlobCacheUtil.META_OPAQUE;
+        assertEquals(BlobPixelConfig.RGB_565, BlobCacheUtil.getPixelConfig(meta));
+        assertEquals(2, BlobCacheUtil.getBytesPerPixel(BlobCacheUtil.getPixelConfig(meta)));
+        // 之前的缓存元数据里没有config，按ARGB_8888读取
+        assertEquals(BlobPixelConfig.ARGB_8888, BlobCacheUtil.getPixelConfig(BlobCodecType.LZ4));
+        assertEquals(0, BlobCacheUtil.getBytesPerPixel(0x7f));
+    }
+}
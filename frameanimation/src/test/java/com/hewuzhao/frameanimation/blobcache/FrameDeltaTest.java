@@ -0,0 +1,156 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class FrameDeltaTest {
+
+    private static final int SIZE = 128;
+    private static final int LENGTH = SIZE * SIZE * 4;
+
+    @Test
+    public void smallChangeIsSmallDelta() {
+        byte[] previous = frame(10);
+        byte[] current = frame(12);
+        byte[] delta = new byte[LENGTH];
+        int n = FrameDelta.encode(current, previous, LENGTH, delta, 0, LENGTH / 2);
+        assertTrue("n=" + n, n > 0 && n < LENGTH / 8);
+
+        byte[] pixels = previous.clone();
+        assertTrue(FrameDelta.apply(ByteBuffer.wrap(delta, 0, n), pixels, LENGTH));
+        assertArrayEquals(current, pixels);
+    }
+
+    @Test
+    public void identicalFramesHaveEmptyDelta() {
+        byte[] frame = frame(3);
+        byte[] delta = new byte[16];
+        assertEquals(0, FrameDelta.encode(frame, frame.clone(), LENGTH, delta, 0, 16));
+        byte[] pixels = frame.clone();
+        assertTrue(FrameDelta.apply(ByteBuffer.wrap(delta, 0, 0), pixels, LENGTH));
+        assertArrayEquals(frame, pixels);
+    }
+
+    @Test
+    public void randomChangesRoundTrip() {
+        Random random = new Random(3);
+        for (int round = 0; round < 20; round++) {
+            byte[] previous = new byte[LENGTH];
+            random.nextBytes(previous);
+            byte[] current = previous.clone();
+            int changes = random.nextInt(2000);
+            for (int i = 0; i < changes; i++) {
+                current[random.nextInt(LENGTH)] = (byte) random.nextInt();
+            }
+            byte[] delta = new byte[LENGTH * 2];
+            int n = FrameDelta.encode(current, previous, LENGTH, delta, 0, delta.length);
+            ByteBuffer src = ByteBuffer.allocateDirect(n);
+            src.put(delta, 0, n);
+            src.flip();
+            byte[] pixels = previous.clone();
+            assertTrue(FrameDelta.apply(src, pixels, LENGTH));
+            assertArrayEquals(current, pixels);
+        }
+    }
+
+    @Test
+    public void tooLargeDeltaIsRejected() {
+        Random random = new Random(4);
+        byte[] previous = new byte[LENGTH];
+        byte[] current = new byte[LENGTH];
+        random.nextBytes(current);
+        byte[] delta = new byte[LENGTH];
+        assertEquals(-1, FrameDelta.encode(current, previous, LENGTH, delta, 0, LENGTH / 2));
+    }
+
+    @Test
+    public void corruptDeltaIsRejected() {
+        byte[] delta = new byte[LENGTH];
+        int n = FrameDelta.encode(frame(20), frame(10), LENGTH, delta, 0, LENGTH);
+        byte[] pixels = frame(10);
+        // 截断的数据
+        assertFalse(FrameDelta.apply(ByteBuffer.wrap(delta, 0, n - 1), pixels, LENGTH));
+        // 超出像素范围
+        assertFalse(FrameDelta.apply(ByteBuffer.wrap(delta, 0, n), pixels, LENGTH / 8));
+    }
+
+    @Test
+    public void decodePixelsFollowsReference() {
+        byte[] frame0 = frame(0);
+        byte[] frame1 = frame(1);
+        byte[] delta = new byte[LENGTH];
+        int n = FrameDelta.encode(frame1, frame0, LENGTH, delta, 0, LENGTH);
+
+        DeltaReference reference = new DeltaReference();
+        ByteBuffer pixels = BlobCacheUtil.decodePixels(ByteBuffer.wrap(frame0), BlobCodecType.NONE,
+                LENGTH, null, reference, 0);
+        assertNotNull(pixels);
+        assertTrue(reference.isFrame(0, LENGTH));
+
+        pixels = BlobCacheUtil.decodePixels(ByteBuffer.wrap(delta, 0, n), BlobCacheUtil.META_DELTA,
+                LENGTH, null, reference, 1);
+        assertNotNull(pixels);
+        byte[] decoded = new byte[LENGTH];
+        pixels.get(decoded);
+        assertArrayEquals(frame1, decoded);
+        assertTrue(reference.isFrame(1, LENGTH));
+
+        // 参考帧不是前一帧
+        assertNull(BlobCacheUtil.decodePixels(ByteBuffer.wrap(delta, 0, n), BlobCacheUtil.META_DELTA,
+                LENGTH, null, reference, 3));
+        assertFalse(reference.isFrame(1, LENGTH));
+        // 没有参考帧
+        assertNull(BlobCacheUtil.decodePixels(ByteBuffer.wrap(delta, 0, n), BlobCacheUtil.META_DELTA,
+                LENGTH, null, null, 1));
+    }
+
+    @Test
+    public void dirtyBoundsCoverMovedBlock() {
+        int[] bounds = new int[4];
+        assertTrue(FrameDelta.computeDirtyBounds(frame(12), frame(10), SIZE, SIZE, 4, bounds));
+        // 方块从x=10移动到x=12，变化的是旧位置的左边两列和新位置的右边两列
+        assertArrayEquals(new int[]{10, 40, 20, 48}, bounds);
+
+        assertFalse(FrameDelta.computeDirtyBounds(frame(5), frame(5), SIZE, SIZE, 4, bounds));
+        assertArrayEquals(new int[]{0, 0, 0, 0}, bounds);
+    }
+
+    @Test
+    public void dirtyBoundsOfSingleByte() {
+        byte[] previous = frame(0);
+        byte[] current = previous.clone();
+        // 第(70, 100)个像素的alpha
+        current[(100 * SIZE + 70) * 4 + 3] = 1;
+        int[] bounds = new int[4];
+        assertTrue(FrameDelta.computeDirtyBounds(current, previous, SIZE, SIZE, 4, bounds));
+        assertArrayEquals(new int[]{70, 100, 71, 101}, bounds);
+    }
+
+    /**
+     * 透明背景上一个随step移动的8x8方块
+     */
+    private static byte[] frame(int step) {
+        byte[] pixels = new byte[LENGTH];
+        for (int y = 40; y < 48; y++) {
+            for (int x = step; x < step + 8; x++) {
+                int i = (y * SIZE + x) * 4;
+                Arrays.fill(pixels, i, i + 4, (byte) 0xff);
+            }
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,87 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class Lz4CodecTest {
+
+    private final BlobCodec mCodec = new Lz4Codec();
+
+    @Test
+    public void roundTripPixels() {
+        // 模拟ARGB帧：大片透明背景 + 少量重复的色块
+        byte[] raw = new byte[256 * 256 * 4];
+        Random random = new Random(1);
+        for (int y = 64; y < 192; y++) {
+            for (int x = 64; x < 192; x++) {
+                int i = (y * 256 + x) * 4;
+                raw[i] = (byte) x;
+                raw[i + 1] = (byte) y;
+                raw[i + 2] = (byte) (x ^ y);
+                raw[i + 3] = (byte) 0xff;
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            raw[random.nextInt(raw.length)] = (byte) random.nextInt();
+        }
+        int encodedLength = roundTrip(raw);
+        assertTrue("encodedLength=" + encodedLength, encodedLength < raw.length / 2);
+    }
+
+    @Test
+    public void roundTripRandomAndShortInputs() {
+        Random random = new Random(2);
+        for (int length : new int[]{0, 1, 5, 12, 13, 64, 1000, 70000}) {
+            byte[] raw = new byte[length];
+            random.nextBytes(raw);
+            roundTrip(raw);
+        }
+    }
+
+    @Test
+    public void roundTripLongRuns() {
+        // offset小于匹配长度的回溯拷贝，以及超过255的长度编码
+        byte[] raw = new byte[100000];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte) (i % 3);
+        }
+        roundTrip(raw);
+    }
+
+    @Test
+    public void corruptDataIsRejected() {
+        byte[] raw = new byte[4096];
+        Arrays.fill(raw, (byte) 7);
+        byte[] encoded = new byte[mCodec.maxEncodedLength(raw.length)];
+        int n = mCodec.encode(raw, 0, raw.length, encoded, 0);
+        byte[] decoded = new byte[raw.length];
+        // 解码空间不够
+        assertEquals(-1, mCodec.decode(ByteBuffer.wrap(encoded, 0, n), decoded, 0, raw.length - 1));
+        // 截断的数据
+        assertEquals(-1, mCodec.decode(ByteBuffer.wrap(encoded, 0, n - 3), decoded, 0, raw.length));
+    }
+
+    private int roundTrip(byte[] raw) {
+        byte[] encoded = new byte[mCodec.maxEncodedLength(raw.length) + 3];
+        int n = mCodec.encode(raw, 0, raw.length, encoded, 3);
+        assertTrue(n <= mCodec.maxEncodedLength(raw.length));
+        byte[] decoded = new byte[raw.length];
+        ByteBuffer src = ByteBuffer.allocateDirect(n);
+        src.put(encoded, 3, n);
+        src.flip();
+        assertEquals(raw.length, mCodec.decode(src, decoded, 0, decoded.length));
+        assertArrayEquals(raw, decoded);
+        return n;
+    }
+}
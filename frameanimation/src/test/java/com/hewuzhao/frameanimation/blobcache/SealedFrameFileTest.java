@@ -0,0 +1,138 @@
+package com.hewuzhao.frameanimation.blobcache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class SealedFrameFileTest {
+    private static final int FRAME_COUNT = 5;
+    private static final int VERSION = 3;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private String mPath;
+    private File mSealed;
+    private long[] mKeys;
+    private byte[][] mKeyBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        mPath = new File(mFolder.getRoot(), "cache").getAbsolutePath();
+        mSealed = new File(mFolder.getRoot(), "cache.sealed");
+        mKeys = new long[FRAME_COUNT];
+        mKeyBytes = new byte[FRAME_COUNT][];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            mKeyBytes[i] = BlobCacheUtil.getBytes("frame_" + i);
+            mKeys[i] = BlobCacheUtil.getCacheKey(mKeyBytes[i]);
+        }
+    }
+
+    @Test
+    public void sealAndOpen() throws Exception {
+        BlobCache cache = newCacheWithFrames(FRAME_COUNT);
+        assertTrue(SealedFrameFile.seal(cache, mKeys, mKeyBytes, VERSION, mSealed));
+        cache.close();
+
+        SealedFrameFile sealedFile = SealedFrameFile.open(mSealed, VERSION, mKeys);
+        assertNotNull(sealedFile);
+        assertEquals(FRAME_COUNT, sealedFile.getFrameCount());
+        assertTrue(sealedFile.matches(VERSION, mKeys));
+        assertFalse(sealedFile.matches(VERSION + 1, mKeys));
+
+        // 版本或帧列表不一致时不能使用
+        assertNull(SealedFrameFile.open(mSealed, VERSION + 1, mKeys));
+        long[] reordered = mKeys.clone();
+        reordered[0] = mKeys[1];
+        reordered[1] = mKeys[0];
+        assertNull(SealedFrameFile.open(mSealed, VERSION, reordered));
+    }
+
+    @Test
+    public void missingFrameIsNotSealed() throws Exception {
+        BlobCache cache = newCacheWithFrames(FRAME_COUNT - 1);
+        assertFalse(SealedFrameFile.seal(cache, mKeys, mKeyBytes, VERSION, mSealed));
+        assertFalse(mSealed.exists());
+        assertFalse(new File(mSealed.getPath() + ".tmp").exists());
+        cache.close();
+    }
+
+    @Test
+    public void corruptTableIsRejected() throws Exception {
+        BlobCache cache = newCacheWithFrames(FRAME_COUNT);
+        assertTrue(SealedFrameFile.seal(cache, mKeys, mKeyBytes, VERSION, mSealed));
+        cache.close();
+
+        RandomAccessFile file = new RandomAccessFile(mSealed, "rw");
+        try {
+            // 第一帧的size
+            file.seek(32 + 16);
+            file.write(0x7f);
+        } finally {
+            file.close();
+        }
+        assertNull(SealedFrameFile.open(mSealed, VERSION, mKeys));
+    }
+
+    @Test
+    public void corruptPixelsAreRejectedByPolicy() throws Exception {
+        BlobCache cache = newCacheWithFrames(FRAME_COUNT);
+        assertTrue(SealedFrameFile.seal(cache, mKeys, mKeyBytes, VERSION, mSealed));
+        cache.close();
+
+        SealedFrameFile sealedFile = SealedFrameFile.open(mSealed, VERSION, mKeys);
+        sealedFile.setVerifyPolicy(BlobVerifyPolicy.FIRST_READ, 1);
+        assertTrue(sealedFile.verifyFrame(0));
+
+        RandomAccessFile file = new RandomAccessFile(mSealed, "rw");
+        try {
+            // 第二帧的第一个像素，帧表不变
+            file.seek(32 + FRAME_COUNT * 36 + 16 * 16 * 4);
+            file.write(0x7f);
+        } finally {
+            file.close();
+        }
+        // 映射的文件能看到修改；帧表没有变化，仍然能打开
+        assertNotNull(SealedFrameFile.open(mSealed, VERSION, mKeys));
+        assertFalse(sealedFile.verifyFrame(1));
+        assertFalse(sealedFile.verifyFrame(1));
+        // 第一帧已经校验过，FIRST_READ下不再校验
+        assertTrue(sealedFile.verifyFrame(0));
+
+        sealedFile.setVerifyPolicy(BlobVerifyPolicy.ALWAYS, 1);
+        assertTrue(sealedFile.verifyFrame(2));
+        assertFalse(sealedFile.verifyFrame(1));
+    }
+
+    private BlobCache newCacheWithFrames(int count) throws Exception {
+        BlobCache cache = new BlobCache(mPath, 100, 1024 * 1024, true, 1);
+        for (int i = 0; i < count; i++) {
+            byte[] key = mKeyBytes[i];
+            int pixelsLength = 16 * 16 * 4;
+            // 像素 + 宽度 + 高度 + 元数据 + key
+            ByteBuffer blob = ByteBuffer.allocate(pixelsLength + 12 + key.length).order(ByteOrder.LITTLE_ENDIAN);
+            for (int j = 0; j < pixelsLength; j++) {
+                blob.put((byte) (i + j));
+            }
+            blob.putInt(16).putInt(16).putInt(BlobCodecType.NONE).put(key);
+            cache.insert(mKeys[i], blob.array());
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,192 @@
+package com.hewuzhao.frameanimation.executor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class FrameExecutorTest {
+
+    @Test
+    public void lanesTakeTurns() throws Exception {
+        FrameExecutor executor = new FrameExecutor(1);
+        FrameLane a = executor.newLane(LanePriority.NORMAL);
+        FrameLane b = executor.newLane(LanePriority.NORMAL);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        CountDownLatch release = block(executor);
+        for (int i = 0; i < 3; i++) {
+            a.post(record(order, "a" + i));
+        }
+        for (int i = 0; i < 3; i++) {
+            b.post(record(order, "b" + i));
+        }
+        release.countDown();
+        awaitEmpty(a, b);
+        assertEquals("[a0, b0, a1, b1, a2, b2]", order.toString());
+    }
+
+    @Test
+    public void higherPriorityFirst() throws Exception {
+        FrameExecutor executor = new FrameExecutor(1);
+        FrameLane low = executor.newLane(LanePriority.LOW);
+        FrameLane high = executor.newLane(LanePriority.NORMAL);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        CountDownLatch release = block(executor);
+        low.post(record(order, "low0"));
+        low.post(record(order, "low1"));
+        high.post(record(order, "normal0"));
+        high.post(record(order, "normal1"));
+        release.countDown();
+        awaitEmpty(low, high);
+        assertEquals("[normal0, normal1, low0, low1]", order.toString());
+
+        // 调整优先级
+        release = block(executor);
+        low.post(record(order, "low2"));
+        high.post(record(order, "normal2"));
+        low.setPriority(LanePriority.HIGH);
+        release.countDown();
+        awaitEmpty(low, high);
+        assertEquals("[normal0, normal1, low0, low1, low2, normal2]", order.toString());
+    }
+
+    @Test
+    public void serialLaneKeepsOrder() throws Exception {
+        FrameExecutor executor = new FrameExecutor(4);
+        FrameLane lane = executor.newLane(LanePriority.NORMAL);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            final int value = i;
+            lane.post(new Runnable() {
+                @Override
+                public void run() {
+                    updateMax(maxRunning, running.incrementAndGet());
+                    order.add(value);
+                    running.decrementAndGet();
+                }
+            });
+        }
+        awaitEmpty(lane);
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test
+    public void concurrencyIsBounded() throws Exception {
+        FrameExecutor executor = new FrameExecutor(4);
+        FrameLane lane = executor.newLane(LanePriority.NORMAL);
+        lane.setConcurrency(2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(40);
+        for (int i = 0; i < 40; i++) {
+            lane.post(new Runnable() {
+                @Override
+                public void run() {
+                    updateMax(maxRunning, running.incrementAndGet());
+                    sleep(2);
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void clearDropsPendingTasks() throws Exception {
+        FrameExecutor executor = new FrameExecutor(1);
+        FrameLane lane = executor.newLane(LanePriority.NORMAL);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        CountDownLatch release = block(executor);
+        lane.post(record(order, "old"));
+        assertEquals(1, lane.getPendingCount());
+        lane.clear();
+        lane.post(record(order, "new"));
+        release.countDown();
+        awaitEmpty(lane);
+        assertEquals("[new]", order.toString());
+    }
+
+    /**
+     * 占住所有线程，直到返回的latch释放
+     */
+    private static CountDownLatch block(FrameExecutor executor) throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(executor.getThreadCount());
+        for (int i = 0; i < executor.getThreadCount(); i++) {
+            executor.newLane(LanePriority.HIGH).post(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    /**
+     * 等串行队列里之前提交的任务都执行完
+     */
+    private static void awaitEmpty(FrameLane... lanes) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(lanes.length);
+        for (FrameLane lane : lanes) {
+            lane.post(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static Runnable record(final List<String> order, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        };
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
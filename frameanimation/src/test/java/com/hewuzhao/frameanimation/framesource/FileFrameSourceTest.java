@@ -0,0 +1,57 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class FileFrameSourceTest {
+    private static final String[] NAMES = {"frame_00.png", "frame_01.png", "readme.txt"};
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = mFolder.getRoot();
+        for (String name : NAMES) {
+            write(name, 10);
+        }
+    }
+
+    @Test
+    public void hashFollowsImageContent() throws IOException {
+        final long hash = FileFrameSource.getContentHash(mDir, NAMES);
+        assertEquals(hash, FileFrameSource.getContentHash(mDir, NAMES));
+
+        // 不是图片的文件不影响
+        write("readme.txt", 20);
+        assertEquals(hash, FileFrameSource.getContentHash(mDir, NAMES));
+
+        // 同名替换，目录的修改时间不一定变化
+        write("frame_01.png", 20);
+        assertFalse(hash == FileFrameSource.getContentHash(mDir, NAMES));
+    }
+
+    private void write(String name, int size) throws IOException {
+        FileOutputStream out = new FileOutputStream(new File(mDir, name));
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class SpriteSheetFrameSourceTest {
+
+    @Test
+    public void parsesManifestInOrder() throws IOException {
+        List<SpriteSheetFrameSource.SpriteFrame> frames = parse(
+                "# 名字 x y 宽 高 [时长]\n"
+                        + "\n"
+                        + "frame_01  0 0 120 100 40\n"
+                        + "\tframe_00 120 0 120 100\n");
+        assertEquals(2, frames.size());
+
+        SpriteSheetFrameSource.SpriteFrame first = frames.get(0);
+        assertEquals("frame_01", first.name);
+        assertEquals(0, first.left);
+        assertEquals(120, first.width);
+        assertEquals(100, first.height);
+        assertEquals(40, first.duration);
+
+        SpriteSheetFrameSource.SpriteFrame second = frames.get(1);
+        assertEquals("frame_00", second.name);
+        assertEquals(120, second.left);
+        assertEquals(60, second.duration);
+    }
+
+    @Test
+    public void invalidManifestIsRejected() {
+        assertInvalid("frame_00 0 0 120\n");
+        assertInvalid("frame_00 0 0 120 x\n");
+        assertInvalid("frame_00 0 0 0 100\n");
+        assertInvalid("frame_00 -1 0 120 100\n");
+        assertInvalid("frame_00 0 0 120 100\nframe_00 120 0 120 100\n");
+    }
+
+    @Test
+    public void sampledSizeRoundsDown() {
+        assertEquals(120, SpriteSheetFrameSource.getSampledSize(120, 0));
+        assertEquals(60, SpriteSheetFrameSource.getSampledSize(121, 2));
+        assertEquals(1, SpriteSheetFrameSource.getSampledSize(3, 4));
+    }
+
+    @Test
+    public void regionForLargeAtlas() {
+        final long threshold = SpriteSheetFrameSource.DEFAULT_REGION_THRESHOLD;
+        assertFalse(SpriteSheetFrameSource.shouldUseRegion(SpriteSheetMode.AUTO, 2048, 2048, threshold));
+        assertTrue(SpriteSheetFrameSource.shouldUseRegion(SpriteSheetMode.AUTO, 2049, 2048, threshold));
+        assertFalse(SpriteSheetFrameSource.shouldUseRegion(SpriteSheetMode.COPY, 8192, 8192, threshold));
+        assertTrue(SpriteSheetFrameSource.shouldUseRegion(SpriteSheetMode.REGION, 16, 16, threshold));
+    }
+
+    @Test
+    public void identityCoversManifestAndContent() throws IOException {
+        File atlas = File.createTempFile("atlas", ".png");
+        File manifest = File.createTempFile("atlas", ".txt");
+        File other = File.createTempFile("atlas", ".txt");
+        try {
+            final String atlasPath = atlas.getAbsolutePath();
+            final String identity = SpriteSheetFrameSource.getIdentity(atlasPath, manifest.getAbsolutePath(), true);
+            assertEquals(identity, SpriteSheetFrameSource.getIdentity(atlasPath, manifest.getAbsolutePath(), true));
+
+            // 同一张精灵图，不同的帧列表
+            assertFalse(identity.equals(
+                    SpriteSheetFrameSource.getIdentity(atlasPath, other.getAbsolutePath(), true)));
+            // 同一个目录名下的不同精灵图
+            assertFalse(SpriteSheetFrameSource.getIdentity("a/atlas.png", "a/atlas.txt", false).equals(
+                    SpriteSheetFrameSource.getIdentity("b/atlas.png", "a/atlas.txt", false)));
+
+            // 帧列表的内容变化
+            FileOutputStream out = new FileOutputStream(manifest);
+            out.write("frame_00 0 0 120 100\n".getBytes("UTF-8"));
+            out.close();
+            assertFalse(identity.equals(
+                    SpriteSheetFrameSource.getIdentity(atlasPath, manifest.getAbsolutePath(), true)));
+        } finally {
+            atlas.delete();
+            manifest.delete();
+            other.delete();
+        }
+    }
+
+    private static List<SpriteSheetFrameSource.SpriteFrame> parse(String manifest) throws IOException {
+        return SpriteSheetFrameSource.parseManifest(new BufferedReader(new StringReader(manifest)), 60);
+    }
+
+    private static void assertInvalid(String manifest) {
+        try {
+            parse(manifest);
+            fail("expected IOException: " + manifest);
+        } catch (IOException expected) {
+            // 格式错误
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.hewuzhao.frameanimation.framesource;
+
+import com.hewuzhao.frameanimation.frameview.FrameList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class ZipFrameSourceTest {
+
+    private File mFile;
+    private byte[] mStored;
+    private byte[] mDeflated;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("frames", ".zip");
+        Random random = new Random(1);
+        mStored = new byte[100 * 1024];
+        random.nextBytes(mStored);
+        // 有重复的数据，压缩后更小
+        mDeflated = new byte[200 * 1024];
+        for (int i = 0; i < mDeflated.length; i++) {
+            mDeflated[i] = (byte) (i % 251);
+        }
+
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(mFile));
+        try {
+            out.setComment("frame animation bundle");
+            putStored(out, "anim/frame_01.png", mStored);
+            ZipEntry deflated = new ZipEntry("anim/frame_00.png");
+            deflated.setExtra(new byte[]{(byte) 0xCA, (byte) 0xFE, 0, 0});
+            out.putNextEntry(deflated);
+            out.write(mDeflated);
+            out.closeEntry();
+            putStored(out, "anim/readme.txt", new byte[]{1, 2, 3});
+            putStored(out, "anim/sub/frame_02.png", new byte[]{4, 5, 6});
+            putStored(out, "other.png", new byte[]{7, 8, 9});
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void readsCentralDirectory() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            Map<String, ZipFrameSource.Entry> entries = ZipFrameSource.readEntries(file.getChannel());
+            assertEquals(5, entries.size());
+            ZipFrameSource.Entry entry = entries.get("anim/frame_00.png");
+            assertEquals(mDeflated.length, entry.size);
+            assertTrue(entry.compressedSize < entry.size);
+            assertEquals(mStored.length, entries.get("anim/frame_01.png").compressedSize);
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void listsImagesInDirSorted() {
+        ZipFrameSource source = new ZipFrameSource(mFile, "anim", 40);
+        try {
+            FrameList frameList = source.loadFrameList();
+            assertEquals(2, frameList.getFrameItemSize());
+            assertEquals("frame_00.png", frameList.getFrameItemByIndex(0).getDrawableName());
+            assertEquals("frame_01.png", frameList.getFrameItemByIndex(1).getDrawableName());
+            assertEquals(40, frameList.getFrameItemByIndex(0).getDuration());
+            assertTrue(frameList.getFileName().matches("[A-Za-z0-9_]+"));
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void readsStoredAndDeflatedInPlace() throws IOException {
+        ZipFrameSource source = new ZipFrameSource(mFile, "anim/", 40);
+        try {
+            assertTrue(Arrays.equals(mStored, readAll(source.openStream("frame_01.png"))));
+            assertTrue(Arrays.equals(mDeflated, readAll(source.openStream("frame_00.png"))));
+            // 第二次读取使用记录的数据位置
+            assertTrue(Arrays.equals(mDeflated, readAll(source.openStream("frame_00.png"))));
+            assertNull(source.openStream("missing.png"));
+
+            // 关闭后再次使用时重新打开
+            source.close();
+            assertTrue(Arrays.equals(mStored, readAll(source.openStream("frame_01.png"))));
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void rootDirAndKey() throws IOException {
+        ZipFrameSource root = new ZipFrameSource(mFile, 40);
+        ZipFrameSource anim = new ZipFrameSource(mFile, "anim", 40);
+        try {
+            assertEquals(1, root.loadFrameList().getFrameItemSize());
+            assertTrue(Arrays.equals(new byte[]{7, 8, 9}, readAll(root.openStream("other.png"))));
+            assertFalse(root.getKey().equals(anim.getKey()));
+        } finally {
+            root.close();
+            anim.close();
+        }
+    }
+
+    @Test
+    public void notZipIsRejected() throws IOException {
+        File file = File.createTempFile("frames", ".zip");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[1024]);
+        out.close();
+        ZipFrameSource source = new ZipFrameSource(file, 40);
+        try {
+            assertNull(source.loadFrameList());
+            assertNull(source.openStream("frame_00.png"));
+        } finally {
+            source.close();
+            file.delete();
+        }
+    }
+
+    private static void putStored(ZipOutputStream out, String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[3000];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class CustomLinkedBlockingQueueTest {
+
+    @Test
+    public void keepsAllElementsInOrder() throws Exception {
+        CustomLinkedBlockingQueue queue = new CustomLinkedBlockingQueue(3);
+        LinkedBitmap b0 = new LinkedBitmap();
+        LinkedBitmap b1 = new LinkedBitmap();
+        LinkedBitmap b2 = new LinkedBitmap();
+        queue.put(b0);
+        queue.put(b1);
+        queue.put(b2);
+        assertFalse(queue.offer(new LinkedBitmap()));
+        assertEquals(3, queue.size());
+
+        assertSame(b0, queue.take());
+        assertSame(b1, queue.poll());
+        queue.put(b0);
+        assertSame(b2, queue.take());
+        assertSame(b0, queue.take());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,99 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class FramePrefetchControllerTest {
+
+    private static final long FRAME_BYTES = 1024 * 1024;
+
+    @Test
+    public void growsToCoverSlowestFrame() {
+        FramePrefetchController controller = new FramePrefetchController(2, 64 * FRAME_BYTES);
+        controller.reset(1);
+        // 每10帧有一帧解码耗时是播放间隔的3.5倍
+        decodeWindow(controller, 140, 40);
+        assertEquals(4, controller.getDepth());
+    }
+
+    @Test
+    public void stallGrowsOncePerWindow() {
+        FramePrefetchController controller = new FramePrefetchController(2, 64 * FRAME_BYTES);
+        controller.reset(1);
+        controller.onStall();
+        controller.onStall();
+        assertEquals(3, controller.getDepth());
+        assertEquals(2, controller.getStallCount());
+
+        decodeWindow(controller, 10, 40);
+        controller.onStall();
+        assertEquals(4, controller.getDepth());
+    }
+
+    @Test
+    public void shrinksAfterTwoCalmWindows() {
+        FramePrefetchController controller = new FramePrefetchController(4, 64 * FRAME_BYTES);
+        controller.reset(1);
+        decodeWindow(controller, 10, 40);
+        assertEquals(4, controller.getDepth());
+        decodeWindow(controller, 10, 40);
+        assertEquals(3, controller.getDepth());
+        decodeWindow(controller, 10, 40);
+        decodeWindow(controller, 10, 40);
+        decodeWindow(controller, 10, 40);
+        decodeWindow(controller, 10, 40);
+        assertEquals(FramePrefetchController.MIN_DEPTH, controller.getDepth());
+    }
+
+    @Test
+    public void depthStaysWithinBudget() {
+        // 预算6帧，2个解码线程各占一帧，最多提前解码4帧
+        FramePrefetchController controller = new FramePrefetchController(2, 6 * FRAME_BYTES);
+        controller.reset(2);
+        decodeWindow(controller, 400, 40);
+        assertEquals(4, controller.getDepth());
+
+        controller.setBudgetBytes(3 * FRAME_BYTES);
+        assertEquals(1, controller.getDepth());
+        controller.onStall();
+        assertEquals(1, controller.getDepth());
+    }
+
+    @Test
+    public void resetRestoresInitialDepth() {
+        FramePrefetchController controller = new FramePrefetchController(2, 64 * FRAME_BYTES);
+        controller.reset(1);
+        controller.onStall();
+        decodeWindow(controller, 200, 40);
+        controller.reset(1);
+        assertEquals(2, controller.getDepth());
+        assertEquals(0, controller.getStallCount());
+    }
+
+    @Test
+    public void trimDropsToMinimumAndRegrows() {
+        FramePrefetchController controller = new FramePrefetchController(2, 64 * FRAME_BYTES);
+        controller.reset(1);
+        decodeWindow(controller, 200, 40);
+        assertEquals(5, controller.getDepth());
+
+        controller.trim();
+        assertEquals(FramePrefetchController.MIN_DEPTH, controller.getDepth());
+        decodeWindow(controller, 200, 40);
+        assertEquals(5, controller.getDepth());
+    }
+
+    /**
+     * 解码一个窗口的帧，每10帧中有一帧耗时slowMillis，其他10毫秒
+     */
+    private static void decodeWindow(FramePrefetchController controller, long slowMillis, int duration) {
+        for (int i = 0; i < FramePrefetchController.WINDOW; i++) {
+            controller.onFrameDecoded(i % 10 == 0 ? slowMillis : 10, duration, FRAME_BYTES);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class FrameReorderBufferTest {
+
+    @Test
+    public void releasesInSequenceOrder() {
+        FrameReorderBuffer buffer = new FrameReorderBuffer(4);
+        int s0 = buffer.claim();
+        int s1 = buffer.claim();
+        int s2 = buffer.claim();
+        LinkedBitmap b0 = new LinkedBitmap();
+        LinkedBitmap b1 = new LinkedBitmap();
+        LinkedBitmap b2 = new LinkedBitmap();
+
+        assertTrue(buffer.put(s2, b2));
+        assertTrue(buffer.put(s1, b1));
+        // 第0帧还没解码完成
+        assertNull(buffer.pollNext());
+        assertEquals(2, buffer.getPendingCount());
+
+        assertTrue(buffer.put(s0, b0));
+        assertSame(b0, buffer.pollNext());
+        assertSame(b1, buffer.pollNext());
+        assertSame(b2, buffer.pollNext());
+        assertNull(buffer.pollNext());
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    public void resetDropsOldSequences() {
+        FrameReorderBuffer buffer = new FrameReorderBuffer(4);
+        int old0 = buffer.claim();
+        int old1 = buffer.claim();
+        assertTrue(buffer.put(old1, new LinkedBitmap()));
+
+        buffer.reset();
+        int s0 = buffer.claim();
+        assertEquals(0, buffer.getOrdinal(s0));
+        assertEquals(0, buffer.getPendingCount());
+        assertFalse(buffer.put(old0, new LinkedBitmap()));
+
+        LinkedBitmap b0 = new LinkedBitmap();
+        assertTrue(buffer.put(s0, b0));
+        assertSame(b0, buffer.pollNext());
+        // 已经取出过的顺序号
+        assertFalse(buffer.put(s0, new LinkedBitmap()));
+        // 还没领取的顺序号
+        assertFalse(buffer.put(s0 + 1, new LinkedBitmap()));
+    }
+
+    @Test
+    public void concurrentWorkersKeepOrder() throws Exception {
+        final int workers = 4;
+        final int frames = 2000;
+        final FrameReorderBuffer buffer = new FrameReorderBuffer(workers);
+        final List<Integer> released = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(workers);
+        // 同FrameTextureView中LinkedBitmap的个数，领取顺序号前先拿到一个，按顺序取出后归还
+        final Semaphore bitmaps = new Semaphore(workers);
+        for (int w = 0; w < workers; w++) {
+            final Random random = new Random(w);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        bitmaps.acquireUninterruptibly();
+                        int sequence = buffer.claim();
+                        if (sequence >= frames) {
+                            break;
+                        }
+                        if (random.nextInt(4) == 0) {
+                            Thread.yield();
+                        }
+                        LinkedBitmap bitmap = new LinkedBitmap();
+                        bitmap.index = sequence;
+                        assertTrue(buffer.put(sequence, bitmap));
+                        synchronized (released) {
+                            LinkedBitmap next;
+                            while ((next = buffer.pollNext()) != null) {
+                                released.add(next.index);
+                                bitmaps.release();
+                            }
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        assertEquals(frames, released.size());
+        for (int i = 0; i < frames; i++) {
+            assertEquals(i, (int) released.get(i));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class FrameSchedulerTest {
+
+    private static final int DURATION = 60;
+
+    /**
+     * 每一帧绘制的耗时，以及消息调度的延迟
+     */
+    private static final int DRAW_COST = 5;
+    private static final int HANDLER_LATENCY = 2;
+
+    /**
+     * 假的时钟：回调在目标时间之后HANDLER_LATENCY执行，可选对齐到vsync
+     */
+    private static class FakeClock implements FrameClock {
+        final int vsyncPeriod;
+        long now;
+        Runnable callback;
+        long targetTime;
+
+        FakeClock(int vsyncPeriod) {
+            this.vsyncPeriod = vsyncPeriod;
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return now;
+        }
+
+        @Override
+        public void schedule(Runnable callback, long targetTime) {
+            this.callback = callback;
+            this.targetTime = targetTime;
+        }
+
+        @Override
+        public void cancel() {
+            callback = null;
+        }
+
+        /**
+         * 执行等待中的回调
+         */
+        void fire() {
+            long time = Math.max(now, targetTime) + HANDLER_LATENCY;
+            if (vsyncPeriod > 0) {
+                // 离目标时间最近的一次vsync，已经晚了就是下一次
+                long vsync = (time / vsyncPeriod) * vsyncPeriod;
+                while (!VsyncFrameClock.isNearestVsync(vsync, vsyncPeriod, time)) {
+                    vsync += vsyncPeriod;
+                }
+                time = Math.max(vsync, now);
+            }
+            now = time;
+            Runnable r = callback;
+            callback = null;
+            r.run();
+        }
+    }
+
+    @Test
+    public void timelineDoesNotDrift() {
+        FakeClock clock = new FakeClock(0);
+        FrameScheduler scheduler = newScheduler(clock, 10);
+        long first = playFrames(clock, scheduler, 100, 0, false);
+
+        // 按postDelayed(duration)第100帧会晚99 * (DRAW_COST + HANDLER_LATENCY)毫秒
+        long drift = clock.now - DRAW_COST - (first + 99L * DURATION);
+        assertTrue("drift=" + drift, Math.abs(drift) <= HANDLER_LATENCY);
+    }
+
+    @Test
+    public void vsyncAlignedStaysWithinHalfPeriod() {
+        FakeClock clock = new FakeClock(16);
+        clock.now = 3;
+        FrameScheduler scheduler = newScheduler(clock, 10);
+        long first = playFrames(clock, scheduler, 100, 0, false);
+
+        long drift = clock.now - DRAW_COST - (first + 99L * DURATION);
+        assertTrue("drift=" + drift, Math.abs(drift) <= 16 / 2 + HANDLER_LATENCY);
+    }
+
+    @Test
+    public void slowFrameShiftsTimelineWithoutDropping() {
+        FakeClock clock = new FakeClock(0);
+        FrameScheduler scheduler = newScheduler(clock, 10);
+        playFrames(clock, scheduler, 1, 0, false);
+        long second = scheduler.scheduleNext(NOOP);
+
+        // 第1帧晚了200毫秒才显示，之后的帧整体顺延，不会连续快速绘制追赶
+        clock.now = second + 200;
+        scheduler.onFramePresented(1, false);
+        long third = scheduler.scheduleNext(NOOP);
+        assertEquals(clock.now + DURATION, third);
+    }
+
+    @Test
+    public void slowFrameKeepsTimelineWhenDropping() {
+        FakeClock clock = new FakeClock(0);
+        FrameScheduler scheduler = newScheduler(clock, 10);
+        playFrames(clock, scheduler, 1, 0, true);
+        long second = scheduler.scheduleNext(NOOP);
+
+        clock.now = second + 200;
+        scheduler.onFramePresented(4, true);
+        long next = scheduler.scheduleNext(NOOP);
+        assertEquals(second + 4 * DURATION, next);
+    }
+
+    @Test
+    public void stallRetriesInsteadOfSpinning() {
+        FakeClock clock = new FakeClock(0);
+        FrameScheduler scheduler = newScheduler(clock, 10);
+        // 还没有显示过帧
+        assertEquals(FrameScheduler.STALL_RETRY_INTERVAL, scheduler.scheduleNext(NOOP));
+        clock.cancel();
+
+        playFrames(clock, scheduler, 1, 0, false);
+        long second = scheduler.scheduleNext(NOOP);
+        clock.now = second + 1;
+        // 第1帧还没有解码好
+        assertEquals(clock.now + FrameScheduler.STALL_RETRY_INTERVAL, scheduler.scheduleNext(NOOP));
+    }
+
+    @Test
+    public void restartsAfterStop() {
+        FakeClock clock = new FakeClock(0);
+        FrameScheduler scheduler = newScheduler(clock, 10);
+        playFrames(clock, scheduler, 3, 0, false);
+        scheduler.stop();
+        clock.now += 10000;
+        scheduler.onFramePresented(3, true);
+        assertEquals(clock.now + DURATION, scheduler.scheduleNext(NOOP));
+    }
+
+    private static FrameScheduler newScheduler(FakeClock clock, int frameCount) {
+        int[] durations = new int[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            durations[i] = DURATION;
+        }
+        FrameScheduler scheduler = new FrameScheduler(clock);
+        scheduler.setTimeline(new FrameTimeline(durations));
+        return scheduler;
+    }
+
+    /**
+     * 模拟绘制线程：显示count帧，每次回调显示下一帧，花DRAW_COST绘制后安排下一帧
+     *
+     * @return 第一帧显示的时间
+     */
+    private static long playFrames(final FakeClock clock, final FrameScheduler scheduler, final int count,
+                                   final int startOrdinal, final boolean dropLateFrames) {
+        final long first = clock.now;
+        final int[] ordinal = {startOrdinal};
+        Runnable draw = new Runnable() {
+            @Override
+            public void run() {
+                scheduler.onFramePresented(ordinal[0]++, dropLateFrames);
+                clock.now += DRAW_COST;
+                if (ordinal[0] - startOrdinal < count) {
+                    scheduler.scheduleNext(this);
+                }
+            }
+        };
+        draw.run();
+        while (clock.callback != null) {
+            clock.fire();
+        }
+        return first;
+    }
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+}
@@ -0,0 +1,74 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class FrameTimelineTest {
+
+    @Test
+    public void notStartedNeverLate() {
+        FrameTimeline timeline = new FrameTimeline(new int[]{40, 40});
+        assertFalse(timeline.isStarted());
+        assertEquals(-1, timeline.getPresentationTime(3));
+        assertFalse(timeline.isLate(0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void presentationTimeFollowsDurations() {
+        FrameTimeline timeline = new FrameTimeline(new int[]{10, 20, 30});
+        timeline.start(1000, 0);
+        assertEquals(1000, timeline.getPresentationTime(0));
+        assertEquals(1010, timeline.getPresentationTime(1));
+        assertEquals(1030, timeline.getPresentationTime(2));
+        // 第二轮
+        assertEquals(1060, timeline.getPresentationTime(3));
+        assertEquals(1070, timeline.getPresentationTime(4));
+    }
+
+    @Test
+    public void lateOnceNextFrameIsDue() {
+        FrameTimeline timeline = new FrameTimeline(new int[]{10, 20, 30});
+        timeline.start(1000, 0);
+        assertFalse(timeline.isLate(1, 1029));
+        assertTrue(timeline.isLate(1, 1030));
+        assertTrue(timeline.isLate(0, 1030));
+        assertFalse(timeline.isLate(2, 1030));
+    }
+
+    @Test
+    public void startFromLaterOrdinal() {
+        FrameTimeline timeline = new FrameTimeline(new int[]{10, 20, 30});
+        // 从第二轮的第1帧开始
+        timeline.start(500, 4);
+        assertEquals(500, timeline.getPresentationTime(4));
+        assertEquals(520, timeline.getPresentationTime(5));
+        assertEquals(550, timeline.getPresentationTime(6));
+    }
+
+    @Test
+    public void restartAfterStop() {
+        FrameTimeline timeline = new FrameTimeline(new int[]{40});
+        timeline.start(0, 0);
+        assertTrue(timeline.isLate(0, 1000));
+        timeline.stop();
+        assertFalse(timeline.isLate(0, 1000));
+        timeline.start(1000, 25);
+        assertFalse(timeline.isLate(25, 1039));
+        assertEquals(1040, timeline.getPresentationTime(26));
+    }
+
+    @Test
+    public void zeroDurationCountsAsOneMillisecond() {
+        FrameTimeline timeline = new FrameTimeline(new int[]{0, 10});
+        timeline.start(0, 0);
+        assertEquals(1, timeline.getPresentationTime(1));
+        assertEquals(11, timeline.getPresentationTime(2));
+    }
+}
@@ -0,0 +1,90 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import android.graphics.Rect;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class ResidentFramesTest {
+
+    private static final long FRAME_BYTES = 1000;
+
+    @Test
+    public void completeAfterFirstLoop() {
+        ResidentFrames<Object> frames = new ResidentFrames<>(3, 3 * FRAME_BYTES);
+        Object[] bitmaps = {new Object(), new Object(), new Object()};
+        for (int i = 0; i < bitmaps.length; i++) {
+            assertFalse(frames.isComplete());
+            assertNull(frames.get(i, null));
+            assertTrue(frames.pin(i, bitmaps[i], FRAME_BYTES, new Rect()));
+        }
+        assertTrue(frames.isComplete());
+        assertEquals(3, frames.getPinnedCount());
+        assertEquals(3 * FRAME_BYTES, frames.getByteCount());
+        for (int i = 0; i < bitmaps.length; i++) {
+            assertSame(bitmaps[i], frames.get(i, null));
+        }
+    }
+
+    @Test
+    public void pinTwiceKeepsFirst() {
+        ResidentFrames<Object> frames = new ResidentFrames<>(2, 2 * FRAME_BYTES);
+        Object first = new Object();
+        assertTrue(frames.pin(0, first, FRAME_BYTES, new Rect()));
+        assertTrue(frames.pin(0, new Object(), FRAME_BYTES, new Rect()));
+        assertSame(first, frames.get(0, null));
+        assertEquals(1, frames.getPinnedCount());
+        assertEquals(FRAME_BYTES, frames.getByteCount());
+    }
+
+    @Test
+    public void firstFrameEstimatesTotal() {
+        // 第一帧就能估算出三帧超出预算，直接放弃
+        ResidentFrames<Object> frames = new ResidentFrames<>(3, 2 * FRAME_BYTES);
+        assertFalse(frames.pin(0, new Object(), FRAME_BYTES, new Rect()));
+        assertTrue(frames.isOverBudget());
+        assertEquals(0, frames.getPinnedCount());
+        assertFalse(frames.pin(1, new Object(), 1, new Rect()));
+    }
+
+    @Test
+    public void largerFrameExceedsBudget() {
+        ResidentFrames<Object> frames = new ResidentFrames<>(3, 3 * FRAME_BYTES);
+        assertTrue(frames.pin(0, new Object(), FRAME_BYTES, new Rect()));
+        assertTrue(frames.pin(1, new Object(), FRAME_BYTES, new Rect()));
+        assertFalse(frames.pin(2, new Object(), FRAME_BYTES + 1, new Rect()));
+        assertTrue(frames.isOverBudget());
+        assertNull(frames.get(0, null));
+        assertEquals(0, frames.getByteCount());
+    }
+
+    @Test
+    public void ignoresInvalidIndex() {
+        ResidentFrames<Object> frames = new ResidentFrames<>(1, FRAME_BYTES);
+        assertTrue(frames.pin(-1, new Object(), FRAME_BYTES, new Rect()));
+        assertTrue(frames.pin(1, new Object(), FRAME_BYTES, new Rect()));
+        assertTrue(frames.pin(0, null, FRAME_BYTES, new Rect()));
+        assertEquals(0, frames.getPinnedCount());
+        assertNull(frames.get(5, null));
+    }
+
+    @Test
+    public void clearDropsFrames() {
+        ResidentFrames<Object> frames = new ResidentFrames<>(1, FRAME_BYTES);
+        assertTrue(frames.pin(0, new Object(), FRAME_BYTES, new Rect()));
+        assertTrue(frames.isComplete());
+        frames.clear();
+        assertFalse(frames.isComplete());
+        assertNull(frames.get(0, null));
+        assertEquals(0, frames.getByteCount());
+    }
+}
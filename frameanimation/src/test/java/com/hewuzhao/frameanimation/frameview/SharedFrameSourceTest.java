@@ -0,0 +1,170 @@
+package com.hewuzhao.frameanimation.frameview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class SharedFrameSourceTest {
+
+    private static class TestSubscriber implements SharedFrameSource.Subscriber {
+        boolean accept = true;
+        final List<LinkedBitmap> received = new ArrayList<>();
+        final List<LinkedBitmap> released = new ArrayList<>();
+        final List<Boolean> ownerChanges = new ArrayList<>();
+
+        @Override
+        public boolean onSharedFrame(LinkedBitmap frame) {
+            if (accept) {
+                received.add(frame);
+            }
+            return accept;
+        }
+
+        @Override
+        public void onFrameReleased(LinkedBitmap frame) {
+            released.add(frame);
+        }
+
+        @Override
+        public void onOwnerChanged(boolean becomeOwner) {
+            ownerChanges.add(becomeOwner);
+        }
+    }
+
+    @Test
+    public void firstSubscriberOwns() {
+        TestSubscriber a = new TestSubscriber();
+        TestSubscriber b = new TestSubscriber();
+        SharedFrameSource source = SharedFrameSource.subscribe("owner", a);
+        assertSame(source, SharedFrameSource.subscribe("owner", b));
+        assertTrue(source.isOwner(a));
+        assertFalse(source.isOwner(b));
+        assertEquals(2, source.getSubscriberCount());
+        source.unsubscribe(a);
+        source.unsubscribe(b);
+    }
+
+    @Test
+    public void aloneDoesNotShare() {
+        TestSubscriber a = new TestSubscriber();
+        SharedFrameSource source = SharedFrameSource.subscribe("alone", a);
+        LinkedBitmap frame = frame(3);
+        assertFalse(source.publish(a, frame));
+        assertFalse(SharedFrameSource.isShared(frame));
+        source.unsubscribe(a);
+    }
+
+    @Test
+    public void releasedAfterLastView() {
+        TestSubscriber owner = new TestSubscriber();
+        TestSubscriber b = new TestSubscriber();
+        TestSubscriber c = new TestSubscriber();
+        SharedFrameSource source = SharedFrameSource.subscribe("release", owner);
+        SharedFrameSource.subscribe("release", b);
+        SharedFrameSource.subscribe("release", c);
+
+        LinkedBitmap frame = frame(5);
+        assertTrue(source.publish(owner, frame));
+        assertEquals(1, b.received.size());
+        LinkedBitmap shared = b.received.get(0);
+        assertSame(frame.bitmap, shared.bitmap);
+        assertSame(frame, shared.sharedFrom);
+        assertEquals(5, shared.index);
+        assertEquals(5, shared.ordinal);
+
+        SharedFrameSource.release(frame);
+        SharedFrameSource.release(b.received.get(0));
+        assertTrue(owner.released.isEmpty());
+        SharedFrameSource.release(c.received.get(0));
+        assertEquals(1, owner.released.size());
+        assertSame(frame, owner.released.get(0));
+        assertFalse(SharedFrameSource.isShared(frame));
+        assertNull(frame.publisher);
+
+        source.unsubscribe(c);
+        source.unsubscribe(b);
+        source.unsubscribe(owner);
+    }
+
+    @Test
+    public void rejectingViewHoldsNoReference() {
+        TestSubscriber owner = new TestSubscriber();
+        TestSubscriber paused = new TestSubscriber();
+        TestSubscriber playing = new TestSubscriber();
+        paused.accept = false;
+        SharedFrameSource source = SharedFrameSource.subscribe("reject", owner);
+        SharedFrameSource.subscribe("reject", paused);
+        SharedFrameSource.subscribe("reject", playing);
+
+        LinkedBitmap frame = frame(0);
+        assertTrue(source.publish(owner, frame));
+        assertEquals(2, frame.shareCount.get());
+        SharedFrameSource.release(playing.received.get(0));
+        SharedFrameSource.release(frame);
+        assertEquals(1, owner.released.size());
+
+        // 没有view接收时不共享
+        playing.accept = false;
+        LinkedBitmap next = frame(1);
+        assertFalse(source.publish(owner, next));
+        assertFalse(SharedFrameSource.isShared(next));
+
+        source.unsubscribe(playing);
+        source.unsubscribe(paused);
+        source.unsubscribe(owner);
+    }
+
+    @Test
+    public void nextSubscriberTakesOver() {
+        TestSubscriber owner = new TestSubscriber();
+        TestSubscriber b = new TestSubscriber();
+        TestSubscriber c = new TestSubscriber();
+        SharedFrameSource source = SharedFrameSource.subscribe("handoff", owner);
+        SharedFrameSource.subscribe("handoff", b);
+        SharedFrameSource.subscribe("handoff", c);
+
+        source.unsubscribe(owner);
+        assertTrue(source.isOwner(b));
+        assertEquals("[true]", b.ownerChanges.toString());
+        assertEquals("[false]", c.ownerChanges.toString());
+        assertTrue(owner.ownerChanges.isEmpty());
+        // 之前的owner不能再发布
+        assertFalse(source.publish(owner, frame(0)));
+
+        // 不是owner离开时不通知
+        source.unsubscribe(c);
+        assertEquals("[true]", b.ownerChanges.toString());
+        source.unsubscribe(b);
+        assertEquals(0, source.getSubscriberCount());
+
+        // 所有view离开后重新开始
+        TestSubscriber d = new TestSubscriber();
+        SharedFrameSource next = SharedFrameSource.subscribe("handoff", d);
+        assertTrue(next.isOwner(d));
+        next.unsubscribe(d);
+    }
+
+    @Test
+    public void keyIncludesSampleSize() {
+        assertFalse(SharedFrameSource.keyOf("1", 1).equals(SharedFrameSource.keyOf("1", 2)));
+        assertFalse(SharedFrameSource.keyOf("1", 1).equals(SharedFrameSource.keyOf("2", 1)));
+    }
+
+    private static LinkedBitmap frame(int index) {
+        LinkedBitmap frame = new LinkedBitmap();
+        frame.index = index;
+        frame.ordinal = index;
+        return frame;
+    }
+}
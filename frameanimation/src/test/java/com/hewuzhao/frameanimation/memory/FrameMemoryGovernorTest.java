@@ -0,0 +1,108 @@
+package com.hewuzhao.frameanimation.memory;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class FrameMemoryGovernorTest {
+
+    private static class TestTrimmable implements FrameMemoryGovernor.Trimmable {
+        final long bytes;
+        final List<Integer> levels = new ArrayList<>();
+
+        TestTrimmable(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long onTrimMemory(int level) {
+            levels.add(level);
+            return bytes;
+        }
+    }
+
+    /**
+     * 缓存释放的字节数固定，不依赖BlobCacheManager和BitmapPool
+     */
+    private static class TestGovernor extends FrameMemoryGovernor {
+        int cacheTrims;
+
+        @Override
+        long trimBitmapPool(int level) {
+            return 0;
+        }
+
+        @Override
+        long trimCaches() {
+            cacheTrims++;
+            return 1000;
+        }
+    }
+
+    @Test
+    public void notifiesEveryTrimmable() {
+        TestGovernor governor = new TestGovernor();
+        TestTrimmable a = new TestTrimmable(10);
+        TestTrimmable b = new TestTrimmable(20);
+        governor.register(a);
+        governor.register(b);
+
+        assertEquals(30, governor.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(1, a.levels.size());
+        assertEquals(1, b.levels.size());
+        assertEquals(0, governor.cacheTrims);
+    }
+
+    @Test
+    public void closesCachesFromRunningLow() {
+        TestGovernor governor = new TestGovernor();
+        governor.register(new TestTrimmable(10));
+
+        assertEquals(1010, governor.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(1, governor.cacheTrims);
+        assertEquals(1010, governor.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND));
+        assertEquals(2, governor.cacheTrims);
+    }
+
+    @Test
+    public void recordsBytesPerLevel() {
+        TestGovernor governor = new TestGovernor();
+        governor.register(new TestTrimmable(10));
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        governor.onLowMemory();
+
+        assertEquals(20, governor.getReleasedBytes(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(1010, governor.getReleasedBytes(ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+        assertEquals(0, governor.getReleasedBytes(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(ComponentCallbacks2.TRIM_MEMORY_COMPLETE, governor.getLastTrimLevel());
+        assertEquals(1010, governor.getLastReleasedBytes());
+
+        Map<Integer, Long> byLevel = governor.getReleasedBytesByLevel();
+        assertEquals(2, byLevel.size());
+        assertTrue(byLevel.containsKey(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+    }
+
+    @Test
+    public void unregisteredIsNotNotified() {
+        TestGovernor governor = new TestGovernor();
+        TestTrimmable a = new TestTrimmable(10);
+        governor.register(a);
+        governor.unregister(a);
+
+        assertEquals(0, governor.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertTrue(a.levels.isEmpty());
+    }
+}
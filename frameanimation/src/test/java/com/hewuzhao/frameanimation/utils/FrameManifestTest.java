@@ -0,0 +1,141 @@
+package com.hewuzhao.frameanimation.utils;
+
+import com.hewuzhao.frameanimation.blobcache.BlobCacheUtil;
+import com.hewuzhao.frameanimation.blobcache.BlobCodecType;
+import com.hewuzhao.frameanimation.blobcache.BlobSyncPolicy;
+import com.hewuzhao.frameanimation.blobcache.BlobVerifyPolicy;
+import com.hewuzhao.frameanimation.frameview.FrameItem;
+import com.hewuzhao.frameanimation.frameview.FrameList;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class FrameManifestTest {
+    private static final int RES_ID = 0x7f070001;
+    private static final String PATH = "res/drawable-xhdpi-v4/anim_loading.xml";
+    private static final long STAMP = 1700000000000L;
+
+    @Test
+    public void roundTrip() {
+        FrameList source = newFrameList(300);
+        byte[] data = FrameManifest.encode(source, RES_ID, PATH, STAMP);
+        FrameList frameList = FrameManifest.decode(data, RES_ID, PATH, STAMP);
+        assertNotNull(frameList);
+
+        assertEquals("anim_loading", frameList.getFileName());
+        assertEquals(3, frameList.getVersion());
+        assertEquals(200, frameList.getMaxEntries());
+        assertEquals(1024 * 1024, frameList.getMaxBytes());
+        assertEquals(BlobSyncPolicy.EVERY_N_BLOBS, frameList.getSyncPolicy());
+        assertEquals(8, frameList.getSyncValue());
+        assertEquals(BlobCodecType.LZ4, frameList.getCodec());
+        assertEquals(BlobVerifyPolicy.SAMPLED, frameList.getVerifyPolicy());
+        assertEquals(50, frameList.getVerifySampleRate());
+        assertEquals(10, frameList.getDeltaInterval());
+        assertTrue(frameList.isOneShot());
+        assertFalse(frameList.isLowBitDepth());
+        assertTrue(frameList.isDecodeToViewSize());
+
+        assertEquals(300, frameList.getFrameItemSize());
+        for (int i = 0; i < 300; i++) {
+            FrameItem expected = source.getFrameItemByIndex(i);
+            FrameItem item = frameList.getFrameItemByIndex(i);
+            assertEquals(expected.getDrawableName(), item.getDrawableName());
+            assertEquals(expected.getResId(), item.getResId());
+            assertEquals(expected.getDuration(), item.getDuration());
+            assertEquals(expected.getCacheKey(), item.getCacheKey());
+            assertTrue(Arrays.equals(expected.getCacheKeyBytes(), item.getCacheKeyBytes()));
+        }
+    }
+
+    @Test
+    public void outOfDateIsRejected() {
+        byte[] data = FrameManifest.encode(newFrameList(3), RES_ID, PATH, STAMP);
+        assertNull(FrameManifest.decode(data, RES_ID, PATH, STAMP + 1));
+        assertNull(FrameManifest.decode(data, RES_ID + 1, PATH, STAMP));
+    }
+
+    @Test
+    public void pathChangeIsRejected() {
+        byte[] data = FrameManifest.encode(newFrameList(3), RES_ID, PATH, STAMP);
+        // 配置变化后同一个资源id选中了另一个xml
+        assertNull(FrameManifest.decode(data, RES_ID, "res/drawable-land-xhdpi-v4/anim_loading.xml", STAMP));
+        assertNotNull(FrameManifest.decode(data, RES_ID, PATH, STAMP));
+    }
+
+    @Test
+    public void corruptionIsRejected() {
+        byte[] data = FrameManifest.encode(newFrameList(3), RES_ID, PATH, STAMP);
+        data[data.length - 1] ^= 1;
+        assertNull(FrameManifest.decode(data, RES_ID, PATH, STAMP));
+
+        byte[] truncated = Arrays.copyOf(FrameManifest.encode(newFrameList(3), RES_ID, PATH, STAMP), 40);
+        assertNull(FrameManifest.decode(truncated, RES_ID, PATH, STAMP));
+    }
+
+    @Test
+    public void emptyListIsNotWritten() {
+        FrameList frameList = new FrameList();
+        frameList.setFrameItemList(new ArrayList<FrameItem>());
+        assertNull(FrameManifest.encode(frameList, RES_ID, PATH, STAMP));
+    }
+
+    @Test
+    public void writeThenRead() throws Exception {
+        File file = File.createTempFile("frame", ".manifest");
+        try {
+            assertTrue(FrameManifest.write(newFrameList(5), RES_ID, PATH, STAMP, file));
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+            FrameList frameList = FrameManifest.read(file, RES_ID, PATH, STAMP);
+            assertNotNull(frameList);
+            assertEquals(5, frameList.getFrameItemSize());
+            assertNull(FrameManifest.read(new File(file.getPath() + ".missing"), RES_ID, PATH, STAMP));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static FrameList newFrameList(int count) {
+        FrameList frameList = new FrameList();
+        frameList.setFileName("anim_loading");
+        frameList.setVersion(3);
+        frameList.setMaxEntries(200);
+        frameList.setMaxBytes(1024 * 1024);
+        frameList.setSyncPolicy(BlobSyncPolicy.EVERY_N_BLOBS);
+        frameList.setSyncValue(8);
+        frameList.setCodec(BlobCodecType.LZ4);
+        frameList.setVerifyPolicy(BlobVerifyPolicy.SAMPLED);
+        frameList.setVerifySampleRate(50);
+        frameList.setDeltaInterval(10);
+        frameList.setOneShot(true);
+        frameList.setDecodeToViewSize(true);
+        List<FrameItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            FrameItem item = new FrameItem();
+            String name = "loading_帧_" + i;
+            item.setDrawableName(name);
+            item.setResId(0x7f080000 + i);
+            item.setDuration(40 + i % 3);
+            byte[] keyBytes = BlobCacheUtil.getBytes(name);
+            item.setCacheKeyBytes(keyBytes);
+            item.setCacheKey(BlobCacheUtil.getCacheKey(name));
+            items.add(item);
+        }
+        frameList.setFrameItemList(items);
+        return frameList;
+    }
+}
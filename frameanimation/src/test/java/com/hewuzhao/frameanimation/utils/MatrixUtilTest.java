@@ -0,0 +1,43 @@
+package com.hewuzhao.frameanimation.utils;
+
+import com.hewuzhao.frameanimation.frameview.FrameScaleType;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author hewuzhao
+ * @date 2026-10-17
+ */
+public class MatrixUtilTest {
+
+    @Test
+    public void fitCenterSamplesToDisplayedSize() {
+        // 1000x800绘制到300x300，显示为300x240，缩小到2倍后500x400，4倍后250x200不够
+        assertEquals(2, MatrixUtil.calculateInSampleSize(1000, 800, 300, 300, FrameScaleType.FIT_CENTER));
+        assertEquals(4, MatrixUtil.calculateInSampleSize(1000, 800, 250, 250, FrameScaleType.FIT_CENTER));
+        assertEquals(8, MatrixUtil.calculateInSampleSize(1000, 800, 100, 100, FrameScaleType.CENTER_INSIDE));
+    }
+
+    @Test
+    public void centerCropKeepsCoveredSide() {
+        // 按高缩放，显示为500x400
+        assertEquals(2, MatrixUtil.calculateInSampleSize(1000, 800, 200, 400, FrameScaleType.CENTER_CROP));
+        assertEquals(1, MatrixUtil.calculateInSampleSize(1000, 800, 200, 401, FrameScaleType.CENTER_CROP));
+    }
+
+    @Test
+    public void fitXyChecksEachSide() {
+        assertEquals(2, MatrixUtil.calculateInSampleSize(1000, 800, 500, 100, FrameScaleType.FIT_XY));
+        assertEquals(1, MatrixUtil.calculateInSampleSize(1000, 800, 501, 100, FrameScaleType.FIT_XY));
+    }
+
+    @Test
+    public void noSampleWithoutDownscale() {
+        assertEquals(1, MatrixUtil.calculateInSampleSize(1000, 800, 100, 100, FrameScaleType.CENTER));
+        assertEquals(1, MatrixUtil.calculateInSampleSize(1000, 800, 100, 100, FrameScaleType.MATRIX));
+        assertEquals(1, MatrixUtil.calculateInSampleSize(200, 200, 1000, 1000, FrameScaleType.CENTER_INSIDE));
+        assertEquals(1, MatrixUtil.calculateInSampleSize(1000, 800, 0, 0, FrameScaleType.FIT_CENTER));
+    }
+}